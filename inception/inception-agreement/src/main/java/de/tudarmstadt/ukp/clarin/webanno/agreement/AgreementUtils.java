@@ -28,14 +28,13 @@ import java.io.OutputStreamWriter;
 import java.io.PrintStream;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
 import org.apache.commons.csv.CSVFormat;
 import org.apache.commons.csv.CSVPrinter;
-import org.apache.commons.lang3.ObjectUtils;
 import org.apache.commons.lang3.exception.ExceptionUtils;
 import org.apache.uima.cas.ArrayFS;
 import org.apache.uima.cas.CAS;
@@ -45,11 +44,11 @@ import org.apache.uima.cas.text.AnnotationFS;
 import org.apache.uima.fit.util.CasUtil;
 import org.apache.uima.fit.util.FSUtil;
 import org.dkpro.statistics.agreement.IAnnotationUnit;
-import org.dkpro.statistics.agreement.coding.CodingAnnotationStudy;
 import org.dkpro.statistics.agreement.coding.ICodingAnnotationItem;
 import org.dkpro.statistics.agreement.coding.ICodingAnnotationStudy;
 
 import de.tudarmstadt.ukp.clarin.webanno.agreement.results.coding.CodingAgreementResult;
+import de.tudarmstadt.ukp.clarin.webanno.agreement.results.coding.CodingStudyBuilder;
 import de.tudarmstadt.ukp.clarin.webanno.curation.casdiff.CasDiff;
 import de.tudarmstadt.ukp.clarin.webanno.curation.casdiff.CasDiff.Configuration;
 import de.tudarmstadt.ukp.clarin.webanno.curation.casdiff.CasDiff.ConfigurationSet;
@@ -87,20 +86,22 @@ public class AgreementUtils
             String aType, String aFeature, Set<String> aTagSet, boolean aExcludeIncomplete,
             boolean aNullLabelsAsEmpty, Map<String, List<CAS>> aCasMap)
     {
-        List<String> users = new ArrayList<>(aUsers);
-        Collections.sort(users);
-
-        List<ConfigurationSet> completeSets = new ArrayList<>();
-        List<ConfigurationSet> setsWithDifferences = new ArrayList<>();
-        List<ConfigurationSet> incompleteSetsByPosition = new ArrayList<>();
-        List<ConfigurationSet> incompleteSetsByLabel = new ArrayList<>();
-        List<ConfigurationSet> pluralitySets = new ArrayList<>();
-        List<ConfigurationSet> irrelevantSets = new ArrayList<>();
-        CodingAnnotationStudy study = new CodingAnnotationStudy(users.size());
-
-        if (aTagSet != null) {
-            aTagSet.forEach(study::addCategory);
-        }
+        CodingStudyBuilder builder = new CodingStudyBuilder(aType, aFeature, aUsers, aTagSet,
+                aExcludeIncomplete, aNullLabelsAsEmpty, true);
+        builder.addAll(extractCodingStudyItems(aDiff, aUsers, aType, aFeature, aCasMap));
+        return builder.build(aDiff.toResult());
+    }
+
+    /**
+     * Extracts the values the given users assigned to the given feature at the positions of the
+     * diff. This is the only step which needs to access the CASes, so the coding studies for any
+     * group of the users can afterwards be built from the items using a {@link CodingStudyBuilder}.
+     */
+    public static List<CodingStudyBuilder.Item> extractCodingStudyItems(CasDiff aDiff,
+            Collection<String> aUsers, String aType, String aFeature,
+            Map<String, List<CAS>> aCasMap)
+    {
+        List<CodingStudyBuilder.Item> items = new ArrayList<>();
 
         // Check if the feature we are looking at is a primitive feature or a link feature
         // We do this by looking it up in the first available CAS. Mind that at this point all
@@ -109,11 +110,9 @@ public class AgreementUtils
         if (someCas == null) {
             // Well... there is NOTHING here!
             // All positions are irrelevant
-            aDiff.getPositions().forEach(p -> irrelevantSets.add(aDiff.getConfigurationSet(p)));
-
-            return new CodingAgreementResult(aType, aFeature, aDiff.toResult(), study, users,
-                    completeSets, irrelevantSets, setsWithDifferences, incompleteSetsByPosition,
-                    incompleteSetsByLabel, pluralitySets, aExcludeIncomplete);
+            aDiff.getPositions().forEach(p -> items.add(
+                    new CodingStudyBuilder.Item(aDiff.getConfigurationSet(p), true, false, null)));
+            return items;
         }
         TypeSystem ts = someCas.getTypeSystem();
 
@@ -121,11 +120,9 @@ public class AgreementUtils
         // We should just do the right thing here which is: do nothing
         if (ts.getType(aType) == null) {
             // All positions are irrelevant
-            aDiff.getPositions().forEach(p -> irrelevantSets.add(aDiff.getConfigurationSet(p)));
-
-            return new CodingAgreementResult(aType, aFeature, aDiff.toResult(), study, users,
-                    completeSets, irrelevantSets, setsWithDifferences, incompleteSetsByPosition,
-                    incompleteSetsByLabel, pluralitySets, aExcludeIncomplete);
+            aDiff.getPositions().forEach(p -> items.add(
+                    new CodingStudyBuilder.Item(aDiff.getConfigurationSet(p), true, false, null)));
+            return items;
         }
 
         // Check that the feature really exists instead of just getting a NPE later
@@ -137,12 +134,12 @@ public class AgreementUtils
         boolean isPrimitiveFeature = ts.getType(aType).getFeatureByBaseName(aFeature).getRange()
                 .isPrimitive();
 
-        nextPosition: for (Position p : aDiff.getPositions()) {
+        for (Position p : aDiff.getPositions()) {
             ConfigurationSet cfgSet = aDiff.getConfigurationSet(p);
 
             // Only calculate agreement for the given layer
             if (!cfgSet.getPosition().getType().equals(aType)) {
-                // We don't even consider these as irrelevant, they are just filtered out
+                items.add(new CodingStudyBuilder.Item(cfgSet, false, false, null));
                 continue;
             }
 
@@ -154,121 +151,76 @@ public class AgreementUtils
             // - if we are looking for a non-primitive type and encounter a primary position
             // this is an inverted XOR!
             if (!(isPrimitiveFeature ^ isSubPosition)) {
-                irrelevantSets.add(cfgSet);
+                items.add(new CodingStudyBuilder.Item(cfgSet, true, false, null));
                 continue;
             }
 
             // Check if subposition is for the feature we are looking for or for a different
             // feature
             if (isSubPosition && !aFeature.equals(cfgSet.getPosition().getFeature())) {
-                irrelevantSets.add(cfgSet);
-                continue nextPosition;
-            }
-
-            // If non of the current users has made any annotation at this position, then skip it
-            if (users.stream().filter(u -> cfgSet.getCasGroupIds().contains(u)).count() == 0) {
-                irrelevantSets.add(cfgSet);
-                continue nextPosition;
+                items.add(new CodingStudyBuilder.Item(cfgSet, true, false, null));
+                continue;
             }
 
-            Object[] values = new Object[users.size()];
-            int i = 0;
-            for (String user : users) {
-                // Set has to include all users, otherwise we cannot calculate the agreement for
-                // this configuration set.
-                if (!cfgSet.getCasGroupIds().contains(user)) {
-                    incompleteSetsByPosition.add(cfgSet);
-                    if (aExcludeIncomplete) {
-                        // Record as incomplete
-                        continue nextPosition;
-                    }
-                    else {
-                        // Record as missing value
-                        values[i] = null;
-                        i++;
-                        continue;
-                    }
-                }
-
-                // Make sure a single user didn't do multiple alternative annotations at a single
-                // position. So there is currently no support for calculating agreement on stacking
-                // annotations.
-                List<Configuration> cfgs = cfgSet.getConfigurations(user);
-                if (cfgs.size() > 1) {
-                    pluralitySets.add(cfgSet);
-                    continue nextPosition;
+            Map<String, Object> values = new HashMap<>();
+            for (String user : aUsers) {
+                if (cfgSet.getCasGroupIds().contains(user)) {
+                    values.put(user, extractValueForAgreement(aDiff, cfgSet, user, aFeature,
+                            aCasMap));
                 }
+            }
 
-                Configuration cfg = cfgs.get(0);
-
-                // Check if source and/or targets of a relation are stacked
-                if (cfg.getPosition() instanceof RelationPosition) {
-                    RelationPosition pos = (RelationPosition) cfg.getPosition();
-                    FeatureStructure arc = cfg.getFs(user, pos.getCasId(), aCasMap);
-
-                    RelationDiffAdapter adapter = (RelationDiffAdapter) aDiff.getTypeAdapters()
-                            .get(pos.getType());
-
-                    // Check if the source of the relation is stacked
-                    AnnotationFS source = FSUtil.getFeature(arc, adapter.getSourceFeature(),
-                            AnnotationFS.class);
-                    List<AnnotationFS> sourceCandidates = CasUtil.selectAt(arc.getCAS(),
-                            source.getType(), source.getBegin(), source.getEnd());
-                    if (sourceCandidates.size() > 1) {
-                        pluralitySets.add(cfgSet);
-                        continue nextPosition;
-                    }
+            items.add(new CodingStudyBuilder.Item(cfgSet, true, true, values));
+        }
 
-                    // Check if the target of the relation is stacked
-                    AnnotationFS target = FSUtil.getFeature(arc, adapter.getTargetFeature(),
-                            AnnotationFS.class);
-                    List<AnnotationFS> targetCandidates = CasUtil.selectAt(arc.getCAS(),
-                            target.getType(), target.getBegin(), target.getEnd());
-                    if (targetCandidates.size() > 1) {
-                        pluralitySets.add(cfgSet);
-                        continue nextPosition;
-                    }
-                }
+        return items;
+    }
 
-                // Only calculate agreement for the given feature
-                FeatureStructure fs = cfg.getFs(user, cfg.getPosition().getCasId(), aCasMap);
+    private static Object extractValueForAgreement(CasDiff aDiff, ConfigurationSet aCfgSet,
+            String aUser, String aFeature, Map<String, List<CAS>> aCasMap)
+    {
+        // Make sure a single user didn't do multiple alternative annotations at a single
+        // position. So there is currently no support for calculating agreement on stacking
+        // annotations.
+        List<Configuration> cfgs = aCfgSet.getConfigurations(aUser);
+        if (cfgs.size() > 1) {
+            return CodingStudyBuilder.PLURALITY;
+        }
 
-                values[i] = extractValueForAgreement(fs, aFeature, cfg.getAID(user).index,
-                        cfg.getPosition().getLinkCompareBehavior());
+        Configuration cfg = cfgs.get(0);
 
-                // Consider empty/null feature values to be the same and do not exclude them from
-                // agreement calculation. The empty label is still a valid label.
-                if (aNullLabelsAsEmpty && values[i] == null) {
-                    values[i] = "";
-                }
+        // Check if source and/or targets of a relation are stacked
+        if (cfg.getPosition() instanceof RelationPosition) {
+            RelationPosition pos = (RelationPosition) cfg.getPosition();
+            FeatureStructure arc = cfg.getFs(aUser, pos.getCasId(), aCasMap);
 
-                // "null" cannot be used in agreement calculations. We treat these as incomplete
-                if (values[i] == null) {
-                    incompleteSetsByLabel.add(cfgSet);
-                    if (aExcludeIncomplete) {
-                        continue nextPosition;
-                    }
-                }
+            RelationDiffAdapter adapter = (RelationDiffAdapter) aDiff.getTypeAdapters()
+                    .get(pos.getType());
 
-                i++;
+            // Check if the source of the relation is stacked
+            AnnotationFS source = FSUtil.getFeature(arc, adapter.getSourceFeature(),
+                    AnnotationFS.class);
+            List<AnnotationFS> sourceCandidates = CasUtil.selectAt(arc.getCAS(), source.getType(),
+                    source.getBegin(), source.getEnd());
+            if (sourceCandidates.size() > 1) {
+                return CodingStudyBuilder.PLURALITY;
             }
 
-            if (ObjectUtils.notEqual(values[0], values[1])) {
-                setsWithDifferences.add(cfgSet);
+            // Check if the target of the relation is stacked
+            AnnotationFS target = FSUtil.getFeature(arc, adapter.getTargetFeature(),
+                    AnnotationFS.class);
+            List<AnnotationFS> targetCandidates = CasUtil.selectAt(arc.getCAS(), target.getType(),
+                    target.getBegin(), target.getEnd());
+            if (targetCandidates.size() > 1) {
+                return CodingStudyBuilder.PLURALITY;
             }
-
-            // If the position feature is set (subposition), then it must match the feature we
-            // are calculating agreement over
-            assert cfgSet.getPosition().getFeature() == null
-                    || cfgSet.getPosition().getFeature().equals(aFeature);
-
-            completeSets.add(cfgSet);
-            study.addItemAsArray(values);
         }
 
-        return new CodingAgreementResult(aType, aFeature, aDiff.toResult(), study, users,
-                completeSets, irrelevantSets, setsWithDifferences, incompleteSetsByPosition,
-                incompleteSetsByLabel, pluralitySets, aExcludeIncomplete);
+        // Only calculate agreement for the given feature
+        FeatureStructure fs = cfg.getFs(aUser, cfg.getPosition().getCasId(), aCasMap);
+
+        return extractValueForAgreement(fs, aFeature, cfg.getAID(aUser).index,
+                cfg.getPosition().getLinkCompareBehavior());
     }
 
     private static Object extractValueForAgreement(FeatureStructure aFs, String aFeature,
@@ -18,6 +18,9 @@
 package de.tudarmstadt.ukp.clarin.webanno.agreement.measures;
 
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -29,6 +32,30 @@ public interface AgreementMeasure<R extends Serializable>
 {
     R getAgreement(Map<String, List<CAS>> aCasMap);
 
+    /**
+     * Calculates the agreement between the given users over a sequence of documents. The CASes of
+     * each document are only requested when the document is reached, so implementations which
+     * can process the documents one at a time do not need to keep all CASes in memory. The
+     * default implementation collects all CASes and delegates to {@link #getAgreement(Map)}.
+     * 
+     * @param aUsers
+     *            the users to compare.
+     * @param aCasMapPerDocument
+     *            the CASes of the users per document. A user who should not be considered for a
+     *            document is either not contained in the map or mapped to {@code null}.
+     * @return the agreement.
+     */
+    default R getAgreement(Collection<String> aUsers,
+            Iterable<Map<String, CAS>> aCasMapPerDocument)
+    {
+        Map<String, List<CAS>> casMap = new LinkedHashMap<>();
+        aUsers.forEach(user -> casMap.put(user, new ArrayList<>()));
+        for (Map<String, CAS> documentCasMap : aCasMapPerDocument) {
+            aUsers.forEach(user -> casMap.get(user).add(documentCasMap.get(user)));
+        }
+        return getAgreement(casMap);
+    }
+
     AnnotationFeature getFeature();
 
     DefaultAgreementTraits getTraits();
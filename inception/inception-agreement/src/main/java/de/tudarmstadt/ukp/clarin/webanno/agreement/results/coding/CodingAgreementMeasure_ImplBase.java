@@ -17,25 +17,44 @@
  */
 package de.tudarmstadt.ukp.clarin.webanno.agreement.results.coding;
 
+import static de.tudarmstadt.ukp.clarin.webanno.agreement.AgreementUtils.extractCodingStudyItems;
+import static de.tudarmstadt.ukp.clarin.webanno.agreement.AgreementUtils.makeCodingStudy;
+import static de.tudarmstadt.ukp.clarin.webanno.curation.casdiff.CasDiff.doDiff;
+import static de.tudarmstadt.ukp.clarin.webanno.curation.casdiff.CasDiff.getDiffAdapters;
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import static java.util.stream.Collectors.toCollection;
+
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
 
 import org.apache.uima.cas.CAS;
 
 import de.tudarmstadt.ukp.clarin.webanno.agreement.PairwiseAnnotationResult;
 import de.tudarmstadt.ukp.clarin.webanno.agreement.measures.AgreementMeasure_ImplBase;
 import de.tudarmstadt.ukp.clarin.webanno.agreement.measures.DefaultAgreementTraits;
+import de.tudarmstadt.ukp.clarin.webanno.api.AnnotationSchemaService;
+import de.tudarmstadt.ukp.clarin.webanno.curation.casdiff.CasDiff;
+import de.tudarmstadt.ukp.clarin.webanno.curation.casdiff.api.DiffAdapter;
 import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationFeature;
+import de.tudarmstadt.ukp.clarin.webanno.model.Tag;
 
 public abstract class CodingAgreementMeasure_ImplBase<T extends DefaultAgreementTraits>
     extends AgreementMeasure_ImplBase<PairwiseAnnotationResult<CodingAgreementResult>, T>
 {
-    public CodingAgreementMeasure_ImplBase(AnnotationFeature aFeature, T aTraits)
+    private final AnnotationSchemaService annotationService;
+
+    public CodingAgreementMeasure_ImplBase(AnnotationFeature aFeature, T aTraits,
+            AnnotationSchemaService aAnnotationService)
     {
         super(aFeature, aTraits);
+        annotationService = aAnnotationService;
     }
 
     @Override
@@ -60,5 +79,96 @@ public abstract class CodingAgreementMeasure_ImplBase<T extends DefaultAgreement
         return result;
     }
 
-    public abstract CodingAgreementResult calculatePairAgreement(Map<String, List<CAS>> aCasMap);
+    /**
+     * Calculates the pairwise agreement document by document. For every document, a single diff
+     * over all users is calculated and the values relevant for the agreement are extracted from
+     * it. These are then added to the coding studies of all user pairs in parallel. Thus, only
+     * the CASes of one document need to be held in memory at any time. The results only contain
+     * the counts of the configuration sets, not the sets themselves.
+     */
+    @Override
+    public PairwiseAnnotationResult<CodingAgreementResult> getAgreement(
+            Collection<String> aUsers, Iterable<Map<String, CAS>> aCasMapPerDocument)
+    {
+        AnnotationFeature feature = getFeature();
+        String type = feature.getLayer().getName();
+
+        List<DiffAdapter> adapters = getDiffAdapters(annotationService, asList(feature.getLayer()));
+        Set<String> tagset = getTagset();
+
+        List<String> users = new ArrayList<>(aUsers);
+        List<CodingStudyBuilder> builders = new ArrayList<>();
+        List<String[]> pairs = new ArrayList<>();
+        for (int m = 0; m < users.size(); m++) {
+            for (int n = 0; n < m; n++) {
+                pairs.add(new String[] { users.get(m), users.get(n) });
+                builders.add(new CodingStudyBuilder(type, feature.getName(),
+                        asList(users.get(m), users.get(n)), tagset, isExcludeIncomplete(), true,
+                        false));
+            }
+        }
+
+        for (Map<String, CAS> documentCasMap : aCasMapPerDocument) {
+            Map<String, List<CAS>> casMap = new LinkedHashMap<>();
+            for (String user : users) {
+                CAS cas = documentCasMap.get(user);
+                if (cas != null) {
+                    casMap.put(user, singletonList(cas));
+                }
+            }
+
+            CasDiff diff = doDiff(adapters, getTraits().getLinkCompareBehavior(), casMap);
+            List<CodingStudyBuilder.Item> items = extractCodingStudyItems(diff, casMap.keySet(),
+                    type, feature.getName(), casMap);
+
+            builders.parallelStream().forEach(builder -> builder.addAll(items));
+        }
+
+        List<CodingAgreementResult> pairResults = new ArrayList<>();
+        builders.forEach(builder -> pairResults.add(builder.build(null)));
+        pairResults.parallelStream().forEach(this::calculateAgreement);
+
+        PairwiseAnnotationResult<CodingAgreementResult> result = new PairwiseAnnotationResult<>(
+                getFeature(), getTraits());
+        for (int i = 0; i < pairs.size(); i++) {
+            result.add(pairs.get(i)[0], pairs.get(i)[1], pairResults.get(i));
+        }
+        return result;
+    }
+
+    public CodingAgreementResult calculatePairAgreement(Map<String, List<CAS>> aCasMap)
+    {
+        AnnotationFeature feature = getFeature();
+
+        List<DiffAdapter> adapters = getDiffAdapters(annotationService, asList(feature.getLayer()));
+
+        CasDiff diff = doDiff(adapters, getTraits().getLinkCompareBehavior(), aCasMap);
+
+        CodingAgreementResult agreementResult = makeCodingStudy(diff, feature.getLayer().getName(),
+                feature.getName(), getTagset(), isExcludeIncomplete(), aCasMap);
+
+        calculateAgreement(agreementResult);
+
+        return agreementResult;
+    }
+
+    private Set<String> getTagset()
+    {
+        return annotationService.listTags(getFeature().getTagset()).stream().map(Tag::getName)
+                .collect(toCollection(LinkedHashSet::new));
+    }
+
+    /**
+     * @return whether positions which were not annotated by all users are excluded from the
+     *         coding study.
+     */
+    protected boolean isExcludeIncomplete()
+    {
+        return true;
+    }
+
+    /**
+     * Calculates the agreement on the study of the given result and stores it in the result.
+     */
+    protected abstract void calculateAgreement(CodingAgreementResult aResult);
 }
@@ -38,12 +38,19 @@ public class CodingAgreementResult
     private static final long serialVersionUID = -1262324752699430461L;
 
     protected final DiffResult diff;
+    protected final int totalSetCount;
     protected final List<ConfigurationSet> setsWithDifferences;
     protected final List<ConfigurationSet> completeSets;
     protected final List<ConfigurationSet> irrelevantSets;
     protected final List<ConfigurationSet> incompleteSetsByPosition;
     protected final List<ConfigurationSet> incompleteSetsByLabel;
     protected final List<ConfigurationSet> pluralitySets;
+    protected final int diffSetCount;
+    protected final int completeSetCount;
+    protected final int irrelevantSetCount;
+    protected final int incompleteSetsByPositionCount;
+    protected final int incompleteSetsByLabelCount;
+    protected final int pluralitySetCount;
 
     public CodingAgreementResult(String aType, String aFeature, DiffResult aDiff,
             ICodingAnnotationStudy aStudy, List<String> aCasGroupIds,
@@ -55,12 +62,45 @@ public class CodingAgreementResult
         super(aType, aFeature, aStudy, aCasGroupIds, aExcludeIncomplete);
 
         diff = aDiff;
+        totalSetCount = aDiff.getPositions().size();
         setsWithDifferences = aSetsWithDifferences;
         completeSets = unmodifiableList(new ArrayList<>(aComplete));
         irrelevantSets = aIrrelevantSets;
         incompleteSetsByPosition = unmodifiableList(new ArrayList<>(aIncompleteByPosition));
         incompleteSetsByLabel = unmodifiableList(new ArrayList<>(aIncompleteByLabel));
         pluralitySets = unmodifiableList(new ArrayList<>(aPluralitySets));
+        diffSetCount = setsWithDifferences.size();
+        completeSetCount = completeSets.size();
+        irrelevantSetCount = irrelevantSets.size();
+        incompleteSetsByPositionCount = incompleteSetsByPosition.size();
+        incompleteSetsByLabelCount = incompleteSetsByLabel.size();
+        pluralitySetCount = pluralitySets.size();
+    }
+
+    /**
+     * @param aDiff
+     *            the diff the result is based on. May be {@code null} if the result was
+     *            accumulated from the diffs of multiple documents.
+     */
+    CodingAgreementResult(CodingStudyBuilder aBuilder, DiffResult aDiff)
+    {
+        super(aBuilder.type, aBuilder.feature, aBuilder.study, aBuilder.users,
+                aBuilder.excludeIncomplete);
+
+        diff = aDiff;
+        totalSetCount = aBuilder.totalSetCount;
+        setsWithDifferences = aBuilder.setsWithDifferences.getSets();
+        completeSets = aBuilder.completeSets.getSets();
+        irrelevantSets = aBuilder.irrelevantSets.getSets();
+        incompleteSetsByPosition = aBuilder.incompleteSetsByPosition.getSets();
+        incompleteSetsByLabel = aBuilder.incompleteSetsByLabel.getSets();
+        pluralitySets = aBuilder.pluralitySets.getSets();
+        diffSetCount = aBuilder.setsWithDifferences.getCount();
+        completeSetCount = aBuilder.completeSets.getCount();
+        irrelevantSetCount = aBuilder.irrelevantSets.getCount();
+        incompleteSetsByPositionCount = aBuilder.incompleteSetsByPosition.getCount();
+        incompleteSetsByLabelCount = aBuilder.incompleteSetsByLabel.getCount();
+        pluralitySetCount = aBuilder.pluralitySets.getCount();
     }
 
     public boolean noPositions()
@@ -68,12 +108,26 @@ public class CodingAgreementResult
         return study.getItemCount() == 0;
     }
 
+    /**
+     * @return whether the configuration sets have been retained. If they have not, only their
+     *         counts are available.
+     */
+    public boolean isSetsRetained()
+    {
+        return completeSets != null;
+    }
+
     /**
      * Positions that were not seen in all CAS groups.
      */
     public List<ConfigurationSet> getIncompleteSetsByPosition()
     {
-        return incompleteSetsByPosition;
+        return requireRetained(incompleteSetsByPosition);
+    }
+
+    public int getIncompleteSetsByPositionCount()
+    {
+        return incompleteSetsByPositionCount;
     }
 
     /**
@@ -81,12 +135,22 @@ public class CodingAgreementResult
      */
     public List<ConfigurationSet> getIncompleteSetsByLabel()
     {
-        return incompleteSetsByLabel;
+        return requireRetained(incompleteSetsByLabel);
+    }
+
+    public int getIncompleteSetsByLabelCount()
+    {
+        return incompleteSetsByLabelCount;
     }
 
     public List<ConfigurationSet> getPluralitySets()
     {
-        return pluralitySets;
+        return requireRetained(pluralitySets);
+    }
+
+    public int getPluralitySetCount()
+    {
+        return pluralitySetCount;
     }
 
     /**
@@ -94,50 +158,68 @@ public class CodingAgreementResult
      */
     public List<ConfigurationSet> getSetsWithDifferences()
     {
-        return setsWithDifferences;
+        return requireRetained(setsWithDifferences);
     }
 
     public List<ConfigurationSet> getCompleteSets()
     {
-        return completeSets;
+        return requireRetained(completeSets);
     }
 
     public List<ConfigurationSet> getIrrelevantSets()
     {
-        return irrelevantSets;
+        return requireRetained(irrelevantSets);
+    }
+
+    public int getIrrelevantSetCount()
+    {
+        return irrelevantSetCount;
     }
 
     public int getDiffSetCount()
     {
-        return setsWithDifferences.size();
+        return diffSetCount;
     }
 
     public int getUnusableSetCount()
     {
-        return incompleteSetsByPosition.size() + incompleteSetsByLabel.size()
-                + pluralitySets.size();
+        return incompleteSetsByPositionCount + incompleteSetsByLabelCount + pluralitySetCount;
     }
 
     public Object getCompleteSetCount()
     {
-        return completeSets.size();
+        return completeSetCount;
     }
 
     public int getTotalSetCount()
     {
-        return diff.getPositions().size();
+        return totalSetCount;
     }
 
     public int getRelevantSetCount()
     {
-        return diff.getPositions().size() - irrelevantSets.size();
+        return totalSetCount - irrelevantSetCount;
     }
 
+    /**
+     * @return the diff the result is based on or {@code null} if the result was accumulated
+     *         from the diffs of multiple documents.
+     */
     public DiffResult getDiff()
     {
         return diff;
     }
 
+    private static List<ConfigurationSet> requireRetained(List<ConfigurationSet> aSets)
+    {
+        if (aSets == null) {
+            throw new IllegalStateException(
+                    "Configuration sets have not been retained, only their counts are available");
+        }
+
+        return aSets;
+    }
+
     public Set<Object> getObservedCategories()
     {
         Set<Object> observedCategories = new HashSet<>();
@@ -0,0 +1,280 @@
+/*
+ * Licensed to the Technische Universität Darmstadt under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The Technische Universität Darmstadt 
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.
+ *  
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.clarin.webanno.agreement.results.coding;
+
+import static java.util.Collections.unmodifiableList;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.lang3.ObjectUtils;
+import org.dkpro.statistics.agreement.coding.CodingAnnotationStudy;
+
+import de.tudarmstadt.ukp.clarin.webanno.curation.casdiff.CasDiff.ConfigurationSet;
+import de.tudarmstadt.ukp.clarin.webanno.curation.casdiff.CasDiff.DiffResult;
+
+/**
+ * Builds the coding study for a group of users (typically a pair) from the values extracted from
+ * the configuration sets of one or more diffs. Since the values have been extracted from the CASes
+ * beforehand, the study can be accumulated document by document without holding on to the CASes.
+ * If the configuration sets are not retained, only their counts are recorded, so the memory
+ * required per group of users is bounded by the items of the study.
+ */
+public class CodingStudyBuilder
+{
+    /**
+     * Marks a user who made multiple alternative annotations at a position.
+     */
+    public static final Object PLURALITY = new Object();
+
+    final String type;
+    final String feature;
+    final List<String> users;
+    final boolean excludeIncomplete;
+    private final boolean nullLabelsAsEmpty;
+
+    final ConfigurationSetTally completeSets;
+    final ConfigurationSetTally setsWithDifferences;
+    final ConfigurationSetTally incompleteSetsByPosition;
+    final ConfigurationSetTally incompleteSetsByLabel;
+    final ConfigurationSetTally pluralitySets;
+    final ConfigurationSetTally irrelevantSets;
+    final CodingAnnotationStudy study;
+    int totalSetCount;
+
+    /**
+     * @param aRetainSets
+     *            whether to keep the configuration sets in the result or only to count them.
+     */
+    public CodingStudyBuilder(String aType, String aFeature, Collection<String> aUsers,
+            Set<String> aTagSet, boolean aExcludeIncomplete, boolean aNullLabelsAsEmpty,
+            boolean aRetainSets)
+    {
+        type = aType;
+        feature = aFeature;
+        users = new ArrayList<>(aUsers);
+        Collections.sort(users);
+        excludeIncomplete = aExcludeIncomplete;
+        nullLabelsAsEmpty = aNullLabelsAsEmpty;
+
+        completeSets = new ConfigurationSetTally(aRetainSets);
+        setsWithDifferences = new ConfigurationSetTally(aRetainSets);
+        incompleteSetsByPosition = new ConfigurationSetTally(aRetainSets);
+        incompleteSetsByLabel = new ConfigurationSetTally(aRetainSets);
+        pluralitySets = new ConfigurationSetTally(aRetainSets);
+        irrelevantSets = new ConfigurationSetTally(aRetainSets);
+
+        study = new CodingAnnotationStudy(users.size());
+        if (aTagSet != null) {
+            aTagSet.forEach(study::addCategory);
+        }
+    }
+
+    public List<String> getUsers()
+    {
+        return users;
+    }
+
+    public void addAll(Collection<Item> aItems)
+    {
+        for (Item item : aItems) {
+            add(item);
+        }
+    }
+
+    public void add(Item aItem)
+    {
+        ConfigurationSet cfgSet = aItem.getConfigurationSet();
+
+        // If none of the current users has made any annotation at this position, then skip it.
+        // A diff calculated only over these users would not even contain the position.
+        if (users.stream().noneMatch(u -> cfgSet.getCasGroupIds().contains(u))) {
+            return;
+        }
+
+        totalSetCount++;
+
+        // Only calculate agreement for the given layer
+        if (!aItem.isOfType()) {
+            // We don't even consider these as irrelevant, they are just filtered out
+            return;
+        }
+
+        if (!aItem.isRelevant()) {
+            irrelevantSets.add(cfgSet);
+            return;
+        }
+
+        Object[] values = new Object[users.size()];
+        int i = 0;
+        for (String user : users) {
+            // Set has to include all users, otherwise we cannot calculate the agreement for
+            // this configuration set.
+            if (!aItem.getValues().containsKey(user)) {
+                incompleteSetsByPosition.add(cfgSet);
+                if (excludeIncomplete) {
+                    // Record as incomplete
+                    return;
+                }
+                else {
+                    // Record as missing value
+                    values[i] = null;
+                    i++;
+                    continue;
+                }
+            }
+
+            Object value = aItem.getValues().get(user);
+
+            // Make sure a single user didn't do multiple alternative annotations at a single
+            // position. So there is currently no support for calculating agreement on stacking
+            // annotations.
+            if (value == PLURALITY) {
+                pluralitySets.add(cfgSet);
+                return;
+            }
+
+            // Consider empty/null feature values to be the same and do not exclude them from
+            // agreement calculation. The empty label is still a valid label.
+            if (nullLabelsAsEmpty && value == null) {
+                value = "";
+            }
+
+            // "null" cannot be used in agreement calculations. We treat these as incomplete
+            if (value == null) {
+                incompleteSetsByLabel.add(cfgSet);
+                if (excludeIncomplete) {
+                    return;
+                }
+            }
+
+            values[i] = value;
+            i++;
+        }
+
+        if (ObjectUtils.notEqual(values[0], values[1])) {
+            setsWithDifferences.add(cfgSet);
+        }
+
+        completeSets.add(cfgSet);
+        study.addItemAsArray(values);
+    }
+
+    /**
+     * @param aDiff
+     *            the diff the study was built from or {@code null} if the study has been
+     *            accumulated from multiple diffs.
+     * @return the coding agreement result. The agreement itself is not calculated yet.
+     */
+    public CodingAgreementResult build(DiffResult aDiff)
+    {
+        return new CodingAgreementResult(this, aDiff);
+    }
+
+    /**
+     * Counts configuration sets and optionally keeps them.
+     */
+    static class ConfigurationSetTally
+    {
+        private final List<ConfigurationSet> sets;
+        private int count;
+
+        ConfigurationSetTally(boolean aRetainSets)
+        {
+            sets = aRetainSets ? new ArrayList<>() : null;
+        }
+
+        void add(ConfigurationSet aSet)
+        {
+            count++;
+            if (sets != null) {
+                sets.add(aSet);
+            }
+        }
+
+        int getCount()
+        {
+            return count;
+        }
+
+        /**
+         * @return the sets or {@code null} if they were not retained.
+         */
+        List<ConfigurationSet> getSets()
+        {
+            return sets != null ? unmodifiableList(sets) : null;
+        }
+    }
+
+    /**
+     * The values extracted from a single configuration set.
+     */
+    public static class Item
+    {
+        private final ConfigurationSet configurationSet;
+        private final boolean ofType;
+        private final boolean relevant;
+        private final Map<String, Object> values;
+
+        /**
+         * @param aConfigurationSet
+         *            the configuration set.
+         * @param aOfType
+         *            whether the position is on the type for which agreement is calculated.
+         * @param aRelevant
+         *            whether the position is relevant for the feature for which agreement is
+         *            calculated.
+         * @param aValues
+         *            the value each user assigned at the position. Users who did not annotate
+         *            the position are not contained in the map. Users who annotated the position
+         *            multiple times are mapped to {@link CodingStudyBuilder#PLURALITY}.
+         */
+        public Item(ConfigurationSet aConfigurationSet, boolean aOfType, boolean aRelevant,
+                Map<String, Object> aValues)
+        {
+            configurationSet = aConfigurationSet;
+            ofType = aOfType;
+            relevant = aRelevant;
+            values = aValues;
+        }
+
+        public ConfigurationSet getConfigurationSet()
+        {
+            return configurationSet;
+        }
+
+        public boolean isOfType()
+        {
+            return ofType;
+        }
+
+        public boolean isRelevant()
+        {
+            return relevant;
+        }
+
+        public Map<String, Object> getValues()
+        {
+            return values;
+        }
+    }
+}
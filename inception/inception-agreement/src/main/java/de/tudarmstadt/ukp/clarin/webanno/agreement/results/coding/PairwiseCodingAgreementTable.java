@@ -228,11 +228,11 @@ public class PairwiseCodingAgreementTable
         StringBuilder tooltipContent = new StringBuilder();
         if (result.isExcludeIncomplete()) {
             tooltipContent.append(String.format("- Incomplete (missing): %d%n",
-                    result.getIncompleteSetsByPosition().size()));
+                    result.getIncompleteSetsByPositionCount()));
             tooltipContent.append(String.format("- Incomplete (not labeled): %d%n",
-                    result.getIncompleteSetsByLabel().size()));
+                    result.getIncompleteSetsByLabelCount()));
         }
-        tooltipContent.append(String.format("- Plurality: %d", result.getPluralitySets().size()));
+        tooltipContent.append(String.format("- Plurality: %d", result.getPluralitySetCount()));
 
         Label l = new Label("label", Model.of(label));
         DescriptionTooltipBehavior tooltip = new DescriptionTooltipBehavior(tooltipTitle,
@@ -249,8 +249,8 @@ public class PairwiseCodingAgreementTable
 
         boolean noDataRater0 = isAllNull(result, result.getCasGroupIds().get(0));
         boolean noDataRater1 = isAllNull(result, result.getCasGroupIds().get(1));
-        int incPos = result.getIncompleteSetsByPosition().size();
-        int incLabel = result.getIncompleteSetsByLabel().size();
+        int incPos = result.getIncompleteSetsByPositionCount();
+        int incLabel = result.getIncompleteSetsByLabelCount();
 
         String label;
         if (result.getStudy().getItemCount() == 0) {
@@ -29,6 +29,8 @@ import static de.tudarmstadt.ukp.clarin.webanno.model.LinkMode.WITH_ROLE;
 import static de.tudarmstadt.ukp.clarin.webanno.model.OverlapMode.NO_OVERLAP;
 import static de.tudarmstadt.ukp.clarin.webanno.support.uima.AnnotationBuilder.buildAnnotation;
 import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.offset;
 import static org.apache.uima.fit.factory.JCasFactory.createJCas;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.when;
@@ -48,6 +50,8 @@ import org.dkpro.statistics.agreement.IAnnotationStudy;
 import org.junit.jupiter.api.BeforeEach;
 import org.mockito.Mock;
 
+import de.tudarmstadt.ukp.clarin.webanno.agreement.PairwiseAnnotationResult;
+import de.tudarmstadt.ukp.clarin.webanno.agreement.results.coding.CodingAgreementResult;
 import de.tudarmstadt.ukp.clarin.webanno.api.AnnotationSchemaService;
 import de.tudarmstadt.ukp.clarin.webanno.api.annotation.feature.BooleanFeatureSupport;
 import de.tudarmstadt.ukp.clarin.webanno.api.annotation.feature.FeatureSupportRegistryImpl;
@@ -327,4 +331,102 @@ public class AgreementMeasureTestSuite_ImplBase
                 "user1", asList(user1a, user1b), //
                 "user2", asList(user2a, user2b)));
     }
+
+    public <R extends Serializable, T extends DefaultAgreementTraits, S extends IAnnotationStudy> //
+    List<R> threeUsersThreeDocumentsAtOnceAndPerDocument(AgreementMeasureSupport<T, R, S> aSupport,
+            T aTraits)
+        throws Exception
+    {
+        TagSet tagset = new TagSet(project, "tagset");
+        Tag tag1 = new Tag(tagset, "+");
+        Tag tag2 = new Tag(tagset, "-");
+        when(annotationService.listTags(tagset)).thenReturn(asList(tag1, tag2));
+
+        AnnotationLayer layer = new AnnotationLayer(POS.class.getName(), POS.class.getSimpleName(),
+                SPAN_TYPE, project, false, SINGLE_TOKEN, NO_OVERLAP);
+        layer.setId(1l);
+        layers.add(layer);
+
+        AnnotationFeature feature = new AnnotationFeature(project, layer, "PosValue", "PosValue",
+                CAS.TYPE_NAME_STRING);
+        feature.setId(1l);
+        feature.setTagset(tagset);
+        features.add(feature);
+
+        List<String> users = asList("user1", "user2", "user3");
+        String[][][] labels = { //
+                { { "+", "-", "+", null }, { "+", "+", "-", "+" }, { "+", "-", "", "-" } }, //
+                { { "-", "+", null, "+" }, { "-", "+", "+", "+" }, { null, "+", "+", "-" } }, //
+                { { "+", "+", "-", "-" }, { "+", "-", "-", "-" }, null } };
+
+        List<Map<String, CAS>> documents = new ArrayList<>();
+        for (String[][] documentLabels : labels) {
+            Map<String, CAS> document = new LinkedHashMap<>();
+            documents.add(document);
+            for (int u = 0; u < users.size(); u++) {
+                // A missing CAS marks a document the user is not considered for
+                if (documentLabels[u] == null) {
+                    document.put(users.get(u), null);
+                    continue;
+                }
+
+                CAS cas = CasFactory.createText("abcd");
+                for (int i = 0; i < documentLabels[u].length; i++) {
+                    if (documentLabels[u][i] != null) {
+                        buildAnnotation(cas, POS.class).at(i, i + 1) //
+                                .withFeature(POS._FeatName_PosValue, documentLabels[u][i]) //
+                                .buildAndAddToIndexes();
+                    }
+                }
+                document.put(users.get(u), cas);
+            }
+        }
+
+        // Stacked annotations by the first user in the first document
+        buildAnnotation(documents.get(0).get("user1"), POS.class).at(0, 1) //
+                .withFeature(POS._FeatName_PosValue, "-") //
+                .buildAndAddToIndexes();
+
+        Map<String, List<CAS>> casByUser = new LinkedHashMap<>();
+        for (String user : users) {
+            List<CAS> casses = new ArrayList<>();
+            documents.forEach(document -> casses.add(document.get(user)));
+            casByUser.put(user, casses);
+        }
+
+        AgreementMeasure<R> measure = aSupport.createMeasure(feature, aTraits);
+
+        return asList(measure.getAgreement(casByUser), measure.getAgreement(users, documents));
+    }
+
+    public <T extends DefaultAgreementTraits, S extends IAnnotationStudy> //
+    void assertAgreementPerDocumentMatchesAgreementAtOnce(
+            AgreementMeasureSupport<T, PairwiseAnnotationResult<CodingAgreementResult>, S> aSupport,
+            T aTraits)
+        throws Exception
+    {
+        List<PairwiseAnnotationResult<CodingAgreementResult>> results = //
+                threeUsersThreeDocumentsAtOnceAndPerDocument(aSupport, aTraits);
+
+        for (String[] pair : new String[][] { { "user1", "user2" }, { "user1", "user3" },
+                { "user2", "user3" } }) {
+            CodingAgreementResult atOnce = results.get(0).getStudy(pair[0], pair[1]);
+            CodingAgreementResult perDocument = results.get(1).getStudy(pair[0], pair[1]);
+
+            assertThat(perDocument.getCasGroupIds()).isEqualTo(atOnce.getCasGroupIds());
+            assertThat(perDocument.getStudy().getItemCount())
+                    .isEqualTo(atOnce.getStudy().getItemCount());
+            assertThat(perDocument.getTotalSetCount()).isEqualTo(atOnce.getTotalSetCount());
+            assertThat(perDocument.getRelevantSetCount()).isEqualTo(atOnce.getRelevantSetCount());
+            assertThat(perDocument.getDiffSetCount()).isEqualTo(atOnce.getDiffSetCount());
+            assertThat(perDocument.getUnusableSetCount()).isEqualTo(atOnce.getUnusableSetCount());
+            assertThat(perDocument.getPluralitySetCount())
+                    .isEqualTo(atOnce.getPluralitySets().size());
+            assertThat(perDocument.getIncompleteSetsByPositionCount())
+                    .isEqualTo(atOnce.getIncompleteSetsByPosition().size());
+            assertThat(perDocument.isSetsRetained()).isFalse();
+            assertThat(perDocument.getAgreement()).isEqualTo(atOnce.getAgreement(),
+                    offset(0.000001d));
+        }
+    }
 }
@@ -160,4 +160,10 @@ public class CohenKappaAgreementMeasureTest
 
         assertThat(result.getAgreement()).isNaN();
     }
+
+    @Test
+    public void agreementPerDocumentMatchesAgreementAtOnceTest() throws Exception
+    {
+        assertAgreementPerDocumentMatchesAgreementAtOnce(sut, traits);
+    }
 }
@@ -166,4 +166,12 @@ public class KrippendorffAlphaNominalAgreementMeasureTest
 
         assertThat(result.getAgreement()).isNaN();
     }
+
+    @Test
+    public void agreementPerDocumentMatchesAgreementAtOnceTest() throws Exception
+    {
+        traits.setExcludeIncomplete(false);
+
+        assertAgreementPerDocumentMatchesAgreementAtOnce(sut, traits);
+    }
 }
@@ -24,6 +24,8 @@ import static java.util.stream.Collectors.toList;
 
 import java.util.List;
 import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 import org.apache.commons.lang3.Validate;
 import org.apache.uima.cas.CAS;
@@ -33,6 +35,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Component;
 
+import com.github.benmanes.caffeine.cache.Cache;
 import com.github.benmanes.caffeine.cache.Caffeine;
 import com.github.benmanes.caffeine.cache.LoadingCache;
 
@@ -56,6 +59,14 @@ public class PreRendererImpl
     private LoadingCache<Project, List<AnnotationFeature>> supportedFeaturesCache;
     private LoadingCache<Project, List<AnnotationFeature>> allFeaturesCache;
 
+    /**
+     * Renderers which are not in use at the moment. Renderers cache information derived from the
+     * layer configuration and the CAS type system, so re-using them across requests avoids
+     * re-creating adapters and re-resolving types, features and traits on every request. Since
+     * renderers are not thread-safe, each renderer is only used by one request at a time.
+     */
+    private Cache<AnnotationLayer, Queue<Renderer>> idleRenderers;
+
     @Autowired
     public PreRendererImpl(LayerSupportRegistry aLayerSupportRegistry,
             AnnotationSchemaService aAnnotationService)
@@ -71,6 +82,10 @@ public class PreRendererImpl
                 .expireAfterAccess(5, MINUTES) //
                 .maximumSize(10 * 1024) //
                 .build(annotationService::listAnnotationFeature);
+        idleRenderers = Caffeine.newBuilder() //
+                .expireAfterAccess(5, MINUTES) //
+                .maximumSize(10 * 1024) //
+                .build();
     }
 
     @Override
@@ -105,15 +120,25 @@ public class PreRendererImpl
             List<AnnotationFeature> layerSupportedFeatures = supportedFeatures.stream() //
                     .filter(feature -> feature.getLayer().equals(layer)) //
                     .collect(toList());
-            List<AnnotationFeature> layerAllFeatures = allFeatures.stream() //
-                    .filter(feature -> feature.getLayer().equals(layer)) //
-                    .collect(toList());
-            // We need to pass in *all* the annotation features here because we also to that in
-            // other places where we create renderers - and the set of features must always be
-            // the same because otherwise the IDs of armed slots would be inconsistent
-            Renderer renderer = layerSupportRegistry.getLayerSupport(layer) //
-                    .createRenderer(layer, () -> layerAllFeatures);
-            renderer.render(aCas, layerSupportedFeatures, aResponse, renderBegin, renderEnd);
+            Queue<Renderer> pool = idleRenderers.get(layer, key -> new ConcurrentLinkedQueue<>());
+            Renderer renderer = pool.poll();
+            if (renderer == null) {
+                List<AnnotationFeature> layerAllFeatures = allFeatures.stream() //
+                        .filter(feature -> feature.getLayer().equals(layer)) //
+                        .collect(toList());
+                // We need to pass in *all* the annotation features here because we also to that
+                // in other places where we create renderers - and the set of features must always
+                // be the same because otherwise the IDs of armed slots would be inconsistent
+                renderer = layerSupportRegistry.getLayerSupport(layer) //
+                        .createRenderer(layer, () -> layerAllFeatures);
+            }
+
+            try {
+                renderer.render(aCas, layerSupportedFeatures, aResponse, renderBegin, renderEnd);
+            }
+            finally {
+                pool.offer(renderer);
+            }
         }
 
         long duration = currentTimeMillis() - start;
@@ -131,5 +156,7 @@ public class PreRendererImpl
                 .removeIf(key -> Objects.equals(key.getId(), aEvent.getProject().getId()));
         allFeaturesCache.asMap().keySet()
                 .removeIf(key -> Objects.equals(key.getId(), aEvent.getProject().getId()));
+        idleRenderers.asMap().keySet().removeIf(
+                key -> Objects.equals(key.getProject().getId(), aEvent.getProject().getId()));
     }
 }
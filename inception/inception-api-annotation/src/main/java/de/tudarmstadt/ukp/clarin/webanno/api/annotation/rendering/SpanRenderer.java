@@ -18,6 +18,7 @@
 package de.tudarmstadt.ukp.clarin.webanno.api.annotation.rendering;
 
 import static de.tudarmstadt.ukp.clarin.webanno.api.annotation.util.WebAnnoCasUtil.selectFsByAddr;
+import static de.tudarmstadt.ukp.clarin.webanno.api.annotation.util.WebAnnoCasUtil.selectSentenceCovering;
 import static de.tudarmstadt.ukp.clarin.webanno.model.LinkMode.WITH_ROLE;
 import static de.tudarmstadt.ukp.clarin.webanno.model.MultiValueMode.ARRAY;
 import static java.util.Collections.emptyList;
@@ -49,6 +50,7 @@ import de.tudarmstadt.ukp.clarin.webanno.api.annotation.rendering.model.VObject;
 import de.tudarmstadt.ukp.clarin.webanno.api.annotation.rendering.model.VRange;
 import de.tudarmstadt.ukp.clarin.webanno.api.annotation.rendering.model.VSpan;
 import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationFeature;
+import de.tudarmstadt.ukp.dkpro.core.api.segmentation.type.Sentence;
 
 /**
  * Render spans.
@@ -59,6 +61,7 @@ public class SpanRenderer
     private final List<SpanLayerBehavior> behaviors;
 
     private Type type;
+    private boolean sentencesPresent;
 
     public SpanRenderer(SpanAdapter aTypeAdapter, LayerSupportRegistry aLayerSupportRegistry,
             FeatureSupportRegistry aFeatureSupportRegistry, List<SpanLayerBehavior> aBehaviors)
@@ -87,13 +90,27 @@ public class SpanRenderer
             return false;
         }
 
+        sentencesPresent = aTypeSystem.getType(Sentence.class.getName()) != null;
+
         return true;
     }
 
     @Override
     public List<AnnotationFS> selectAnnotationsInWindow(CAS aCas, int aWindowBegin, int aWindowEnd)
     {
-        return aCas.select(type).coveredBy(0, aWindowEnd).includeAnnotationsWithEndBeyondBounds()
+        // Annotations on layers which may not cross sentence boundaries cannot start before the
+        // sentence in which the window starts, so there is no need to iterate over all the
+        // annotations from the start of the document up to the window.
+        int selectionBegin = 0;
+        if (sentencesPresent && !getTypeAdapter().getLayer().isCrossSentence()) {
+            AnnotationFS sentence = selectSentenceCovering(aCas, aWindowBegin);
+            if (sentence != null) {
+                selectionBegin = sentence.getBegin();
+            }
+        }
+
+        return aCas.select(type).coveredBy(selectionBegin, aWindowEnd)
+                .includeAnnotationsWithEndBeyondBounds()
                 .map(fs -> (AnnotationFS) fs)
                 .filter(ann -> AnnotationPredicates.overlapping(ann, aWindowBegin, aWindowEnd))
                 .collect(toList());
@@ -53,6 +53,7 @@ import org.apache.uima.cas.text.AnnotationFS;
 import org.apache.uima.cas.text.AnnotationIndex;
 import org.apache.uima.fit.util.CasUtil;
 import org.apache.uima.fit.util.FSUtil;
+import org.apache.uima.jcas.tcas.Annotation;
 import org.apache.uima.resource.ResourceInitializationException;
 import org.apache.uima.resource.metadata.TypeSystemDescription;
 import org.apache.uima.util.CasCreationUtils;
@@ -451,14 +452,23 @@ public class WebAnnoCasUtil
      */
     public static AnnotationFS selectSentenceCovering(CAS aCas, int aBegin)
     {
-        AnnotationFS currentSentence = null;
-        for (AnnotationFS sentence : select(aCas, getType(aCas, Sentence.class))) {
-            if (sentence.getBegin() <= aBegin && sentence.getEnd() > aBegin) {
-                currentSentence = sentence;
-                break;
-            }
+        // Position the iterator on the last sentence starting at or before the given offset
+        // instead of scanning all sentences from the start of the document.
+        Type sentenceType = getType(aCas, Sentence.class);
+        FSIterator<Annotation> i = aCas.<Annotation> select(sentenceType).startAt(aBegin)
+                .fsIterator();
+        if (!i.isValid()) {
+            i.moveToLast();
         }
-        return currentSentence;
+        else if (i.get().getBegin() > aBegin) {
+            i.moveToPrevious();
+        }
+
+        if (i.isValid() && i.get().getBegin() <= aBegin && i.get().getEnd() > aBegin) {
+            return i.get();
+        }
+
+        return null;
     }
 
     public static AnnotationFS getNextToken(CAS aCas, int aBegin, int aEnd)
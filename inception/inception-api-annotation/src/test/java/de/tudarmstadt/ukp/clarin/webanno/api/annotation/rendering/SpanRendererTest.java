@@ -100,6 +100,35 @@ public class SpanRendererTest
                         "Crossing sentence boundaries is not permitted."));
     }
 
+    @Test
+    public void thatAnnotationsStartingBeforeWindowInSameSentenceAreSelected()
+    {
+        neLayer.setCrossSentence(false);
+
+        jcas.setDocumentText(StringUtils.repeat("a", 30));
+
+        new Sentence(jcas, 0, 10).addToIndexes();
+        new Sentence(jcas, 10, 20).addToIndexes();
+        new Sentence(jcas, 20, 30).addToIndexes();
+        new NamedEntity(jcas, 2, 5).addToIndexes();
+        NamedEntity ne2 = new NamedEntity(jcas, 12, 18);
+        ne2.addToIndexes();
+        NamedEntity ne3 = new NamedEntity(jcas, 22, 25);
+        ne3.addToIndexes();
+
+        SpanAdapter adapter = new SpanAdapter(layerSupportRegistry, featureSupportRegistry, null,
+                neLayer, () -> asList(), asList());
+
+        SpanRenderer sut = new SpanRenderer(adapter, layerSupportRegistry, featureSupportRegistry,
+                asList());
+
+        // Rendering once initializes the type information used when selecting annotations
+        sut.render(jcas.getCas(), asList(), new VDocument(), 0, 0);
+
+        assertThat(sut.selectAnnotationsInWindow(jcas.getCas(), 15, 30))
+                .containsExactly(ne2, ne3);
+    }
+
     @Test
     public void thatSpanOverlapBehaviorOnRenderGeneratesErrors()
     {
@@ -19,16 +19,20 @@ package de.tudarmstadt.ukp.clarin.webanno.api.annotation.util;
 
 import static de.tudarmstadt.ukp.clarin.webanno.api.annotation.util.WebAnnoCasUtil.createCas;
 import static de.tudarmstadt.ukp.clarin.webanno.api.annotation.util.WebAnnoCasUtil.getRealCas;
+import static de.tudarmstadt.ukp.clarin.webanno.api.annotation.util.WebAnnoCasUtil.selectSentenceCovering;
 import static org.apache.uima.cas.CAS.TYPE_NAME_DOCUMENT_ANNOTATION;
 import static org.apache.uima.fit.factory.TypeSystemDescriptionFactory.createTypeSystemDescription;
 import static org.assertj.core.api.Assertions.assertThat;
 
 import org.apache.uima.cas.CAS;
+import org.apache.uima.fit.factory.JCasFactory;
+import org.apache.uima.jcas.JCas;
 import org.apache.uima.jcas.tcas.DocumentAnnotation;
 import org.apache.uima.resource.metadata.TypeSystemDescription;
 import org.junit.jupiter.api.Test;
 
 import de.tudarmstadt.ukp.dkpro.core.api.metadata.type.DocumentMetaData;
+import de.tudarmstadt.ukp.dkpro.core.api.segmentation.type.Sentence;
 
 public class WebAnnoCasUtilTest
 {
@@ -60,4 +64,27 @@ public class WebAnnoCasUtilTest
         assertThat(cas.select(DocumentAnnotation.class).asList()).as("Language survived upgrade")
                 .extracting(DocumentAnnotation::getLanguage).containsExactly("en");
     }
+
+    @Test
+    public void thatSelectSentenceCoveringFindsSentenceAtOffset() throws Exception
+    {
+        JCas jcas = JCasFactory.createJCas();
+        jcas.setDocumentText("aaaa bbbb cccc");
+
+        Sentence s1 = new Sentence(jcas, 0, 4);
+        s1.addToIndexes();
+        Sentence s2 = new Sentence(jcas, 5, 9);
+        s2.addToIndexes();
+        Sentence s3 = new Sentence(jcas, 10, 14);
+        s3.addToIndexes();
+
+        CAS cas = jcas.getCas();
+        assertThat(selectSentenceCovering(cas, 0)).isSameAs(s1);
+        assertThat(selectSentenceCovering(cas, 3)).isSameAs(s1);
+        assertThat(selectSentenceCovering(cas, 4)).isNull();
+        assertThat(selectSentenceCovering(cas, 5)).isSameAs(s2);
+        assertThat(selectSentenceCovering(cas, 7)).isSameAs(s2);
+        assertThat(selectSentenceCovering(cas, 13)).isSameAs(s3);
+        assertThat(selectSentenceCovering(cas, 14)).isNull();
+    }
 }
@@ -909,6 +909,8 @@ public class DocumentServiceImpl
                     EXPLICIT_ANNOTATOR_USER_ACTION);
         }
 
+        // Published right away on the calling thread, even if the write is deferred. The storage
+        // publishes an AfterCasPersistedEvent once the data has actually been written.
         applicationEventPublisher
                 .publishEvent(new AfterCasWrittenEvent(this, aAnnotationDocument, aCas));
     }
@@ -0,0 +1,290 @@
+/*
+ * Licensed to the Technische Universität Darmstadt under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The Technische Universität Darmstadt 
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.
+ *  
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.clarin.webanno.api.dao.casstorage;
+
+import static de.tudarmstadt.ukp.clarin.webanno.api.annotation.util.WebAnnoCasUtil.getRealCas;
+import static de.tudarmstadt.ukp.clarin.webanno.api.dao.casstorage.CasPersistenceUtils.removeDuplicateDocumentAnnotations;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static org.apache.uima.cas.impl.Serialization.serializeCASMgr;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.uima.cas.CAS;
+import org.apache.uima.cas.TypeSystem;
+import org.apache.uima.cas.impl.BinaryCasSerDes6;
+import org.apache.uima.cas.impl.BinaryCasSerDes6.CompressLevel;
+import org.apache.uima.cas.impl.BinaryCasSerDes6.CompressStrat;
+import org.apache.uima.cas.impl.CASImpl;
+import org.apache.uima.util.CasIOUtils;
+import org.apache.uima.util.CasLoadMode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+/**
+ * UIMA compressed binary format (form 6) without an embedded type system. The type system is
+ * stored once per project in the {@link #TYPE_SYSTEM_FOLDER} of the project. Type system files are
+ * named after the digest of their content and are never overwritten or removed, so older CAS files
+ * (e.g. backups) remain readable after the project type system has changed.
+ * <p>
+ * File layout:
+ * <ul>
+ * <li>{@link #MAGIC} (4 bytes)</li>
+ * <li>format version (1 byte)</li>
+ * <li>digest of the type system (modified UTF-8 string)</li>
+ * <li>CAS in form 6</li>
+ * </ul>
+ * The form 6 data is compressed by default. Files written without compression are larger, but
+ * small changes to the CAS only cause small changes to the file, which keeps {@link BinaryDelta
+ * deltas} between versions small. Both variants are read the same way.
+ */
+public class BinaryCasFileFormat
+    implements CasFileFormat
+{
+    public static final String TYPE_SYSTEM_FOLDER = "typesystem";
+    public static final String TYPE_SYSTEM_EXTENSION = ".tsi";
+
+    private static final byte[] MAGIC = { 'I', 'C', 'A', 'S' };
+    private static final int VERSION = 1;
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
+    private final CompressLevel compressLevel;
+
+    // UIMA shares committed type systems between CASes and type systems are immutable once
+    // committed, so we do not need to serialize the type system again on every write
+    private final Map<TypeSystem, String> typeSystemDigests = new WeakHashMap<>();
+    private final Cache<String, byte[]> typeSystemData = Caffeine.newBuilder() //
+            .maximumSize(100) //
+            .build();
+
+    public BinaryCasFileFormat()
+    {
+        this(CompressLevel.Default);
+    }
+
+    /**
+     * @param aCompressLevel
+     *            the compression level of the form 6 data.
+     */
+    public BinaryCasFileFormat(CompressLevel aCompressLevel)
+    {
+        compressLevel = aCompressLevel;
+    }
+
+    @Override
+    public boolean isFormatOf(byte[] aHeader)
+    {
+        return aHeader.length >= MAGIC.length
+                && Arrays.equals(MAGIC, Arrays.copyOf(aHeader, MAGIC.length));
+    }
+
+    @Override
+    public void read(File aProjectFolder, File aFile, CAS aCas) throws IOException
+    {
+        CAS realCas = getRealCas(aCas);
+        // UIMA-6162 Workaround: synchronize CAS during de/serialization
+        synchronized (((CASImpl) realCas).getBaseCAS()) {
+            try (DataInputStream is = new DataInputStream(
+                    new BufferedInputStream(new FileInputStream(aFile)))) {
+                byte[] magic = new byte[MAGIC.length];
+                is.readFully(magic);
+                if (!isFormatOf(magic)) {
+                    throw new IOException("File [" + aFile + "] is not a binary CAS file");
+                }
+
+                int version = is.readUnsignedByte();
+                if (version != VERSION) {
+                    throw new IOException("File [" + aFile
+                            + "] has unsupported binary CAS format version [" + version + "]");
+                }
+
+                String digest = is.readUTF();
+                byte[] typeSystem = readTypeSystem(aProjectFolder, digest);
+
+                CasIOUtils.load(is, new ByteArrayInputStream(typeSystem), realCas,
+                        CasLoadMode.REINIT);
+            }
+
+            removeDuplicateDocumentAnnotations(aCas);
+        }
+    }
+
+    @Override
+    public void write(File aProjectFolder, File aFile, CAS aCas) throws IOException
+    {
+        FileUtils.forceMkdir(aFile.getParentFile());
+
+        try (OutputStream os = new BufferedOutputStream(new FileOutputStream(aFile))) {
+            write(aProjectFolder, os, aCas);
+        }
+    }
+
+    /**
+     * Writes the CAS in this format to the given stream. The stream is not closed.
+     * 
+     * @param aProjectFolder
+     *            the folder of the project the CAS belongs to.
+     * @param aStream
+     *            the stream to write to.
+     * @param aCas
+     *            the CAS to write.
+     */
+    public void write(File aProjectFolder, OutputStream aStream, CAS aCas) throws IOException
+    {
+        CAS realCas = getRealCas(aCas);
+        if (!(realCas instanceof CASImpl)) {
+            throw new IOException(new ClassCastException(
+                    "Unable to serialize CAS of type [" + realCas.getClass().getName() + "]"));
+        }
+
+        // UIMA-6162 Workaround: synchronize CAS during de/serialization
+        synchronized (((CASImpl) realCas).getBaseCAS()) {
+            String digest = writeTypeSystem(aProjectFolder, (CASImpl) realCas);
+
+            try {
+                DataOutputStream os = new DataOutputStream(aStream);
+                os.write(MAGIC);
+                os.writeByte(VERSION);
+                os.writeUTF(digest);
+                new BinaryCasSerDes6(realCas, null, null, null, false, compressLevel,
+                        CompressStrat.Default).serialize(os);
+                os.flush();
+            }
+            catch (IOException e) {
+                throw e;
+            }
+            catch (Exception e) {
+                throw new IOException(e);
+            }
+        }
+    }
+
+    public File getTypeSystemFile(File aProjectFolder, String aDigest)
+    {
+        return new File(new File(aProjectFolder, TYPE_SYSTEM_FOLDER),
+                aDigest + TYPE_SYSTEM_EXTENSION);
+    }
+
+    private String writeTypeSystem(File aProjectFolder, CASImpl aCas) throws IOException
+    {
+        TypeSystem ts = aCas.getTypeSystem();
+
+        String digest;
+        byte[] data = null;
+        synchronized (typeSystemDigests) {
+            digest = typeSystemDigests.get(ts);
+        }
+
+        if (digest == null) {
+            data = serializeTypeSystem(aCas);
+            digest = digest(data);
+            synchronized (typeSystemDigests) {
+                typeSystemDigests.put(ts, digest);
+            }
+        }
+
+        File typeSystemFile = getTypeSystemFile(aProjectFolder, digest);
+        if (!typeSystemFile.exists()) {
+            if (data == null) {
+                data = serializeTypeSystem(aCas);
+            }
+
+            FileUtils.forceMkdir(typeSystemFile.getParentFile());
+            // Write to a temporary file first and then move it into place so that concurrent
+            // readers never see a partially written type system
+            File tmp = File.createTempFile(digest, ".tmp", typeSystemFile.getParentFile());
+            try {
+                Files.write(tmp.toPath(), data);
+                Files.move(tmp.toPath(), typeSystemFile.toPath(), ATOMIC_MOVE);
+            }
+            finally {
+                FileUtils.deleteQuietly(tmp);
+            }
+
+            typeSystemData.put(digest, data);
+
+            log.debug("Stored type system [{}] in [{}]", digest, aProjectFolder);
+        }
+
+        return digest;
+    }
+
+    private byte[] readTypeSystem(File aProjectFolder, String aDigest) throws IOException
+    {
+        byte[] data = typeSystemData.getIfPresent(aDigest);
+        if (data != null) {
+            return data;
+        }
+
+        File typeSystemFile = getTypeSystemFile(aProjectFolder, aDigest);
+        if (!typeSystemFile.exists()) {
+            throw new FileNotFoundException(
+                    "Type system [" + aDigest + "] not found: [" + typeSystemFile + "]");
+        }
+
+        data = Files.readAllBytes(typeSystemFile.toPath());
+        typeSystemData.put(aDigest, data);
+        return data;
+    }
+
+    private static byte[] serializeTypeSystem(CASImpl aCas) throws IOException
+    {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try (ObjectOutputStream os = new ObjectOutputStream(bos)) {
+            os.writeObject(serializeCASMgr(aCas));
+        }
+        return bos.toByteArray();
+    }
+
+    private static String digest(byte[] aData)
+    {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(aData);
+            StringBuilder sb = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                sb.append(String.format("%02x", b));
+            }
+            return sb.toString();
+        }
+        catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
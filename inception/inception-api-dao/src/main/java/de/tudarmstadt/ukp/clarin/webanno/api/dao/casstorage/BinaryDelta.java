@@ -0,0 +1,214 @@
+/*
+ * Licensed to the Technische Universität Darmstadt under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The Technische Universität Darmstadt 
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.
+ *  
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.clarin.webanno.api.dao.casstorage;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Simple binary delta encoding in the spirit of rsync. The base is split into fixed-size blocks
+ * which are located in the target using a rolling checksum. Matching regions are encoded as copy
+ * instructions referring to the base, everything else is stored literally.
+ */
+final class BinaryDelta
+{
+    static final int BLOCK_SIZE = 64;
+
+    private static final byte OP_COPY = 0;
+    private static final byte OP_LITERAL = 1;
+
+    private BinaryDelta()
+    {
+        // No instances
+    }
+
+    /**
+     * Encodes the target as a delta against the base.
+     * 
+     * @param aBase
+     *            the base data.
+     * @param aTarget
+     *            the data to encode.
+     * @return the delta.
+     */
+    static byte[] encode(byte[] aBase, byte[] aTarget)
+    {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bos)) {
+            out.writeInt(aTarget.length);
+
+            Map<Integer, Integer> blocks = indexBlocks(aBase);
+
+            int literalStart = 0;
+            int pos = 0;
+            int a = 0;
+            int b = 0;
+            boolean checksumValid = false;
+            while (!blocks.isEmpty() && pos + BLOCK_SIZE <= aTarget.length) {
+                if (!checksumValid) {
+                    a = 0;
+                    b = 0;
+                    for (int i = 0; i < BLOCK_SIZE; i++) {
+                        a += aTarget[pos + i] & 0xff;
+                        b += a;
+                    }
+                    checksumValid = true;
+                }
+
+                Integer candidate = blocks.get(checksum(a, b));
+                if (candidate != null && Arrays.equals(aBase, candidate, candidate + BLOCK_SIZE,
+                        aTarget, pos, pos + BLOCK_SIZE)) {
+                    int copyStart = candidate;
+                    int length = BLOCK_SIZE;
+
+                    // Extend the match forward
+                    while (copyStart + length < aBase.length && pos + length < aTarget.length
+                            && aBase[copyStart + length] == aTarget[pos + length]) {
+                        length++;
+                    }
+
+                    // Extend the match backwards into the pending literal
+                    int targetStart = pos;
+                    while (targetStart > literalStart && copyStart > 0
+                            && aBase[copyStart - 1] == aTarget[targetStart - 1]) {
+                        copyStart--;
+                        targetStart--;
+                        length++;
+                    }
+
+                    writeLiteral(out, aTarget, literalStart, targetStart);
+                    out.writeByte(OP_COPY);
+                    out.writeInt(copyStart);
+                    out.writeInt(length);
+
+                    pos = targetStart + length;
+                    literalStart = pos;
+                    checksumValid = false;
+                    continue;
+                }
+
+                // Roll the checksum forward by one byte
+                if (pos + BLOCK_SIZE < aTarget.length) {
+                    int removed = aTarget[pos] & 0xff;
+                    int added = aTarget[pos + BLOCK_SIZE] & 0xff;
+                    a += added - removed;
+                    b += a - BLOCK_SIZE * removed;
+                }
+                pos++;
+            }
+
+            writeLiteral(out, aTarget, literalStart, aTarget.length);
+        }
+        catch (IOException e) {
+            // Cannot happen when writing to a byte array
+            throw new IllegalStateException(e);
+        }
+
+        return bos.toByteArray();
+    }
+
+    /**
+     * Reconstructs the target from the base and a delta produced by
+     * {@link #encode(byte[], byte[])}.
+     * 
+     * @param aBase
+     *            the base data.
+     * @param aDelta
+     *            the delta.
+     * @return the reconstructed target.
+     * @throws IOException
+     *             if the delta is corrupt.
+     */
+    static byte[] apply(ByteBuffer aBase, ByteBuffer aDelta) throws IOException
+    {
+        ByteBuffer delta = aDelta.duplicate();
+        try {
+            byte[] target = new byte[delta.getInt()];
+            int pos = 0;
+            while (delta.hasRemaining()) {
+                byte op = delta.get();
+                switch (op) {
+                case OP_COPY: {
+                    int offset = delta.getInt();
+                    int length = delta.getInt();
+                    ByteBuffer base = aBase.duplicate();
+                    base.position(base.position() + offset);
+                    base.get(target, pos, length);
+                    pos += length;
+                    break;
+                }
+                case OP_LITERAL: {
+                    int length = delta.getInt();
+                    delta.get(target, pos, length);
+                    pos += length;
+                    break;
+                }
+                default:
+                    throw new IOException("Unknown delta instruction [" + op + "]");
+                }
+            }
+
+            if (pos != target.length) {
+                throw new IOException("Delta produced [" + pos + "] bytes but expected ["
+                        + target.length + "]");
+            }
+
+            return target;
+        }
+        catch (BufferUnderflowException | IndexOutOfBoundsException
+                | IllegalArgumentException e) {
+            throw new IOException("Corrupt delta", e);
+        }
+    }
+
+    private static Map<Integer, Integer> indexBlocks(byte[] aBase)
+    {
+        Map<Integer, Integer> blocks = new HashMap<>();
+        for (int offset = 0; offset + BLOCK_SIZE <= aBase.length; offset += BLOCK_SIZE) {
+            int a = 0;
+            int b = 0;
+            for (int i = 0; i < BLOCK_SIZE; i++) {
+                a += aBase[offset + i] & 0xff;
+                b += a;
+            }
+            blocks.putIfAbsent(checksum(a, b), offset);
+        }
+        return blocks;
+    }
+
+    private static int checksum(int a, int b)
+    {
+        return ((b & 0xffff) << 16) | (a & 0xffff);
+    }
+
+    private static void writeLiteral(DataOutputStream aOut, byte[] aData, int aBegin, int aEnd)
+        throws IOException
+    {
+        if (aEnd > aBegin) {
+            aOut.writeByte(OP_LITERAL);
+            aOut.writeInt(aEnd - aBegin);
+            aOut.write(aData, aBegin, aEnd - aBegin);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * Licensed to the Technische Universität Darmstadt under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The Technische Universität Darmstadt 
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.
+ *  
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.clarin.webanno.api.dao.casstorage;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.uima.cas.CAS;
+
+/**
+ * On-disk format of the CAS files managed by the {@link FileSystemCasStorageDriver}. Files are
+ * always read in the format they have been written in - the format is detected from the first
+ * bytes of the file.
+ */
+public interface CasFileFormat
+{
+    /**
+     * Number of bytes from the start of a file that are passed to {@link #isFormatOf(byte[])}.
+     */
+    int HEADER_LENGTH = 4;
+
+    /**
+     * @param aHeader
+     *            the first {@link #HEADER_LENGTH} bytes of a file (fewer if the file is shorter).
+     * @return whether the file is in this format.
+     */
+    boolean isFormatOf(byte[] aHeader);
+
+    /**
+     * @param aProjectFolder
+     *            the folder of the project the CAS belongs to. Formats may use this to store data
+     *            shared by all CASes in the project.
+     * @param aFile
+     *            the CAS file.
+     * @param aCas
+     *            the CAS to load the data into. Any previous content is replaced.
+     */
+    void read(File aProjectFolder, File aFile, CAS aCas) throws IOException;
+
+    /**
+     * @param aProjectFolder
+     *            the folder of the project the CAS belongs to. Formats may use this to store data
+     *            shared by all CASes in the project.
+     * @param aFile
+     *            the CAS file.
+     * @param aCas
+     *            the CAS to write.
+     */
+    void write(File aProjectFolder, File aFile, CAS aCas) throws IOException;
+}
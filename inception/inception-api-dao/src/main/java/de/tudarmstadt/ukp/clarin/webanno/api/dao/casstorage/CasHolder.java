@@ -33,8 +33,8 @@ public class CasHolder
 
     private CAS cas;
     private Exception exception;
-    private boolean typeSystemOutdated;
-    private boolean deleted;
+    private volatile boolean typeSystemOutdated;
+    private volatile boolean deleted;
 
     public CasHolder(CasKey aKey)
     {
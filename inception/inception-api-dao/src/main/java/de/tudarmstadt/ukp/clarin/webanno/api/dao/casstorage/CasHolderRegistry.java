@@ -0,0 +1,92 @@
+/*
+ * Licensed to the Technische Universität Darmstadt under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The Technische Universität Darmstadt 
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.
+ *  
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.clarin.webanno.api.dao.casstorage;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Consumer;
+
+/**
+ * Keeps track of the {@link CasHolder holders} managed by the exclusive access pool so they can be
+ * notified when the CAS they hold becomes invalid. Holders are registered when the pool creates
+ * them and unregistered when the pool destroys them.
+ * <p>
+ * Holders are indexed by project and then by {@link CasKey}. Lookups do not lock at all and
+ * updates only lock the entries of the affected project.
+ */
+public class CasHolderRegistry
+{
+    private final ConcurrentMap<Long, ConcurrentMap<CasKey, CasHolder>> holdersByProject = //
+            new ConcurrentHashMap<>();
+
+    public void register(CasHolder aHolder)
+    {
+        CasKey key = aHolder.getKey();
+        holdersByProject.compute(key.getProjectId(), (id, holders) -> {
+            ConcurrentMap<CasKey, CasHolder> result = holders != null ? holders
+                    : new ConcurrentHashMap<>();
+            result.put(key, aHolder);
+            return result;
+        });
+    }
+
+    public void unregister(CasHolder aHolder)
+    {
+        CasKey key = aHolder.getKey();
+        holdersByProject.computeIfPresent(key.getProjectId(), (id, holders) -> {
+            holders.remove(key, aHolder);
+            return holders.isEmpty() ? null : holders;
+        });
+    }
+
+    public Optional<CasHolder> get(CasKey aKey)
+    {
+        Map<CasKey, CasHolder> holders = holdersByProject.get(aKey.getProjectId());
+        if (holders == null) {
+            return Optional.empty();
+        }
+
+        return Optional.ofNullable(holders.get(aKey));
+    }
+
+    public void forEachInProject(long aProjectId, Consumer<CasHolder> aAction)
+    {
+        Map<CasKey, CasHolder> holders = holdersByProject.get(aProjectId);
+        if (holders != null) {
+            holders.values().forEach(aAction);
+        }
+    }
+
+    public int size()
+    {
+        return holdersByProject.values().stream().mapToInt(Map::size).sum();
+    }
+
+    public boolean isEmpty()
+    {
+        return holdersByProject.isEmpty();
+    }
+
+    @Override
+    public String toString()
+    {
+        return holdersByProject.toString();
+    }
+}
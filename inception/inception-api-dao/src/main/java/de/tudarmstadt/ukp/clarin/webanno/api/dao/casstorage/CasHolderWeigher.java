@@ -0,0 +1,83 @@
+/*
+ * Licensed to the Technische Universität Darmstadt under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The Technische Universität Darmstadt 
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.
+ *  
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.clarin.webanno.api.dao.casstorage;
+
+import java.util.Iterator;
+
+import org.apache.uima.cas.CAS;
+import org.apache.uima.cas.impl.CASImpl;
+
+import com.github.benmanes.caffeine.cache.Weigher;
+
+/**
+ * Weighs the entries of the shared CAS cache by the estimated amount of heap the CAS occupies. The
+ * estimate is based on the number of feature structures allocated in the CAS and on the length of
+ * the sofa strings of all its views. Both values are available without walking the CAS, so
+ * weighing is cheap.
+ */
+public class CasHolderWeigher
+    implements Weigher<CasKey, CasHolder>
+{
+    /**
+     * Estimated average heap size of a feature structure including its index entries.
+     */
+    static final int BYTES_PER_FEATURE_STRUCTURE = 80;
+
+    /**
+     * Weight of a holder which does not contain a CAS, e.g. because loading the CAS failed.
+     */
+    static final int EMPTY_HOLDER_WEIGHT = 1;
+
+    @Override
+    public int weigh(CasKey aKey, CasHolder aHolder)
+    {
+        if (!aHolder.isCasSet()) {
+            return EMPTY_HOLDER_WEIGHT;
+        }
+
+        long size = estimateSize(aHolder.getCas());
+        return (int) Math.max(EMPTY_HOLDER_WEIGHT, Math.min(size, Integer.MAX_VALUE));
+    }
+
+    /**
+     * @param aCas
+     *            a CAS.
+     * @return the estimated heap size of the given CAS in bytes.
+     */
+    public static long estimateSize(CAS aCas)
+    {
+        long size = 0;
+
+        if (aCas instanceof CASImpl) {
+            // The last used ID is an upper bound for the number of feature structures in the CAS
+            // which is good enough for an estimate
+            size += (long) ((CASImpl) aCas).getLastUsedFsId() * BYTES_PER_FEATURE_STRUCTURE;
+        }
+
+        Iterator<CAS> i = aCas.getViewIterator();
+        while (i.hasNext()) {
+            String sofaString = i.next().getSofaDataString();
+            if (sofaString != null) {
+                // Java strings take up to two bytes per character
+                size += 2l * sofaString.length();
+            }
+        }
+
+        return size;
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Licensed to the Technische Universität Darmstadt under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The Technische Universität Darmstadt
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.clarin.webanno.api.dao.casstorage;
+
+import static de.tudarmstadt.ukp.clarin.webanno.api.annotation.util.WebAnnoCasUtil.getRealCas;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.uima.cas.CAS;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+/**
+ * Counts the modifications of CAS instances. A CAS counts as modified whenever it is passed to
+ * {@link CasStorageServiceImpl#writeCas}, even if the write is deferred and the timestamp of the
+ * CAS in the storage does not change yet. Data derived from a CAS instance can thus be re-used as
+ * long as the modification count of the CAS does not change. CASes are held weakly and compared by
+ * identity.
+ */
+public final class CasModificationTracker
+{
+    private static final Cache<CAS, AtomicLong> COUNTERS = Caffeine.newBuilder() //
+            .weakKeys() //
+            .build();
+
+    private CasModificationTracker()
+    {
+        // No instances
+    }
+
+    /**
+     * Records a modification of the given CAS.
+     *
+     * @param aCas
+     *            the CAS.
+     */
+    public static void markModified(CAS aCas)
+    {
+        COUNTERS.get(getRealCas(aCas), cas -> new AtomicLong()).incrementAndGet();
+    }
+
+    /**
+     * @param aCas
+     *            the CAS.
+     * @return the number of recorded modifications of the given CAS.
+     */
+    public static long getModificationCount(CAS aCas)
+    {
+        AtomicLong counter = COUNTERS.getIfPresent(getRealCas(aCas));
+        return counter != null ? counter.get() : 0;
+    }
+}
@@ -27,6 +27,7 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.io.OutputStream;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.uima.cas.CAS;
@@ -122,19 +123,50 @@ public final class CasPersistenceUtils
                 CASCompleteSerializer serializer = (CASCompleteSerializer) is.readObject();
                 deserializeCASComplete(serializer, (CASImpl) realCas);
 
-                // Workaround for UIMA adding back deleted DocumentAnnotations
-                // https://issues.apache.org/jira/browse/UIMA-6199
-                // If there is a DocumentMetaData annotation, then we can drop any of the default
-                // UIMA DocumentAnnotation instances (excluding the DocumentMetaData of course)
-                if (!aCas.select(DocumentMetaData.class.getName()).isEmpty()) {
-                    aCas.select(CAS.TYPE_NAME_DOCUMENT_ANNOTATION).filter(
-                            fs -> !DocumentMetaData.class.getName().equals(fs.getType().getName()))
-                            .forEach(aCas::removeFsFromIndexes);
-                }
+                removeDuplicateDocumentAnnotations(aCas);
             }
             catch (ClassNotFoundException e) {
                 throw new IOException(e);
             }
         }
     }
+
+    /**
+     * Writes the CAS to the given stream in the same format as
+     * {@link #writeSerializedCas(CAS, File)}. The stream is not closed.
+     */
+    public static void writeSerializedCas(CAS aCas, OutputStream aStream) throws IOException
+    {
+        CAS realCas = getRealCas(aCas);
+        // UIMA-6162 Workaround: synchronize CAS during de/serialization
+        synchronized (((CASImpl) realCas).getBaseCAS()) {
+            CASCompleteSerializer serializer;
+            try {
+                serializer = serializeCASComplete((CASImpl) realCas);
+            }
+            catch (Exception e) {
+                throw new IOException(e);
+            }
+
+            ObjectOutputStream os = new ObjectOutputStream(aStream);
+            os.writeObject(serializer);
+            os.flush();
+        }
+    }
+
+    /**
+     * Workaround for UIMA adding back deleted DocumentAnnotations.
+     * 
+     * @see <a href="https://issues.apache.org/jira/browse/UIMA-6199">UIMA-6199</a>
+     */
+    static void removeDuplicateDocumentAnnotations(CAS aCas)
+    {
+        // If there is a DocumentMetaData annotation, then we can drop any of the default
+        // UIMA DocumentAnnotation instances (excluding the DocumentMetaData of course)
+        if (!aCas.select(DocumentMetaData.class.getName()).isEmpty()) {
+            aCas.select(CAS.TYPE_NAME_DOCUMENT_ANNOTATION).filter(
+                    fs -> !DocumentMetaData.class.getName().equals(fs.getType().getName()))
+                    .forEach(aCas::removeFsFromIndexes);
+        }
+    }
 }
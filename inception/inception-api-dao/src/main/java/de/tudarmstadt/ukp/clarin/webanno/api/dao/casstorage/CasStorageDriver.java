@@ -40,6 +40,11 @@ public interface CasStorageDriver
 
     boolean existsCas(SourceDocument aDocument, String aUser) throws IOException;
 
+    /**
+     * Forces the stored CAS to durable storage.
+     */
+    void syncCas(SourceDocument aDocument, String aUser) throws IOException;
+
     Optional<CasStorageMetadata> getCasMetadata(SourceDocument aDocument, String aUser)
         throws IOException;
 }
@@ -27,9 +27,9 @@ import static de.tudarmstadt.ukp.clarin.webanno.api.casstorage.CasAccessMode.SHA
 import static de.tudarmstadt.ukp.clarin.webanno.api.casstorage.CasAccessMode.UNMANAGED_ACCESS;
 import static de.tudarmstadt.ukp.clarin.webanno.api.casstorage.CasAccessMode.UNMANAGED_NON_INITIALIZING_ACCESS;
 import static de.tudarmstadt.ukp.clarin.webanno.api.dao.casstorage.CasStorageServiceImpl.RepairAndUpgradeFlags.ISOLATED_SESSION;
+import static de.tudarmstadt.ukp.clarin.webanno.api.dao.casstorage.config.FsyncPolicy.ALWAYS;
 import static java.lang.System.currentTimeMillis;
-import static java.util.Collections.newSetFromMap;
-import static java.util.Collections.synchronizedSet;
+import static java.util.Collections.unmodifiableMap;
 import static org.apache.commons.lang3.ArrayUtils.contains;
 
 import java.io.File;
@@ -37,10 +37,12 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
-import java.util.Set;
-import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.apache.commons.lang3.Validate;
 import org.apache.commons.pool2.impl.GenericKeyedObjectPool;
@@ -51,14 +53,17 @@ import org.apache.uima.cas.CAS;
 import org.apache.uima.cas.impl.CASImpl;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.dao.DataRetrievalFailureException;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.transaction.event.TransactionalEventListener;
-import org.springframework.util.ConcurrentReferenceHashMap;
 
 import com.github.benmanes.caffeine.cache.Cache;
 import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Policy.Eviction;
+import com.github.benmanes.caffeine.cache.RemovalCause;
 import com.github.benmanes.caffeine.cache.stats.CacheStats;
 
 import de.tudarmstadt.ukp.clarin.webanno.api.AnnotationSchemaService;
@@ -69,8 +74,11 @@ import de.tudarmstadt.ukp.clarin.webanno.api.casstorage.CasAccessMode;
 import de.tudarmstadt.ukp.clarin.webanno.api.casstorage.CasSessionException;
 import de.tudarmstadt.ukp.clarin.webanno.api.casstorage.CasStorageServiceAction;
 import de.tudarmstadt.ukp.clarin.webanno.api.casstorage.CasStorageServiceLoader;
+import de.tudarmstadt.ukp.clarin.webanno.api.dao.casstorage.WriteBehindQueue.PendingWrite;
 import de.tudarmstadt.ukp.clarin.webanno.api.dao.casstorage.config.CasStorageProperties;
 import de.tudarmstadt.ukp.clarin.webanno.api.dao.casstorage.config.CasStorageServiceAutoConfiguration;
+import de.tudarmstadt.ukp.clarin.webanno.api.dao.casstorage.config.WriteBehindProperties;
+import de.tudarmstadt.ukp.clarin.webanno.api.event.AfterCasPersistedEvent;
 import de.tudarmstadt.ukp.clarin.webanno.api.event.LayerConfigurationChangedEvent;
 import de.tudarmstadt.ukp.clarin.webanno.diag.CasDoctor;
 import de.tudarmstadt.ukp.clarin.webanno.diag.CasDoctorException;
@@ -84,21 +92,29 @@ import de.tudarmstadt.ukp.clarin.webanno.model.SourceDocument;
  * </p>
  */
 public class CasStorageServiceImpl
-    implements CasStorageService
+    implements CasStorageService, DisposableBean
 {
     private final Logger log = LoggerFactory.getLogger(getClass());
 
     private final CasDoctor casDoctor;
     private final AnnotationSchemaService schemaService;
     private final CasStorageProperties casStorageProperties;
+    private final WriteBehindProperties writeBehindProperties;
+    private final ApplicationEventPublisher applicationEventPublisher;
 
     private final GenericKeyedObjectPool<CasKey, CasHolder> exclusiveAccessPool;
-    private final Set<CasHolder> exclusiveAccessHolders = synchronizedSet(
-            newSetFromMap(new WeakHashMap<>()));
+    private final CasHolderRegistry exclusiveAccessHolders = new CasHolderRegistry();
     private final Cache<CasKey, CasHolder> sharedAccessCache;
+    private final CasHolderWeigher sharedAccessCacheWeigher = new CasHolderWeigher();
+    private final ConcurrentMap<Long, SharedCasCacheStats> sharedAccessCacheProjectStats = //
+            new ConcurrentHashMap<>();
+    private final long sharedAccessCacheProjectQuota;
 
     private final CasStorageDriver driver;
 
+    // Only set if write-behind is enabled
+    private final WriteBehindQueue writeBehindQueue;
+
     public static enum RepairAndUpgradeFlags
     {
         /**
@@ -108,22 +124,44 @@ public class CasStorageServiceImpl
         ISOLATED_SESSION;
     }
 
+    public CasStorageServiceImpl(CasStorageDriver aDriver, CasDoctor aCasDoctor,
+            AnnotationSchemaService aSchemaService, CasStorageProperties aCasStorageProperties)
+    {
+        this(aDriver, aCasDoctor, aSchemaService, aCasStorageProperties,
+                new WriteBehindProperties());
+    }
+
+    public CasStorageServiceImpl(CasStorageDriver aDriver, CasDoctor aCasDoctor,
+            AnnotationSchemaService aSchemaService, CasStorageProperties aCasStorageProperties,
+            WriteBehindProperties aWriteBehindProperties)
+    {
+        this(aDriver, aCasDoctor, aSchemaService, aCasStorageProperties, aWriteBehindProperties,
+                null);
+    }
+
     /**
      * @param aCasDoctor
      *            (optional) if present, CAS validation can take place
      * @param aSchemaService
      *            (optional) if present, CAS upgrades can be performed
+     * @param aApplicationEventPublisher
+     *            (optional) if present, an {@link AfterCasPersistedEvent} is published whenever a
+     *            CAS has been written to the storage
      */
     @Autowired
     public CasStorageServiceImpl(CasStorageDriver aDriver,
             @Autowired(required = false) CasDoctor aCasDoctor,
             @Autowired(required = false) AnnotationSchemaService aSchemaService,
-            CasStorageProperties aCasStorageProperties)
+            CasStorageProperties aCasStorageProperties,
+            WriteBehindProperties aWriteBehindProperties,
+            @Autowired(required = false) ApplicationEventPublisher aApplicationEventPublisher)
     {
         driver = aDriver;
         casDoctor = aCasDoctor;
         schemaService = aSchemaService;
         casStorageProperties = aCasStorageProperties;
+        writeBehindProperties = aWriteBehindProperties;
+        applicationEventPublisher = aApplicationEventPublisher;
 
         GenericKeyedObjectPoolConfig<CasHolder> config = new GenericKeyedObjectPoolConfig<>();
         // Since we want the pool to control exclusive access to a particular CAS, we only ever
@@ -151,19 +189,64 @@ public class CasStorageServiceImpl
         config.setTestOnBorrow(true);
         config.setMaxWaitMillis(casStorageProperties.getCasBorrowWaitTimeout().toMillis());
         // We do not have to set maxTotal because the default is already to have no limit (-1)
-        exclusiveAccessPool = new GenericKeyedObjectPool<>(new PooledCasHolderFactory(), config);
+        exclusiveAccessPool = new GenericKeyedObjectPool<>(
+                new PooledCasHolderFactory(exclusiveAccessHolders), config);
 
+        long maxWeight = casStorageProperties.getSharedCasCacheMaxWeight().toBytes();
         sharedAccessCache = Caffeine.newBuilder() //
                 .expireAfterAccess(casStorageProperties.getIdleCasEvictionDelay()) //
-                .maximumSize(casStorageProperties.getSharedCasCacheSize()) //
+                .maximumWeight(maxWeight) //
+                .weigher(sharedAccessCacheWeigher) //
+                // Run the removal listener synchronously so the per-project statistics which are
+                // used to enforce the quotas are up-to-date
+                .executor(Runnable::run) //
+                .removalListener(this::sharedCasRemoved) //
                 .recordStats() //
                 .build();
 
+        double projectQuota = casStorageProperties.getSharedCasCacheProjectQuota();
+        sharedAccessCacheProjectQuota = projectQuota < 1.0 ? (long) (maxWeight * projectQuota)
+                : Long.MAX_VALUE;
+
         if (casDoctor == null) {
             log.info("CAS doctor not available - unable to check/repair CASes");
         }
 
-        log.info("CAS cache size: {} instances", casStorageProperties.getSharedCasCacheSize());
+        log.info("Shared CAS cache max weight: {}MB - per-project quota: {}",
+                casStorageProperties.getSharedCasCacheMaxWeight().toMegabytes(),
+                projectQuota < 1.0 ? projectQuota : "none");
+
+        if (writeBehindProperties.isEnabled()) {
+            writeBehindQueue = new WriteBehindQueue(writeBehindProperties.getWindow(),
+                    writeBehindProperties.getIoThreads(), this::flushPendingWriteInBackground);
+            log.info("CAS write-behind enabled - window: {}  I/O threads: {}  fsync: {}",
+                    writeBehindProperties.getWindow(), writeBehindProperties.getIoThreads(),
+                    writeBehindProperties.getFsync());
+        }
+        else {
+            writeBehindQueue = null;
+            log.info("CAS write-behind disabled - fsync: {}", writeBehindProperties.getFsync());
+        }
+    }
+
+    @Override
+    public void destroy()
+    {
+        if (writeBehindQueue != null) {
+            writeBehindQueue.shutdown(writeBehindProperties.getShutdownTimeout());
+            log.info("CAS write-behind shut down - requested: {}  persisted: {}  failed: {}",
+                    writeBehindQueue.getRequestedWriteCount(),
+                    writeBehindQueue.getCompletedWriteCount(),
+                    writeBehindQueue.getFailedWriteCount());
+        }
+    }
+
+    /**
+     * @return number of CAS writes which have been deferred and not yet persisted.
+     */
+    public int getPendingWriteCount()
+    {
+        return writeBehindQueue != null ? writeBehindQueue.getPendingWriteCount() : 0;
     }
 
     public long getSharedAccessCacheSize()
@@ -171,11 +254,38 @@ public class CasStorageServiceImpl
         return sharedAccessCache.estimatedSize();
     }
 
+    /**
+     * @return estimated heap size of the CASes in the shared cache.
+     */
+    public long getSharedAccessCacheWeight()
+    {
+        return sharedAccessCache.policy().eviction().map(e -> e.weightedSize().orElse(0))
+                .orElse(0l);
+    }
+
     public CacheStats getSharedAccessCacheStats()
     {
         return sharedAccessCache.stats();
     }
 
+    /**
+     * @return the shared cache statistics for all projects which have used the cache so far.
+     */
+    public Map<Long, SharedCasCacheStats> getSharedAccessCacheProjectStats()
+    {
+        return unmodifiableMap(sharedAccessCacheProjectStats);
+    }
+
+    /**
+     * @param aProjectId
+     *            the ID of a project.
+     * @return the shared cache statistics for the given project.
+     */
+    public SharedCasCacheStats getSharedAccessCacheProjectStats(long aProjectId)
+    {
+        return sharedAccessCacheProjectStats.computeIfAbsent(aProjectId, SharedCasCacheStats::new);
+    }
+
     @Override
     public void writeCas(SourceDocument aDocument, CAS aCas, String aUserName)
         throws IOException, CasSessionException
@@ -183,6 +293,9 @@ public class CasStorageServiceImpl
         try (var logCtx = withProjectLogger(aDocument.getProject())) {
             CasStorageSession session = CasStorageSession.get();
 
+            // Announce the change before the write which may be deferred
+            CasModificationTracker.markModified(aCas);
+
             // If the CAS is in the session, then it must be there in a mode where writing is
             // permitted
             // ... we do this for the moment so we keep a door open for "detecting" if somebody may
@@ -214,7 +327,16 @@ public class CasStorageServiceImpl
                             + "] on document [" + mCas.get().getSourceDocumentId() + "]");
                 }
 
-                realWriteCas(aDocument, aUserName, aCas);
+                // CASes held in exclusive access cannot be modified by anybody else until they are
+                // returned to the pool, so they can safely be written in the background
+                if (writeBehindQueue != null && mCas.isPresent()
+                        && EXCLUSIVE_WRITE_ACCESS.equals(mCas.get().getMode())) {
+                    writeBehindQueue.enqueue(new CasKey(aDocument, aUserName), aDocument,
+                            aUserName, aCas);
+                }
+                else {
+                    realWriteCas(aDocument, aUserName, aCas);
+                }
             }
             else {
                 try (WithExclusiveAccess access = new WithExclusiveAccess(aDocument, aUserName)) {
@@ -249,6 +371,49 @@ public class CasStorageServiceImpl
         }
     }
 
+    /**
+     * Persists the deferred write of the given CAS (if any). The caller must hold exclusive access
+     * to the CAS.
+     */
+    private void flushPendingWrite(CasKey aKey) throws IOException
+    {
+        if (writeBehindQueue == null) {
+            return;
+        }
+
+        PendingWrite write = writeBehindQueue.claim(aKey);
+        if (write == null) {
+            return;
+        }
+
+        boolean success = false;
+        try {
+            transferCasOwnershipToCurrentThread(write.getCas());
+            realWriteCas(write.getDocument(), write.getUser(), write.getCas());
+            success = true;
+        }
+        finally {
+            writeBehindQueue.complete(write, success);
+        }
+    }
+
+    /**
+     * Invoked on the write-behind I/O threads. Obtaining exclusive access flushes the pending
+     * write. Failed writes are rescheduled by the {@link WriteBehindQueue}.
+     */
+    private void flushPendingWriteInBackground(PendingWrite aWrite)
+    {
+        try (CasStorageSession session = CasStorageSession.open();
+                WithExclusiveAccess access = new WithExclusiveAccess(aWrite.getDocument(),
+                        aWrite.getUser())) {
+            // Nothing else to do
+        }
+        catch (Exception e) {
+            log.error("Unable to persist CAS [{}]@[{}]({})", aWrite.getUser(),
+                    aWrite.getDocument().getName(), aWrite.getDocument().getId(), e);
+        }
+    }
+
     /*
      * For testing
      */
@@ -317,6 +482,9 @@ public class CasStorageServiceImpl
                     // If the CAS has not been loaded into the exclusive access pool, then we need
                     // to load it
                     if (!holder.isCasSet()) {
+                        // Make sure we do not load a stale version from storage
+                        flushPendingWrite(key);
+
                         CasKey finalKey = key;
                         CasHolder finalHolder = holder;
 
@@ -393,10 +561,26 @@ public class CasStorageServiceImpl
                 try (WithExclusiveAccess access = new WithExclusiveAccess(aDocument, aUsername)) {
                     // Since we promise to only read the CAS, we don't have to worry about it being
                     // locked to a particular thread...
-                    casHolder = sharedAccessCache.get(new CasKey(aDocument, aUsername),
-                            (key) -> CasHolder.of(key,
-                                    () -> getRealCas(readOrCreateUnmanagedCas(aDocument, aUsername,
-                                            aSupplier, aUpgradeMode))));
+                    CasKey sharedKey = new CasKey(aDocument, aUsername);
+                    SharedCasCacheStats stats = getSharedAccessCacheProjectStats(
+                            sharedKey.getProjectId());
+                    AtomicBoolean loaded = new AtomicBoolean();
+                    casHolder = sharedAccessCache.get(sharedKey, (key) -> {
+                        loaded.set(true);
+                        CasHolder holder = CasHolder.of(key,
+                                () -> getRealCas(readOrCreateUnmanagedCas(aDocument, aUsername,
+                                        aSupplier, aUpgradeMode)));
+                        stats.recordAdded(sharedAccessCacheWeigher.weigh(key, holder));
+                        return holder;
+                    });
+
+                    if (loaded.get()) {
+                        stats.recordMiss();
+                        enforceSharedAccessCacheProjectQuota(sharedKey, stats);
+                    }
+                    else {
+                        stats.recordHit();
+                    }
                 }
             }
             // else if the special bypass mode is requested, then we fetch directly from disk
@@ -444,12 +628,9 @@ public class CasStorageServiceImpl
     private CasHolder borrowCas(CasKey aKey)
     {
         try {
+            // The holder is registered in the exclusiveAccessHolders by the pool factory when it
+            // is created
             CasHolder holder = exclusiveAccessPool.borrowObject(aKey);
-            // Add the holder to the set of known holder. Because this set it using weak
-            // references, and because we use the set only to inform holders when they become
-            // invalid we do never have to explicitly remove the holder from the set
-            exclusiveAccessHolders.add(holder);
-            log.trace("Added to exclusiveAccessHolders: {}", holder);
             logExclusiveAccessHolders();
             return holder;
         }
@@ -470,6 +651,12 @@ public class CasStorageServiceImpl
                     aKey.getUserId(), aKey.getDocumentName(), aKey.getDocumentId());
             exclusiveAccessPool.returnObject(aKey, aHolder);
             logExclusiveAccessHolders();
+
+            // The session which held the CAS has ended, so there is no point in waiting for
+            // further writes to coalesce
+            if (writeBehindQueue != null) {
+                writeBehindQueue.flushSoon(aKey);
+            }
         }
         catch (Exception e) {
             log.error("Unable to return CAS [{}] for [{}]@[{}]({}) to exclusive access pool",
@@ -589,12 +776,7 @@ public class CasStorageServiceImpl
             // Drop the CAS from the exclusive access pool. This is done my marking it as deleted
             // and then releasing it (returning it to the pool). Upon return, the deleted flag
             // causes the CAS to be invalidated and dropped from the pool.
-            exclusiveAccessHolders.forEach(h -> {
-                // Must use the forEach here because stream() is not synchronized!
-                if (Objects.equals(h.getKey(), key)) {
-                    h.setDeleted(true);
-                }
-            });
+            exclusiveAccessHolders.get(key).ifPresent(h -> h.setDeleted(true));
             access.release();
 
             // Drop the CAS from the current session
@@ -825,7 +1007,7 @@ public class CasStorageServiceImpl
         private String username;
 
         public WithExclusiveAccess(SourceDocument aDocument, String aUser)
-            throws CasSessionException
+            throws CasSessionException, IOException
         {
             key = new CasKey(aDocument, aUser);
             documentName = aDocument.getName();
@@ -850,6 +1032,16 @@ public class CasStorageServiceImpl
             else {
                 holder = null;
             }
+
+            // Any deferred write must be persisted before anybody else gets to see the CAS in
+            // storage
+            try {
+                flushPendingWrite(key);
+            }
+            catch (IOException | RuntimeException e) {
+                close();
+                throw e;
+            }
         }
 
         public CasKey getKey()
@@ -963,12 +1155,10 @@ public class CasStorageServiceImpl
     }
 
     /**
-     * When using the Spring {@link ConcurrentReferenceHashMap} for the
-     * {@link #exclusiveAccessHolders}, we had some trouble that CASHolders disappeared from the set
-     * even though they had not yet been garbage collected (i.e. still referenced from the
-     * {@link #exclusiveAccessPool}. To fix this, we switch to a simple synchronized
-     * {@link WeakHashMap} turned into a set. We keep the debug/logging code around for a little
-     * more to facilitate debugging this again if need be.
+     * Earlier, the {@link #exclusiveAccessHolders} were tracked in a weak set and we had some
+     * trouble with holders disappearing from it. Now holders are explicitly registered/unregistered
+     * by the pool factory. We keep the debug/logging code around for a little more to facilitate
+     * debugging this again if need be.
      */
     private void logExclusiveAccessHolders()
     {
@@ -990,12 +1180,8 @@ public class CasStorageServiceImpl
         // so they can be refreshed when next returned or borrowed
         logExclusiveAccessHolders();
 
-        exclusiveAccessHolders.forEach(h -> {
-            // Must use the forEach here because stream() is not synchronized!
-            if (Objects.equals(h.getKey().getProjectId(), aEvent.getProject().getId())) {
-                h.setTypeSystemOutdated(true);
-            }
-        });
+        exclusiveAccessHolders.forEachInProject(aEvent.getProject().getId(),
+                h -> h.setTypeSystemOutdated(true));
 
         logExclusiveAccessHolders();
 
@@ -1005,11 +1191,80 @@ public class CasStorageServiceImpl
                 .removeIf(key -> Objects.equals(key.getProjectId(), aEvent.getProject().getId()));
     }
 
+    private void sharedCasRemoved(CasKey aKey, CasHolder aHolder, RemovalCause aCause)
+    {
+        if (aKey == null || aHolder == null) {
+            return;
+        }
+
+        SharedCasCacheStats stats = getSharedAccessCacheProjectStats(aKey.getProjectId());
+        stats.recordRemoved(sharedAccessCacheWeigher.weigh(aKey, aHolder));
+        if (aCause.wasEvicted()) {
+            stats.recordEviction();
+        }
+    }
+
+    /**
+     * If the CASes of the project of the given key occupy more than the project quota of the shared
+     * cache, drop the least recently used CASes of that project (except for the given one) until
+     * the project is within its quota again. The quota is soft: a project may exceed it briefly
+     * and a single CAS which is larger than the quota is still cached. Other projects are never
+     * affected.
+     */
+    private void enforceSharedAccessCacheProjectQuota(CasKey aKey, SharedCasCacheStats aStats)
+    {
+        if (aStats.getWeight() <= sharedAccessCacheProjectQuota) {
+            return;
+        }
+
+        Optional<Eviction<CasKey, CasHolder>> eviction = sharedAccessCache.policy().eviction();
+        if (!eviction.isPresent()) {
+            return;
+        }
+
+        // Walking the cache from the coldest to the hottest entry is linear in the size of the
+        // cache, but this only happens after a CAS was loaded from disk which is far more
+        // expensive.
+        for (CasKey key : eviction.get().coldest(Integer.MAX_VALUE).keySet()) {
+            if (aStats.getWeight() <= sharedAccessCacheProjectQuota) {
+                break;
+            }
+
+            if (key.getProjectId() != aKey.getProjectId() || key.equals(aKey)) {
+                continue;
+            }
+
+            if (sharedAccessCache.asMap().remove(key) != null) {
+                aStats.recordQuotaEviction();
+            }
+        }
+
+        log.trace("Shared CAS cache quota enforced for project [{}]: {}", aKey.getProjectId(),
+                aStats);
+    }
+
     private void realWriteCas(SourceDocument aDocument, String aUserName, CAS aCas)
         throws IOException
     {
         analyze(aDocument.getProject(), aDocument.getName(), aDocument.getId(), aUserName, aCas);
 
         driver.writeCas(aDocument, aUserName, aCas);
+
+        if (ALWAYS.equals(writeBehindProperties.getFsync())) {
+            driver.syncCas(aDocument, aUserName);
+        }
+
+        if (applicationEventPublisher != null) {
+            // The CAS has been persisted already - a failing listener must not turn this into a
+            // failed write
+            try {
+                applicationEventPublisher
+                        .publishEvent(new AfterCasPersistedEvent(this, aDocument, aUserName));
+            }
+            catch (RuntimeException e) {
+                log.error("Error handling persisted CAS [{}]@[{}]({})", aUserName,
+                        aDocument.getName(), aDocument.getId(), e);
+            }
+        }
     }
 }
@@ -19,6 +19,8 @@ package de.tudarmstadt.ukp.clarin.webanno.api.dao.casstorage;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedOperationParameter;
 import org.springframework.jmx.export.annotation.ManagedResource;
 import org.springframework.stereotype.Component;
 
@@ -111,21 +113,75 @@ public class CasStorageServiceSharedAccessCacheAdapter
         return casStorageService.getSharedAccessCacheSize();
     }
 
+    @ManagedAttribute
+    public long getActiveWeight()
+    {
+        return casStorageService.getSharedAccessCacheWeight();
+    }
+
+    /**
+     * @deprecated The cache is bounded by weight. Use {@link #getMaxWeight()} instead.
+     */
+    @Deprecated
     @ManagedAttribute
     public long getMaxCount()
     {
         return casStorageProperties.getSharedCasCacheSize();
     }
 
+    @ManagedAttribute
+    public long getMaxWeight()
+    {
+        return casStorageProperties.getSharedCasCacheMaxWeight().toBytes();
+    }
+
     @ManagedAttribute
     public double getUtilizationRate()
     {
-        long max = getMaxCount();
+        long max = getMaxWeight();
 
         if (max == 0) {
             return 0;
         }
 
-        return getActiveCount() / max;
+        return (double) getActiveWeight() / max;
+    }
+
+    @ManagedAttribute
+    public String[] getProjectStats()
+    {
+        return casStorageService.getSharedAccessCacheProjectStats().values().stream() //
+                .map(SharedCasCacheStats::toString) //
+                .toArray(String[]::new);
+    }
+
+    @ManagedOperation
+    @ManagedOperationParameter(name = "projectId", description = "Project ID")
+    public long getProjectHitCount(long aProjectId)
+    {
+        return casStorageService.getSharedAccessCacheProjectStats(aProjectId).getHitCount();
+    }
+
+    @ManagedOperation
+    @ManagedOperationParameter(name = "projectId", description = "Project ID")
+    public long getProjectMissCount(long aProjectId)
+    {
+        return casStorageService.getSharedAccessCacheProjectStats(aProjectId).getMissCount();
+    }
+
+    @ManagedOperation
+    @ManagedOperationParameter(name = "projectId", description = "Project ID")
+    public long getProjectEvictionCount(long aProjectId)
+    {
+        SharedCasCacheStats stats = casStorageService
+                .getSharedAccessCacheProjectStats(aProjectId);
+        return stats.getEvictionCount() + stats.getQuotaEvictionCount();
+    }
+
+    @ManagedOperation
+    @ManagedOperationParameter(name = "projectId", description = "Project ID")
+    public long getProjectWeight(long aProjectId)
+    {
+        return casStorageService.getSharedAccessCacheProjectStats(aProjectId).getWeight();
     }
 }
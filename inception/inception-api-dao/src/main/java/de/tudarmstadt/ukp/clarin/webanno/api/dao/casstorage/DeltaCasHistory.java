@@ -0,0 +1,384 @@
+/*
+ * Licensed to the Technische Universität Darmstadt under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The Technische Universität Darmstadt 
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.
+ *  
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.clarin.webanno.api.dao.casstorage;
+
+import static java.nio.channels.FileChannel.MapMode.READ_ONLY;
+import static java.nio.file.StandardOpenOption.CREATE_NEW;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static java.util.Comparator.comparingLong;
+import static java.util.stream.Collectors.toList;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Append-only CAS history of a single user on a single document. The history is organized in
+ * segments. Each segment is a file which starts with a full snapshot of the CAS data followed by
+ * deltas against that snapshot. Restoring any version thus requires at most reading the snapshot
+ * and applying a single delta. Segments are memory-mapped for reading and pruned as a whole. The
+ * data should not be compressed, otherwise even small changes yield large deltas.
+ */
+public class DeltaCasHistory
+{
+    public static final String SEGMENT_EXTENSION = ".seg";
+
+    private static final byte[] MAGIC = { 'I', 'H', 'S', 'T' };
+    private static final byte VERSION = 1;
+    private static final int HEADER_LENGTH = MAGIC.length + 1;
+    private static final int ENTRY_HEADER_LENGTH = Long.BYTES + 1 + Integer.BYTES;
+
+    private static final byte SNAPSHOT = 0;
+    private static final byte DELTA = 1;
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
+    private final File folder;
+    private final String user;
+    private final int snapshotInterval;
+
+    /**
+     * @param aFolder
+     *            the annotation folder of the document.
+     * @param aUser
+     *            the user whose history is managed.
+     * @param aSnapshotInterval
+     *            maximum number of deltas following a snapshot in a segment.
+     */
+    public DeltaCasHistory(File aFolder, String aUser, int aSnapshotInterval)
+    {
+        folder = aFolder;
+        user = aUser;
+        snapshotInterval = aSnapshotInterval;
+    }
+
+    /**
+     * @return the timestamps of all versions in the history (oldest first).
+     */
+    public List<Long> listVersions() throws IOException
+    {
+        List<Long> versions = new ArrayList<>();
+        for (Segment segment : listSegments()) {
+            for (Entry entry : segment.entries()) {
+                versions.add(entry.timestamp);
+            }
+        }
+        return versions;
+    }
+
+    public Optional<Long> getLatestVersion() throws IOException
+    {
+        List<Segment> segments = listSegments();
+        if (segments.isEmpty()) {
+            return Optional.empty();
+        }
+
+        List<Entry> entries = segments.get(segments.size() - 1).entries();
+        return Optional.of(entries.get(entries.size() - 1).timestamp);
+    }
+
+    /**
+     * Adds the given file contents as a new version to the history.
+     * 
+     * @param aTimestamp
+     *            the timestamp of the version.
+     * @param aData
+     *            the contents of the CAS file.
+     */
+    public void append(long aTimestamp, byte[] aData) throws IOException
+    {
+        List<Segment> segments = listSegments();
+
+        if (!segments.isEmpty()) {
+            Segment segment = segments.get(segments.size() - 1);
+            ByteBuffer buffer = segment.map();
+            List<Entry> entries = segment.entries(buffer);
+
+            // Start a new segment if the current one has reached its maximum number of deltas
+            if (entries.size() <= snapshotInterval) {
+                byte[] snapshot = new byte[entries.get(0).length];
+                entries.get(0).payload(buffer).get(snapshot);
+                byte[] delta = BinaryDelta.encode(snapshot, aData);
+
+                // Start a new segment if the data has drifted away too far from the snapshot
+                if (delta.length < aData.length / 2) {
+                    Entry last = entries.get(entries.size() - 1);
+                    long end = last.offset + last.length;
+                    try (FileChannel channel = FileChannel.open(segment.file.toPath(), WRITE)) {
+                        // Drop any incomplete entry left over from an interrupted write
+                        channel.truncate(end);
+                        channel.position(end);
+                        writeEntry(channel, aTimestamp, DELTA, delta);
+                        channel.force(false);
+                    }
+
+                    log.trace("Appended delta of {} bytes for {} bytes to history segment [{}]",
+                            delta.length, aData.length, segment.file);
+                    return;
+                }
+            }
+        }
+
+        File segmentFile = new File(folder, segmentName(aTimestamp));
+        try (FileChannel channel = FileChannel.open(segmentFile.toPath(), WRITE, CREATE_NEW)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+            header.put(MAGIC);
+            header.put(VERSION);
+            header.flip();
+            writeFully(channel, header);
+            writeEntry(channel, aTimestamp, SNAPSHOT, aData);
+            channel.force(false);
+        }
+
+        log.trace("Started new history segment [{}] with snapshot of {} bytes", segmentFile,
+                aData.length);
+    }
+
+    /**
+     * Restores the contents of the CAS file at the given version.
+     * 
+     * @param aTimestamp
+     *            the timestamp of the version.
+     * @return the contents of the CAS file if the version exists.
+     */
+    public Optional<byte[]> read(long aTimestamp) throws IOException
+    {
+        List<Segment> segments = listSegments();
+        for (int i = segments.size() - 1; i >= 0; i--) {
+            Segment segment = segments.get(i);
+            if (segment.start > aTimestamp) {
+                continue;
+            }
+
+            ByteBuffer buffer = segment.map();
+            List<Entry> entries = segment.entries(buffer);
+            for (Entry entry : entries) {
+                if (entry.timestamp != aTimestamp) {
+                    continue;
+                }
+
+                if (entry.kind == SNAPSHOT) {
+                    byte[] data = new byte[entry.length];
+                    entry.payload(buffer).get(data);
+                    return Optional.of(data);
+                }
+
+                return Optional.of(BinaryDelta.apply(entries.get(0).payload(buffer),
+                        entry.payload(buffer)));
+            }
+
+            break;
+        }
+
+        return Optional.empty();
+    }
+
+    /**
+     * Removes old segments. Segments are only ever removed as a whole and the segment holding the
+     * latest version is always retained.
+     * 
+     * @param aKeepNumber
+     *            minimum number of versions to retain (0 for unlimited).
+     * @param aKeepTime
+     *            maximum age in milliseconds of versions to retain (0 for unlimited).
+     * @param aNow
+     *            the reference point in time for the age.
+     * @return the number of removed segments.
+     */
+    public int prune(int aKeepNumber, long aKeepTime, long aNow) throws IOException
+    {
+        List<Segment> segments = listSegments();
+        List<List<Entry>> entries = new ArrayList<>();
+        int total = 0;
+        for (Segment segment : segments) {
+            List<Entry> segmentEntries = segment.entries();
+            entries.add(segmentEntries);
+            total += segmentEntries.size();
+        }
+
+        int removed = 0;
+        for (int i = 0; i < segments.size() - 1; i++) {
+            List<Entry> segmentEntries = entries.get(i);
+            long latest = segmentEntries.get(segmentEntries.size() - 1).timestamp;
+
+            boolean surplus = aKeepNumber > 0 && total - segmentEntries.size() >= aKeepNumber;
+            boolean outdated = aKeepTime > 0 && latest + aKeepTime < aNow;
+            if (!surplus && !outdated) {
+                break;
+            }
+
+            File file = segments.get(i).file;
+            try {
+                Files.delete(file.toPath());
+            }
+            catch (IOException e) {
+                // The file may still be mapped on some platforms - try again next time
+                log.warn("Unable to remove history segment [{}]: {}", file, e.getMessage());
+                break;
+            }
+
+            total -= segmentEntries.size();
+            removed++;
+            log.debug("Removed history segment [{}] containing {} versions", file.getName(),
+                    segmentEntries.size());
+        }
+
+        return removed;
+    }
+
+    private String segmentName(long aTimestamp)
+    {
+        return user + FileSystemCasStorageDriver.SER_CAS_EXTENSION + "." + aTimestamp
+                + SEGMENT_EXTENSION;
+    }
+
+    private List<Segment> listSegments()
+    {
+        Matcher matcher = Pattern.compile(Pattern.quote(user)
+                + Pattern.quote(FileSystemCasStorageDriver.SER_CAS_EXTENSION) + "\\.([0-9]+)"
+                + Pattern.quote(SEGMENT_EXTENSION)).matcher("");
+
+        File[] files = folder.listFiles();
+        if (files == null) {
+            return new ArrayList<>();
+        }
+
+        return Arrays.stream(files) //
+                .filter(f -> matcher.reset(f.getName()).matches()) //
+                .map(f -> new Segment(f, Long.parseLong(matcher.group(1)))) //
+                .sorted(comparingLong(s -> s.start)) //
+                .collect(toList());
+    }
+
+    private static void writeEntry(FileChannel aChannel, long aTimestamp, byte aKind, byte[] aData)
+        throws IOException
+    {
+        ByteBuffer header = ByteBuffer.allocate(ENTRY_HEADER_LENGTH);
+        header.putLong(aTimestamp);
+        header.put(aKind);
+        header.putInt(aData.length);
+        header.flip();
+        writeFully(aChannel, header);
+        writeFully(aChannel, ByteBuffer.wrap(aData));
+    }
+
+    private static void writeFully(FileChannel aChannel, ByteBuffer aBuffer) throws IOException
+    {
+        while (aBuffer.hasRemaining()) {
+            aChannel.write(aBuffer);
+        }
+    }
+
+    private static class Segment
+    {
+        private final File file;
+        private final long start;
+
+        public Segment(File aFile, long aStart)
+        {
+            file = aFile;
+            start = aStart;
+        }
+
+        public ByteBuffer map() throws IOException
+        {
+            try (FileChannel channel = FileChannel.open(file.toPath(), READ)) {
+                return channel.map(READ_ONLY, 0, channel.size());
+            }
+        }
+
+        public List<Entry> entries() throws IOException
+        {
+            return entries(map());
+        }
+
+        /**
+         * Scans the entries in the segment. An incomplete trailing entry (e.g. due to an
+         * interrupted write) is ignored.
+         */
+        public List<Entry> entries(ByteBuffer aBuffer) throws IOException
+        {
+            byte[] magic = new byte[MAGIC.length];
+            if (aBuffer.limit() < HEADER_LENGTH) {
+                throw new IOException("History segment [" + file + "] is truncated");
+            }
+            aBuffer.duplicate().get(magic);
+            if (!Arrays.equals(MAGIC, magic) || aBuffer.get(MAGIC.length) != VERSION) {
+                throw new IOException("[" + file + "] is not a supported history segment");
+            }
+
+            List<Entry> entries = new ArrayList<>();
+            int pos = HEADER_LENGTH;
+            while (pos + ENTRY_HEADER_LENGTH <= aBuffer.limit()) {
+                long timestamp = aBuffer.getLong(pos);
+                byte kind = aBuffer.get(pos + Long.BYTES);
+                int length = aBuffer.getInt(pos + Long.BYTES + 1);
+                int offset = pos + ENTRY_HEADER_LENGTH;
+                if (length < 0 || offset + length > aBuffer.limit()) {
+                    break;
+                }
+
+                entries.add(new Entry(timestamp, kind, offset, length));
+                pos = offset + length;
+            }
+
+            if (entries.isEmpty() || entries.get(0).kind != SNAPSHOT) {
+                throw new IOException(
+                        "History segment [" + file + "] does not start with a snapshot");
+            }
+
+            return entries;
+        }
+    }
+
+    private static class Entry
+    {
+        private final long timestamp;
+        private final byte kind;
+        private final int offset;
+        private final int length;
+
+        public Entry(long aTimestamp, byte aKind, int aOffset, int aLength)
+        {
+            timestamp = aTimestamp;
+            kind = aKind;
+            offset = aOffset;
+            length = aLength;
+        }
+
+        public ByteBuffer payload(ByteBuffer aBuffer)
+        {
+            ByteBuffer payload = aBuffer.duplicate();
+            payload.position(offset);
+            payload.limit(offset + length);
+            return payload.slice();
+        }
+    }
+}
@@ -22,18 +22,24 @@ import static de.tudarmstadt.ukp.clarin.webanno.api.ProjectService.DOCUMENT_FOLD
 import static de.tudarmstadt.ukp.clarin.webanno.api.ProjectService.PROJECT_FOLDER;
 import static de.tudarmstadt.ukp.clarin.webanno.api.annotation.util.WebAnnoCasUtil.setDocumentId;
 import static de.tudarmstadt.ukp.clarin.webanno.api.dao.casstorage.CasMetadataUtils.failOnConcurrentModification;
+import static de.tudarmstadt.ukp.clarin.webanno.api.dao.casstorage.config.BackupMode.DELTA;
 import static java.lang.System.currentTimeMillis;
 import static java.nio.file.Files.move;
 import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.util.Arrays.asList;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileFilter;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Optional;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -44,18 +50,23 @@ import org.apache.commons.io.comparator.LastModifiedFileComparator;
 import org.apache.commons.lang3.Validate;
 import org.apache.uima.UIMAException;
 import org.apache.uima.cas.CAS;
+import org.apache.uima.cas.impl.BinaryCasSerDes6.CompressLevel;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import de.tudarmstadt.ukp.clarin.webanno.api.annotation.util.WebAnnoCasUtil;
 import de.tudarmstadt.ukp.clarin.webanno.api.config.RepositoryProperties;
 import de.tudarmstadt.ukp.clarin.webanno.api.dao.casstorage.config.BackupProperties;
+import de.tudarmstadt.ukp.clarin.webanno.api.dao.casstorage.config.CasStorageFormat;
+import de.tudarmstadt.ukp.clarin.webanno.api.dao.casstorage.config.FileSystemCasStorageProperties;
 import de.tudarmstadt.ukp.clarin.webanno.model.SourceDocument;
 import de.tudarmstadt.ukp.clarin.webanno.support.wicket.WicketUtil;
 
 public class FileSystemCasStorageDriver
     implements CasStorageDriver
 {
+    // The extension is kept for all formats (see CasFileFormat) - the actual format of a file is
+    // detected from its content
     public static final String SER_CAS_EXTENSION = ".ser";
     public static final String OLD_EXTENSION = ".old";
 
@@ -64,15 +75,49 @@ public class FileSystemCasStorageDriver
     private final RepositoryProperties repositoryProperties;
     private final BackupProperties backupProperties;
 
+    private final List<CasFileFormat> readFormats;
+    private final CasFileFormat writeFormat;
+    private final BinaryCasFileFormat historyFormat;
+
     public FileSystemCasStorageDriver(RepositoryProperties aRepositoryProperties,
             BackupProperties aBackupProperties)
+    {
+        this(aRepositoryProperties, aBackupProperties, new FileSystemCasStorageProperties());
+    }
+
+    public FileSystemCasStorageDriver(RepositoryProperties aRepositoryProperties,
+            BackupProperties aBackupProperties,
+            FileSystemCasStorageProperties aFileSystemCasStorageProperties)
     {
         repositoryProperties = aRepositoryProperties;
         backupProperties = aBackupProperties;
 
+        SerializedCasFileFormat serializedFormat = new SerializedCasFileFormat();
+        BinaryCasFileFormat binaryFormat = new BinaryCasFileFormat();
+        readFormats = asList(serializedFormat, binaryFormat);
+        // Deltas between two versions of a compressed file are hardly smaller than the file
+        historyFormat = new BinaryCasFileFormat(CompressLevel.None);
+
+        switch (aFileSystemCasStorageProperties.getFormat()) {
+        case BINARY:
+            writeFormat = binaryFormat;
+            break;
+        case SERIALIZED:
+            writeFormat = serializedFormat;
+            break;
+        default:
+            throw new IllegalArgumentException("Unsupported CAS storage format ["
+                    + aFileSystemCasStorageProperties.getFormat() + "]");
+        }
+
+        log.info("CAS storage format: {}", aFileSystemCasStorageProperties.getFormat());
+
         if (backupProperties.getInterval() > 0) {
-            log.info("CAS backups enabled - interval: {}sec  max-backups: {}  max-age: {}sec",
-                    backupProperties.getInterval(), backupProperties.getKeep().getNumber(),
+            log.info(
+                    "CAS backups enabled - mode: {}  interval: {}sec  max-backups: {}  "
+                            + "max-age: {}sec",
+                    backupProperties.getMode(), backupProperties.getInterval(),
+                    backupProperties.getKeep().getNumber(),
                     backupProperties.getKeep().getTime());
         }
         else {
@@ -114,7 +159,7 @@ public class FileSystemCasStorageDriver
         }
 
         try {
-            CasPersistenceUtils.readSerializedCas(cas, casFile);
+            readCasFile(aDocument.getProject().getId(), casFile, cas);
             // Add/update the CAS metadata
             CasMetadataUtils.addOrUpdateCasMetadata(cas, casFile.lastModified(), aDocument, aUser);
         }
@@ -157,7 +202,8 @@ public class FileSystemCasStorageDriver
             // Now write the new version to "<username>.ser" or CURATION_USER.ser
             long start = currentTimeMillis();
             setDocumentId(aCas, aUserName);
-            writeSerializedCas(aCas, currentVersion);
+            writeFormat.write(getProjectFolder(aDocument.getProject().getId()), currentVersion,
+                    aCas);
             long duration = currentTimeMillis() - start;
 
             log.debug(
@@ -213,7 +259,7 @@ public class FileSystemCasStorageDriver
         CasMetadataUtils.addOrUpdateCasMetadata(aCas, currentVersion.lastModified(), aDocument,
                 aUserName);
 
-        manageHistory(currentVersion, aDocument, aUserName);
+        manageHistory(currentVersion, aDocument, aUserName, aCas);
 
         WicketUtil.serverTiming("realWriteCas", currentTimeMillis() - t0);
     }
@@ -238,7 +284,36 @@ public class FileSystemCasStorageDriver
         return annotationFolder;
     }
 
-    private void manageHistory(File aCurrentVersion, SourceDocument aDocument, String aUserName)
+    private File getProjectFolder(long aProjectId)
+    {
+        return new File(repositoryProperties.getPath(), "/" + PROJECT_FOLDER + "/" + aProjectId);
+    }
+
+    private CasFileFormat detectFormat(File aFile) throws IOException
+    {
+        byte[] header = new byte[CasFileFormat.HEADER_LENGTH];
+        int length;
+        try (InputStream is = Files.newInputStream(aFile.toPath())) {
+            length = IOUtils.read(is, header);
+        }
+
+        byte[] actualHeader = Arrays.copyOf(header, length);
+        for (CasFileFormat format : readFormats) {
+            if (format.isFormatOf(actualHeader)) {
+                return format;
+            }
+        }
+
+        throw new IOException("Unable to determine the format of the CAS file [" + aFile + "]");
+    }
+
+    private void readCasFile(long aProjectId, File aFile, CAS aCas) throws IOException
+    {
+        detectFormat(aFile).read(getProjectFolder(aProjectId), aFile, aCas);
+    }
+
+    private void manageHistory(File aCurrentVersion, SourceDocument aDocument, String aUserName,
+            CAS aCas)
         throws IOException
     {
         if (backupProperties.getInterval() <= 0) {
@@ -250,6 +325,11 @@ public class FileSystemCasStorageDriver
         // Determine the reference point in time based on the current version
         long now = aCurrentVersion.lastModified();
 
+        if (backupProperties.getMode() == DELTA) {
+            manageDeltaHistory(annotationFolder, aCas, now, aDocument, aUserName);
+            return;
+        }
+
         // Get all history files for the current user
         File[] history = annotationFolder.listFiles(new FileFilter()
         {
@@ -332,6 +412,37 @@ public class FileSystemCasStorageDriver
         }
     }
 
+    private void manageDeltaHistory(File aAnnotationFolder, CAS aCas, long aNow,
+            SourceDocument aDocument, String aUserName)
+        throws IOException
+    {
+        DeltaCasHistory history = new DeltaCasHistory(aAnnotationFolder, aUserName,
+                backupProperties.getDelta().getSnapshotInterval());
+
+        // Check if the newest history entry is significantly older than the current one
+        Optional<Long> latest = history.getLatestVersion();
+        if (latest.isPresent()
+                && latest.get() + (backupProperties.getInterval() * 1000) >= aNow) {
+            return;
+        }
+
+        // The history always uses the uncompressed binary format irrespective of the format of
+        // the current version, so small changes to the CAS result in small deltas
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        historyFormat.write(getProjectFolder(aDocument.getProject().getId()), bos, aCas);
+        history.append(aNow, bos.toByteArray());
+
+        int removed = history.prune(backupProperties.getKeep().getNumber(),
+                backupProperties.getKeep().getTime() * 1000, aNow);
+        if (removed > 0) {
+            log.debug(
+                    "Removed {} history segments of user [{}] for document [{}]({}) in "
+                            + "project [{}]({})",
+                    removed, aUserName, aDocument.getName(), aDocument.getId(),
+                    aDocument.getProject().getName(), aDocument.getProject().getId());
+        }
+    }
+
     // Public for testing
     public File getCasFile(SourceDocument aDocument, String aUser) throws IOException
     {
@@ -341,6 +452,11 @@ public class FileSystemCasStorageDriver
         return getCasFile(aDocument.getProject().getId(), aDocument.getId(), aUser);
     }
 
+    /**
+     * Exports the CAS in the {@link CasStorageFormat#SERIALIZED} format, irrespective of the format
+     * in which it is stored. This ensures that exported data is self-contained (i.e. includes the
+     * type system) and can be imported by older versions.
+     */
     @Override
     public void exportCas(SourceDocument aDocument, String aUser, OutputStream aStream)
         throws IOException
@@ -348,9 +464,26 @@ public class FileSystemCasStorageDriver
         Validate.notNull(aDocument, "Source document must be specified");
         Validate.notBlank(aUser, "User must be specified");
 
-        try (InputStream is = Files.newInputStream(getCasFile(aDocument, aUser).toPath())) {
-            IOUtils.copyLarge(is, aStream);
+        File casFile = getCasFile(aDocument, aUser);
+        CasFileFormat format = detectFormat(casFile);
+
+        if (format instanceof SerializedCasFileFormat) {
+            try (InputStream is = Files.newInputStream(casFile.toPath())) {
+                IOUtils.copyLarge(is, aStream);
+            }
+            return;
+        }
+
+        CAS cas;
+        try {
+            cas = WebAnnoCasUtil.createCas();
         }
+        catch (UIMAException e) {
+            throw new IOException("Unable to create empty CAS", e);
+        }
+
+        format.read(getProjectFolder(aDocument.getProject().getId()), casFile, cas);
+        CasPersistenceUtils.writeSerializedCas(cas, aStream);
     }
 
     @Override
@@ -370,11 +503,6 @@ public class FileSystemCasStorageDriver
         return new File(getAnnotationFolder(aProjectId, aDocumentId), aUser + SER_CAS_EXTENSION);
     }
 
-    private void writeSerializedCas(CAS aCas, File aFile) throws IOException
-    {
-        CasPersistenceUtils.writeSerializedCas(aCas, aFile);
-    }
-
     @Override
     public boolean deleteCas(SourceDocument aDocument, String aUser) throws IOException
     {
@@ -387,6 +515,25 @@ public class FileSystemCasStorageDriver
         return getCasFile(aDocument, aUser).exists();
     }
 
+    @Override
+    public void syncCas(SourceDocument aDocument, String aUser) throws IOException
+    {
+        File casFile = getCasFile(aDocument, aUser);
+        try (FileChannel channel = FileChannel.open(casFile.toPath(), READ)) {
+            channel.force(true);
+        }
+
+        // Also make sure the rename of the file is durable. Not all platforms support opening a
+        // directory for this purpose.
+        try (FileChannel channel = FileChannel.open(casFile.getParentFile().toPath(), READ)) {
+            channel.force(true);
+        }
+        catch (IOException e) {
+            log.trace("Unable to sync directory [{}]: {}", casFile.getParentFile(),
+                    e.getMessage());
+        }
+    }
+
     @Override
     public Optional<CasStorageMetadata> getCasMetadata(SourceDocument aDocument, String aUser)
         throws IOException
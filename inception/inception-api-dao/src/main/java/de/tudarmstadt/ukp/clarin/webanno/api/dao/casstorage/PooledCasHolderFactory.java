@@ -24,10 +24,25 @@ import org.apache.commons.pool2.impl.DefaultPooledObject;
 public class PooledCasHolderFactory
     extends BaseKeyedPooledObjectFactory<CasKey, CasHolder>
 {
+    private final CasHolderRegistry registry;
+
+    public PooledCasHolderFactory(CasHolderRegistry aRegistry)
+    {
+        registry = aRegistry;
+    }
+
     @Override
     public CasHolder create(CasKey aKey) throws Exception
     {
-        return new CasHolder(aKey);
+        CasHolder holder = new CasHolder(aKey);
+        registry.register(holder);
+        return holder;
+    }
+
+    @Override
+    public void destroyObject(CasKey aKey, PooledObject<CasHolder> aP) throws Exception
+    {
+        registry.unregister(aP.getObject());
     }
 
     @Override
@@ -0,0 +1,51 @@
+/*
+ * Licensed to the Technische Universität Darmstadt under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The Technische Universität Darmstadt 
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.
+ *  
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.clarin.webanno.api.dao.casstorage;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.uima.cas.CAS;
+
+/**
+ * Java-serialized {@code CASCompleteSerializer} including the full type system in every file.
+ * 
+ * @see CasPersistenceUtils
+ */
+public class SerializedCasFileFormat
+    implements CasFileFormat
+{
+    @Override
+    public boolean isFormatOf(byte[] aHeader)
+    {
+        // Java serialization stream magic number
+        return aHeader.length >= 2 && aHeader[0] == (byte) 0xAC && aHeader[1] == (byte) 0xED;
+    }
+
+    @Override
+    public void read(File aProjectFolder, File aFile, CAS aCas) throws IOException
+    {
+        CasPersistenceUtils.readSerializedCas(aCas, aFile);
+    }
+
+    @Override
+    public void write(File aProjectFolder, File aFile, CAS aCas) throws IOException
+    {
+        CasPersistenceUtils.writeSerializedCas(aCas, aFile);
+    }
+}
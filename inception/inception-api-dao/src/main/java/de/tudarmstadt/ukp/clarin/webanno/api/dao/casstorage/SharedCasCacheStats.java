@@ -0,0 +1,149 @@
+/*
+ * Licensed to the Technische Universität Darmstadt under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The Technische Universität Darmstadt 
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.
+ *  
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.clarin.webanno.api.dao.casstorage;
+
+import static org.apache.commons.lang3.builder.ToStringStyle.SHORT_PREFIX_STYLE;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+
+/**
+ * Statistics of the shared CAS cache for a single project.
+ */
+public class SharedCasCacheStats
+{
+    private final long projectId;
+
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder evictionCount = new LongAdder();
+    private final LongAdder quotaEvictionCount = new LongAdder();
+    private final AtomicLong entryCount = new AtomicLong();
+    private final AtomicLong weight = new AtomicLong();
+
+    public SharedCasCacheStats(long aProjectId)
+    {
+        projectId = aProjectId;
+    }
+
+    public long getProjectId()
+    {
+        return projectId;
+    }
+
+    /**
+     * @return number of times a CAS of the project was served from the cache.
+     */
+    public long getHitCount()
+    {
+        return hitCount.sum();
+    }
+
+    /**
+     * @return number of times a CAS of the project had to be loaded into the cache.
+     */
+    public long getMissCount()
+    {
+        return missCount.sum();
+    }
+
+    /**
+     * @return number of CASes of the project that were dropped from the cache because it ran out
+     *         of space or because they were not accessed for too long.
+     */
+    public long getEvictionCount()
+    {
+        return evictionCount.sum();
+    }
+
+    /**
+     * @return number of CASes of the project that were dropped from the cache because the project
+     *         exceeded its quota.
+     */
+    public long getQuotaEvictionCount()
+    {
+        return quotaEvictionCount.sum();
+    }
+
+    /**
+     * @return number of CASes of the project currently in the cache.
+     */
+    public long getEntryCount()
+    {
+        return entryCount.get();
+    }
+
+    /**
+     * @return estimated heap size of the CASes of the project currently in the cache.
+     */
+    public long getWeight()
+    {
+        return weight.get();
+    }
+
+    public double getHitRate()
+    {
+        long hits = getHitCount();
+        long requests = hits + getMissCount();
+        return requests == 0 ? 1.0 : (double) hits / requests;
+    }
+
+    void recordHit()
+    {
+        hitCount.increment();
+    }
+
+    void recordMiss()
+    {
+        missCount.increment();
+    }
+
+    void recordEviction()
+    {
+        evictionCount.increment();
+    }
+
+    void recordQuotaEviction()
+    {
+        quotaEvictionCount.increment();
+    }
+
+    void recordAdded(long aWeight)
+    {
+        entryCount.incrementAndGet();
+        weight.addAndGet(aWeight);
+    }
+
+    void recordRemoved(long aWeight)
+    {
+        entryCount.decrementAndGet();
+        weight.addAndGet(-aWeight);
+    }
+
+    @Override
+    public String toString()
+    {
+        return new ToStringBuilder(this, SHORT_PREFIX_STYLE).append("projectId", projectId)
+                .append("entries", getEntryCount()).append("weight", getWeight())
+                .append("hits", getHitCount()).append("misses", getMissCount())
+                .append("evictions", getEvictionCount())
+                .append("quotaEvictions", getQuotaEvictionCount()).toString();
+    }
+}
@@ -0,0 +1,317 @@
+/*
+ * Licensed to the Technische Universität Darmstadt under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The Technische Universität Darmstadt 
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.
+ *  
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.clarin.webanno.api.dao.casstorage;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.apache.uima.cas.CAS;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.tudarmstadt.ukp.clarin.webanno.model.SourceDocument;
+
+/**
+ * Keeps track of deferred CAS writes. Repeated writes to the same CAS are coalesced until the
+ * write is flushed. The actual flushing is performed by the given flusher which is invoked on a
+ * dedicated I/O thread and which is expected to {@link #claim claim} the pending write and to
+ * {@link #complete complete} it once it has been persisted.
+ * <p>
+ * Failed writes are retried with an exponentially growing delay. After {@link #MAX_RETRIES}
+ * failed retries, the write is no longer retried automatically but stays pending until the CAS is
+ * written again or accessed exclusively.
+ */
+class WriteBehindQueue
+{
+    static final int MAX_RETRIES = 5;
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
+    private final Map<CasKey, PendingWrite> pendingWrites = new HashMap<>();
+    private final Map<CasKey, PendingWrite> inFlightWrites = new HashMap<>();
+
+    private final ScheduledExecutorService executor;
+    private final Duration window;
+    private final Consumer<PendingWrite> flusher;
+
+    private final AtomicLong requestedWrites = new AtomicLong();
+    private final AtomicLong completedWrites = new AtomicLong();
+    private final AtomicLong failedWrites = new AtomicLong();
+
+    public WriteBehindQueue(Duration aWindow, int aThreads, Consumer<PendingWrite> aFlusher)
+    {
+        window = aWindow;
+        flusher = aFlusher;
+        executor = new ScheduledThreadPoolExecutor(aThreads, new BasicThreadFactory.Builder() //
+                .namingPattern("cas-write-behind-%d") //
+                .daemon(true) //
+                .build());
+    }
+
+    /**
+     * Records a write of the given CAS. If there is already a pending write for the same CAS, the
+     * two are coalesced. Otherwise, a flush is scheduled at the end of the write window.
+     */
+    public void enqueue(CasKey aKey, SourceDocument aDocument, String aUser, CAS aCas)
+    {
+        requestedWrites.incrementAndGet();
+
+        synchronized (this) {
+            PendingWrite write = pendingWrites.get(aKey);
+            if (write != null) {
+                write.cas = aCas;
+                if (write.failedAttempts <= MAX_RETRIES) {
+                    return;
+                }
+
+                // Retries were exhausted - give the new state of the CAS a fresh chance
+                write.failedAttempts = 0;
+            }
+            else {
+                pendingWrites.put(aKey, new PendingWrite(aKey, aDocument, aUser, aCas));
+            }
+        }
+
+        schedule(aKey, window);
+    }
+
+    /**
+     * Schedules an immediate flush of the pending write for the given CAS (if any).
+     */
+    public void flushSoon(CasKey aKey)
+    {
+        if (isPending(aKey)) {
+            schedule(aKey, Duration.ZERO);
+        }
+    }
+
+    public synchronized boolean isPending(CasKey aKey)
+    {
+        return pendingWrites.containsKey(aKey);
+    }
+
+    /**
+     * Takes over the pending write for the given CAS. The caller must hold exclusive access to the
+     * CAS and must call {@link #complete} after trying to persist it.
+     * 
+     * @return the pending write or {@code null} if there is none.
+     */
+    public synchronized PendingWrite claim(CasKey aKey)
+    {
+        PendingWrite write = pendingWrites.remove(aKey);
+        if (write != null) {
+            inFlightWrites.put(aKey, write);
+        }
+        return write;
+    }
+
+    /**
+     * Marks a claimed write as done. If the write failed, it is put back into the queue and retried
+     * later unless there is already a newer write for the same CAS.
+     */
+    public void complete(PendingWrite aWrite, boolean aSuccess)
+    {
+        synchronized (this) {
+            inFlightWrites.remove(aWrite.key);
+
+            if (aSuccess) {
+                completedWrites.incrementAndGet();
+                return;
+            }
+
+            failedWrites.incrementAndGet();
+
+            // The newer write has already been scheduled
+            if (pendingWrites.containsKey(aWrite.key)) {
+                return;
+            }
+
+            pendingWrites.put(aWrite.key, aWrite);
+        }
+
+        retry(aWrite);
+    }
+
+    /**
+     * Flushes all pending writes and waits for them to complete.
+     */
+    public void shutdown(Duration aTimeout)
+    {
+        List<CasKey> keys;
+        synchronized (this) {
+            keys = new ArrayList<>(pendingWrites.keySet());
+        }
+
+        log.info("Flushing {} pending CAS writes...", keys.size());
+
+        keys.forEach(key -> schedule(key, Duration.ZERO));
+        executor.shutdown();
+
+        try {
+            if (!executor.awaitTermination(aTimeout.toMillis(), TimeUnit.MILLISECONDS)) {
+                executor.shutdownNow();
+            }
+        }
+        catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+
+        synchronized (this) {
+            if (!pendingWrites.isEmpty() || !inFlightWrites.isEmpty()) {
+                log.error("Unable to persist CAS writes before shutdown: {}",
+                        pendingWrites.keySet());
+            }
+        }
+    }
+
+    public synchronized int getPendingWriteCount()
+    {
+        return pendingWrites.size() + inFlightWrites.size();
+    }
+
+    /**
+     * @return number of writes that have been requested.
+     */
+    public long getRequestedWriteCount()
+    {
+        return requestedWrites.get();
+    }
+
+    /**
+     * @return number of writes that have actually been performed. The difference to
+     *         {@link #getRequestedWriteCount()} are the writes that have been coalesced.
+     */
+    public long getCompletedWriteCount()
+    {
+        return completedWrites.get();
+    }
+
+    public long getFailedWriteCount()
+    {
+        return failedWrites.get();
+    }
+
+    /**
+     * Schedules another attempt to persist the given failed write. This is the only place where
+     * failed writes are rescheduled.
+     */
+    private void retry(PendingWrite aWrite)
+    {
+        int attempt;
+        synchronized (this) {
+            aWrite.failedAttempts++;
+            attempt = aWrite.failedAttempts;
+        }
+
+        if (attempt > MAX_RETRIES) {
+            log.error("Unable to persist CAS [{}] after {} retries - giving up retrying. The CAS "
+                    + "will be persisted when it is written again or accessed exclusively.",
+                    aWrite.key, MAX_RETRIES);
+            return;
+        }
+
+        Duration delay = window.multipliedBy(1L << (attempt - 1));
+        log.warn("Retrying to persist CAS [{}] in {} ms (retry {} of {})", aWrite.key,
+                delay.toMillis(), attempt, MAX_RETRIES);
+        schedule(aWrite.key, delay);
+    }
+
+    private void schedule(CasKey aKey, Duration aDelay)
+    {
+        try {
+            executor.schedule(() -> {
+                PendingWrite write;
+                int failedAttempts;
+                synchronized (this) {
+                    write = pendingWrites.get(aKey);
+                    if (write == null) {
+                        return;
+                    }
+                    failedAttempts = write.failedAttempts;
+                }
+
+                flusher.accept(write);
+
+                // If the flusher did not even get to claim the write (e.g. because it could not
+                // obtain exclusive access to the CAS), the write is still pending without a
+                // recorded attempt and nobody has scheduled it again.
+                boolean unclaimed;
+                synchronized (this) {
+                    unclaimed = pendingWrites.get(aKey) == write
+                            && write.failedAttempts == failedAttempts;
+                }
+
+                if (unclaimed) {
+                    failedWrites.incrementAndGet();
+                    retry(write);
+                }
+            }, aDelay.toMillis(), TimeUnit.MILLISECONDS);
+        }
+        catch (RejectedExecutionException e) {
+            log.error("Unable to schedule write of CAS [{}] - queue has been shut down", aKey);
+        }
+    }
+
+    static class PendingWrite
+    {
+        private final CasKey key;
+        private final SourceDocument document;
+        private final String user;
+        private CAS cas;
+        private int failedAttempts;
+
+        PendingWrite(CasKey aKey, SourceDocument aDocument, String aUser, CAS aCas)
+        {
+            key = aKey;
+            document = aDocument;
+            user = aUser;
+            cas = aCas;
+        }
+
+        public CasKey getKey()
+        {
+            return key;
+        }
+
+        public SourceDocument getDocument()
+        {
+            return document;
+        }
+
+        public String getUser()
+        {
+            return user;
+        }
+
+        public CAS getCas()
+        {
+            return cas;
+        }
+    }
+}
@@ -17,6 +17,8 @@
  */
 package de.tudarmstadt.ukp.clarin.webanno.api.dao.casstorage.config;
 
+import static de.tudarmstadt.ukp.clarin.webanno.api.dao.casstorage.config.BackupMode.FILES;
+
 import java.time.Duration;
 
 import org.springframework.boot.context.properties.ConfigurationProperties;
@@ -30,7 +32,9 @@ import org.springframework.boot.context.properties.ConfigurationProperties;
 public class BackupProperties
 {
     private long interval = Duration.ofHours(24).toSeconds();
+    private BackupMode mode = FILES;
     private final KeepOptions keep = new KeepOptions();
+    private final DeltaOptions delta = new DeltaOptions();
 
     public void setInterval(long aInterval)
     {
@@ -42,11 +46,26 @@ public class BackupProperties
         return interval;
     }
 
+    public BackupMode getMode()
+    {
+        return mode;
+    }
+
+    public void setMode(BackupMode aMode)
+    {
+        mode = aMode;
+    }
+
     public KeepOptions getKeep()
     {
         return keep;
     }
 
+    public DeltaOptions getDelta()
+    {
+        return delta;
+    }
+
     public static class KeepOptions
     {
         private long time;
@@ -72,4 +91,23 @@ public class BackupProperties
             number = aNumber;
         }
     }
+
+    public static class DeltaOptions
+    {
+        private int snapshotInterval = 20;
+
+        /**
+         * @return maximum number of deltas following a full snapshot. When this is reached, the
+         *         next backup starts a new segment with a full snapshot.
+         */
+        public int getSnapshotInterval()
+        {
+            return snapshotInterval;
+        }
+
+        public void setSnapshotInterval(int aSnapshotInterval)
+        {
+            snapshotInterval = aSnapshotInterval;
+        }
+    }
 }
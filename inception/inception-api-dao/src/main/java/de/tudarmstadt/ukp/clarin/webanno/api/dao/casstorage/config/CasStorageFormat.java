@@ -0,0 +1,34 @@
+/*
+ * Licensed to the Technische Universität Darmstadt under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The Technische Universität Darmstadt 
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.
+ *  
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.clarin.webanno.api.dao.casstorage.config;
+
+public enum CasStorageFormat
+{
+    /**
+     * Java-serialized {@code CASCompleteSerializer}. Each file contains the full type system of the
+     * CAS. This is the format used by all versions prior to the introduction of this setting and
+     * it is also the format used in project exports.
+     */
+    SERIALIZED,
+
+    /**
+     * UIMA compressed binary format (form 6). The type system is stored only once per project and
+     * each CAS file refers to it.
+     */
+    BINARY;
+}
@@ -19,6 +19,8 @@ package de.tudarmstadt.ukp.clarin.webanno.api.dao.casstorage.config;
 
 import java.time.Duration;
 
+import org.springframework.util.unit.DataSize;
+
 public interface CasStorageProperties
 {
     /**
@@ -34,7 +36,23 @@ public interface CasStorageProperties
     Duration getIdleCasEvictionDelay();
 
     /**
-     * @return number of CAS instances that should be kept in memory for shared-read-only access.
+     * @return estimated amount of heap that the CAS instances kept in memory for shared-read-only
+     *         access may occupy.
+     */
+    DataSize getSharedCasCacheMaxWeight();
+
+    /**
+     * @return approximate number of CAS instances that fit into the shared-read-only cache.
+     * @deprecated The shared CAS cache is bounded by weight. Use
+     *             {@link #getSharedCasCacheMaxWeight()} instead.
      */
+    @Deprecated
     long getSharedCasCacheSize();
+
+    /**
+     * @return fraction of the shared CAS cache that the CASes of a single project may occupy
+     *         before the least recently used CASes of that project are dropped. A value of
+     *         {@code 1.0} or more disables the quota.
+     */
+    double getSharedCasCacheProjectQuota();
 }
@@ -19,7 +19,10 @@ package de.tudarmstadt.ukp.clarin.webanno.api.dao.casstorage.config;
 
 import java.time.Duration;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
 
 /**
  * <p>
@@ -30,11 +33,23 @@ import org.springframework.boot.context.properties.ConfigurationProperties;
 public class CasStoragePropertiesImpl
     implements CasStorageProperties
 {
+    private static final Logger LOG = LoggerFactory.getLogger(CasStoragePropertiesImpl.class);
+
+    /**
+     * Assumed heap size of a CAS used to translate the deprecated count-based cache size into a
+     * weight.
+     */
+    public static final DataSize LEGACY_AVERAGE_CAS_SIZE = DataSize.ofMegabytes(1);
+
     private Duration idleCasEvictionDelay = Duration.ofMinutes(5);
 
     private Duration casBorrowWaitTimeout = Duration.ofMinutes(3);
 
-    private long sharedCasCacheSize = getDefaultCasCacheSize();
+    private DataSize sharedCasCacheMaxWeight;
+
+    private Long legacySharedCasCacheSize;
+
+    private double sharedCasCacheProjectQuota = 0.5;
 
     @Override
     public Duration getIdleCasEvictionDelay()
@@ -59,42 +74,69 @@ public class CasStoragePropertiesImpl
     }
 
     @Override
-    public long getSharedCasCacheSize()
+    public DataSize getSharedCasCacheMaxWeight()
     {
-        return sharedCasCacheSize;
+        if (sharedCasCacheMaxWeight != null) {
+            return sharedCasCacheMaxWeight;
+        }
+
+        if (legacySharedCasCacheSize != null) {
+            return DataSize
+                    .ofBytes(legacySharedCasCacheSize * LEGACY_AVERAGE_CAS_SIZE.toBytes());
+        }
+
+        return getDefaultCasCacheMaxWeight();
     }
 
-    public void setSharedCasCacheSize(long aSharedCasCacheSize)
+    public void setSharedCasCacheMaxWeight(DataSize aSharedCasCacheMaxWeight)
     {
-        sharedCasCacheSize = aSharedCasCacheSize;
+        sharedCasCacheMaxWeight = aSharedCasCacheMaxWeight;
     }
 
-    private static final long MB = 1024 * 1024;
-
-    public static long getDefaultCasCacheSize()
+    @Deprecated
+    @Override
+    public long getSharedCasCacheSize()
     {
-        long maxMemory = Runtime.getRuntime().maxMemory();
-
-        if (maxMemory < 256 * MB) {
-            return 10;
+        if (legacySharedCasCacheSize != null && sharedCasCacheMaxWeight == null) {
+            return legacySharedCasCacheSize;
         }
 
-        if (maxMemory < 512 * MB) {
-            return 50;
-        }
+        return getSharedCasCacheMaxWeight().toBytes() / LEGACY_AVERAGE_CAS_SIZE.toBytes();
+    }
 
-        if (maxMemory < 1024 * MB) {
-            return 250;
-        }
+    /**
+     * Alias for {@link #setSharedCasCacheMaxWeight} which assumes that every CAS takes up
+     * {@link #LEGACY_AVERAGE_CAS_SIZE}. If the maximum weight is set explicitly, it takes
+     * precedence.
+     * 
+     * @param aSharedCasCacheSize
+     *            number of CAS instances to keep in memory for shared-read-only access.
+     * @deprecated Use {@link #setSharedCasCacheMaxWeight} instead.
+     */
+    @Deprecated
+    public void setSharedCasCacheSize(long aSharedCasCacheSize)
+    {
+        LOG.warn("The setting [cas-storage.cache.shared-cas-cache-size] is deprecated - use "
+                + "[cas-storage.cache.shared-cas-cache-max-weight] instead. Assuming [{}] per "
+                + "CAS, the shared CAS cache may occupy [{}].", LEGACY_AVERAGE_CAS_SIZE,
+                DataSize.ofBytes(aSharedCasCacheSize * LEGACY_AVERAGE_CAS_SIZE.toBytes()));
+        legacySharedCasCacheSize = aSharedCasCacheSize;
+    }
 
-        if (maxMemory < 2048 * MB) {
-            return 750;
-        }
+    @Override
+    public double getSharedCasCacheProjectQuota()
+    {
+        return sharedCasCacheProjectQuota;
+    }
 
-        if (maxMemory < 4096 * MB) {
-            return 1500;
-        }
+    public void setSharedCasCacheProjectQuota(double aSharedCasCacheProjectQuota)
+    {
+        sharedCasCacheProjectQuota = aSharedCasCacheProjectQuota;
+    }
 
-        return 5000;
+    public static DataSize getDefaultCasCacheMaxWeight()
+    {
+        // By default, permit the shared CASes to use up to a quarter of the heap
+        return DataSize.ofBytes(Runtime.getRuntime().maxMemory() / 4);
     }
 }
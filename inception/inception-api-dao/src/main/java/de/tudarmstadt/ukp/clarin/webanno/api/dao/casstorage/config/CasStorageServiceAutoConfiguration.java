@@ -19,6 +19,7 @@ package de.tudarmstadt.ukp.clarin.webanno.api.dao.casstorage.config;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
@@ -31,23 +32,28 @@ import de.tudarmstadt.ukp.clarin.webanno.api.dao.casstorage.FileSystemCasStorage
 import de.tudarmstadt.ukp.clarin.webanno.diag.CasDoctor;
 
 @Configuration
-@EnableConfigurationProperties({ CasStoragePropertiesImpl.class, BackupProperties.class })
+@EnableConfigurationProperties({ CasStoragePropertiesImpl.class, BackupProperties.class,
+        FileSystemCasStorageProperties.class, WriteBehindProperties.class })
 public class CasStorageServiceAutoConfiguration
 {
     @Bean(CasStorageService.SERVICE_NAME)
     public CasStorageService casStorageService(CasStorageDriver aDriver,
             @Autowired(required = false) CasDoctor aCasDoctor,
             @Autowired(required = false) AnnotationSchemaService aSchemaService,
-            CasStorageProperties aCasStorageProperties)
+            CasStorageProperties aCasStorageProperties,
+            WriteBehindProperties aWriteBehindProperties,
+            ApplicationEventPublisher aApplicationEventPublisher)
     {
         return new CasStorageServiceImpl(aDriver, aCasDoctor, aSchemaService,
-                aCasStorageProperties);
+                aCasStorageProperties, aWriteBehindProperties, aApplicationEventPublisher);
     }
 
     @Bean
     CasStorageDriver fileSystemCasStorageDriver(RepositoryProperties aRepositoryProperties,
-            BackupProperties aBackupProperties)
+            BackupProperties aBackupProperties,
+            FileSystemCasStorageProperties aFileSystemCasStorageProperties)
     {
-        return new FileSystemCasStorageDriver(aRepositoryProperties, aBackupProperties);
+        return new FileSystemCasStorageDriver(aRepositoryProperties, aBackupProperties,
+                aFileSystemCasStorageProperties);
     }
 }
@@ -0,0 +1,114 @@
+/*
+ * Licensed to the Technische Universität Darmstadt under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The Technische Universität Darmstadt 
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.
+ *  
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.clarin.webanno.api.dao.casstorage.config;
+
+import static de.tudarmstadt.ukp.clarin.webanno.api.dao.casstorage.config.FsyncPolicy.NONE;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * <p>
+ * This class is exposed as a Spring Component via {@link CasStorageServiceAutoConfiguration}.
+ * </p>
+ */
+@ConfigurationProperties("cas-storage.write-behind")
+public class WriteBehindProperties
+{
+    private boolean enabled = false;
+
+    private Duration window = Duration.ofSeconds(2);
+
+    private int ioThreads = 1;
+
+    private Duration shutdownTimeout = Duration.ofMinutes(1);
+
+    private FsyncPolicy fsync = NONE;
+
+    /**
+     * @return whether writes of CASes held in exclusive access are deferred and performed in the
+     *         background. The {@code AfterCasWrittenEvent} is still published when the CAS is
+     *         written, while the {@code AfterCasPersistedEvent} is only published once the
+     *         deferred write has been performed.
+     */
+    public boolean isEnabled()
+    {
+        return enabled;
+    }
+
+    public void setEnabled(boolean aEnabled)
+    {
+        enabled = aEnabled;
+    }
+
+    /**
+     * @return maximum time a write is deferred. Repeated writes to the same CAS within this window
+     *         are coalesced into a single write.
+     */
+    public Duration getWindow()
+    {
+        return window;
+    }
+
+    public void setWindow(Duration aWindow)
+    {
+        window = aWindow;
+    }
+
+    /**
+     * @return number of threads performing the deferred writes.
+     */
+    public int getIoThreads()
+    {
+        return ioThreads;
+    }
+
+    public void setIoThreads(int aIoThreads)
+    {
+        ioThreads = aIoThreads;
+    }
+
+    /**
+     * @return maximum time to wait for pending writes to complete when the application shuts
+     *         down.
+     */
+    public Duration getShutdownTimeout()
+    {
+        return shutdownTimeout;
+    }
+
+    public void setShutdownTimeout(Duration aShutdownTimeout)
+    {
+        shutdownTimeout = aShutdownTimeout;
+    }
+
+    /**
+     * @return whether written CAS files are forced to disk. This applies to all writes, not only
+     *         to deferred ones.
+     */
+    public FsyncPolicy getFsync()
+    {
+        return fsync;
+    }
+
+    public void setFsync(FsyncPolicy aFsync)
+    {
+        fsync = aFsync;
+    }
+}
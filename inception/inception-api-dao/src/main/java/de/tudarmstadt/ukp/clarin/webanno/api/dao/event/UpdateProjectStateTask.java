@@ -17,6 +17,7 @@
  */
 package de.tudarmstadt.ukp.clarin.webanno.api.dao.event;
 
+import static de.tudarmstadt.ukp.inception.scheduling.TaskKind.IO_BOUND;
 import static java.time.Duration.ofSeconds;
 
 import java.util.Objects;
@@ -32,6 +33,7 @@ import de.tudarmstadt.ukp.clarin.webanno.api.ProjectService;
 import de.tudarmstadt.ukp.clarin.webanno.api.SourceDocumentStateStats;
 import de.tudarmstadt.ukp.clarin.webanno.model.Project;
 import de.tudarmstadt.ukp.inception.scheduling.DebouncingTask;
+import de.tudarmstadt.ukp.inception.scheduling.TaskKind;
 
 public class UpdateProjectStateTask
     extends DebouncingTask
@@ -45,6 +47,13 @@ public class UpdateProjectStateTask
         super(aProject, aTrigger, ofSeconds(3));
     }
 
+    @Override
+    public TaskKind getKind()
+    {
+        // Mostly waits for the database
+        return IO_BOUND;
+    }
+
     @Override
     public void execute()
     {
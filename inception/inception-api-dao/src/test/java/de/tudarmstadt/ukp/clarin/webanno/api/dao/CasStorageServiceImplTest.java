@@ -36,14 +36,17 @@ import static org.apache.uima.fit.util.JCasUtil.select;
 import static org.apache.uima.util.CasCreationUtils.mergeTypeSystems;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+import static org.assertj.core.api.Assertions.tuple;
 
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.lang.reflect.Proxy;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -56,11 +59,14 @@ import org.apache.uima.jcas.JCas;
 import org.apache.uima.resource.ResourceInitializationException;
 import org.apache.uima.resource.metadata.TypeSystemDescription;
 import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.slf4j.MDC;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.util.unit.DataSize;
 
 import de.tudarmstadt.ukp.clarin.webanno.api.CasProvider;
 import de.tudarmstadt.ukp.clarin.webanno.api.casstorage.CasSessionException;
@@ -69,8 +75,12 @@ import de.tudarmstadt.ukp.clarin.webanno.api.dao.casstorage.CasMetadataUtils;
 import de.tudarmstadt.ukp.clarin.webanno.api.dao.casstorage.CasStorageServiceImpl;
 import de.tudarmstadt.ukp.clarin.webanno.api.dao.casstorage.CasStorageSession;
 import de.tudarmstadt.ukp.clarin.webanno.api.dao.casstorage.FileSystemCasStorageDriver;
+import de.tudarmstadt.ukp.clarin.webanno.api.dao.casstorage.SharedCasCacheStats;
 import de.tudarmstadt.ukp.clarin.webanno.api.dao.casstorage.config.BackupProperties;
 import de.tudarmstadt.ukp.clarin.webanno.api.dao.casstorage.config.CasStoragePropertiesImpl;
+import de.tudarmstadt.ukp.clarin.webanno.api.dao.casstorage.config.FsyncPolicy;
+import de.tudarmstadt.ukp.clarin.webanno.api.dao.casstorage.config.WriteBehindProperties;
+import de.tudarmstadt.ukp.clarin.webanno.api.event.AfterCasPersistedEvent;
 import de.tudarmstadt.ukp.clarin.webanno.api.event.LayerConfigurationChangedEvent;
 import de.tudarmstadt.ukp.clarin.webanno.api.type.CASMetadata;
 import de.tudarmstadt.ukp.clarin.webanno.model.Project;
@@ -188,6 +198,175 @@ public class CasStorageServiceImplTest
         }
     }
 
+    @Test
+    public void testWriteBehindCoalescesWritesUntilSessionEnds() throws Exception
+    {
+        AtomicInteger driverWrites = new AtomicInteger();
+        CasStorageServiceImpl writeBehindSut = makeWriteBehindService(driverWrites);
+
+        SourceDocument doc = makeSourceDocument(5l, 5l, "test");
+        String user = "test";
+        int annotationCount;
+
+        try (CasStorageSession casStorageSession = CasStorageSession.open()) {
+            CAS cas = writeBehindSut.readOrCreateCas(doc, user, NO_CAS_UPGRADE,
+                    () -> makeCas("This is a test"), EXCLUSIVE_WRITE_ACCESS);
+            int initialWrites = driverWrites.get();
+
+            for (int i = 0; i < 10; i++) {
+                cas.addFsToIndexes(cas.createAnnotation(cas.getAnnotationType(), 0, i));
+                writeBehindSut.writeCas(doc, cas, user);
+            }
+            annotationCount = cas.getAnnotationIndex().size();
+
+            assertThat(driverWrites.get()).isEqualTo(initialWrites);
+            assertThat(writeBehindSut.getPendingWriteCount()).isEqualTo(1);
+        }
+
+        // Closing the session returns the CAS to the pool which triggers the flush
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (writeBehindSut.getPendingWriteCount() > 0
+                && System.currentTimeMillis() < deadline) {
+            sleep(10);
+        }
+
+        assertThat(writeBehindSut.getPendingWriteCount()).isZero();
+        assertThat(driverWrites.get()).isGreaterThan(0);
+
+        try (CasStorageSession casStorageSession = CasStorageSession.open()) {
+            CAS cas = writeBehindSut.readCas(doc, user, UNMANAGED_NON_INITIALIZING_ACCESS);
+            assertThat(cas.getAnnotationIndex().size()).isEqualTo(annotationCount);
+        }
+
+        writeBehindSut.destroy();
+    }
+
+    @Test
+    public void testWriteBehindIsFlushedBeforeStorageIsAccessed() throws Exception
+    {
+        AtomicInteger driverWrites = new AtomicInteger();
+        CasStorageServiceImpl writeBehindSut = makeWriteBehindService(driverWrites);
+
+        SourceDocument doc = makeSourceDocument(6l, 6l, "test");
+        String user = "test";
+
+        try (CasStorageSession casStorageSession = CasStorageSession.open()) {
+            CAS cas = writeBehindSut.readOrCreateCas(doc, user, NO_CAS_UPGRADE,
+                    () -> makeCas("This is a test"), EXCLUSIVE_WRITE_ACCESS);
+            long initialTimestamp = writeBehindSut.getCasTimestamp(doc, user).get();
+            int initialWrites = driverWrites.get();
+
+            sleep(10);
+            cas.addFsToIndexes(cas.createAnnotation(cas.getAnnotationType(), 0, 4));
+            writeBehindSut.writeCas(doc, cas, user);
+            assertThat(driverWrites.get()).isEqualTo(initialWrites);
+
+            assertThat(writeBehindSut.getCasTimestamp(doc, user).get())
+                    .isGreaterThan(initialTimestamp);
+            assertThat(driverWrites.get()).isEqualTo(initialWrites + 1);
+            assertThat(writeBehindSut.getPendingWriteCount()).isZero();
+        }
+
+        writeBehindSut.destroy();
+    }
+
+    @Test
+    public void testWriteBehindPublishesPersistedEventOnlyOnceWritten() throws Exception
+    {
+        List<AfterCasPersistedEvent> events = new CopyOnWriteArrayList<>();
+        CasStorageServiceImpl writeBehindSut = makeWriteBehindService(new AtomicInteger(),
+                event -> {
+                    if (event instanceof AfterCasPersistedEvent) {
+                        events.add((AfterCasPersistedEvent) event);
+                    }
+                });
+
+        SourceDocument doc = makeSourceDocument(7l, 7l, "test");
+        String user = "test";
+
+        try (CasStorageSession casStorageSession = CasStorageSession.open()) {
+            CAS cas = writeBehindSut.readOrCreateCas(doc, user, NO_CAS_UPGRADE,
+                    () -> makeCas("This is a test"), EXCLUSIVE_WRITE_ACCESS);
+            events.clear();
+
+            for (int i = 0; i < 3; i++) {
+                cas.addFsToIndexes(cas.createAnnotation(cas.getAnnotationType(), 0, i));
+                writeBehindSut.writeCas(doc, cas, user);
+            }
+
+            assertThat(events) //
+                    .as("No event while the write is deferred") //
+                    .isEmpty();
+        }
+
+        // Closing the session returns the CAS to the pool which triggers the flush
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (events.isEmpty() && System.currentTimeMillis() < deadline) {
+            sleep(10);
+        }
+
+        assertThat(events) //
+                .extracting(AfterCasPersistedEvent::getDocument, AfterCasPersistedEvent::getUser) //
+                .containsExactly(tuple(doc, user));
+
+        writeBehindSut.destroy();
+    }
+
+    @Tag("slow")
+    @Test
+    public void benchmarkExclusiveAccessContention() throws Exception
+    {
+        int documentCount = 200;
+        List<SourceDocument> docs = new ArrayList<>();
+        try (CasStorageSession casStorageSession = openNested(true)) {
+            for (int i = 0; i < documentCount; i++) {
+                SourceDocument doc = makeSourceDocument(i % 10, i, "doc" + i);
+                createCasFile(doc, "test", "This is a test");
+                docs.add(doc);
+            }
+        }
+
+        for (int threadCount : new int[] { 1, 2, 4, 8, 16, 32 }) {
+            AtomicInteger operations = new AtomicInteger();
+            AtomicBoolean stop = new AtomicBoolean(false);
+            List<Thread> threads = new ArrayList<>();
+            for (int t = 0; t < threadCount; t++) {
+                Random rnd = new Random(t);
+                threads.add(new Thread(() -> {
+                    MDC.put(Logging.KEY_REPOSITORY_PATH,
+                            repositoryProperties.getPath().toString());
+
+                    while (!stop.get()) {
+                        SourceDocument doc = docs.get(rnd.nextInt(docs.size()));
+                        try (CasStorageSession session = CasStorageSession.open()) {
+                            sut.readOrCreateCas(doc, "test", NO_CAS_UPGRADE, null,
+                                    EXCLUSIVE_WRITE_ACCESS);
+                            operations.incrementAndGet();
+                        }
+                        catch (Exception e) {
+                            exception.set(true);
+                            log.error("Error reading CAS", e);
+                        }
+                    }
+                }));
+            }
+
+            long start = System.currentTimeMillis();
+            threads.forEach(Thread::start);
+            sleep(3_000);
+            stop.set(true);
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            long duration = System.currentTimeMillis() - start;
+
+            log.info("{} threads: {} ops/sec", threadCount,
+                    operations.get() * 1000l / duration);
+        }
+
+        assertThat(exception).isFalse();
+    }
+
     @Test
     public void testThatLayerChangeEventInvalidatesCachedCas() throws Exception
     {
@@ -229,6 +408,62 @@ public class CasStorageServiceImplTest
                 .isNotEqualTo(casIdentity3);
     }
 
+    @Test
+    public void testThatSharedCacheEnforcesProjectQuota() throws Exception
+    {
+        // Setup fixture
+        CasStoragePropertiesImpl properties = new CasStoragePropertiesImpl();
+        properties.setSharedCasCacheMaxWeight(DataSize.ofKilobytes(1024));
+        properties.setSharedCasCacheProjectQuota(0.25);
+        sut = new CasStorageServiceImpl(driver, null, null, properties);
+
+        String user = "test";
+        String text = repeat("x", 20_000);
+        List<SourceDocument> smallProjectDocs = new ArrayList<>();
+        List<SourceDocument> bigProjectDocs = new ArrayList<>();
+        try (CasStorageSession session = openNested(true)) {
+            for (int i = 0; i < 2; i++) {
+                smallProjectDocs.add(makeSourceDocument(5l, i + 1, "small" + i));
+                createCasFile(smallProjectDocs.get(i), user, text);
+            }
+            for (int i = 0; i < 40; i++) {
+                bigProjectDocs.add(makeSourceDocument(6l, i + 10, "big" + i));
+                createCasFile(bigProjectDocs.get(i), user, text);
+            }
+        }
+
+        // Actual test - the big project alone would exceed the capacity of the cache
+        for (SourceDocument doc : smallProjectDocs) {
+            try (CasStorageSession session = openNested(true)) {
+                sut.readCas(doc, user, SHARED_READ_ONLY_ACCESS);
+            }
+        }
+        for (SourceDocument doc : bigProjectDocs) {
+            try (CasStorageSession session = openNested(true)) {
+                sut.readCas(doc, user, SHARED_READ_ONLY_ACCESS);
+            }
+        }
+        for (SourceDocument doc : smallProjectDocs) {
+            try (CasStorageSession session = openNested(true)) {
+                sut.readCas(doc, user, SHARED_READ_ONLY_ACCESS);
+            }
+        }
+
+        SharedCasCacheStats smallProject = sut.getSharedAccessCacheProjectStats(5l);
+        SharedCasCacheStats bigProject = sut.getSharedAccessCacheProjectStats(6l);
+
+        assertThat(smallProject.getMissCount()).isEqualTo(2);
+        assertThat(smallProject.getHitCount())
+                .as("CASes of the small project must survive a flood from the big project")
+                .isEqualTo(2);
+        assertThat(smallProject.getEntryCount()).isEqualTo(2);
+        assertThat(bigProject.getMissCount()).isEqualTo(40);
+        assertThat(bigProject.getQuotaEvictionCount()).isPositive();
+        assertThat(bigProject.getWeight()).isLessThanOrEqualTo(256 * 1024);
+        assertThat(smallProject.getWeight() + bigProject.getWeight())
+                .isEqualTo(sut.getSharedAccessCacheWeight());
+    }
+
     @Test
     public void testConcurrentAccess() throws Exception
     {
@@ -640,6 +875,35 @@ public class CasStorageServiceImplTest
         }
     };
 
+    private CasStorageServiceImpl makeWriteBehindService(AtomicInteger aDriverWrites)
+    {
+        return makeWriteBehindService(aDriverWrites, null);
+    }
+
+    private CasStorageServiceImpl makeWriteBehindService(AtomicInteger aDriverWrites,
+            ApplicationEventPublisher aEventPublisher)
+    {
+        FileSystemCasStorageDriver countingDriver = new FileSystemCasStorageDriver(
+                repositoryProperties, new BackupProperties())
+        {
+            @Override
+            public void writeCas(SourceDocument aDocument, String aUserName, CAS aCas)
+                throws IOException
+            {
+                aDriverWrites.incrementAndGet();
+                super.writeCas(aDocument, aUserName, aCas);
+            }
+        };
+
+        WriteBehindProperties writeBehindProperties = new WriteBehindProperties();
+        writeBehindProperties.setEnabled(true);
+        writeBehindProperties.setWindow(Duration.ofHours(1));
+        writeBehindProperties.setFsync(FsyncPolicy.ALWAYS);
+
+        return new CasStorageServiceImpl(countingDriver, null, null,
+                new CasStoragePropertiesImpl(), writeBehindProperties, aEventPublisher);
+    }
+
     private CAS makeCas(String aText) throws IOException
     {
         try {
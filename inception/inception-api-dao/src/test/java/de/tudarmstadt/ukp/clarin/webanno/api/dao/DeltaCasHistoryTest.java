@@ -0,0 +1,153 @@
+/*
+ * Licensed to the Technische Universität Darmstadt under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The Technische Universität Darmstadt 
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.
+ *  
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.clarin.webanno.api.dao;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import de.tudarmstadt.ukp.clarin.webanno.api.dao.casstorage.DeltaCasHistory;
+
+public class DeltaCasHistoryTest
+{
+    @TempDir
+    File testFolder;
+
+    private Random rnd;
+
+    @BeforeEach
+    public void setup()
+    {
+        rnd = new Random(42);
+    }
+
+    @Test
+    public void thatAllVersionsCanBeRestored() throws Exception
+    {
+        DeltaCasHistory sut = new DeltaCasHistory(testFolder, "user", 10);
+
+        List<byte[]> versions = new ArrayList<>();
+        byte[] data = randomBytes(100_000);
+        for (int i = 0; i < 50; i++) {
+            data = mutate(data);
+            versions.add(data);
+            sut.append(1000 + i, data);
+        }
+
+        assertThat(sut.listVersions()).hasSize(50);
+        assertThat(sut.getLatestVersion()).contains(1049l);
+        for (int i = 0; i < versions.size(); i++) {
+            assertThat(sut.read(1000 + i)).get().isEqualTo(versions.get(i));
+        }
+        assertThat(sut.read(999)).isEmpty();
+
+        File[] segments = segments();
+        assertThat(segments).hasSize(5);
+
+        long totalSize = 0;
+        for (File segment : segments) {
+            totalSize += segment.length();
+        }
+        assertThat(totalSize) //
+                .as("History is much smaller than full copies of all versions") //
+                .isLessThan(10l * data.length);
+    }
+
+    @Test
+    public void thatSegmentsArePrunedAsAWhole() throws Exception
+    {
+        DeltaCasHistory sut = new DeltaCasHistory(testFolder, "user", 4);
+
+        byte[] data = randomBytes(10_000);
+        for (int i = 0; i < 20; i++) {
+            data = mutate(data);
+            sut.append(1000 + i, data);
+        }
+
+        assertThat(segments()).hasSize(4);
+
+        // Keep at least 7 versions - we need to keep the last two segments for that
+        assertThat(sut.prune(7, 0, 2000)).isEqualTo(2);
+        assertThat(sut.listVersions()).hasSize(10).startsWith(1010l);
+
+        // Everything older than 1015 is outdated, but the latest segment always stays
+        assertThat(sut.prune(0, 5, 1020)).isEqualTo(1);
+        assertThat(sut.listVersions()).hasSize(5).startsWith(1015l);
+        assertThat(sut.read(1019)).get().isEqualTo(data);
+    }
+
+    @Test
+    public void thatIncompleteEntryIsIgnored() throws Exception
+    {
+        DeltaCasHistory sut = new DeltaCasHistory(testFolder, "user", 10);
+
+        byte[] first = randomBytes(10_000);
+        byte[] second = mutate(first);
+        sut.append(1000, first);
+        sut.append(1001, second);
+
+        // Simulate an interrupted write
+        try (RandomAccessFile raf = new RandomAccessFile(segments()[0], "rw")) {
+            raf.setLength(raf.length() - 5);
+        }
+
+        assertThat(sut.listVersions()).containsExactly(1000l);
+
+        byte[] third = mutate(second);
+        sut.append(1002, third);
+
+        assertThat(sut.listVersions()).containsExactly(1000l, 1002l);
+        assertThat(sut.read(1000)).get().isEqualTo(first);
+        assertThat(sut.read(1002)).get().isEqualTo(third);
+    }
+
+    private File[] segments()
+    {
+        return testFolder
+                .listFiles((dir, name) -> name.endsWith(DeltaCasHistory.SEGMENT_EXTENSION));
+    }
+
+    private byte[] randomBytes(int aLength)
+    {
+        byte[] data = new byte[aLength];
+        rnd.nextBytes(data);
+        return data;
+    }
+
+    private byte[] mutate(byte[] aData)
+    {
+        int pos = rnd.nextInt(aData.length - 100);
+        int removed = rnd.nextInt(100);
+        byte[] inserted = randomBytes(rnd.nextInt(100));
+
+        byte[] result = new byte[aData.length - removed + inserted.length];
+        System.arraycopy(aData, 0, result, 0, pos);
+        System.arraycopy(inserted, 0, result, pos, inserted.length);
+        System.arraycopy(aData, pos + removed, result, pos + inserted.length,
+                aData.length - pos - removed);
+        return result;
+    }
+}
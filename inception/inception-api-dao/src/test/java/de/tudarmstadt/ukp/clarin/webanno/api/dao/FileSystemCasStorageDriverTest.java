@@ -0,0 +1,268 @@
+/*
+ * Licensed to the Technische Universität Darmstadt under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The Technische Universität Darmstadt 
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.
+ *  
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.clarin.webanno.api.dao;
+
+import static de.tudarmstadt.ukp.clarin.webanno.api.dao.casstorage.CasMetadataUtils.getInternalTypeSystem;
+import static de.tudarmstadt.ukp.clarin.webanno.api.dao.casstorage.config.CasStorageFormat.BINARY;
+import static de.tudarmstadt.ukp.clarin.webanno.api.dao.casstorage.config.CasStorageFormat.SERIALIZED;
+import static java.util.Arrays.asList;
+import static org.apache.uima.fit.factory.TypeSystemDescriptionFactory.createTypeSystemDescription;
+import static org.apache.uima.util.CasCreationUtils.mergeTypeSystems;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.uima.cas.CAS;
+import org.apache.uima.cas.impl.CASImpl;
+import org.apache.uima.fit.factory.CasFactory;
+import org.apache.uima.resource.metadata.TypeSystemDescription;
+import org.apache.uima.util.CasCreationUtils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.tudarmstadt.ukp.clarin.webanno.api.config.RepositoryProperties;
+import de.tudarmstadt.ukp.clarin.webanno.api.dao.casstorage.BinaryCasFileFormat;
+import de.tudarmstadt.ukp.clarin.webanno.api.dao.casstorage.CasPersistenceUtils;
+import de.tudarmstadt.ukp.clarin.webanno.api.dao.casstorage.DeltaCasHistory;
+import de.tudarmstadt.ukp.clarin.webanno.api.dao.casstorage.FileSystemCasStorageDriver;
+import de.tudarmstadt.ukp.clarin.webanno.api.dao.casstorage.config.BackupMode;
+import de.tudarmstadt.ukp.clarin.webanno.api.dao.casstorage.config.BackupProperties;
+import de.tudarmstadt.ukp.clarin.webanno.api.dao.casstorage.config.CasStorageFormat;
+import de.tudarmstadt.ukp.clarin.webanno.api.dao.casstorage.config.FileSystemCasStorageProperties;
+import de.tudarmstadt.ukp.clarin.webanno.model.Project;
+import de.tudarmstadt.ukp.clarin.webanno.model.SourceDocument;
+import de.tudarmstadt.ukp.dkpro.core.api.segmentation.type.Sentence;
+import de.tudarmstadt.ukp.dkpro.core.api.segmentation.type.Token;
+
+public class FileSystemCasStorageDriverTest
+{
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
+    private RepositoryProperties repositoryProperties;
+
+    @TempDir
+    File testFolder;
+
+    {
+        System.setProperty(CASImpl.ALWAYS_HOLD_ONTO_FSS, "true");
+    }
+
+    @BeforeEach
+    public void setup() throws Exception
+    {
+        repositoryProperties = new RepositoryProperties();
+        repositoryProperties.setPath(testFolder);
+    }
+
+    @Test
+    public void thatBinaryFormatRoundTrips() throws Exception
+    {
+        FileSystemCasStorageDriver sut = makeDriver(BINARY);
+        SourceDocument doc1 = makeSourceDocument(1l, 1l, "doc1");
+        SourceDocument doc2 = makeSourceDocument(1l, 2l, "doc2");
+
+        sut.writeCas(doc1, "user", makeCas(100));
+        sut.writeCas(doc2, "user", makeCas(200));
+
+        assertThat(header(sut.getCasFile(doc1, "user"))).containsExactly('I', 'C', 'A', 'S');
+
+        CAS cas = sut.readCas(doc1, "user");
+        assertThat(cas.getDocumentText()).isEqualTo(makeCas(100).getDocumentText());
+        assertThat(cas.select(Token.class).asList()).hasSize(100);
+        assertThat(cas.select(Sentence.class).asList()).hasSize(10);
+
+        File typeSystemFolder = new File(testFolder,
+                "project/1/" + BinaryCasFileFormat.TYPE_SYSTEM_FOLDER);
+        assertThat(typeSystemFolder.listFiles()) //
+                .as("Type system is stored only once per project") //
+                .hasSize(1);
+    }
+
+    @Test
+    public void thatSerializedCasIsMigratedToBinaryOnWrite() throws Exception
+    {
+        SourceDocument doc = makeSourceDocument(2l, 1l, "doc");
+
+        makeDriver(SERIALIZED).writeCas(doc, "user", makeCas(100));
+
+        FileSystemCasStorageDriver sut = makeDriver(BINARY);
+        File casFile = sut.getCasFile(doc, "user");
+        assertThat(header(casFile)).startsWith((byte) 0xAC, (byte) 0xED);
+
+        CAS cas = sut.readCas(doc, "user");
+        assertThat(cas.select(Token.class).asList()).hasSize(100);
+
+        sut.writeCas(doc, "user", cas);
+        assertThat(header(casFile)).containsExactly('I', 'C', 'A', 'S');
+        assertThat(sut.readCas(doc, "user").select(Token.class).asList()).hasSize(100);
+    }
+
+    @Test
+    public void thatExportUsesSerializedFormat() throws Exception
+    {
+        FileSystemCasStorageDriver sut = makeDriver(BINARY);
+        SourceDocument doc = makeSourceDocument(3l, 1l, "doc");
+        sut.writeCas(doc, "user", makeCas(100));
+
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        sut.exportCas(doc, "user", bos);
+
+        File exportedFile = new File(testFolder, "exported.ser");
+        Files.write(exportedFile.toPath(), bos.toByteArray());
+        CAS cas = CasCreationUtils.createCas((TypeSystemDescription) null, null, null);
+        CasPersistenceUtils.readSerializedCas(cas, exportedFile);
+        assertThat(cas.select(Token.class).asList()).hasSize(100);
+
+        // Re-importing the exported data must work as well
+        SourceDocument doc2 = makeSourceDocument(3l, 2l, "doc2");
+        sut.importCas(doc2, "user", new ByteArrayInputStream(bos.toByteArray()));
+        assertThat(sut.readCas(doc2, "user").select(Token.class).asList()).hasSize(100);
+    }
+
+    @Test
+    public void thatDeltaHistoryCanBeRestored() throws Exception
+    {
+        BackupProperties backupProperties = new BackupProperties();
+        backupProperties.setInterval(1);
+        backupProperties.setMode(BackupMode.DELTA);
+        FileSystemCasStorageProperties properties = new FileSystemCasStorageProperties();
+        properties.setFormat(BINARY);
+        FileSystemCasStorageDriver sut = new FileSystemCasStorageDriver(repositoryProperties,
+                backupProperties, properties);
+        SourceDocument doc = makeSourceDocument(1l, 1l, "doc");
+
+        CAS cas = makeCas(1000);
+        sut.writeCas(doc, "user", cas);
+
+        // Wait for the backup interval to pass, then change the CAS only slightly
+        Thread.sleep(2_100);
+        cas.addFsToIndexes(new Token(cas.getJCas(), 0, 5));
+        sut.writeCas(doc, "user", cas);
+
+        File annotationFolder = sut.getAnnotationFolder(doc);
+        assertThat(annotationFolder.list()) //
+                .noneMatch(name -> name.endsWith(".bak")) //
+                .filteredOn(name -> name.endsWith(DeltaCasHistory.SEGMENT_EXTENSION)) //
+                .as("Small change is recorded as a delta instead of a new snapshot") //
+                .hasSize(1);
+
+        DeltaCasHistory history = new DeltaCasHistory(annotationFolder, "user",
+                backupProperties.getDelta().getSnapshotInterval());
+        List<Long> versions = history.listVersions();
+        assertThat(versions).hasSize(2);
+
+        File restoredFile = new File(testFolder, "restored.ser");
+        Files.write(restoredFile.toPath(), history.read(versions.get(1)).get());
+        CAS restored = CasCreationUtils.createCas((TypeSystemDescription) null, null, null);
+        new BinaryCasFileFormat().read(new File(testFolder, "project/1"), restoredFile,
+                restored);
+        assertThat(restored.select(Token.class).asList()).hasSize(1001);
+    }
+
+    @Tag("slow")
+    @Test
+    public void benchmarkFormats() throws Exception
+    {
+        int tokens = 250_000;
+        int rounds = 5;
+        CAS cas = makeCas(tokens);
+
+        for (CasStorageFormat format : CasStorageFormat.values()) {
+            FileSystemCasStorageDriver sut = makeDriver(format);
+            SourceDocument doc = makeSourceDocument(10l + format.ordinal(), 1l, "doc");
+
+            // Warm up
+            sut.writeCas(doc, "user", cas);
+            sut.readCas(doc, "user");
+
+            long writeTime = 0;
+            long readTime = 0;
+            for (int i = 0; i < rounds; i++) {
+                long start = System.currentTimeMillis();
+                sut.writeCas(doc, "user", cas);
+                writeTime += System.currentTimeMillis() - start;
+
+                start = System.currentTimeMillis();
+                sut.readCas(doc, "user");
+                readTime += System.currentTimeMillis() - start;
+            }
+
+            log.info("{}: {} bytes, write {} ms, read {} ms", format,
+                    sut.getCasFile(doc, "user").length(), writeTime / rounds, readTime / rounds);
+        }
+    }
+
+    private FileSystemCasStorageDriver makeDriver(CasStorageFormat aFormat)
+    {
+        FileSystemCasStorageProperties properties = new FileSystemCasStorageProperties();
+        properties.setFormat(aFormat);
+        return new FileSystemCasStorageDriver(repositoryProperties, new BackupProperties(),
+                properties);
+    }
+
+    private CAS makeCas(int aTokens) throws Exception
+    {
+        CAS cas = CasFactory.createCas(
+                mergeTypeSystems(asList(createTypeSystemDescription(), getInternalTypeSystem())));
+
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < aTokens; i++) {
+            int begin = text.length();
+            text.append("token").append(i % 100);
+            cas.addFsToIndexes(new Token(cas.getJCas(), begin, text.length()));
+            text.append(' ');
+        }
+        cas.setDocumentText(text.toString());
+
+        int sentenceLength = text.length() / 10;
+        for (int i = 0; i < 10; i++) {
+            cas.addFsToIndexes(
+                    new Sentence(cas.getJCas(), i * sentenceLength, (i + 1) * sentenceLength));
+        }
+
+        return cas;
+    }
+
+    private byte[] header(File aFile) throws Exception
+    {
+        return Arrays.copyOf(Files.readAllBytes(aFile.toPath()), 4);
+    }
+
+    private SourceDocument makeSourceDocument(long aProjectId, long aDocumentId, String aDocName)
+    {
+        Project project = new Project();
+        project.setId(aProjectId);
+        project.setName("project");
+
+        SourceDocument doc = new SourceDocument();
+        doc.setProject(project);
+        doc.setId(aDocumentId);
+        doc.setName(aDocName);
+
+        return doc;
+    }
+}
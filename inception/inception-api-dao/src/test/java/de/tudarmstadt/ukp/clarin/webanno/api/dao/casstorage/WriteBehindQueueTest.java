@@ -0,0 +1,112 @@
+/*
+ * Licensed to the Technische Universität Darmstadt under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The Technische Universität Darmstadt
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.clarin.webanno.api.dao.casstorage;
+
+import static de.tudarmstadt.ukp.clarin.webanno.api.dao.casstorage.WriteBehindQueue.MAX_RETRIES;
+import static java.lang.Thread.sleep;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import de.tudarmstadt.ukp.clarin.webanno.model.Project;
+import de.tudarmstadt.ukp.clarin.webanno.model.SourceDocument;
+
+public class WriteBehindQueueTest
+{
+    @Test
+    public void thatFailedWriteIsRetriedBoundedNumberOfTimes() throws Exception
+    {
+        AtomicInteger attempts = new AtomicInteger();
+        WriteBehindQueue[] queue = new WriteBehindQueue[1];
+        queue[0] = new WriteBehindQueue(Duration.ofMillis(1), 2, write -> {
+            attempts.incrementAndGet();
+            queue[0].complete(queue[0].claim(write.getKey()), false);
+        });
+
+        SourceDocument doc = makeSourceDocument();
+        CasKey key = new CasKey(doc, "user");
+        queue[0].enqueue(key, doc, "user", null);
+
+        // Retries happen after 1, 2, 4, 8 and 16 ms
+        sleep(1_000);
+
+        assertThat(attempts).hasValue(1 + MAX_RETRIES);
+        assertThat(queue[0].getFailedWriteCount()).isEqualTo(1 + MAX_RETRIES);
+        assertThat(queue[0].isPending(key)).isTrue();
+
+        queue[0].shutdown(Duration.ofSeconds(1));
+    }
+
+    @Test
+    public void thatUnclaimedWriteIsRetriedBoundedNumberOfTimes() throws Exception
+    {
+        AtomicInteger attempts = new AtomicInteger();
+        WriteBehindQueue queue = new WriteBehindQueue(Duration.ofMillis(1), 2, write -> {
+            // Simulate a flusher that is unable to obtain exclusive access to the CAS
+            attempts.incrementAndGet();
+        });
+
+        SourceDocument doc = makeSourceDocument();
+        CasKey key = new CasKey(doc, "user");
+        queue.enqueue(key, doc, "user", null);
+
+        sleep(1_000);
+
+        assertThat(attempts).hasValue(1 + MAX_RETRIES);
+        assertThat(queue.isPending(key)).isTrue();
+
+        queue.shutdown(Duration.ofSeconds(1));
+    }
+
+    @Test
+    public void thatNewWriteRestartsRetriesAfterGivingUp() throws Exception
+    {
+        AtomicInteger attempts = new AtomicInteger();
+        WriteBehindQueue queue = new WriteBehindQueue(Duration.ofMillis(1), 2, write -> {
+            attempts.incrementAndGet();
+        });
+
+        SourceDocument doc = makeSourceDocument();
+        CasKey key = new CasKey(doc, "user");
+        queue.enqueue(key, doc, "user", null);
+        sleep(1_000);
+
+        queue.enqueue(key, doc, "user", null);
+        sleep(1_000);
+
+        assertThat(attempts).hasValue(2 * (1 + MAX_RETRIES));
+
+        queue.shutdown(Duration.ofSeconds(1));
+    }
+
+    private SourceDocument makeSourceDocument()
+    {
+        Project project = new Project();
+        project.setId(1l);
+
+        SourceDocument doc = new SourceDocument();
+        doc.setProject(project);
+        doc.setId(1l);
+        doc.setName("test");
+
+        return doc;
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ * Licensed to the Technische Universität Darmstadt under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The Technische Universität Darmstadt 
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.
+ *  
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.clarin.webanno.api.event;
+
+import org.springframework.context.ApplicationEvent;
+
+import de.tudarmstadt.ukp.clarin.webanno.model.SourceDocument;
+
+/**
+ * Published after a CAS has been written to the storage. Unlike {@link AfterCasWrittenEvent},
+ * which is published as soon as a CAS is handed to the storage, this event is only published once
+ * the data has actually been written - if the write is deferred, that may be some time later. If
+ * a deferred write fails or the application stops before the write is performed, the event is not
+ * published at all.
+ * <p>
+ * The event may be published on a background thread outside of any request or transaction.
+ * Listeners must therefore not expect a request cycle and must not take long.
+ */
+public class AfterCasPersistedEvent
+    extends ApplicationEvent
+{
+    private static final long serialVersionUID = -1526322186592858331L;
+
+    private final SourceDocument document;
+    private final String user;
+
+    public AfterCasPersistedEvent(Object aSource, SourceDocument aDocument, String aUser)
+    {
+        super(aSource);
+        document = aDocument;
+        user = aUser;
+    }
+
+    public SourceDocument getDocument()
+    {
+        return document;
+    }
+
+    public String getUser()
+    {
+        return user;
+    }
+}
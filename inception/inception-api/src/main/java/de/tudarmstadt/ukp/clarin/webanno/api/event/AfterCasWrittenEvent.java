@@ -22,6 +22,11 @@ import org.springframework.context.ApplicationEvent;
 
 import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationDocument;
 
+/**
+ * Published on the thread which wrote the CAS as soon as the CAS has been handed to the storage.
+ * If CAS write-behind is enabled, the data may not have been written to disk yet. Listeners which
+ * need the data to be persisted should listen for {@link AfterCasPersistedEvent} instead.
+ */
 public class AfterCasWrittenEvent
     extends ApplicationEvent
 {
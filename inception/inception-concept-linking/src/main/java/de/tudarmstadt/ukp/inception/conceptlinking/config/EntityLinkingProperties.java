@@ -28,4 +28,6 @@ public interface EntityLinkingProperties
     int getCandidateDisplayLimit();
 
     int getSignatureQueryLimit();
+
+    int getCandidateQueryThreads();
 }
@@ -35,6 +35,7 @@ public class EntityLinkingPropertiesImpl
     private int candidateQueryLimit = 2500;
     private int candidateDisplayLimit = 100;
     private int signatureQueryLimit = Integer.MAX_VALUE;
+    private int candidateQueryThreads = 4;
 
     @Override
     public int getCacheSize()
@@ -90,4 +91,15 @@ public class EntityLinkingPropertiesImpl
     {
         this.signatureQueryLimit = signatureQueryLimit;
     }
+
+    @Override
+    public int getCandidateQueryThreads()
+    {
+        return candidateQueryThreads;
+    }
+
+    public void setCandidateQueryThreads(int candidateQueryThreads)
+    {
+        this.candidateQueryThreads = candidateQueryThreads;
+    }
 }
@@ -86,9 +86,10 @@ public class EntityLinkingServiceAutoConfiguration
     @Bean
     @Autowired
     public NamedEntityLinkerFactory namedEntityLinkerFactory(KnowledgeBaseService aKbService,
-            ConceptLinkingService aClService, FeatureSupportRegistry aFsRegistry)
+            ConceptLinkingService aClService, FeatureSupportRegistry aFsRegistry,
+            EntityLinkingProperties aProperties)
     {
-        return new NamedEntityLinkerFactory(aKbService, aClService, aFsRegistry);
+        return new NamedEntityLinkerFactory(aKbService, aClService, aFsRegistry, aProperties);
     }
 
     // @Bean
@@ -21,8 +21,14 @@ import static de.tudarmstadt.ukp.clarin.webanno.api.annotation.util.WebAnnoCasUt
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
 import java.util.stream.Collectors;
 
 import org.apache.commons.lang3.tuple.ImmutablePair;
@@ -57,6 +63,7 @@ public class NamedEntityLinker
     private ConceptLinkingService clService;
     private FeatureSupportRegistry fsRegistry;
     private ConceptFeatureTraits featureTraits;
+    private Executor candidateQueryExecutor;
 
     public static final Key<Collection<ImmutablePair<String, Collection<AnnotationFS>>>> KEY_MODEL = new Key<>(
             "model");
@@ -64,6 +71,19 @@ public class NamedEntityLinker
     public NamedEntityLinker(Recommender aRecommender, NamedEntityLinkerTraits aTraits,
             KnowledgeBaseService aKbService, ConceptLinkingService aClService,
             FeatureSupportRegistry aFsRegistry, ConceptFeatureTraits aFeatureTraits)
+    {
+        this(aRecommender, aTraits, aKbService, aClService, aFsRegistry, aFeatureTraits, null);
+    }
+
+    /**
+     * @param aCandidateQueryExecutor
+     *            executor used to query multiple knowledge bases concurrently. If this is
+     *            {@code null}, the knowledge bases are queried one after the other.
+     */
+    public NamedEntityLinker(Recommender aRecommender, NamedEntityLinkerTraits aTraits,
+            KnowledgeBaseService aKbService, ConceptLinkingService aClService,
+            FeatureSupportRegistry aFsRegistry, ConceptFeatureTraits aFeatureTraits,
+            Executor aCandidateQueryExecutor)
     {
         super(aRecommender);
 
@@ -72,6 +92,7 @@ public class NamedEntityLinker
         clService = aClService;
         fsRegistry = aFsRegistry;
         featureTraits = aFeatureTraits;
+        candidateQueryExecutor = aCandidateQueryExecutor;
     }
 
     @Override
@@ -91,38 +112,102 @@ public class NamedEntityLinker
     {
         Type predictedType = getPredictedType(aCas);
 
+        List<KnowledgeBase> knowledgeBases = listKnowledgeBases();
+
+        // The same surface forms tend to occur many times in a document, so we generate the
+        // candidates for each distinct mention only once. The ranking still needs to happen for
+        // each occurrence because it takes the context of the mention into account.
+        Map<String, List<Set<KBHandle>>> candidatesByMention = new HashMap<>();
+
         for (AnnotationFS sentence : selectSentences(aCas)) {
             for (AnnotationFS annotation : CasUtil.selectCovered(aCas, predictedType, sentence)) {
-                int begin = annotation.getBegin();
-                int end = annotation.getEnd();
-                predictSingle(annotation.getCoveredText(), begin, end, aCas);
+                String mention = annotation.getCoveredText();
+                List<Set<KBHandle>> candidates = candidatesByMention.computeIfAbsent(mention,
+                        m -> generateCandidates(knowledgeBases, m));
+                predictSingle(mention, candidates, annotation.getBegin(), annotation.getEnd(),
+                        aCas);
             }
         }
     }
 
-    private void predictSingle(String aCoveredText, int aBegin, int aEnd, CAS aCas)
+    private List<KnowledgeBase> listKnowledgeBases()
     {
-        List<KBHandle> handles = new ArrayList<>();
-
         AnnotationFeature feat = recommender.getFeature();
         ConceptFeatureTraits conceptFeatureTraits = fsRegistry.readTraits(feat,
                 ConceptFeatureTraits::new);
 
+        List<KnowledgeBase> knowledgeBases = new ArrayList<>();
         if (conceptFeatureTraits.getRepositoryId() != null) {
             Optional<KnowledgeBase> kb = kbService.getKnowledgeBaseById(recommender.getProject(),
                     conceptFeatureTraits.getRepositoryId());
             if (kb.isPresent() && kb.get().isSupportConceptLinking()) {
-                handles.addAll(readCandidates(kb.get(), aCoveredText, aBegin, aCas));
+                knowledgeBases.add(kb.get());
             }
         }
         else {
             for (KnowledgeBase kb : kbService.getEnabledKnowledgeBases(recommender.getProject())) {
                 if (kb.isSupportConceptLinking()) {
-                    handles.addAll(readCandidates(kb, aCoveredText, aBegin, aCas));
+                    knowledgeBases.add(kb);
                 }
             }
         }
 
+        return knowledgeBases;
+    }
+
+    /**
+     * @return the candidates for the mention from each of the given knowledge bases, in the
+     *         order of the knowledge bases. If there are multiple knowledge bases, they are queried
+     *         concurrently.
+     */
+    private List<Set<KBHandle>> generateCandidates(List<KnowledgeBase> aKnowledgeBases,
+            String aMention)
+    {
+        List<Set<KBHandle>> candidates = new ArrayList<>();
+
+        if (candidateQueryExecutor == null || aKnowledgeBases.size() < 2) {
+            for (KnowledgeBase kb : aKnowledgeBases) {
+                candidates.add(generateCandidates(kb, aMention));
+            }
+            return candidates;
+        }
+
+        List<CompletableFuture<Set<KBHandle>>> futures = new ArrayList<>();
+        for (KnowledgeBase kb : aKnowledgeBases) {
+            futures.add(CompletableFuture.supplyAsync(() -> generateCandidates(kb, aMention),
+                    candidateQueryExecutor));
+        }
+
+        try {
+            for (CompletableFuture<Set<KBHandle>> future : futures) {
+                candidates.add(future.join());
+            }
+        }
+        catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+
+        return candidates;
+    }
+
+    private Set<KBHandle> generateCandidates(KnowledgeBase aKb, String aMention)
+    {
+        return kbService.read(aKb, (conn) -> clService.generateCandidates(aKb,
+                featureTraits.getScope(), featureTraits.getAllowedValueType(), null, aMention));
+    }
+
+    private void predictSingle(String aCoveredText, List<Set<KBHandle>> aCandidates, int aBegin,
+            int aEnd, CAS aCas)
+    {
+        List<KBHandle> handles = new ArrayList<>();
+        for (Set<KBHandle> kbCandidates : aCandidates) {
+            handles.addAll(
+                    clService.rankCandidates(null, aCoveredText, kbCandidates, aCas, aBegin));
+        }
+
         Type predictedType = getPredictedType(aCas);
         Feature scoreFeature = getScoreFeature(aCas);
         Feature predictedFeature = getPredictedFeature(aCas);
@@ -137,13 +222,6 @@ public class NamedEntityLinker
         }
     }
 
-    private List<KBHandle> readCandidates(KnowledgeBase kb, String aCoveredText, int aBegin,
-            CAS aCas)
-    {
-        return kbService.read(kb, (conn) -> clService.disambiguate(kb, featureTraits.getScope(),
-                featureTraits.getAllowedValueType(), null, aCoveredText, aBegin, aCas));
-    }
-
     @Override
     public RecommendationEngineCapability getTrainingCapability()
     {
@@ -23,12 +23,18 @@ import static de.tudarmstadt.ukp.clarin.webanno.model.AnchoringMode.SINGLE_TOKEN
 import static de.tudarmstadt.ukp.clarin.webanno.model.AnchoringMode.TOKENS;
 import static java.util.Arrays.asList;
 
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
 import org.apache.wicket.model.IModel;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.annotation.Autowired;
 
 import de.tudarmstadt.ukp.clarin.webanno.api.annotation.feature.FeatureSupportRegistry;
 import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationFeature;
 import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationLayer;
+import de.tudarmstadt.ukp.inception.conceptlinking.config.EntityLinkingProperties;
 import de.tudarmstadt.ukp.inception.conceptlinking.config.EntityLinkingServiceAutoConfiguration;
 import de.tudarmstadt.ukp.inception.conceptlinking.service.ConceptLinkingService;
 import de.tudarmstadt.ukp.inception.kb.ConceptFeatureTraits;
@@ -45,6 +51,7 @@ import de.tudarmstadt.ukp.inception.recommendation.api.recommender.Recommendatio
  */
 public class NamedEntityLinkerFactory
     extends RecommendationEngineFactoryImplBase<NamedEntityLinkerTraits>
+    implements DisposableBean
 {
     // This is a string literal so we can rename/refactor the class without it changing its ID
     // and without the database starting to refer to non-existing recommendation tools.
@@ -57,13 +64,32 @@ public class NamedEntityLinkerFactory
     private final ConceptLinkingService clService;
     private final FeatureSupportRegistry fsRegistry;
 
+    /**
+     * Used to query multiple knowledge bases concurrently. The queries block on I/O, so they run
+     * on a dedicated bounded pool instead of the common fork-join pool.
+     */
+    private final ExecutorService candidateQueryExecutor;
+
     @Autowired
     public NamedEntityLinkerFactory(KnowledgeBaseService aKbService,
-            ConceptLinkingService aClService, FeatureSupportRegistry aFsRegistry)
+            ConceptLinkingService aClService, FeatureSupportRegistry aFsRegistry,
+            EntityLinkingProperties aProperties)
     {
         kbService = aKbService;
         clService = aClService;
         fsRegistry = aFsRegistry;
+        candidateQueryExecutor = Executors.newFixedThreadPool(
+                Math.max(1, aProperties.getCandidateQueryThreads()),
+                new BasicThreadFactory.Builder() //
+                        .daemon(true) //
+                        .namingPattern("entity-linker-candidates-%d") //
+                        .build());
+    }
+
+    @Override
+    public void destroy()
+    {
+        candidateQueryExecutor.shutdownNow();
     }
 
     @Override
@@ -80,7 +106,7 @@ public class NamedEntityLinkerFactory
                 ConceptFeatureTraits::new);
 
         return new NamedEntityLinker(aRecommender, linkerTraits, kbService, clService, fsRegistry,
-                featureTraits);
+                featureTraits, candidateQueryExecutor);
     }
 
     @Override
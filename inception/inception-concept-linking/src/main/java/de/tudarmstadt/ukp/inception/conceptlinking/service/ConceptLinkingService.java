@@ -92,6 +92,25 @@ public interface ConceptLinkingService
      */
     List<KBHandle> searchItems(KnowledgeBase aKB, String aTypedString);
 
+    /**
+     * Generates the unranked candidate entities for a mention from a knowledge base. Candidates
+     * from read-only knowledge bases are cached until the knowledge base configuration changes.
+     *
+     * @param aKB
+     *            the KB used to generate candidates.
+     * @param aConceptScope
+     *            limit candidates to descendants of this concept. Might be null.
+     * @param aValueType
+     *            the type of items to generate.
+     * @param aTypedString
+     *            What the user has typed so far in the text field. Might be null.
+     * @param aMention
+     *            Marked Surface form of an entity to be linked. Might be null.
+     * @return the candidate entities.
+     */
+    Set<KBHandle> generateCandidates(KnowledgeBase aKB, String aConceptScope,
+            ConceptFeatureValueType aValueType, String aTypedString, String aMention);
+
     /**
      * This method does the actual ranking of the candidate entities. First the candidates from
      * full-text matching are sorted by frequency cutoff after a threshold because they are more
@@ -25,6 +25,7 @@ import static de.tudarmstadt.ukp.inception.conceptlinking.model.CandidateEntity.
 import static java.lang.System.currentTimeMillis;
 import static java.util.Arrays.asList;
 import static java.util.Collections.unmodifiableList;
+import static java.util.Collections.unmodifiableSet;
 
 import java.io.File;
 import java.net.URISyntaxException;
@@ -40,6 +41,8 @@ import java.util.stream.Collectors;
 import org.apache.commons.lang3.ClassUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.Validate;
+import org.apache.commons.lang3.builder.EqualsBuilder;
+import org.apache.commons.lang3.builder.HashCodeBuilder;
 import org.apache.uima.cas.CAS;
 import org.apache.uima.cas.text.AnnotationFS;
 import org.eclipse.rdf4j.common.net.ParsedIRI;
@@ -52,6 +55,9 @@ import org.springframework.context.event.ContextRefreshedEvent;
 import org.springframework.context.event.EventListener;
 import org.springframework.core.annotation.AnnotationAwareOrderComparator;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
 import de.tudarmstadt.ukp.clarin.webanno.api.config.RepositoryProperties;
 import de.tudarmstadt.ukp.clarin.webanno.model.Project;
 import de.tudarmstadt.ukp.inception.conceptlinking.config.EntityLinkingProperties;
@@ -64,6 +70,7 @@ import de.tudarmstadt.ukp.inception.conceptlinking.util.FileUtils;
 import de.tudarmstadt.ukp.inception.kb.ConceptFeatureValueType;
 import de.tudarmstadt.ukp.inception.kb.KnowledgeBaseService;
 import de.tudarmstadt.ukp.inception.kb.RepositoryType;
+import de.tudarmstadt.ukp.inception.kb.event.KnowledgeBaseConfigurationChangedEvent;
 import de.tudarmstadt.ukp.inception.kb.graph.KBHandle;
 import de.tudarmstadt.ukp.inception.kb.model.KnowledgeBase;
 import de.tudarmstadt.ukp.inception.kb.querybuilder.SPARQLQueryBuilder;
@@ -89,6 +96,8 @@ public class ConceptLinkingServiceImpl
     private final List<EntityRankingFeatureGenerator> featureGeneratorsProxy;
     private List<EntityRankingFeatureGenerator> featureGenerators;
 
+    private final Cache<CandidateCacheKey, Set<KBHandle>> candidateCache;
+
     @Autowired
     public ConceptLinkingServiceImpl(KnowledgeBaseService aKbService,
             EntityLinkingPropertiesImpl aProperties, RepositoryProperties aRepoProperties,
@@ -101,6 +110,10 @@ public class ConceptLinkingServiceImpl
         properties = aProperties;
         featureGeneratorsProxy = aFeatureGenerators;
         repoProperties = aRepoProperties;
+
+        candidateCache = Caffeine.newBuilder() //
+                .maximumSize(properties.getCacheSize()) //
+                .build();
     }
 
     @Override
@@ -152,8 +165,45 @@ public class ConceptLinkingServiceImpl
         }
     }
 
+    /**
+     * Remove all cached candidates.
+     * 
+     * @param aEvent
+     *            The event containing the project
+     */
+    @EventListener
+    public void onKnowledgeBaseConfigurationChangedEvent(
+            KnowledgeBaseConfigurationChangedEvent aEvent)
+    {
+        // The cache keys do not know their project, so we need to invalidate all - same as in
+        // the SemanticSignatureFeatureGenerator
+        candidateCache.invalidateAll();
+    }
+
+    @Override
     public Set<KBHandle> generateCandidates(KnowledgeBase aKB, String aConceptScope,
             ConceptFeatureValueType aValueType, String aQuery, String aMention)
+    {
+        // Only read-only KBs are cached because the content of other KBs can be edited by the
+        // user - the same rule also applies to the query cache of the KnowledgeBaseService
+        if (!aKB.isReadOnly()) {
+            return loadCandidates(aKB, aConceptScope, aValueType, aQuery, aMention);
+        }
+
+        Set<KBHandle> cachedCandidates = candidateCache.get(
+                new CandidateCacheKey(aKB, aConceptScope, aValueType, aQuery, aMention),
+                key -> unmodifiableSet(
+                        loadCandidates(aKB, aConceptScope, aValueType, aQuery, aMention)));
+
+        // The ranking sets the rank and debug info on the handles, so every caller needs to get
+        // its own copies of the cached handles
+        return cachedCandidates.stream() //
+                .map(KBHandle::new) //
+                .collect(Collectors.toCollection(HashSet::new));
+    }
+
+    private Set<KBHandle> loadCandidates(KnowledgeBase aKB, String aConceptScope,
+            ConceptFeatureValueType aValueType, String aQuery, String aMention)
     {
         // If the query of the user is smaller or equal to this threshold, then we only use it for
         // exact matching. If it is longer, we look for concepts which start with or which contain
@@ -422,4 +472,43 @@ public class ConceptLinkingServiceImpl
     {
         return disambiguate(aKB, null, ConceptFeatureValueType.ANY_OBJECT, aQuery, null, 0, null);
     }
+
+    private static class CandidateCacheKey
+    {
+        private final KnowledgeBase knowledgeBase;
+        private final String conceptScope;
+        private final ConceptFeatureValueType valueType;
+        private final String query;
+        private final String mention;
+
+        public CandidateCacheKey(KnowledgeBase aKnowledgeBase, String aConceptScope,
+                ConceptFeatureValueType aValueType, String aQuery, String aMention)
+        {
+            knowledgeBase = aKnowledgeBase;
+            conceptScope = aConceptScope;
+            valueType = aValueType;
+            query = aQuery;
+            mention = aMention;
+        }
+
+        @Override
+        public boolean equals(final Object other)
+        {
+            if (!(other instanceof CandidateCacheKey)) {
+                return false;
+            }
+            CandidateCacheKey castOther = (CandidateCacheKey) other;
+            return new EqualsBuilder().append(knowledgeBase, castOther.knowledgeBase)
+                    .append(conceptScope, castOther.conceptScope)
+                    .append(valueType, castOther.valueType).append(query, castOther.query)
+                    .append(mention, castOther.mention).isEquals();
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return new HashCodeBuilder().append(knowledgeBase).append(conceptScope)
+                    .append(valueType).append(query).append(mention).toHashCode();
+        }
+    }
 }
@@ -20,6 +20,7 @@ package de.tudarmstadt.ukp.inception.conceptlinking;
 import static de.tudarmstadt.ukp.clarin.webanno.api.casstorage.CasAccessMode.EXCLUSIVE_WRITE_ACCESS;
 import static de.tudarmstadt.ukp.inception.support.test.recommendation.RecommenderTestHelper.getPredictions;
 import static java.util.Arrays.asList;
+import static java.util.concurrent.TimeUnit.SECONDS;
 import static org.apache.uima.fit.factory.CollectionReaderFactory.createReader;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assumptions.assumeThat;
@@ -27,7 +28,10 @@ import static org.dkpro.core.api.datasets.DatasetValidationPolicy.CONTINUE;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.io.File;
@@ -35,8 +39,13 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import org.apache.uima.UIMAException;
 import org.apache.uima.cas.CAS;
@@ -57,13 +66,14 @@ import de.tudarmstadt.ukp.clarin.webanno.api.dao.casstorage.CasStorageSession;
 import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationFeature;
 import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationLayer;
 import de.tudarmstadt.ukp.dkpro.core.api.ner.type.NamedEntity;
+import de.tudarmstadt.ukp.dkpro.core.api.segmentation.type.Sentence;
 import de.tudarmstadt.ukp.inception.conceptlinking.recommender.NamedEntityLinker;
 import de.tudarmstadt.ukp.inception.conceptlinking.recommender.NamedEntityLinkerTraits;
 import de.tudarmstadt.ukp.inception.conceptlinking.service.ConceptLinkingServiceImpl;
 import de.tudarmstadt.ukp.inception.kb.ConceptFeatureTraits;
-import de.tudarmstadt.ukp.inception.kb.ConceptFeatureValueType;
 import de.tudarmstadt.ukp.inception.kb.IriConstants;
 import de.tudarmstadt.ukp.inception.kb.KnowledgeBaseService;
+import de.tudarmstadt.ukp.inception.kb.KnowledgeBaseService.ReadAction;
 import de.tudarmstadt.ukp.inception.kb.graph.KBHandle;
 import de.tudarmstadt.ukp.inception.kb.model.KnowledgeBase;
 import de.tudarmstadt.ukp.inception.recommendation.api.model.Recommender;
@@ -125,11 +135,14 @@ public class NamedEntityLinkerTest
         kb.setFullTextSearchIri(IriConstants.FTS_VIRTUOSO.stringValue());
         when(kbService.getKnowledgeBaseById(any(), anyString())).thenReturn(Optional.of(kb));
         when(kbService.getEnabledKnowledgeBases(any())).thenReturn(Collections.singletonList(kb));
-        when(kbService.read(any(), any())).thenReturn(mockResult);
+        when(kbService.read(any(), any())).thenAnswer(
+                call -> call.<ReadAction<?>> getArgument(1).accept(null));
 
         ConceptLinkingServiceImpl clService = mock(ConceptLinkingServiceImpl.class);
-        when(clService.disambiguate(any(), anyString(), any(ConceptFeatureValueType.class),
-                anyString(), anyString(), anyInt(), any())).thenReturn(mockResult);
+        when(clService.generateCandidates(any(), any(), any(), any(), anyString()))
+                .thenReturn(new HashSet<>(mockResult));
+        when(clService.rankCandidates(any(), anyString(), any(), any(), anyInt()))
+                .thenReturn(mockResult);
 
         FeatureSupportRegistry fsRegistry = mock(FeatureSupportRegistry.class);
         FeatureSupport fs = mock(FeatureSupport.class);
@@ -153,6 +166,103 @@ public class NamedEntityLinkerTest
         assertThat(predictions).as("Predictions have been written to CAS").isNotEmpty();
     }
 
+    @Test
+    public void thatCandidatesAreGeneratedOncePerMention() throws Exception
+    {
+        KnowledgeBaseService kbService = mock(KnowledgeBaseService.class);
+        KnowledgeBase kb = new KnowledgeBase();
+        kb.setFullTextSearchIri(IriConstants.FTS_VIRTUOSO.stringValue());
+        when(kbService.getEnabledKnowledgeBases(any())).thenReturn(Collections.singletonList(kb));
+        when(kbService.read(any(), any())).thenAnswer(
+                call -> call.<ReadAction<?>> getArgument(1).accept(null));
+
+        KBHandle obama = new KBHandle("https://www.wikidata.org/wiki/Q76", "Barack Obama");
+        ConceptLinkingServiceImpl clService = mock(ConceptLinkingServiceImpl.class);
+        when(clService.generateCandidates(any(), any(), any(), any(), anyString()))
+                .thenReturn(Set.of(obama));
+        when(clService.rankCandidates(any(), anyString(), any(), any(), anyInt()))
+                .thenReturn(asList(obama));
+
+        FeatureSupportRegistry fsRegistry = mock(FeatureSupportRegistry.class);
+        when(fsRegistry.readTraits(any(), any())).thenReturn(new ConceptFeatureTraits());
+
+        NamedEntityLinker sut = new NamedEntityLinker(recommender, new NamedEntityLinkerTraits(),
+                kbService, clService, fsRegistry, new ConceptFeatureTraits());
+
+        JCas jcas = JCasFactory.createJCas();
+        jcas.setDocumentText("Obama met Merkel. Obama left.");
+        new Sentence(jcas, 0, 17).addToIndexes();
+        new Sentence(jcas, 18, 29).addToIndexes();
+        new NamedEntity(jcas, 0, 5).addToIndexes();
+        new NamedEntity(jcas, 10, 16).addToIndexes();
+        new NamedEntity(jcas, 18, 23).addToIndexes();
+        CAS cas = jcas.getCas();
+        casStorageSession.add("cas", EXCLUSIVE_WRITE_ACCESS, cas);
+        RecommenderTestHelper.addScoreFeature(cas, NamedEntity.class, "value");
+
+        sut.predict(context, cas);
+
+        verify(clService, times(1)).generateCandidates(any(), any(), any(), any(), eq("Obama"));
+        verify(clService, times(1)).generateCandidates(any(), any(), any(), any(), eq("Merkel"));
+        verify(clService, times(3)).rankCandidates(any(), anyString(), any(), any(), anyInt());
+        assertThat(getPredictions(cas, NamedEntity.class)).hasSize(3);
+    }
+
+    @Test
+    public void thatMultipleKnowledgeBasesAreQueriedConcurrently() throws Exception
+    {
+        KnowledgeBaseService kbService = mock(KnowledgeBaseService.class);
+        KnowledgeBase kb1 = new KnowledgeBase();
+        kb1.setRepositoryId("kb1");
+        kb1.setFullTextSearchIri(IriConstants.FTS_VIRTUOSO.stringValue());
+        KnowledgeBase kb2 = new KnowledgeBase();
+        kb2.setRepositoryId("kb2");
+        kb2.setFullTextSearchIri(IriConstants.FTS_VIRTUOSO.stringValue());
+        when(kbService.getEnabledKnowledgeBases(any())).thenReturn(asList(kb1, kb2));
+        when(kbService.read(any(), any())).thenAnswer(
+                call -> call.<ReadAction<?>> getArgument(1).accept(null));
+
+        // Each query only returns once both knowledge bases are being queried at the same time
+        CountDownLatch queriesRunning = new CountDownLatch(2);
+        ConceptLinkingServiceImpl clService = mock(ConceptLinkingServiceImpl.class);
+        when(clService.generateCandidates(any(), any(), any(), any(), anyString()))
+                .thenAnswer(call -> {
+                    queriesRunning.countDown();
+                    assertThat(queriesRunning.await(10, SECONDS)).isTrue();
+                    KnowledgeBase kb = call.getArgument(0);
+                    return Set.of(new KBHandle("http://" + kb.getRepositoryId() + "/Obama"));
+                });
+        when(clService.rankCandidates(any(), anyString(), any(), any(), anyInt()))
+                .thenAnswer(call -> new ArrayList<>(call.<Set<KBHandle>> getArgument(2)));
+
+        FeatureSupportRegistry fsRegistry = mock(FeatureSupportRegistry.class);
+        when(fsRegistry.readTraits(any(), any())).thenReturn(new ConceptFeatureTraits());
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            NamedEntityLinker sut = new NamedEntityLinker(recommender,
+                    new NamedEntityLinkerTraits(), kbService, clService, fsRegistry,
+                    new ConceptFeatureTraits(), executor);
+
+            JCas jcas = JCasFactory.createJCas();
+            jcas.setDocumentText("Obama left.");
+            new Sentence(jcas, 0, 11).addToIndexes();
+            new NamedEntity(jcas, 0, 5).addToIndexes();
+            CAS cas = jcas.getCas();
+            casStorageSession.add("cas", EXCLUSIVE_WRITE_ACCESS, cas);
+            RecommenderTestHelper.addScoreFeature(cas, NamedEntity.class, "value");
+
+            sut.predict(context, cas);
+
+            assertThat(getPredictions(cas, NamedEntity.class)) //
+                    .extracting(NamedEntity::getIdentifier) //
+                    .containsExactly("http://kb1/Obama", "http://kb2/Obama");
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
     private List<CAS> loadDevelopmentData() throws IOException, UIMAException
     {
         Dataset ds = null;
@@ -45,6 +45,7 @@ import java.util.Map.Entry;
 import java.util.Optional;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.TreeSet;
 import java.util.stream.Stream;
 
 import org.apache.commons.lang3.StringUtils;
@@ -62,6 +63,7 @@ import org.slf4j.LoggerFactory;
 
 import de.tudarmstadt.ukp.clarin.webanno.api.AnnotationSchemaService;
 import de.tudarmstadt.ukp.clarin.webanno.api.annotation.adapter.RelationAdapter;
+import de.tudarmstadt.ukp.clarin.webanno.api.annotation.paging.Unit;
 import de.tudarmstadt.ukp.clarin.webanno.api.annotation.util.WebAnnoCasUtil;
 import de.tudarmstadt.ukp.clarin.webanno.curation.casdiff.api.DiffAdapter;
 import de.tudarmstadt.ukp.clarin.webanno.curation.casdiff.api.DiffAdapter_ImplBase;
@@ -78,7 +80,7 @@ public class CasDiff
 
     private Map<String, List<CAS>> cases = new LinkedHashMap<>();
 
-    private final Map<Position, ConfigurationSet> configSets = new TreeMap<>();
+    private final Map<Position, ConfigurationSet> configSets;
 
     private int begin;
 
@@ -96,6 +98,7 @@ public class CasDiff
         begin = aBegin;
         end = aEnd;
         linkCompareBehavior = aLinkCompareBehavior;
+        configSets = new TreeMap<>();
         if (aAdapters != null) {
             for (DiffAdapter adapter : aAdapters) {
                 diffAdapters.put(adapter.getType(), adapter);
@@ -103,6 +106,41 @@ public class CasDiff
         }
     }
 
+    /**
+     * Creates a copy of the given diff which shares the configuration sets with the given diff,
+     * but which is attached to the given CASes.
+     */
+    private CasDiff(CasDiff aOther, Map<String, List<CAS>> aCases)
+    {
+        begin = aOther.begin;
+        end = aOther.end;
+        linkCompareBehavior = aOther.linkCompareBehavior;
+        recurseIntoLinkFeatures = aOther.recurseIntoLinkFeatures;
+        diffAdapters.putAll(aOther.diffAdapters);
+        configSets = aOther.configSets;
+        cases = aCases;
+    }
+
+    /**
+     * Creates a copy of the given diff which only retains the configurations of the given CAS
+     * groups. The copy is not attached to any CASes.
+     */
+    private CasDiff(CasDiff aOther, Set<String> aCasGroupIds)
+    {
+        begin = aOther.begin;
+        end = aOther.end;
+        linkCompareBehavior = aOther.linkCompareBehavior;
+        recurseIntoLinkFeatures = aOther.recurseIntoLinkFeatures;
+        diffAdapters.putAll(aOther.diffAdapters);
+        configSets = new TreeMap<>();
+        for (ConfigurationSet set : aOther.configSets.values()) {
+            ConfigurationSet copy = new ConfigurationSet(set, aCasGroupIds);
+            if (!copy.casGroupIds.isEmpty()) {
+                configSets.put(copy.position, copy);
+            }
+        }
+    }
+
     /**
      * Calculate the differences between CASes. This method scopes the calculation of differences to
      * a span instead of calculating them on the whole text.
@@ -121,13 +159,236 @@ public class CasDiff
     public static CasDiff doDiffSingle(Iterable<? extends DiffAdapter> aAdapters,
             LinkCompareBehavior aLinkCompareBehavior, Map<String, CAS> aCasMap, int aBegin,
             int aEnd)
+    {
+        if (aBegin == -1 && aEnd == -1) {
+            return doDiff(aAdapters, aLinkCompareBehavior, toCasListMap(aCasMap), aBegin, aEnd);
+        }
+
+        return doDiffPerUnit(aAdapters, aLinkCompareBehavior, aCasMap,
+                asList(new Unit(0, aBegin, aEnd))).get(0);
+    }
+
+    /**
+     * Calculate the differences between CASes separately for each of the given units. Each unit is
+     * treated like the span passed to
+     * {@link #doDiffSingle(Iterable, LinkCompareBehavior, Map, int, int)}, but instead of selecting
+     * the annotations from every CAS again for every unit, the annotations in the range covered by
+     * the units are selected only once and then distributed to the units they belong to in a
+     * single pass.
+     * 
+     * @param aAdapters
+     *            a set of diff adapters telling how the diff algorithm should handle different
+     *            features
+     * @param aLinkCompareBehavior
+     *            the link comparison mode
+     * @param aCasMap
+     *            a set of CASes, each associated with an ID
+     * @param aUnits
+     *            the units for which differences should be calculated. Distributing the
+     *            annotations is fastest if the units are sorted by offset and do not overlap.
+     * @return one diff per unit in the order of the units.
+     */
+    public static List<CasDiff> doDiffPerUnit(Iterable<? extends DiffAdapter> aAdapters,
+            LinkCompareBehavior aLinkCompareBehavior, Map<String, CAS> aCasMap,
+            List<Unit> aUnits)
+    {
+        List<CasDiff> diffs = new ArrayList<>(aUnits.size());
+        for (Unit unit : aUnits) {
+            diffs.add(new CasDiff(unit.getBegin(), unit.getEnd(), aAdapters,
+                    aLinkCompareBehavior));
+        }
+
+        if (aCasMap.isEmpty() || aUnits.isEmpty()) {
+            return diffs;
+        }
+
+        long startTime = System.currentTimeMillis();
+
+        sanityCheck(toCasListMap(aCasMap));
+
+        addCasesPerUnit(diffs, aAdapters, aCasMap, aCasMap.keySet());
+
+        LOG.trace("CASDiff for {} units completed in {} ms", aUnits.size(),
+                System.currentTimeMillis() - startTime);
+
+        return diffs;
+    }
+
+    /**
+     * Re-calculates the given diff for the given CASes. Only the annotations from the CASes of the
+     * changed CAS groups are processed again while the results for all other CAS groups are taken
+     * over from the given diff. CAS groups which are not part of the given CAS map are dropped.
+     * The given diff is not modified.
+     * <p>
+     * The diff refers to annotations by their addresses. Thus, the CASes of all CAS groups which
+     * are not marked as changed must be the very same CASes on which the given diff has been
+     * calculated (or to which it has been {@link #attach attached}) and they must not have been
+     * modified since.
+     * 
+     * @param aDiff
+     *            a diff calculated by
+     *            {@link #doDiffSingle(Iterable, LinkCompareBehavior, Map, int, int)}.
+     * @param aCasMap
+     *            a set of CASes, each associated with an ID
+     * @param aChangedCasGroupIds
+     *            the IDs of the CAS groups which need to be processed again.
+     * @return the updated diff.
+     */
+    public static CasDiff doDiffIncremental(CasDiff aDiff, Map<String, CAS> aCasMap,
+            Collection<String> aChangedCasGroupIds)
+    {
+        return doDiffPerUnitIncremental(asList(aDiff), aCasMap, aChangedCasGroupIds).get(0);
+    }
+
+    /**
+     * Re-calculates the given per-unit diffs for the given CASes. See
+     * {@link #doDiffIncremental(CasDiff, Map, Collection)} for details.
+     * 
+     * @param aDiffs
+     *            diffs calculated by
+     *            {@link #doDiffPerUnit(Iterable, LinkCompareBehavior, Map, List)}.
+     * @param aCasMap
+     *            a set of CASes, each associated with an ID
+     * @param aChangedCasGroupIds
+     *            the IDs of the CAS groups which need to be processed again.
+     * @return the updated diffs in the order of the given diffs.
+     */
+    public static List<CasDiff> doDiffPerUnitIncremental(List<CasDiff> aDiffs,
+            Map<String, CAS> aCasMap, Collection<String> aChangedCasGroupIds)
+    {
+        Set<String> keptCasGroupIds = new HashSet<>(aCasMap.keySet());
+        keptCasGroupIds.removeAll(aChangedCasGroupIds);
+
+        List<CasDiff> diffs = new ArrayList<>(aDiffs.size());
+        for (CasDiff diff : aDiffs) {
+            diffs.add(new CasDiff(diff, keptCasGroupIds));
+        }
+
+        if (aCasMap.isEmpty() || diffs.isEmpty()) {
+            return diffs;
+        }
+
+        long startTime = System.currentTimeMillis();
+
+        sanityCheck(toCasListMap(aCasMap));
+
+        Set<String> changedCasGroupIds = new HashSet<>(aCasMap.keySet());
+        changedCasGroupIds.removeAll(keptCasGroupIds);
+
+        addCasesPerUnit(diffs, diffs.get(0).diffAdapters.values(), aCasMap, changedCasGroupIds);
+
+        LOG.trace("Incremental CASDiff of {} out of {} CAS groups for {} units completed in {} ms",
+                changedCasGroupIds.size(), aCasMap.size(), diffs.size(),
+                System.currentTimeMillis() - startTime);
+
+        return diffs;
+    }
+
+    /**
+     * Registers all the given CASes with the given diffs and adds the annotations from the CASes
+     * of the given CAS groups to the diffs they belong to. The annotations are selected only once
+     * per CAS and adapter for the range covered by all the diffs and then distributed to the
+     * diffs in a single pass.
+     */
+    private static void addCasesPerUnit(List<CasDiff> aDiffs,
+            Iterable<? extends DiffAdapter> aAdapters, Map<String, CAS> aCasMap,
+            Collection<String> aCasGroupIdsToAdd)
+    {
+        // A single diff may be unbounded, i.e. cover the whole text
+        boolean unbounded = aDiffs.size() == 1 && aDiffs.get(0).begin == -1
+                && aDiffs.get(0).end == -1;
+
+        // If the diffs are ordered by their begin and end offsets, we can locate the diffs an
+        // annotation belongs to by binary search and stop at the first diff beginning after the
+        // annotation. Otherwise, we have to check every diff.
+        boolean ordered = true;
+        int rangeBegin = aDiffs.get(0).begin;
+        int rangeEnd = aDiffs.get(0).end;
+        for (int i = 1; i < aDiffs.size(); i++) {
+            CasDiff prev = aDiffs.get(i - 1);
+            CasDiff diff = aDiffs.get(i);
+            ordered &= prev.begin <= diff.begin && prev.end <= diff.end;
+            rangeBegin = Math.min(rangeBegin, diff.begin);
+            rangeEnd = Math.max(rangeEnd, diff.end);
+        }
+
+        for (Entry<String, CAS> e : aCasMap.entrySet()) {
+            CAS cas = e.getValue();
+
+            for (CasDiff diff : aDiffs) {
+                diff.registerCas(e.getKey(), 0, cas);
+            }
+
+            // null elements can occur if a user has never worked on a CAS
+            if (cas == null || !aCasGroupIdsToAdd.contains(e.getKey())) {
+                continue;
+            }
+
+            logCas(e.getKey(), 0, cas);
+
+            for (DiffAdapter adapter : aAdapters) {
+                Type type = cas.getTypeSystem().getType(adapter.getType());
+                if (type == null) {
+                    continue;
+                }
+
+                if (unbounded) {
+                    aDiffs.get(0).addAnnotations(e.getKey(), 0, adapter.getType(),
+                            select(cas, type));
+                    continue;
+                }
+
+                List<List<AnnotationFS>> annotationsPerDiff = new ArrayList<>(aDiffs.size());
+                for (int i = 0; i < aDiffs.size(); i++) {
+                    annotationsPerDiff.add(new ArrayList<>());
+                }
+
+                for (AnnotationFS ann : adapter.selectAnnotationsInWindow(cas, rangeBegin,
+                        rangeEnd)) {
+                    int first = ordered ? firstDiffEndingAtOrAfter(aDiffs, ann.getBegin()) : 0;
+                    for (int i = first; i < aDiffs.size(); i++) {
+                        CasDiff diff = aDiffs.get(i);
+                        if (ordered && diff.begin > ann.getEnd()) {
+                            break;
+                        }
+
+                        if (adapter.isInWindow(ann, diff.begin, diff.end)) {
+                            annotationsPerDiff.get(i).add(ann);
+                        }
+                    }
+                }
+
+                for (int i = 0; i < aDiffs.size(); i++) {
+                    aDiffs.get(i).addAnnotations(e.getKey(), 0, adapter.getType(),
+                            annotationsPerDiff.get(i));
+                }
+            }
+        }
+    }
+
+    private static int firstDiffEndingAtOrAfter(List<CasDiff> aDiffs, int aOffset)
+    {
+        int low = 0;
+        int high = aDiffs.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (aDiffs.get(mid).end < aOffset) {
+                low = mid + 1;
+            }
+            else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static Map<String, List<CAS>> toCasListMap(Map<String, CAS> aCasMap)
     {
         Map<String, List<CAS>> casMap = new LinkedHashMap<>();
         for (Entry<String, CAS> e : aCasMap.entrySet()) {
             casMap.put(e.getKey(), asList(e.getValue()));
         }
-
-        return doDiff(aAdapters, aLinkCompareBehavior, casMap, aBegin, aEnd);
+        return casMap;
     }
 
     /**
@@ -272,6 +533,44 @@ public class CasDiff
      *            the type on which to calculate the diff.
      */
     private void addCas(String aCasGroupId, int aCasId, CAS aCas, String aType)
+    {
+        registerCas(aCasGroupId, aCasId, aCas);
+
+        // null elements in the list can occur if a user has never worked on a CAS
+        // We add these to the internal list above, but then we bail out here.
+        if (aCas == null) {
+            LOG.debug("CAS group [{}] does not contain a CAS at index [{}].", aCasGroupId,
+                    aCasId);
+            return;
+        }
+
+        logCas(aCasGroupId, aCasId, aCas);
+
+        Type type = aCas.getTypeSystem().getType(aType);
+        if (type == null) {
+            LOG.debug("CAS group [{}] CAS [{}] contains no annotations of type [{}]", aCasGroupId,
+                    aCasId, aType);
+            return;
+        }
+
+        DiffAdapter adapter = getAdapter(aType);
+
+        Collection<AnnotationFS> annotations;
+        if (begin == -1 && end == -1) {
+            annotations = select(aCas, type);
+        }
+        else {
+            annotations = adapter.selectAnnotationsInWindow(aCas, begin, end);
+        }
+
+        addAnnotations(aCasGroupId, aCasId, aType, annotations);
+    }
+
+    /**
+     * Remembers the given CAS. A CAS can be registered multiple times with the same ID, e.g. once
+     * for every type, but it is only remembered once.
+     */
+    private void registerCas(String aCasGroupId, int aCasId, CAS aCas)
     {
         // Remember that we have already seen this CAS.
         List<CAS> casList = cases.get(aCasGroupId);
@@ -289,15 +588,10 @@ public class CasDiff
         }
         assert (casList.size() - 1) == aCasId : "Expected CAS ID [" + (casList.size() - 1)
                 + "] but was [" + aCasId + "]";
+    }
 
-        // null elements in the list can occur if a user has never worked on a CAS
-        // We add these to the internal list above, but then we bail out here.
-        if (aCas == null) {
-            LOG.debug("CAS group [" + aCasGroupId + "] does not contain a CAS at index [" + aCasId
-                    + "].");
-            return;
-        }
-
+    private static void logCas(String aCasGroupId, int aCasId, CAS aCas)
+    {
         if (LOG.isDebugEnabled()) {
             LOG.debug("Processing CAS group [" + aCasGroupId + "] CAS [" + aCasId + "].");
 
@@ -314,37 +608,30 @@ public class CasDiff
                 // is missing.
             }
         }
+    }
 
-        Type type = aCas.getTypeSystem().getType(aType);
-        if (type == null) {
-            LOG.debug("CAS group [" + aCasGroupId + "] CAS [" + aCasId
-                    + "] contains no annotations of type [" + aType + "]");
+    /**
+     * Adds the given annotations of the given type from the given CAS to the diff. The CAS must
+     * have been registered before.
+     */
+    private void addAnnotations(String aCasGroupId, int aCasId, String aType,
+            Collection<AnnotationFS> aAnnotations)
+    {
+        if (aAnnotations.isEmpty()) {
+            LOG.debug("CAS group [{}] CAS [{}] contains no annotations of type [{}]", aCasGroupId,
+                    aCasId, aType);
             return;
         }
 
-        DiffAdapter adapter = getAdapter(aType);
-
-        Collection<AnnotationFS> annotations;
-        if (begin == -1 && end == -1) {
-            annotations = select(aCas, type);
-        }
-        else {
-            annotations = adapter.selectAnnotationsInWindow(aCas, begin, end);
-        }
-
-        if (annotations.isEmpty()) {
-            LOG.debug("CAS group [" + aCasGroupId + "] CAS [" + aCasId
-                    + "] contains no annotations of type [" + aType + "]");
-            return;
-        }
+        LOG.debug("CAS group [{}] CAS [{}] contains [{}] annotations of type [{}]", aCasGroupId,
+                aCasId, aAnnotations.size(), aType);
 
-        LOG.debug("CAS group [" + aCasGroupId + "] CAS [" + aCasId + "] contains ["
-                + annotations.size() + "] annotations of type [" + aType + "]");
+        DiffAdapter adapter = getAdapter(aType);
 
         int posBefore = configSets.keySet().size();
         LOG.debug("Positions before: [{}]", posBefore);
 
-        for (AnnotationFS fs : annotations) {
+        for (AnnotationFS fs : aAnnotations) {
             List<Position> positions = new ArrayList<>();
 
             // Get/create configuration set at the current position
@@ -507,6 +794,24 @@ public class CasDiff
             position = aPosition;
         }
 
+        private ConfigurationSet(ConfigurationSet aOther, Set<String> aCasGroupIds)
+        {
+            position = aOther.position;
+
+            for (String casGroupId : aOther.casGroupIds) {
+                if (aCasGroupIds.contains(casGroupId)) {
+                    casGroupIds.add(casGroupId);
+                }
+            }
+
+            for (Configuration cfg : aOther.configurations) {
+                Configuration copy = new Configuration(cfg, aCasGroupIds);
+                if (!copy.fsAddresses.isEmpty()) {
+                    configurations.add(copy);
+                }
+            }
+        }
+
         /**
          * Gets the total number of configurations recorded in this set. If a configuration has been
          * seen in multiple CASes, it will be counted multiple times.
@@ -817,10 +1122,10 @@ public class CasDiff
         private final Map<String, AID> fsAddresses = new TreeMap<>();
 
         /**
-         * Flag indicating that there is at least once CAS group containing more than one annotation
-         * at this position - i.e. a stacked annotation.
+         * The CAS groups containing more than one annotation at this position - i.e. a stacked
+         * annotation. This is {@code null} as long as there is no such CAS group.
          */
-        private boolean stacked = false;
+        private Set<String> stackedCasGroupIds;
 
         public String getRepresentativeCasGroupId()
         {
@@ -837,6 +1142,25 @@ public class CasDiff
             position = aPosition;
         }
 
+        private Configuration(Configuration aOther, Set<String> aCasGroupIds)
+        {
+            position = aOther.position;
+
+            for (Entry<String, AID> e : aOther.fsAddresses.entrySet()) {
+                if (aCasGroupIds.contains(e.getKey())) {
+                    fsAddresses.put(e.getKey(), e.getValue());
+                }
+            }
+
+            if (aOther.stackedCasGroupIds != null) {
+                for (String casGroupId : aOther.stackedCasGroupIds) {
+                    if (aCasGroupIds.contains(casGroupId)) {
+                        markStacked(casGroupId);
+                    }
+                }
+            }
+        }
+
         public Position getPosition()
         {
             return position;
@@ -844,7 +1168,7 @@ public class CasDiff
 
         public boolean isStacked()
         {
-            return stacked;
+            return stackedCasGroupIds != null;
         }
 
         /**
@@ -854,8 +1178,16 @@ public class CasDiff
         {
             AID old = fsAddresses.put(aCasGroupId, aAID);
             if (old != null) {
-                stacked = true;
+                markStacked(aCasGroupId);
+            }
+        }
+
+        private void markStacked(String aCasGroupId)
+        {
+            if (stackedCasGroupIds == null) {
+                stackedCasGroupIds = new TreeSet<>();
             }
+            stackedCasGroupIds.add(aCasGroupId);
         }
 
         private void add(String aCasGroupId, FeatureStructure aFS)
@@ -1288,43 +1620,28 @@ public class CasDiff
         return new DiffResult(this);
     }
 
-    // private Set<String> entryTypes = new LinkedHashSet<>();
-
-    // /**
-    // * Clear the attachment to CASes allowing the class to be serialized.
-    // */
-    // public void detach()
-    // {
-    // if (cases != null) {
-    // cases.clear();
-    // }
-    // }
-
-    // /**
-    // * Rebuilds the diff with the current offsets and entry types. This can be used to fix the
-    // diff
-    // * after reattaching to CASes that have changed. Mind that the diff results can be differnent
-    // * due to the changes.
-    // */
-    // public void rebuild()
-    // {
-    // Map<String, CAS> oldCases = cases;
-    // cases = new HashMap<>();
-    //
-    // for (String t : entryTypes) {
-    // for (Entry<String, CAS> e : oldCases.entrySet()) {
-    // addCas(e.getKey(), e.getValue(), t);
-    // }
-    // }
-    // }
-
-    // /**
-    // * Attach CASes back so that representatives can be resolved. CASes must not have been changed
-    // * or upgraded between detaching and reattaching - the CAS addresses of the feature structures
-    // * must still be the same.
-    // */
-    // public void attach(Map<String, CAS> aCases)
-    // {
-    // cases = new HashMap<>(aCases);
-    // }
+    /**
+     * @return a copy of this diff which is not attached to any CASes, e.g. to keep it around
+     *         without also keeping the CASes. The copy shares the configuration sets with this
+     *         diff. Use {@link #attach(Map)} to resolve the annotations again.
+     */
+    public CasDiff detach()
+    {
+        return new CasDiff(this, new LinkedHashMap<>());
+    }
+
+    /**
+     * Attach CASes so that representatives can be resolved. The CASes must be the same CASes on
+     * which this diff has been calculated and must not have been changed since - the CAS addresses
+     * of the feature structures must still be the same.
+     * 
+     * @param aCasMap
+     *            a set of CASes, each associated with an ID
+     * @return a copy of this diff which is attached to the given CASes. The copy shares the
+     *         configuration sets with this diff.
+     */
+    public CasDiff attach(Map<String, CAS> aCasMap)
+    {
+        return new CasDiff(this, toCasListMap(aCasMap));
+    }
 }
@@ -40,6 +40,8 @@ public interface DiffAdapter
 
     LinkFeatureDecl getLinkFeature(String aFeature);
 
+    List<LinkFeatureDecl> getLinkFeatures();
+
     Set<String> getLabelFeatures();
 
     Position getPosition(int aCasId, FeatureStructure aFS);
@@ -48,4 +50,18 @@ public interface DiffAdapter
             int aLinkTargetBegin, int aLinkTargetEnd, LinkCompareBehavior aLinkCompareBehavior);
 
     List<AnnotationFS> selectAnnotationsInWindow(CAS aCas, int aWindowBegin, int aWindowEnd);
+
+    /**
+     * Checks whether the given annotation would be selected by
+     * {@link #selectAnnotationsInWindow(CAS, int, int)} for the given window.
+     * 
+     * @param aAnnotation
+     *            an annotation of the type handled by this adapter.
+     * @param aWindowBegin
+     *            the window begin offset.
+     * @param aWindowEnd
+     *            the window end offset.
+     * @return whether the annotation belongs to the window.
+     */
+    boolean isInWindow(AnnotationFS aAnnotation, int aWindowBegin, int aWindowEnd);
 }
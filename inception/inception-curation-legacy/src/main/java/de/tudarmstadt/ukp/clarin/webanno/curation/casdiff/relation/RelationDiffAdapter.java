@@ -30,6 +30,7 @@ import org.apache.uima.cas.CAS;
 import org.apache.uima.cas.FeatureStructure;
 import org.apache.uima.cas.Type;
 import org.apache.uima.cas.text.AnnotationFS;
+import org.apache.uima.cas.text.AnnotationPredicates;
 import org.apache.uima.fit.util.CasUtil;
 import org.apache.uima.fit.util.FSUtil;
 
@@ -79,6 +80,12 @@ public class RelationDiffAdapter
         return selectCovered(aCas, CasUtil.getType(aCas, getType()), aWindowBegin, aWindowEnd);
     }
 
+    @Override
+    public boolean isInWindow(AnnotationFS aAnnotation, int aWindowBegin, int aWindowEnd)
+    {
+        return AnnotationPredicates.coveredBy(aAnnotation, aWindowBegin, aWindowEnd);
+    }
+
     @Override
     public Position getPosition(int aCasId, FeatureStructure aFS, String aFeature, String aRole,
             int aLinkTargetBegin, int aLinkTargetEnd, LinkCompareBehavior aLinkCompareBehavior)
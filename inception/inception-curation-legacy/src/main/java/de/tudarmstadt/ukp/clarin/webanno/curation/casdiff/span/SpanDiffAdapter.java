@@ -77,6 +77,13 @@ public class SpanDiffAdapter
                 .collect(toList());
     }
 
+    @Override
+    public boolean isInWindow(AnnotationFS aAnnotation, int aWindowBegin, int aWindowEnd)
+    {
+        return aAnnotation.getBegin() <= aWindowEnd
+                && AnnotationPredicates.overlapping(aAnnotation, aWindowBegin, aWindowEnd);
+    }
+
     @Override
     public Position getPosition(int aCasId, FeatureStructure aFS, String aFeature, String aRole,
             int aLinkTargetBegin, int aLinkTargetEnd, LinkCompareBehavior aLinkCompareBehavior)
@@ -18,6 +18,10 @@
 package de.tudarmstadt.ukp.clarin.webanno.curation.casdiff;
 
 import static de.tudarmstadt.ukp.clarin.webanno.curation.casdiff.CasDiff.doDiff;
+import static de.tudarmstadt.ukp.clarin.webanno.curation.casdiff.CasDiff.doDiffIncremental;
+import static de.tudarmstadt.ukp.clarin.webanno.curation.casdiff.CasDiff.doDiffPerUnit;
+import static de.tudarmstadt.ukp.clarin.webanno.curation.casdiff.CasDiff.doDiffPerUnitIncremental;
+import static de.tudarmstadt.ukp.clarin.webanno.curation.casdiff.CasDiff.doDiffSingle;
 import static de.tudarmstadt.ukp.clarin.webanno.curation.casdiff.CurationTestUtils.HOST_TYPE;
 import static de.tudarmstadt.ukp.clarin.webanno.curation.casdiff.CurationTestUtils.createMultiLinkWithRoleTestTypeSystem;
 import static de.tudarmstadt.ukp.clarin.webanno.curation.casdiff.CurationTestUtils.load;
@@ -32,6 +36,8 @@ import static java.util.Arrays.asList;
 import static org.apache.uima.fit.factory.JCasFactory.createJCas;
 import static org.apache.uima.fit.util.JCasUtil.select;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -52,6 +58,7 @@ import org.apache.uima.util.CasCreationUtils;
 import org.junit.jupiter.api.Test;
 
 import de.tudarmstadt.ukp.clarin.webanno.api.WebAnnoConst;
+import de.tudarmstadt.ukp.clarin.webanno.api.annotation.paging.Unit;
 import de.tudarmstadt.ukp.clarin.webanno.curation.casdiff.CasDiff.DiffResult;
 import de.tudarmstadt.ukp.clarin.webanno.curation.casdiff.api.DiffAdapter;
 import de.tudarmstadt.ukp.clarin.webanno.curation.casdiff.relation.RelationDiffAdapter;
@@ -272,6 +279,108 @@ public class CasDiffTest
         // assertEquals(0, agreement.getIncompleteSetsByPosition().size());
     }
 
+    @Test
+    public void perUnitDiffMatchesWindowedDiffTest() throws Exception
+    {
+        Map<String, List<CAS>> casByUser = load("casdiff/someDifferences/user1.conll",
+                "casdiff/someDifferences/user2.conll");
+
+        Map<String, CAS> casses = new LinkedHashMap<>();
+        casByUser.forEach((user, list) -> casses.put(user, list.get(0)));
+
+        List<Unit> units = new ArrayList<>();
+        for (Token token : select(casses.get("user1").getJCas(), Token.class)) {
+            units.add(new Unit(units.size() + 1, token.getBegin(), token.getEnd()));
+        }
+
+        List<? extends DiffAdapter> diffAdapters = asList(POS_DIFF_ADAPTER,
+                DEPENDENCY_DIFF_ADAPTER);
+
+        List<CasDiff> diffs = doDiffPerUnit(diffAdapters, LINK_TARGET_AS_LABEL, casses, units);
+
+        assertEquals(units.size(), diffs.size());
+        int differences = 0;
+        for (int i = 0; i < units.size(); i++) {
+            Unit unit = units.get(i);
+            DiffResult expected = doDiff(diffAdapters, LINK_TARGET_AS_LABEL, casByUser,
+                    unit.getBegin(), unit.getEnd()).toResult();
+            DiffResult actual = diffs.get(i).toResult();
+
+            assertEquals(expected.getCasGroupIds(), actual.getCasGroupIds());
+            assertEquals(expected.getPositions().toString(), actual.getPositions().toString());
+            assertEquals(expected.getDifferingConfigurationSets().keySet().toString(),
+                    actual.getDifferingConfigurationSets().keySet().toString());
+            assertEquals(expected.getIncompleteConfigurationSets().keySet().toString(),
+                    actual.getIncompleteConfigurationSets().keySet().toString());
+            differences += actual.getDifferingConfigurationSets().size();
+        }
+
+        assertEquals(6, differences);
+    }
+
+    @Test
+    public void incrementalDiffMatchesFullDiffTest() throws Exception
+    {
+        Map<String, List<CAS>> before = load("casdiff/someDifferences/user1.conll",
+                "casdiff/someDifferences/user1.conll");
+        Map<String, List<CAS>> after = load("casdiff/someDifferences/user1.conll",
+                "casdiff/someDifferences/user2.conll");
+
+        Map<String, CAS> cassesBefore = new LinkedHashMap<>();
+        before.forEach((user, list) -> cassesBefore.put(user, list.get(0)));
+
+        // Only the CAS of user2 changes, user1 must remain the very same CAS
+        Map<String, CAS> cassesAfter = new LinkedHashMap<>(cassesBefore);
+        cassesAfter.put("user2", after.get("user2").get(0));
+
+        List<Unit> units = new ArrayList<>();
+        for (Token token : select(cassesBefore.get("user1").getJCas(), Token.class)) {
+            units.add(new Unit(units.size() + 1, token.getBegin(), token.getEnd()));
+        }
+
+        List<? extends DiffAdapter> diffAdapters = asList(POS_DIFF_ADAPTER,
+                DEPENDENCY_DIFF_ADAPTER);
+
+        // Whole document
+        CasDiff diffBefore = doDiffSingle(diffAdapters, LINK_TARGET_AS_LABEL, cassesBefore, -1,
+                -1);
+        assertFalse(diffBefore.toResult().hasDifferences());
+
+        DiffResult expected = doDiffSingle(diffAdapters, LINK_TARGET_AS_LABEL, cassesAfter, -1, -1)
+                .toResult();
+        DiffResult actual = doDiffIncremental(diffBefore.detach(), cassesAfter, asList("user2"))
+                .toResult();
+
+        assertEquals(expected.getCasGroupIds(), actual.getCasGroupIds());
+        assertEquals(expected.getPositions().toString(), actual.getPositions().toString());
+        assertEquals(expected.getDifferingConfigurationSets().keySet().toString(),
+                actual.getDifferingConfigurationSets().keySet().toString());
+        assertEquals(expected.getIncompleteConfigurationSets().keySet().toString(),
+                actual.getIncompleteConfigurationSets().keySet().toString());
+        assertTrue(actual.hasDifferences());
+
+        // Per unit
+        List<CasDiff> diffsBefore = doDiffPerUnit(diffAdapters, LINK_TARGET_AS_LABEL,
+                cassesBefore, units);
+        List<CasDiff> expectedDiffs = doDiffPerUnit(diffAdapters, LINK_TARGET_AS_LABEL,
+                cassesAfter, units);
+        List<CasDiff> actualDiffs = doDiffPerUnitIncremental(diffsBefore, cassesAfter,
+                asList("user2"));
+
+        assertEquals(units.size(), actualDiffs.size());
+        for (int i = 0; i < units.size(); i++) {
+            DiffResult expectedUnit = expectedDiffs.get(i).toResult();
+            DiffResult actualUnit = actualDiffs.get(i).toResult();
+
+            assertEquals(expectedUnit.getPositions().toString(),
+                    actualUnit.getPositions().toString());
+            assertEquals(expectedUnit.getDifferingConfigurationSets().keySet().toString(),
+                    actualUnit.getDifferingConfigurationSets().keySet().toString());
+            // The diffs before the update must not have been modified
+            assertFalse(diffsBefore.get(i).toResult().hasDifferences());
+        }
+    }
+
     @Test
     public void singleNoDifferencesTest() throws Exception
     {
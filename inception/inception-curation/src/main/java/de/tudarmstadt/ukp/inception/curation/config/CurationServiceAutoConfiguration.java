@@ -40,6 +40,8 @@ import de.tudarmstadt.ukp.inception.curation.merge.MergeStrategyFactoryExtension
 import de.tudarmstadt.ukp.inception.curation.merge.MergeStrategyFactoryExtensionPointImpl;
 import de.tudarmstadt.ukp.inception.curation.merge.ThresholdBasedMergeStrategyFactory;
 import de.tudarmstadt.ukp.inception.curation.merge.ThresholdBasedMergeStrategyFactoryImpl;
+import de.tudarmstadt.ukp.inception.curation.service.CasDiffService;
+import de.tudarmstadt.ukp.inception.curation.service.CasDiffServiceImpl;
 import de.tudarmstadt.ukp.inception.curation.service.CurationMergeService;
 import de.tudarmstadt.ukp.inception.curation.service.CurationMergeServiceImpl;
 import de.tudarmstadt.ukp.inception.curation.service.CurationService;
@@ -78,11 +80,18 @@ public class CurationServiceAutoConfiguration
         return new CurationServiceImpl(entityManager, aMergeStrategyFactoryExtensionPoint);
     }
 
+    @Bean
+    public CasDiffService casDiffService(DocumentService aDocumentService)
+    {
+        return new CasDiffServiceImpl(aDocumentService);
+    }
+
     @Bean
     public CurationMergeService curationMergeService(AnnotationSchemaService aAnnotationService,
-            AnnotationEditorProperties aAnnotationEditorProperties)
+            AnnotationEditorProperties aAnnotationEditorProperties, CasDiffService aCasDiffService)
     {
-        return new CurationMergeServiceImpl(aAnnotationService, aAnnotationEditorProperties);
+        return new CurationMergeServiceImpl(aAnnotationService, aAnnotationEditorProperties,
+                aCasDiffService);
     }
 
     @Bean
@@ -0,0 +1,80 @@
+/*
+ * Licensed to the Technische Universität Darmstadt under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The Technische Universität Darmstadt 
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.
+ *  
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.curation.service;
+
+import java.util.List;
+import java.util.Map;
+
+import org.apache.uima.cas.CAS;
+
+import de.tudarmstadt.ukp.clarin.webanno.api.annotation.paging.Unit;
+import de.tudarmstadt.ukp.clarin.webanno.curation.casdiff.CasDiff;
+import de.tudarmstadt.ukp.clarin.webanno.curation.casdiff.LinkCompareBehavior;
+import de.tudarmstadt.ukp.clarin.webanno.curation.casdiff.api.DiffAdapter;
+import de.tudarmstadt.ukp.clarin.webanno.model.SourceDocument;
+
+/**
+ * Calculates {@link CasDiff diffs} between the CASes of a document and caches the results. A
+ * cached result is re-used as long as the CASes of all users remain unchanged, i.e. they have the
+ * same timestamp in the CAS storage and are still the same CAS instances. If the CASes of only some
+ * users changed, only their annotations are processed again.
+ */
+public interface CasDiffService
+{
+    /**
+     * Calculates the differences between the given CASes. See
+     * {@link CasDiff#doDiffSingle(Iterable, LinkCompareBehavior, Map, int, int)}.
+     * 
+     * @param aDocument
+     *            the document to which the CASes belong.
+     * @param aAdapters
+     *            the diff adapters describing the layers to compare.
+     * @param aLinkCompareBehavior
+     *            the link comparison mode.
+     * @param aCasMap
+     *            the CASes to compare by user name.
+     * @param aBegin
+     *            begin of the span for which differences should be calculated.
+     * @param aEnd
+     *            end of the span for which differences should be calculated.
+     * @return the diff which is attached to the given CASes.
+     */
+    CasDiff getDiff(SourceDocument aDocument, List<? extends DiffAdapter> aAdapters,
+            LinkCompareBehavior aLinkCompareBehavior, Map<String, CAS> aCasMap, int aBegin,
+            int aEnd);
+
+    /**
+     * Calculates the differences between the given CASes separately for each of the given units.
+     * See {@link CasDiff#doDiffPerUnit(Iterable, LinkCompareBehavior, Map, List)}.
+     * 
+     * @param aDocument
+     *            the document to which the CASes belong.
+     * @param aAdapters
+     *            the diff adapters describing the layers to compare.
+     * @param aLinkCompareBehavior
+     *            the link comparison mode.
+     * @param aCasMap
+     *            the CASes to compare by user name.
+     * @param aUnits
+     *            the units for which differences should be calculated.
+     * @return one diff per unit in the order of the units, each attached to the given CASes.
+     */
+    List<CasDiff> getDiffPerUnit(SourceDocument aDocument, List<? extends DiffAdapter> aAdapters,
+            LinkCompareBehavior aLinkCompareBehavior, Map<String, CAS> aCasMap,
+            List<Unit> aUnits);
+}
@@ -0,0 +1,292 @@
+/*
+ * Licensed to the Technische Universität Darmstadt under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The Technische Universität Darmstadt 
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.
+ *  
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.curation.service;
+
+import static de.tudarmstadt.ukp.clarin.webanno.curation.casdiff.CasDiff.doDiffPerUnit;
+import static de.tudarmstadt.ukp.clarin.webanno.curation.casdiff.CasDiff.doDiffPerUnitIncremental;
+import static de.tudarmstadt.ukp.clarin.webanno.curation.casdiff.CasDiff.doDiffSingle;
+import static java.lang.invoke.MethodHandles.lookup;
+import static java.util.Arrays.asList;
+import static java.util.stream.Collectors.toList;
+import static org.slf4j.LoggerFactory.getLogger;
+
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Supplier;
+
+import org.apache.uima.cas.CAS;
+import org.apache.uima.cas.TypeSystem;
+import org.slf4j.Logger;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import de.tudarmstadt.ukp.clarin.webanno.api.DocumentService;
+import de.tudarmstadt.ukp.clarin.webanno.api.annotation.paging.Unit;
+import de.tudarmstadt.ukp.clarin.webanno.api.dao.casstorage.CasModificationTracker;
+import de.tudarmstadt.ukp.clarin.webanno.curation.casdiff.CasDiff;
+import de.tudarmstadt.ukp.clarin.webanno.curation.casdiff.LinkCompareBehavior;
+import de.tudarmstadt.ukp.clarin.webanno.curation.casdiff.LinkFeatureDecl;
+import de.tudarmstadt.ukp.clarin.webanno.curation.casdiff.api.DiffAdapter;
+import de.tudarmstadt.ukp.clarin.webanno.model.SourceDocument;
+import de.tudarmstadt.ukp.inception.curation.config.CurationServiceAutoConfiguration;
+
+/**
+ * <p>
+ * This class is exposed as a Spring Component via
+ * {@link CurationServiceAutoConfiguration#casDiffService}.
+ * </p>
+ */
+public class CasDiffServiceImpl
+    implements CasDiffService
+{
+    private final static Logger LOG = getLogger(lookup().lookupClass());
+
+    private static final int CACHE_SIZE = 100;
+    private static final Duration CACHE_EXPIRY = Duration.ofMinutes(5);
+
+    private final DocumentService documentService;
+
+    /**
+     * The most recent diff for each document, set of layers, link comparison mode and window. The
+     * CAS timestamps are not part of the key but are remembered with the diff so that a diff can
+     * be updated incrementally if only some of the CASes changed. The cached diffs are
+     * {@link CasDiff#detach() detached} so they do not keep the CASes in memory.
+     */
+    private final Cache<DiffKey, CachedDiff> diffCache;
+
+    public CasDiffServiceImpl(DocumentService aDocumentService)
+    {
+        documentService = aDocumentService;
+
+        diffCache = Caffeine.newBuilder() //
+                .maximumSize(CACHE_SIZE) //
+                .expireAfterAccess(CACHE_EXPIRY) //
+                .build();
+    }
+
+    @Override
+    public CasDiff getDiff(SourceDocument aDocument, List<? extends DiffAdapter> aAdapters,
+            LinkCompareBehavior aLinkCompareBehavior, Map<String, CAS> aCasMap, int aBegin,
+            int aEnd)
+    {
+        DiffKey key = new DiffKey(aDocument, aAdapters, aLinkCompareBehavior,
+                new int[] { aBegin, aEnd });
+
+        return getDiffs(key, aDocument, aCasMap, () -> asList(
+                doDiffSingle(aAdapters, aLinkCompareBehavior, aCasMap, aBegin, aEnd))).get(0);
+    }
+
+    @Override
+    public List<CasDiff> getDiffPerUnit(SourceDocument aDocument,
+            List<? extends DiffAdapter> aAdapters, LinkCompareBehavior aLinkCompareBehavior,
+            Map<String, CAS> aCasMap, List<Unit> aUnits)
+    {
+        int[] offsets = new int[aUnits.size() * 2];
+        for (int i = 0; i < aUnits.size(); i++) {
+            offsets[i * 2] = aUnits.get(i).getBegin();
+            offsets[i * 2 + 1] = aUnits.get(i).getEnd();
+        }
+
+        DiffKey key = new DiffKey(aDocument, aAdapters, aLinkCompareBehavior, offsets);
+
+        return getDiffs(key, aDocument, aCasMap,
+                () -> doDiffPerUnit(aAdapters, aLinkCompareBehavior, aCasMap, aUnits));
+    }
+
+    private List<CasDiff> getDiffs(DiffKey aKey, SourceDocument aDocument,
+            Map<String, CAS> aCasMap, Supplier<List<CasDiff>> aFullDiff)
+    {
+        Map<String, CasState> casStates = new LinkedHashMap<>();
+        for (Entry<String, CAS> e : aCasMap.entrySet()) {
+            casStates.put(e.getKey(), new CasState(e.getValue(),
+                    getCasTimestamp(aDocument, e.getKey()).orElse(null)));
+        }
+
+        CachedDiff cached = diffCache.getIfPresent(aKey);
+
+        List<CasDiff> diffs;
+        if (cached == null) {
+            diffs = aFullDiff.get();
+        }
+        else {
+            Set<String> changedCasGroupIds = new LinkedHashSet<>();
+            for (Entry<String, CasState> e : casStates.entrySet()) {
+                if (!e.getValue().isSameAs(cached.casStates.get(e.getKey()))) {
+                    changedCasGroupIds.add(e.getKey());
+                }
+            }
+
+            if (changedCasGroupIds.isEmpty()
+                    && cached.casStates.keySet().equals(casStates.keySet())) {
+                LOG.trace("Re-using cached diff for {}", casStates.keySet());
+                return cached.diffs.stream() //
+                        .map(diff -> diff.attach(aCasMap)) //
+                        .collect(toList());
+            }
+
+            LOG.trace("Updating cached diff for {}", changedCasGroupIds);
+            diffs = doDiffPerUnitIncremental(cached.diffs, aCasMap, changedCasGroupIds);
+        }
+
+        diffCache.put(aKey, new CachedDiff(casStates, diffs.stream() //
+                .map(CasDiff::detach) //
+                .collect(toList())));
+
+        return diffs;
+    }
+
+    private Optional<Long> getCasTimestamp(SourceDocument aDocument, String aUsername)
+    {
+        try {
+            return documentService.getAnnotationCasTimestamp(aDocument, aUsername);
+        }
+        catch (IOException e) {
+            LOG.warn("Unable to obtain CAS timestamp for user [{}] of document [{}]({}) in project "
+                    + "[{}]({}) - not re-using cached diff", aUsername, aDocument.getName(),
+                    aDocument.getId(), aDocument.getProject().getName(),
+                    aDocument.getProject().getId(), e);
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * The diff refers to the annotations by their addresses in the CAS. These are only stable as
+     * long as the CAS is neither changed nor re-loaded or upgraded. Thus, we consider the CAS of a
+     * user unchanged only if it has the same timestamp and is still the same CAS instance with the
+     * same type system and {@link CasModificationTracker modification count}. The latter covers
+     * changes which are not yet reflected in the timestamp, e.g. because the write is deferred. A
+     * missing CAS (i.e. the user has never worked on the document) remains unchanged as long as it
+     * is missing.
+     */
+    private static class CasState
+    {
+        private final boolean present;
+        private final Long timestamp;
+        private final long modificationCount;
+        private final WeakReference<CAS> cas;
+        private final WeakReference<TypeSystem> typeSystem;
+
+        public CasState(CAS aCas, Long aTimestamp)
+        {
+            present = aCas != null;
+            timestamp = aTimestamp;
+            modificationCount = aCas != null ? CasModificationTracker.getModificationCount(aCas)
+                    : 0;
+            cas = new WeakReference<>(aCas);
+            typeSystem = new WeakReference<>(aCas != null ? aCas.getTypeSystem() : null);
+        }
+
+        public boolean isSameAs(CasState aOther)
+        {
+            if (aOther == null) {
+                return false;
+            }
+
+            if (!present) {
+                return !aOther.present;
+            }
+
+            if (timestamp == null) {
+                return false;
+            }
+
+            return timestamp.equals(aOther.timestamp)
+                    && modificationCount == aOther.modificationCount
+                    && cas.get() == aOther.cas.get()
+                    && typeSystem.get() == aOther.typeSystem.get();
+        }
+    }
+
+    private static class CachedDiff
+    {
+        private final Map<String, CasState> casStates;
+        private final List<CasDiff> diffs;
+
+        public CachedDiff(Map<String, CasState> aCasStates, List<CasDiff> aDiffs)
+        {
+            casStates = aCasStates;
+            diffs = aDiffs;
+        }
+    }
+
+    private static class DiffKey
+    {
+        private final long documentId;
+        private final List<String> adapters;
+        private final LinkCompareBehavior linkCompareBehavior;
+        private final int[] offsets;
+
+        public DiffKey(SourceDocument aDocument, List<? extends DiffAdapter> aAdapters,
+                LinkCompareBehavior aLinkCompareBehavior, int[] aOffsets)
+        {
+            documentId = aDocument.getId();
+            linkCompareBehavior = aLinkCompareBehavior;
+            offsets = aOffsets;
+
+            // The adapters are derived from the layers and their features, so describing the
+            // adapters also covers changes to the curatable features of the layers
+            adapters = new ArrayList<>(aAdapters.size());
+            for (DiffAdapter adapter : aAdapters) {
+                StringBuilder sb = new StringBuilder(adapter.getType());
+                sb.append(new TreeSet<>(adapter.getLabelFeatures()));
+                for (LinkFeatureDecl decl : adapter.getLinkFeatures()) {
+                    sb.append('|').append(decl.getName());
+                    sb.append('|').append(decl.getRoleFeature());
+                    sb.append('|').append(decl.getTargetFeature());
+                }
+                adapters.add(sb.toString());
+            }
+        }
+
+        @Override
+        public boolean equals(Object aOther)
+        {
+            if (this == aOther) {
+                return true;
+            }
+
+            if (!(aOther instanceof DiffKey)) {
+                return false;
+            }
+
+            DiffKey other = (DiffKey) aOther;
+            return documentId == other.documentId && linkCompareBehavior == other.linkCompareBehavior
+                    && adapters.equals(other.adapters) && Arrays.equals(offsets, other.offsets);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return Objects.hash(documentId, adapters, linkCompareBehavior)
+                    + 31 * Arrays.hashCode(offsets);
+        }
+    }
+}
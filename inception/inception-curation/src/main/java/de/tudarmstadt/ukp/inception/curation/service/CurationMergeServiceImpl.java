@@ -17,7 +17,6 @@
  */
 package de.tudarmstadt.ukp.inception.curation.service;
 
-import static de.tudarmstadt.ukp.clarin.webanno.curation.casdiff.CasDiff.doDiffSingle;
 import static de.tudarmstadt.ukp.clarin.webanno.curation.casdiff.CasDiff.getDiffAdapters;
 import static de.tudarmstadt.ukp.clarin.webanno.curation.casdiff.LinkCompareBehavior.LINK_ROLE_AS_LABEL;
 import static java.lang.invoke.MethodHandles.lookup;
@@ -59,12 +58,14 @@ public class CurationMergeServiceImpl
 
     private final AnnotationSchemaService annotationService;
     private final AnnotationEditorProperties annotationEditorProperties;
+    private final CasDiffService casDiffService;
 
     public CurationMergeServiceImpl(AnnotationSchemaService aAnnotationService,
-            AnnotationEditorProperties aAnnotationEditorProperties)
+            AnnotationEditorProperties aAnnotationEditorProperties, CasDiffService aCasDiffService)
     {
         annotationService = aAnnotationService;
         annotationEditorProperties = aAnnotationEditorProperties;
+        casDiffService = aCasDiffService;
     }
 
     @Override
@@ -99,8 +100,8 @@ public class CurationMergeServiceImpl
 
         DiffResult diff;
         try (StopWatch watch = new StopWatch(LOG, "CasDiff")) {
-            diff = doDiffSingle(adapters, LINK_ROLE_AS_LABEL, aCassesToMerge, 0, Integer.MAX_VALUE)
-                    .toResult();
+            diff = casDiffService.getDiff(aDocument, adapters, LINK_ROLE_AS_LABEL, aCassesToMerge,
+                    0, Integer.MAX_VALUE).toResult();
         }
 
         try (StopWatch watch = new StopWatch(LOG, "CasMerge")) {
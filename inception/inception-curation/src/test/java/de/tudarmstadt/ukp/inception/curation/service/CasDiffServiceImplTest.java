@@ -0,0 +1,172 @@
+/*
+ * Licensed to the Technische Universität Darmstadt under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The Technische Universität Darmstadt 
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.
+ *  
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.curation.service;
+
+import static de.tudarmstadt.ukp.clarin.webanno.curation.casdiff.CasDiff.doDiffSingle;
+import static de.tudarmstadt.ukp.clarin.webanno.curation.casdiff.LinkCompareBehavior.LINK_ROLE_AS_LABEL;
+import static de.tudarmstadt.ukp.clarin.webanno.curation.casdiff.span.SpanDiffAdapter.POS_DIFF_ADAPTER;
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.openMocks;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import org.apache.uima.cas.CAS;
+import org.apache.uima.fit.factory.JCasFactory;
+import org.apache.uima.jcas.JCas;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+
+import de.tudarmstadt.ukp.clarin.webanno.api.DocumentService;
+import de.tudarmstadt.ukp.clarin.webanno.api.dao.casstorage.CasModificationTracker;
+import de.tudarmstadt.ukp.clarin.webanno.curation.casdiff.CasDiff;
+import de.tudarmstadt.ukp.clarin.webanno.curation.casdiff.CasDiff.ConfigurationSet;
+import de.tudarmstadt.ukp.clarin.webanno.curation.casdiff.CasDiff.DiffResult;
+import de.tudarmstadt.ukp.clarin.webanno.curation.casdiff.api.DiffAdapter;
+import de.tudarmstadt.ukp.clarin.webanno.model.Project;
+import de.tudarmstadt.ukp.clarin.webanno.model.SourceDocument;
+import de.tudarmstadt.ukp.dkpro.core.api.lexmorph.type.pos.POS;
+
+public class CasDiffServiceImplTest
+{
+    private @Mock DocumentService documentService;
+
+    private SourceDocument document;
+    private List<? extends DiffAdapter> adapters;
+
+    private CasDiffServiceImpl sut;
+
+    @BeforeEach
+    public void setUp()
+    {
+        openMocks(this);
+
+        Project project = new Project();
+        project.setId(1l);
+        project.setName("Test Project");
+
+        document = new SourceDocument();
+        document.setId(1l);
+        document.setName("Test Document");
+        document.setProject(project);
+
+        adapters = asList(POS_DIFF_ADAPTER);
+
+        sut = new CasDiffServiceImpl(documentService);
+    }
+
+    @Test
+    public void thatUnchangedCasesReuseCachedDiff() throws Exception
+    {
+        setTimestamp("user1", 1);
+        setTimestamp("user2", 1);
+
+        Map<String, CAS> casses = new LinkedHashMap<>();
+        casses.put("user1", createCas("NN", "VB"));
+        casses.put("user2", createCas("NN", "VB"));
+
+        CasDiff first = sut.getDiff(document, adapters, LINK_ROLE_AS_LABEL, casses, -1, -1);
+        CasDiff second = sut.getDiff(document, adapters, LINK_ROLE_AS_LABEL, casses, -1, -1);
+
+        assertThat(second.getPositions()).hasSize(2);
+        assertThat(second.getCasMap().get("user1")).containsExactly(casses.get("user1"));
+        for (ConfigurationSet cfgSet : first.toResult().getConfigurationSets()) {
+            assertThat(second.getConfigurationSet(cfgSet.getPosition())).isSameAs(cfgSet);
+        }
+    }
+
+    @Test
+    public void thatChangedCasIsDiffedIncrementally() throws Exception
+    {
+        setTimestamp("user1", 1);
+        setTimestamp("user2", 1);
+
+        Map<String, CAS> casses = new LinkedHashMap<>();
+        casses.put("user1", createCas("NN", "VB"));
+        casses.put("user2", createCas("NN", "VB"));
+
+        DiffResult before = sut.getDiff(document, adapters, LINK_ROLE_AS_LABEL, casses, -1, -1)
+                .toResult();
+        assertThat(before.hasDifferences()).isFalse();
+
+        // Only user2 changes their CAS
+        setTimestamp("user2", 2);
+        casses.put("user2", createCas("NN", "NN"));
+
+        DiffResult expected = doDiffSingle(adapters, LINK_ROLE_AS_LABEL, casses, -1, -1)
+                .toResult();
+        DiffResult actual = sut.getDiff(document, adapters, LINK_ROLE_AS_LABEL, casses, -1, -1)
+                .toResult();
+
+        assertThat(actual.hasDifferences()).isTrue();
+        assertThat(actual.getPositions()).hasToString(expected.getPositions().toString());
+        assertThat(actual.getDifferingConfigurationSets().keySet())
+                .hasToString(expected.getDifferingConfigurationSets().keySet().toString());
+        // The previously returned diff must not have been modified
+        assertThat(before.getConfigurationSets())
+                .allMatch(cfgSet -> cfgSet.getConfigurations().size() == 1);
+    }
+
+    @Test
+    public void thatModifiedCasWithUnchangedTimestampIsDiffedAgain() throws Exception
+    {
+        setTimestamp("user1", 1);
+        setTimestamp("user2", 1);
+
+        Map<String, CAS> casses = new LinkedHashMap<>();
+        casses.put("user1", createCas("NN", "VB"));
+        casses.put("user2", createCas("NN", "VB"));
+
+        assertThat(sut.getDiff(document, adapters, LINK_ROLE_AS_LABEL, casses, -1, -1).toResult()
+                .hasDifferences()).isFalse();
+
+        // The CAS of user2 is changed in memory, but the write to disk is still pending
+        CAS cas = casses.get("user2");
+        cas.select(POS.class).get(1).setPosValue("NN");
+        CasModificationTracker.markModified(cas);
+
+        assertThat(sut.getDiff(document, adapters, LINK_ROLE_AS_LABEL, casses, -1, -1).toResult()
+                .hasDifferences()).isTrue();
+    }
+
+    private void setTimestamp(String aUser, long aTimestamp) throws Exception
+    {
+        when(documentService.getAnnotationCasTimestamp(any(), eq(aUser)))
+                .thenReturn(Optional.of(aTimestamp));
+    }
+
+    private static CAS createCas(String... aTags) throws Exception
+    {
+        JCas jcas = JCasFactory.createJCas();
+        jcas.setDocumentText("This is");
+        int[][] offsets = { { 0, 4 }, { 5, 7 } };
+        for (int i = 0; i < aTags.length; i++) {
+            POS pos = new POS(jcas, offsets[i][0], offsets[i][1]);
+            pos.setPosValue(aTags[i]);
+            pos.addToIndexes();
+        }
+        return jcas.getCas();
+    }
+}
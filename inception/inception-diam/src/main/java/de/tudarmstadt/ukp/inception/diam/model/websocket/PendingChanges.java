@@ -0,0 +1,96 @@
+/*
+ * Licensed to the Technische Universität Darmstadt under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The Technische Universität Darmstadt 
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.
+ *  
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.diam.model.websocket;
+
+import static java.lang.Integer.MAX_VALUE;
+import static java.util.Collections.unmodifiableSet;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationLayer;
+
+/**
+ * Collects the layers and the offset range touched by the annotation events preceding a write of
+ * an annotation document. Viewports only need to re-render the touched layers and only viewports
+ * overlapping the touched range need to be updated at all.
+ */
+public class PendingChanges
+{
+    private final Set<Long> layerIds = new HashSet<>();
+    private boolean allLayers = false;
+    private int begin = MAX_VALUE;
+    private int end = -1;
+
+    public synchronized void addChange(AnnotationLayer aLayer, int aBegin, int aEnd)
+    {
+        if (aLayer == null || aLayer.getId() == null) {
+            allLayers = true;
+        }
+        else {
+            layerIds.add(aLayer.getId());
+        }
+
+        begin = Math.min(begin, aBegin);
+        end = Math.max(end, aEnd);
+    }
+
+    /**
+     * Marks the given layer as changed anywhere in the document, e.g. because a relation or chain
+     * can connect annotations far apart from each other.
+     */
+    public void addChange(AnnotationLayer aLayer)
+    {
+        addChange(aLayer, 0, MAX_VALUE);
+    }
+
+    /**
+     * Marks the whole document as changed, e.g. because deleting an annotation may implicitly
+     * delete annotations on other layers attached to it.
+     */
+    public synchronized void addFullChange()
+    {
+        allLayers = true;
+        begin = 0;
+        end = MAX_VALUE;
+    }
+
+    public synchronized boolean isAllLayers()
+    {
+        return allLayers;
+    }
+
+    /**
+     * @return the IDs of the changed layers. Only meaningful if {@link #isAllLayers()} is
+     *         {@code false}.
+     */
+    public synchronized Set<Long> getLayerIds()
+    {
+        return unmodifiableSet(new HashSet<>(layerIds));
+    }
+
+    public synchronized int getBegin()
+    {
+        return begin;
+    }
+
+    public synchronized int getEnd()
+    {
+        return end;
+    }
+}
@@ -19,21 +19,50 @@ package de.tudarmstadt.ukp.inception.diam.model.websocket;
 
 import static java.util.Collections.newSetFromMap;
 
+import java.util.Collection;
+import java.util.Objects;
 import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.TreeSet;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
 
 import org.apache.commons.lang3.tuple.Pair;
 
 import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.flipkart.zjsonpatch.JsonDiff;
 
+import de.tudarmstadt.ukp.clarin.webanno.api.annotation.rendering.model.VDocument;
+import de.tudarmstadt.ukp.clarin.webanno.api.annotation.rendering.model.VObject;
+import de.tudarmstadt.ukp.clarin.webanno.support.JSONUtil;
+import de.tudarmstadt.ukp.inception.diam.messages.MArc;
+import de.tudarmstadt.ukp.inception.diam.messages.MSpan;
+
+/**
+ * State of a viewport shared by all its subscribers. The rendered annotations are kept grouped by
+ * layer. Each group occupies a contiguous block in the arrays sent to the client, so the
+ * annotations of a single layer can be replaced without diffing the whole viewport.
+ */
 public class ViewportState
 {
+    private static final String FIELD_TEXT = "text";
+    private static final String FIELD_SPANS = "spans";
+    private static final String FIELD_ARCS = "arcs";
+
     private final ViewportDefinition vpd;
 
     private final Set<Pair<String, String>> subscriberSessionIds = newSetFromMap(
             new ConcurrentHashMap<>());
 
-    private JsonNode json;
+    private boolean initialized = false;
+    private String text;
+    private final SortedMap<Long, ArrayNode> spans = new TreeMap<>();
+    private final SortedMap<Long, ArrayNode> arcs = new TreeMap<>();
 
     public ViewportState(ViewportDefinition aVpd)
     {
@@ -45,19 +74,151 @@ public class ViewportState
         return vpd;
     }
 
-    public synchronized void setJson(JsonNode aJson)
+    public synchronized boolean isInitialized()
+    {
+        return initialized;
+    }
+
+    /**
+     * Replaces the state of the viewport with the given rendering.
+     */
+    public synchronized void init(VDocument aVDocument)
+    {
+        text = aVDocument.getText();
+        spans.clear();
+        spans.putAll(group(aVDocument.spans(), MSpan::new));
+        arcs.clear();
+        arcs.putAll(group(aVDocument.arcs(), MArc::new));
+        initialized = true;
+    }
+
+    /**
+     * Marks the state as unknown, e.g. because an update failed. The next subscriber will then
+     * trigger a full rendering.
+     */
+    public synchronized void reset()
     {
-        json = aJson;
+        initialized = false;
+        text = null;
+        spans.clear();
+        arcs.clear();
     }
 
+    /**
+     * @return the full state of the viewport as sent to new subscribers.
+     */
     public synchronized JsonNode getJson()
     {
+        ObjectNode json = JsonNodeFactory.instance.objectNode();
+        json.put(FIELD_TEXT, text);
+        json.set(FIELD_ARCS, concat(arcs));
+        json.set(FIELD_SPANS, concat(spans));
         return json;
     }
 
-    public void removeSubscriber(String aId)
+    /**
+     * Replaces the annotations of the given layers with those from the given rendering.
+     * 
+     * @param aVDocument
+     *            the rendering of the changed layers.
+     * @param aLayerIds
+     *            the IDs of the changed layers or {@code null} if all layers were rendered.
+     * @return a JSON patch transforming the previous state into the new state.
+     */
+    public synchronized JsonNode update(VDocument aVDocument, Set<Long> aLayerIds)
+    {
+        ArrayNode patch = JsonNodeFactory.instance.arrayNode();
+
+        // The pre-renderer sets the text whenever it renders any layer. Editing annotations does
+        // not change it, so this is usually a no-op, but a rendering without text must not clear
+        // the text known to the subscribers
+        if (aVDocument.getText() != null && !Objects.equals(text, aVDocument.getText())) {
+            text = aVDocument.getText();
+            patch.addObject() //
+                    .put("op", "replace") //
+                    .put("path", "/" + FIELD_TEXT) //
+                    .put("value", text);
+        }
+
+        update(patch, FIELD_SPANS, spans, group(aVDocument.spans(), MSpan::new), aLayerIds);
+        update(patch, FIELD_ARCS, arcs, group(aVDocument.arcs(), MArc::new), aLayerIds);
+
+        return patch;
+    }
+
+    private static void update(ArrayNode aPatch, String aField, SortedMap<Long, ArrayNode> aBlocks,
+            SortedMap<Long, ArrayNode> aNewBlocks, Set<Long> aLayerIds)
+    {
+        Set<Long> layerIds = new TreeSet<>();
+        if (aLayerIds == null) {
+            layerIds.addAll(aBlocks.keySet());
+            layerIds.addAll(aNewBlocks.keySet());
+        }
+        else {
+            layerIds.addAll(aLayerIds);
+        }
+
+        // Blocks are processed in order, so the offset of each block already accounts for the
+        // changes made to the preceding blocks
+        for (Long layerId : layerIds) {
+            ArrayNode oldBlock = aBlocks.getOrDefault(layerId,
+                    JsonNodeFactory.instance.arrayNode());
+            ArrayNode newBlock = aNewBlocks.getOrDefault(layerId,
+                    JsonNodeFactory.instance.arrayNode());
+
+            int offset = aBlocks.headMap(layerId).values().stream() //
+                    .mapToInt(ArrayNode::size) //
+                    .sum();
+
+            for (JsonNode op : JsonDiff.asJson(oldBlock, newBlock)) {
+                ObjectNode relocatedOp = (ObjectNode) op;
+                relocatedOp.put("path", relocate(op.get("path").asText(), aField, offset));
+                if (op.has("from")) {
+                    relocatedOp.put("from", relocate(op.get("from").asText(), aField, offset));
+                }
+                aPatch.add(relocatedOp);
+            }
+
+            if (newBlock.size() == 0) {
+                aBlocks.remove(layerId);
+            }
+            else {
+                aBlocks.put(layerId, newBlock);
+            }
+        }
+    }
+
+    /**
+     * Turns a path relative to a block (e.g. {@code /3/label}) into a path relative to the
+     * document (e.g. {@code /spans/15/label}).
+     */
+    private static String relocate(String aPath, String aField, int aOffset)
+    {
+        int slash = aPath.indexOf('/', 1);
+        String index = slash == -1 ? aPath.substring(1) : aPath.substring(1, slash);
+        String rest = slash == -1 ? "" : aPath.substring(slash);
+        return "/" + aField + "/" + (aOffset + Integer.parseInt(index)) + rest;
+    }
+
+    private static <T extends VObject> SortedMap<Long, ArrayNode> group(Collection<T> aObjects,
+            Function<T, Object> aConverter)
+    {
+        ObjectMapper mapper = JSONUtil.getObjectMapper();
+        SortedMap<Long, ArrayNode> blocks = new TreeMap<>();
+        for (T object : aObjects) {
+            Long layerId = object.getLayer() != null ? object.getLayer().getId() : null;
+            blocks.computeIfAbsent(layerId != null ? layerId : -1l,
+                    id -> JsonNodeFactory.instance.arrayNode())
+                    .add((JsonNode) mapper.valueToTree(aConverter.apply(object)));
+        }
+        return blocks;
+    }
+
+    private static ArrayNode concat(SortedMap<Long, ArrayNode> aBlocks)
     {
-        subscriberSessionIds.removeIf(p -> p.getKey().equals(aId));
+        ArrayNode array = JsonNodeFactory.instance.arrayNode();
+        aBlocks.values().forEach(array::addAll);
+        return array;
     }
 
     public void addSubscription(String aSubscriberId, String aSubscriptionId)
@@ -17,6 +17,7 @@
  */
 package de.tudarmstadt.ukp.inception.diam.service;
 
+import static de.tudarmstadt.ukp.clarin.webanno.api.WebAnnoConst.SPAN_TYPE;
 import static de.tudarmstadt.ukp.clarin.webanno.support.logging.Logging.KEY_REPOSITORY_PATH;
 import static de.tudarmstadt.ukp.clarin.webanno.support.logging.Logging.KEY_USERNAME;
 import static de.tudarmstadt.ukp.inception.websocket.config.WebSocketConstants.PARAM_DOCUMENT;
@@ -30,12 +31,16 @@ import static java.util.stream.Collectors.toList;
 
 import java.io.IOException;
 import java.security.Principal;
-import java.time.Duration;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.persistence.NoResultException;
 
+import org.apache.commons.lang3.tuple.Pair;
 import org.apache.uima.cas.CAS;
+import org.apache.uima.cas.text.AnnotationFS;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.slf4j.MDC;
@@ -52,13 +57,16 @@ import org.springframework.web.socket.messaging.SessionDisconnectEvent;
 import org.springframework.web.socket.messaging.SessionUnsubscribeEvent;
 
 import com.fasterxml.jackson.databind.JsonNode;
-import com.flipkart.zjsonpatch.JsonDiff;
-import com.github.benmanes.caffeine.cache.Caffeine;
-import com.github.benmanes.caffeine.cache.LoadingCache;
 
 import de.tudarmstadt.ukp.clarin.webanno.api.AnnotationSchemaService;
 import de.tudarmstadt.ukp.clarin.webanno.api.DocumentService;
 import de.tudarmstadt.ukp.clarin.webanno.api.ProjectService;
+import de.tudarmstadt.ukp.clarin.webanno.api.annotation.event.AnnotationDeletedEvent;
+import de.tudarmstadt.ukp.clarin.webanno.api.annotation.event.AnnotationEvent;
+import de.tudarmstadt.ukp.clarin.webanno.api.annotation.event.BulkAnnotationEvent;
+import de.tudarmstadt.ukp.clarin.webanno.api.annotation.event.FeatureValueUpdatedEvent;
+import de.tudarmstadt.ukp.clarin.webanno.api.annotation.event.RelationEvent;
+import de.tudarmstadt.ukp.clarin.webanno.api.annotation.event.SpanEvent;
 import de.tudarmstadt.ukp.clarin.webanno.api.annotation.rendering.PreRenderer;
 import de.tudarmstadt.ukp.clarin.webanno.api.annotation.rendering.model.VDocument;
 import de.tudarmstadt.ukp.clarin.webanno.api.config.RepositoryProperties;
@@ -66,13 +74,13 @@ import de.tudarmstadt.ukp.clarin.webanno.api.dao.casstorage.CasStorageSession;
 import de.tudarmstadt.ukp.clarin.webanno.api.event.AfterCasWrittenEvent;
 import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationDocument;
 import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationLayer;
+import de.tudarmstadt.ukp.clarin.webanno.model.LinkMode;
 import de.tudarmstadt.ukp.clarin.webanno.model.Project;
 import de.tudarmstadt.ukp.clarin.webanno.model.SourceDocument;
 import de.tudarmstadt.ukp.clarin.webanno.security.UserDao;
 import de.tudarmstadt.ukp.clarin.webanno.security.model.User;
-import de.tudarmstadt.ukp.clarin.webanno.support.JSONUtil;
-import de.tudarmstadt.ukp.inception.diam.messages.MViewportInit;
 import de.tudarmstadt.ukp.inception.diam.messages.MViewportUpdate;
+import de.tudarmstadt.ukp.inception.diam.model.websocket.PendingChanges;
 import de.tudarmstadt.ukp.inception.diam.model.websocket.ViewportDefinition;
 import de.tudarmstadt.ukp.inception.diam.model.websocket.ViewportState;
 
@@ -117,7 +125,13 @@ public class DiamController
     private final ProjectService projectService;
     private final UserDao userRepository;
 
-    private final LoadingCache<ViewportDefinition, ViewportState> activeViewports;
+    private final ViewportRegistry viewportRegistry = new ViewportRegistry();
+
+    /**
+     * Changes made to documents since they were last written, by document ID and user. Only
+     * changes to documents shown in some viewport are tracked.
+     */
+    private final Map<Pair<Long, String>, PendingChanges> pendingChanges = new ConcurrentHashMap<>();
 
     public DiamController(SimpMessagingTemplate aMsgTemplate, PreRenderer aPreRenderer,
             DocumentService aDocumentService, RepositoryProperties aRepositoryProperties,
@@ -131,10 +145,6 @@ public class DiamController
         schemaService = aSchemaService;
         projectService = aProjectService;
         userRepository = aUserRepository;
-
-        activeViewports = Caffeine.newBuilder() //
-                .expireAfterAccess(Duration.ofMinutes(30)) //
-                .build(this::initState);
     }
 
     @EventListener
@@ -142,12 +152,7 @@ public class DiamController
     {
         log.trace("Unsubscribing {} from all viewports", aEvent.getSessionId());
 
-        activeViewports.asMap().entrySet().stream() //
-                .filter(e -> {
-                    e.getValue().removeSubscriber(aEvent.getSessionId());
-                    return !e.getValue().hasSubscribers();
-                }) //
-                .forEach(e -> closeViewport(e.getKey()));
+        viewportRegistry.unsubscribeAll(aEvent.getSessionId());
     }
 
     @EventListener
@@ -160,24 +165,72 @@ public class DiamController
 
         log.trace("Unsubscribing {} from subscription {}", sessionId, subscriptionId);
 
-        activeViewports.asMap().entrySet().stream() //
-                .filter(e -> {
-                    e.getValue().removeSubscription(sessionId, subscriptionId);
-                    return !e.getValue().hasSubscribers();
-                }) //
-                .forEach(e -> closeViewport(e.getKey()));
+        viewportRegistry.unsubscribe(sessionId, subscriptionId);
     }
 
-    private void closeViewport(ViewportDefinition aVpd)
+    @EventListener
+    public void onAnnotationEvent(AnnotationEvent aEvent)
     {
-        log.trace("Closing viewport {}", aVpd);
-        activeViewports.invalidate(aVpd);
+        SourceDocument doc = aEvent.getDocument();
+        if (doc == null || !viewportRegistry.isViewed(doc.getId(), aEvent.getUser())) {
+            return;
+        }
+
+        PendingChanges changes = pendingChanges.computeIfAbsent(
+                Pair.of(doc.getId(), aEvent.getUser()), key -> new PendingChanges());
+
+        if (aEvent instanceof AnnotationDeletedEvent || aEvent instanceof BulkAnnotationEvent) {
+            changes.addFullChange();
+        }
+        else if (aEvent instanceof SpanEvent) {
+            AnnotationFS ann = ((SpanEvent) aEvent).getAnnotation();
+            changes.addChange(aEvent.getLayer(), ann.getBegin(), ann.getEnd());
+        }
+        else if (aEvent instanceof RelationEvent) {
+            // The arc is visible in any viewport containing its source or its target
+            AnnotationFS source = ((RelationEvent) aEvent).getSourceAnnotation();
+            AnnotationFS target = ((RelationEvent) aEvent).getTargetAnnotation();
+            changes.addChange(aEvent.getLayer(), Math.min(source.getBegin(), target.getBegin()),
+                    Math.max(source.getEnd(), target.getEnd()));
+        }
+        else if (aEvent instanceof FeatureValueUpdatedEvent
+                && isLocalFeatureUpdate((FeatureValueUpdatedEvent) aEvent)) {
+            AnnotationFS ann = (AnnotationFS) ((FeatureValueUpdatedEvent) aEvent).getFS();
+            changes.addChange(aEvent.getLayer(), ann.getBegin(), ann.getEnd());
+        }
+        else {
+            // Chains, relation features and link features may connect annotations anywhere in
+            // the document
+            changes.addChange(aEvent.getLayer());
+        }
+    }
+
+    private boolean isLocalFeatureUpdate(FeatureValueUpdatedEvent aEvent)
+    {
+        return aEvent.getLayer() != null && SPAN_TYPE.equals(aEvent.getLayer().getType())
+                && aEvent.getFS() instanceof AnnotationFS
+                && aEvent.getFeature().getLinkMode() == LinkMode.NONE;
     }
 
     @TransactionalEventListener(fallbackExecution = true)
     public void afterAnnotationUpdate(AfterCasWrittenEvent aEvent)
     {
-        sendUpdate(aEvent.getDocument());
+        AnnotationDocument doc = aEvent.getDocument();
+        PendingChanges changes = pendingChanges
+                .remove(Pair.of(doc.getDocument().getId(), doc.getUser()));
+
+        // If the CAS was changed without any annotation events (e.g. by an import or a reset), we
+        // do not know what changed and have to re-render everything
+        if (changes == null || changes.isAllLayers()) {
+            int begin = changes != null ? changes.getBegin() : 0;
+            int end = changes != null ? changes.getEnd() : MAX_VALUE;
+            sendUpdate(doc.getProject().getId(), doc.getDocument().getId(), doc.getUser(), begin,
+                    end, null);
+        }
+        else {
+            sendUpdate(doc.getProject().getId(), doc.getDocument().getId(), doc.getUser(),
+                    changes.getBegin(), changes.getEnd(), changes.getLayerIds());
+        }
     }
 
     @SubscribeMapping(DOCUMENT_VIEWPORT_TOPIC_TEMPLATE)
@@ -198,19 +251,19 @@ public class DiamController
             ViewportDefinition vpd = new ViewportDefinition(aProjectId, aDocumentId, aUser,
                     aViewportBegin, aViewportEnd);
 
-            // Ensure that the viewport is registered
-            ViewportState vps = activeViewports.get(vpd);
-
             log.trace("Subscribing {} to {}", aHeaderAccessor.getSessionId(), vpd.getTopic());
-            vps.addSubscription(aHeaderAccessor.getSessionId(),
+            ViewportState vps = viewportRegistry.subscribe(vpd, aHeaderAccessor.getSessionId(),
                     aHeaderAccessor.getSubscriptionId());
 
-            VDocument vdoc = render(project, aDocumentId, aUser, aViewportBegin, aViewportEnd);
-
-            JsonNode newJson = JSONUtil.getObjectMapper().valueToTree(new MViewportInit(vdoc));
-            vps.setJson(newJson);
+            // Subscribers to a viewport which is already being watched share its rendering
+            if (!vps.isInitialized()) {
+                SourceDocument doc = documentService.getSourceDocument(project.getId(),
+                        aDocumentId);
+                CAS cas = documentService.readAnnotationCas(doc, aUser);
+                vps.init(render(cas, listLayers(project, null), aViewportBegin, aViewportEnd));
+            }
 
-            return newJson;
+            return vps.getJson();
         }
         finally {
             MDC.remove(KEY_REPOSITORY_PATH);
@@ -249,75 +302,92 @@ public class DiamController
     // }
     // }
 
-    private VDocument render(Project aProject, long aDocumentId, String aUser, int aViewportBegin,
+    private VDocument render(CAS aCas, List<AnnotationLayer> aLayers, int aViewportBegin,
             int aViewportEnd)
-        throws IOException
     {
-        SourceDocument doc = documentService.getSourceDocument(aProject.getId(), aDocumentId);
-        CAS cas = documentService.readAnnotationCas(doc, aUser);
-
-        List<AnnotationLayer> layers = schemaService.listSupportedLayers(aProject).stream()
-                .filter(AnnotationLayer::isEnabled).collect(toList());
-
         VDocument vdoc = new VDocument();
-        preRenderer.render(vdoc, aViewportBegin, aViewportEnd, cas, layers);
+        preRenderer.render(vdoc, aViewportBegin, aViewportEnd, aCas, aLayers);
         return vdoc;
     }
 
-    private ViewportState initState(ViewportDefinition aVpd)
+    /**
+     * @param aLayerIds
+     *            the IDs of the layers to include or {@code null} to include all layers.
+     */
+    private List<AnnotationLayer> listLayers(Project aProject, Set<Long> aLayerIds)
     {
-        return new ViewportState(aVpd);
-    }
-
-    private void sendUpdate(AnnotationDocument aDoc)
-    {
-        sendUpdate(aDoc.getProject().getId(), aDoc.getDocument().getId(), aDoc.getUser(), 0,
-                MAX_VALUE);
+        return schemaService.listSupportedLayers(aProject).stream() //
+                .filter(AnnotationLayer::isEnabled) //
+                .filter(layer -> aLayerIds == null || aLayerIds.contains(layer.getId())) //
+                .collect(toList());
     }
 
     void sendUpdate(AnnotationDocument aDoc, int aUpdateBegin, int aUpdateEnd)
     {
         sendUpdate(aDoc.getProject().getId(), aDoc.getDocument().getId(), aDoc.getUser(),
-                aUpdateBegin, aUpdateEnd);
+                aUpdateBegin, aUpdateEnd, null);
     }
 
+    /**
+     * @param aLayerIds
+     *            the IDs of the layers to re-render or {@code null} to re-render all layers.
+     */
     private void sendUpdate(long aProjectId, long aDocumentId, String aUser, int aUpdateBegin,
-            int aUpdateEnd)
+            int aUpdateEnd, Set<Long> aLayerIds)
     {
-        activeViewports.asMap().entrySet().stream() //
-                .filter(e -> e.getKey().matches(aDocumentId, aUser, aUpdateBegin, aUpdateEnd)) //
-                .forEach(e -> sendUpdate(e.getKey(), e.getValue(), aProjectId, aDocumentId, aUser,
-                        aUpdateBegin, aUpdateEnd));
-    }
+        List<ViewportState> viewports = viewportRegistry
+                .find(aDocumentId, aUser, aUpdateBegin, aUpdateEnd).stream() //
+                .filter(ViewportState::isInitialized) //
+                .collect(toList());
+
+        if (viewports.isEmpty()) {
+            return;
+        }
 
-    private void sendUpdate(ViewportDefinition vpd, ViewportState vps, long aProjectId,
-            long aDocumentId, String aUser, int aUpdateBegin, int aUpdateEnd)
-    {
         // MDC.put(KEY_REPOSITORY_PATH, repositoryProperties.getPath().toString());
 
         try (CasStorageSession session = CasStorageSession.openNested()) {
-            Project project = projectService.getProject(vpd.getProjectId());
-            VDocument vdoc = render(project, vpd.getDocumentId(), vpd.getUser(), vpd.getBegin(),
-                    vpd.getEnd());
+            // The project, the layers and the CAS are the same for all viewports
+            Project project = projectService.getProject(aProjectId);
+            List<AnnotationLayer> layers = listLayers(project, aLayerIds);
+            if (aLayerIds != null && layers.isEmpty()) {
+                // Only disabled or unsupported layers were changed
+                return;
+            }
+
+            SourceDocument doc = documentService.getSourceDocument(aProjectId, aDocumentId);
+            CAS cas = documentService.readAnnotationCas(doc, aUser);
+
+            for (ViewportState vps : viewports) {
+                sendUpdate(vps, cas, layers, aLayerIds, aUpdateBegin, aUpdateEnd);
+            }
+        }
+        catch (Exception ex) {
+            log.error("Unable to render update", ex);
+        }
 
-            MViewportInit fullRender = new MViewportInit(vdoc);
+        // finally {
+        // MDC.remove(KEY_REPOSITORY_PATH);
+        // }
+    }
 
-            JsonNode newJson = JSONUtil.getObjectMapper().valueToTree(fullRender);
+    private void sendUpdate(ViewportState aVps, CAS aCas, List<AnnotationLayer> aLayers,
+            Set<Long> aLayerIds, int aUpdateBegin, int aUpdateEnd)
+    {
+        ViewportDefinition vpd = aVps.getViewportDefinition();
 
-            JsonNode diff = JsonDiff.asJson(vps.getJson(), newJson);
+        try {
+            VDocument vdoc = render(aCas, aLayers, vpd.getBegin(), vpd.getEnd());
 
-            vps.setJson(newJson);
+            JsonNode diff = aVps.update(vdoc, aLayerIds);
 
             msgTemplate.convertAndSend("/topic" + vpd.getTopic(),
                     new MViewportUpdate(aUpdateBegin, aUpdateEnd, diff));
         }
         catch (Exception ex) {
             log.error("Unable to render update", ex);
+            aVps.reset();
         }
-
-        // finally {
-        // MDC.remove(KEY_REPOSITORY_PATH);
-        // }
     }
 
     private Project getProject(long aProjectId) throws AccessDeniedException
@@ -0,0 +1,235 @@
+/*
+ * Licensed to the Technische Universität Darmstadt under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The Technische Universität Darmstadt 
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.
+ *  
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.diam.service;
+
+import static java.util.Collections.emptyList;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+import org.apache.commons.lang3.tuple.Pair;
+
+import de.tudarmstadt.ukp.inception.diam.model.websocket.ViewportDefinition;
+import de.tudarmstadt.ukp.inception.diam.model.websocket.ViewportState;
+
+/**
+ * Registry of the viewports which currently have subscribers. Viewports are indexed by document
+ * and user and within a document by their offsets, so finding the viewports affected by a change
+ * only touches the viewports of the changed document. Subscriptions are indexed by session, so
+ * disconnecting a session only touches the viewports of that session.
+ */
+public class ViewportRegistry
+{
+    private final Map<Pair<Long, String>, DocumentViewports> viewportsByDocument = new HashMap<>();
+
+    private final Map<String, Map<String, ViewportDefinition>> subscriptionsBySession = new HashMap<>();
+
+    /**
+     * Subscribes to the given viewport, registering the viewport if necessary.
+     * 
+     * @return the state of the viewport.
+     */
+    public synchronized ViewportState subscribe(ViewportDefinition aVpd, String aSessionId,
+            String aSubscriptionId)
+    {
+        DocumentViewports docViewports = viewportsByDocument.computeIfAbsent(
+                Pair.of(aVpd.getDocumentId(), aVpd.getUser()), key -> new DocumentViewports());
+
+        ViewportState vps = docViewports.get(aVpd);
+        if (vps == null) {
+            vps = new ViewportState(aVpd);
+            docViewports.add(vps);
+        }
+
+        vps.addSubscription(aSessionId, aSubscriptionId);
+        subscriptionsBySession.computeIfAbsent(aSessionId, key -> new HashMap<>())
+                .put(aSubscriptionId, aVpd);
+
+        return vps;
+    }
+
+    /**
+     * Removes the given subscription. If the viewport has no more subscribers, it is closed.
+     */
+    public synchronized void unsubscribe(String aSessionId, String aSubscriptionId)
+    {
+        Map<String, ViewportDefinition> subscriptions = subscriptionsBySession.get(aSessionId);
+        if (subscriptions == null) {
+            return;
+        }
+
+        ViewportDefinition vpd = subscriptions.remove(aSubscriptionId);
+        if (subscriptions.isEmpty()) {
+            subscriptionsBySession.remove(aSessionId);
+        }
+
+        if (vpd != null) {
+            removeSubscription(vpd, aSessionId, aSubscriptionId);
+        }
+    }
+
+    /**
+     * Removes all subscriptions of the given session. Viewports which have no more subscribers
+     * are closed.
+     */
+    public synchronized void unsubscribeAll(String aSessionId)
+    {
+        Map<String, ViewportDefinition> subscriptions = subscriptionsBySession.remove(aSessionId);
+        if (subscriptions == null) {
+            return;
+        }
+
+        subscriptions.forEach((subscriptionId, vpd) -> removeSubscription(vpd, aSessionId,
+                subscriptionId));
+    }
+
+    private void removeSubscription(ViewportDefinition aVpd, String aSessionId,
+            String aSubscriptionId)
+    {
+        Pair<Long, String> key = Pair.of(aVpd.getDocumentId(), aVpd.getUser());
+        DocumentViewports docViewports = viewportsByDocument.get(key);
+        if (docViewports == null) {
+            return;
+        }
+
+        ViewportState vps = docViewports.get(aVpd);
+        if (vps == null) {
+            return;
+        }
+
+        vps.removeSubscription(aSessionId, aSubscriptionId);
+        if (!vps.hasSubscribers()) {
+            docViewports.remove(aVpd);
+            if (docViewports.isEmpty()) {
+                viewportsByDocument.remove(key);
+            }
+        }
+    }
+
+    /**
+     * @return the viewports on the given document and user which overlap with the given range.
+     */
+    public synchronized List<ViewportState> find(long aDocumentId, String aUser, int aBegin,
+            int aEnd)
+    {
+        DocumentViewports docViewports = viewportsByDocument.get(Pair.of(aDocumentId, aUser));
+        if (docViewports == null) {
+            return emptyList();
+        }
+
+        return docViewports.find(aDocumentId, aUser, aBegin, aEnd);
+    }
+
+    /**
+     * @return whether any viewport shows the given document and user.
+     */
+    public synchronized boolean isViewed(long aDocumentId, String aUser)
+    {
+        return viewportsByDocument.containsKey(Pair.of(aDocumentId, aUser));
+    }
+
+    public synchronized ViewportState get(ViewportDefinition aVpd)
+    {
+        DocumentViewports docViewports = viewportsByDocument
+                .get(Pair.of(aVpd.getDocumentId(), aVpd.getUser()));
+        return docViewports != null ? docViewports.get(aVpd) : null;
+    }
+
+    /**
+     * @return the number of open viewports.
+     */
+    public synchronized int size()
+    {
+        return viewportsByDocument.values().stream().mapToInt(DocumentViewports::size).sum();
+    }
+
+    /**
+     * The viewports of a single document and user sorted by their begin offset. Since all
+     * viewports are at most {@link #maxLength} long, the viewports overlapping a range can only
+     * begin between the begin of the range minus that length and the end of the range.
+     */
+    private static class DocumentViewports
+    {
+        private final NavigableMap<Integer, Map<ViewportDefinition, ViewportState>> byBegin = //
+                new TreeMap<>();
+        private int maxLength = 0;
+        private int size = 0;
+
+        public ViewportState get(ViewportDefinition aVpd)
+        {
+            Map<ViewportDefinition, ViewportState> viewports = byBegin.get(aVpd.getBegin());
+            return viewports != null ? viewports.get(aVpd) : null;
+        }
+
+        public void add(ViewportState aVps)
+        {
+            ViewportDefinition vpd = aVps.getViewportDefinition();
+            byBegin.computeIfAbsent(vpd.getBegin(), key -> new LinkedHashMap<>()).put(vpd, aVps);
+            maxLength = Math.max(maxLength, vpd.getEnd() - vpd.getBegin());
+            size++;
+        }
+
+        public void remove(ViewportDefinition aVpd)
+        {
+            Map<ViewportDefinition, ViewportState> viewports = byBegin.get(aVpd.getBegin());
+            if (viewports == null || viewports.remove(aVpd) == null) {
+                return;
+            }
+
+            if (viewports.isEmpty()) {
+                byBegin.remove(aVpd.getBegin());
+            }
+
+            size--;
+        }
+
+        public List<ViewportState> find(long aDocumentId, String aUser, int aBegin, int aEnd)
+        {
+            int from = (int) Math.max(Integer.MIN_VALUE, (long) aBegin - maxLength);
+            if (from > aEnd) {
+                return emptyList();
+            }
+
+            List<ViewportState> result = new ArrayList<>();
+            for (Map<ViewportDefinition, ViewportState> viewports : byBegin
+                    .subMap(from, true, aEnd, true).values()) {
+                for (ViewportState vps : viewports.values()) {
+                    if (vps.getViewportDefinition().matches(aDocumentId, aUser, aBegin, aEnd)) {
+                        result.add(vps);
+                    }
+                }
+            }
+            return result;
+        }
+
+        public boolean isEmpty()
+        {
+            return size == 0;
+        }
+
+        public int size()
+        {
+            return size;
+        }
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Licensed to the Technische Universität Darmstadt under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The Technische Universität Darmstadt 
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.
+ *  
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.diam.model.websocket;
+
+import static java.util.Collections.emptyMap;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Set;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.flipkart.zjsonpatch.JsonPatch;
+
+import de.tudarmstadt.ukp.clarin.webanno.api.annotation.model.VID;
+import de.tudarmstadt.ukp.clarin.webanno.api.annotation.rendering.model.VDocument;
+import de.tudarmstadt.ukp.clarin.webanno.api.annotation.rendering.model.VRange;
+import de.tudarmstadt.ukp.clarin.webanno.api.annotation.rendering.model.VSpan;
+import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationLayer;
+
+public class ViewportStateTest
+{
+    private AnnotationLayer layer1;
+    private AnnotationLayer layer2;
+    private ViewportState sut;
+
+    @BeforeEach
+    public void setup()
+    {
+        layer1 = new AnnotationLayer();
+        layer1.setId(1l);
+        layer2 = new AnnotationLayer();
+        layer2.setId(2l);
+
+        sut = new ViewportState(new ViewportDefinition(1l, 1l, "user", 0, 100));
+    }
+
+    @Test
+    public void thatPartialUpdateOnlyTouchesChangedLayer()
+    {
+        VDocument initial = new VDocument();
+        initial.setText("This is a test .");
+        initial.add(span(layer1, 1, 0, 4));
+        initial.add(span(layer1, 2, 5, 7));
+        initial.add(span(layer2, 3, 0, 4));
+        initial.add(span(layer2, 4, 10, 14));
+        sut.init(initial);
+
+        JsonNode client = sut.getJson();
+
+        // Re-rendering layer 1 only: one span changed, one span added
+        VDocument update = new VDocument();
+        update.add(span(layer1, 1, 0, 4));
+        update.add(span(layer1, 2, 5, 9));
+        update.add(span(layer1, 5, 10, 14));
+
+        JsonNode patch = sut.update(update, Set.of(1l));
+
+        assertThat(patch).allSatisfy(op -> assertThat(op.get("path").asText())
+                .matches("/spans/[0-2](/.*)?"));
+        assertThat(JsonPatch.apply(patch, client)).isEqualTo(sut.getJson());
+        assertThat(sut.getJson().get("spans")).hasSize(5);
+        assertThat(sut.getJson().get("text").asText()).isEqualTo("This is a test .");
+    }
+
+    @Test
+    public void thatRemovingAllAnnotationsOfLayerWorks()
+    {
+        VDocument initial = new VDocument();
+        initial.setText("This is a test .");
+        initial.add(span(layer1, 1, 0, 4));
+        initial.add(span(layer2, 2, 5, 7));
+        initial.add(span(layer2, 3, 8, 9));
+        sut.init(initial);
+
+        JsonNode client = sut.getJson();
+
+        JsonNode patch = sut.update(new VDocument(), Set.of(1l));
+
+        assertThat(JsonPatch.apply(patch, client)).isEqualTo(sut.getJson());
+        assertThat(sut.getJson().get("spans")).hasSize(2);
+
+        // A later update of layer 2 must use the shifted offsets
+        client = sut.getJson();
+
+        VDocument update = new VDocument();
+        update.add(span(layer2, 3, 8, 9));
+        patch = sut.update(update, Set.of(2l));
+
+        assertThat(JsonPatch.apply(patch, client)).isEqualTo(sut.getJson());
+        assertThat(sut.getJson().get("spans")).hasSize(1);
+    }
+
+    private VSpan span(AnnotationLayer aLayer, int aId, int aBegin, int aEnd)
+    {
+        return new VSpan(aLayer, new VID(aId), "type", new VRange(aBegin, aEnd), emptyMap());
+    }
+}
@@ -0,0 +1,386 @@
+/*
+ * Licensed to the Technische Universität Darmstadt under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The Technische Universität Darmstadt 
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.
+ *  
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.diam.service;
+
+import static de.tudarmstadt.ukp.clarin.webanno.model.PermissionLevel.ANNOTATOR;
+import static de.tudarmstadt.ukp.inception.websocket.config.WebSocketConstants.TOPIC_ELEMENT_DOCUMENT;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyMap;
+import static java.util.concurrent.TimeUnit.MINUTES;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.apache.commons.io.IOUtils.toInputStream;
+import static org.apache.commons.lang3.StringUtils.repeat;
+import static org.apache.tomcat.websocket.Constants.WS_AUTHENTICATION_PASSWORD;
+import static org.apache.tomcat.websocket.Constants.WS_AUTHENTICATION_USER_NAME;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.persistence.EntityManager;
+import javax.sql.DataSource;
+
+import org.apache.uima.cas.CAS;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.SpringBootConfiguration;
+import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.autoconfigure.liquibase.LiquibaseAutoConfiguration;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.provisioning.UserDetailsManager;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+
+import de.tudarmstadt.ukp.clarin.webanno.api.DocumentService;
+import de.tudarmstadt.ukp.clarin.webanno.api.ProjectService;
+import de.tudarmstadt.ukp.clarin.webanno.api.annotation.model.VID;
+import de.tudarmstadt.ukp.clarin.webanno.api.annotation.rendering.PreRenderer;
+import de.tudarmstadt.ukp.clarin.webanno.api.annotation.rendering.model.VDocument;
+import de.tudarmstadt.ukp.clarin.webanno.api.annotation.rendering.model.VRange;
+import de.tudarmstadt.ukp.clarin.webanno.api.annotation.rendering.model.VSpan;
+import de.tudarmstadt.ukp.clarin.webanno.api.config.RepositoryAutoConfiguration;
+import de.tudarmstadt.ukp.clarin.webanno.api.config.RepositoryProperties;
+import de.tudarmstadt.ukp.clarin.webanno.api.dao.annotationservice.config.AnnotationSchemaServiceAutoConfiguration;
+import de.tudarmstadt.ukp.clarin.webanno.api.dao.casstorage.CasStorageSession;
+import de.tudarmstadt.ukp.clarin.webanno.api.dao.casstorage.config.CasStorageServiceAutoConfiguration;
+import de.tudarmstadt.ukp.clarin.webanno.api.dao.documentservice.config.DocumentServiceAutoConfiguration;
+import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationDocument;
+import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationLayer;
+import de.tudarmstadt.ukp.clarin.webanno.model.Project;
+import de.tudarmstadt.ukp.clarin.webanno.model.SourceDocument;
+import de.tudarmstadt.ukp.clarin.webanno.project.config.ProjectServiceAutoConfiguration;
+import de.tudarmstadt.ukp.clarin.webanno.security.ExtensiblePermissionEvaluator;
+import de.tudarmstadt.ukp.clarin.webanno.security.InceptionDaoAuthenticationProvider;
+import de.tudarmstadt.ukp.clarin.webanno.security.OverridableUserDetailsManager;
+import de.tudarmstadt.ukp.clarin.webanno.security.UserDao;
+import de.tudarmstadt.ukp.clarin.webanno.security.config.SecurityAutoConfiguration;
+import de.tudarmstadt.ukp.clarin.webanno.security.model.Role;
+import de.tudarmstadt.ukp.clarin.webanno.security.model.User;
+import de.tudarmstadt.ukp.clarin.webanno.support.ApplicationContextProvider;
+import de.tudarmstadt.ukp.clarin.webanno.support.logging.Logging;
+import de.tudarmstadt.ukp.clarin.webanno.text.config.TextFormatsAutoConfiguration;
+import de.tudarmstadt.ukp.inception.diam.messages.MViewportInit;
+import de.tudarmstadt.ukp.inception.diam.messages.MViewportUpdate;
+import de.tudarmstadt.ukp.inception.diam.model.websocket.ViewportDefinition;
+import de.tudarmstadt.ukp.inception.websocket.config.WebsocketAutoConfiguration;
+import de.tudarmstadt.ukp.inception.websocket.config.WebsocketSecurityConfig;
+import de.tudarmstadt.ukp.inception.websocket.config.stomp.LambdaStompFrameHandler;
+import de.tudarmstadt.ukp.inception.websocket.config.stomp.LoggingStompSessionHandlerAdapter;
+
+@SpringBootTest( //
+        webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, //
+        properties = { //
+                "spring.main.banner-mode=off", //
+                "websocket.enabled=true" })
+@SpringBootApplication( //
+        exclude = { //
+                LiquibaseAutoConfiguration.class })
+@Import({ //
+        SecurityAutoConfiguration.class, //
+        WebsocketAutoConfiguration.class, //
+        ProjectServiceAutoConfiguration.class, //
+        DocumentServiceAutoConfiguration.class, //
+        CasStorageServiceAutoConfiguration.class, //
+        RepositoryAutoConfiguration.class, //
+        AnnotationSchemaServiceAutoConfiguration.class, //
+        TextFormatsAutoConfiguration.class })
+@EntityScan({ //
+        "de.tudarmstadt.ukp.clarin.webanno.model", //
+        "de.tudarmstadt.ukp.clarin.webanno.security.model", //
+        "de.tudarmstadt.ukp.inception.log.model" })
+/**
+ * Simulates many viewers on the simple broker and checks that updates are only sent to the
+ * viewports affected by a change.
+ */
+@Tag("slow")
+public class DiamController_LoadTest
+{
+    private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+    private static final String USER = "user";
+    private static final String PASS = "pass";
+
+    private static final int DOCUMENTS = 10;
+    private static final int SESSIONS = 20;
+    private static final int VIEWPORTS_PER_DOCUMENT = 100;
+    private static final int VIEWPORT_SIZE = 100;
+
+    private WebSocketStompClient stompClient;
+    private @LocalServerPort int port;
+    private String websocketUrl;
+
+    private @Autowired DiamController sut;
+
+    private @Autowired ProjectService projectService;
+    private @Autowired DocumentService documentService;
+    private @Autowired RepositoryProperties repositoryProperties;
+    private @Autowired EntityManager entityManager;
+    private @Autowired UserDao userService;
+
+    // temporarily store data for test project
+    @TempDir
+    File repositoryDir;
+
+    private User user;
+    private Project testProject;
+    private List<AnnotationDocument> testAnnotationDocuments;
+
+    @BeforeEach
+    public void setup() throws Exception
+    {
+        websocketUrl = "ws://localhost:" + port + "/ws-endpoint";
+        StandardWebSocketClient wsClient = new StandardWebSocketClient();
+        wsClient.setUserProperties(Map.of( //
+                WS_AUTHENTICATION_USER_NAME, USER, //
+                WS_AUTHENTICATION_PASSWORD, PASS));
+        stompClient = new WebSocketStompClient(wsClient);
+        stompClient.setMessageConverter(new MappingJackson2MessageConverter());
+
+        repositoryProperties.setPath(repositoryDir);
+        MDC.put(Logging.KEY_REPOSITORY_PATH, repositoryProperties.getPath().toString());
+
+        user = new User(USER, Role.ROLE_USER);
+        user.setPassword(PASS);
+        userService.create(user);
+
+        testProject = new Project("test-project");
+        projectService.createProject(testProject);
+
+        projectService.setProjectPermissionLevels(user, testProject, asList(ANNOTATOR));
+
+        String text = repeat("This is a test . ", VIEWPORTS_PER_DOCUMENT * VIEWPORT_SIZE / 17 + 1);
+
+        testAnnotationDocuments = new ArrayList<>();
+        for (int i = 0; i < DOCUMENTS; i++) {
+            SourceDocument doc = new SourceDocument("test" + i, testProject, "text");
+            documentService.createSourceDocument(doc);
+
+            AnnotationDocument annDoc = new AnnotationDocument(USER, doc);
+            documentService.createAnnotationDocument(annDoc);
+
+            try (var session = CasStorageSession.open()) {
+                documentService.uploadSourceDocument(toInputStream(text, UTF_8), doc);
+            }
+
+            testAnnotationDocuments.add(annDoc);
+        }
+    }
+
+    @AfterEach
+    public void tearDown()
+    {
+        entityManager.clear();
+    }
+
+    @Test
+    public void thatUpdatesReachOnlyAffectedViewports() throws Exception
+    {
+        // Each session watches viewports on all documents, so every viewport has several
+        // subscribers and every document has many viewports
+        List<List<ViewportDefinition>> viewportsBySession = new ArrayList<>();
+        for (int s = 0; s < SESSIONS; s++) {
+            viewportsBySession.add(new ArrayList<>());
+        }
+
+        int n = 0;
+        for (AnnotationDocument doc : testAnnotationDocuments) {
+            for (int v = 0; v < VIEWPORTS_PER_DOCUMENT; v++) {
+                ViewportDefinition vpd = new ViewportDefinition(doc, v * VIEWPORT_SIZE,
+                        (v + 1) * VIEWPORT_SIZE);
+                viewportsBySession.get(n % SESSIONS).add(vpd);
+                viewportsBySession.get((n + 1) % SESSIONS).add(vpd);
+                n++;
+            }
+        }
+
+        int subscribers = viewportsBySession.stream().mapToInt(List::size).sum();
+        CountDownLatch initDone = new CountDownLatch(subscribers);
+        Map<String, AtomicInteger> received = new ConcurrentHashMap<>();
+
+        long start = System.currentTimeMillis();
+        List<StompSession> sessions = new ArrayList<>();
+        try {
+            for (List<ViewportDefinition> vpds : viewportsBySession) {
+                sessions.add(stompClient
+                        .connect(websocketUrl, new SessionHandler(initDone, received, vpds))
+                        .get(10, SECONDS));
+            }
+
+            assertThat(initDone.await(5, MINUTES)).isTrue();
+            LOG.info("Subscribed {} viewers to {} viewports in {} ms", subscribers,
+                    DOCUMENTS * VIEWPORTS_PER_DOCUMENT, System.currentTimeMillis() - start);
+
+            // Each update touches two viewports of one document, each with two subscribers
+            int updates = 1000;
+            AnnotationDocument doc = testAnnotationDocuments.get(0);
+            start = System.currentTimeMillis();
+            for (int i = 0; i < updates; i++) {
+                int begin = (i % (VIEWPORTS_PER_DOCUMENT - 1)) * VIEWPORT_SIZE + VIEWPORT_SIZE
+                        - 5;
+                sut.sendUpdate(doc, begin, begin + 10);
+            }
+            long duration = System.currentTimeMillis() - start;
+            LOG.info("Sent {} updates in {} ms ({} ms/update)", updates, duration,
+                    String.format("%.3f", (double) duration / updates));
+
+            int expectedMessages = updates * 2 * 2;
+            long deadline = System.currentTimeMillis() + 30_000;
+            while (total(received) < expectedMessages && System.currentTimeMillis() < deadline) {
+                Thread.sleep(100);
+            }
+
+            assertThat(total(received)).isEqualTo(expectedMessages);
+            assertThat(received.keySet()) //
+                    .allMatch(topic -> topic.contains(
+                            TOPIC_ELEMENT_DOCUMENT + doc.getDocument().getId() + "/"));
+        }
+        finally {
+            for (StompSession session : sessions) {
+                session.disconnect();
+            }
+        }
+    }
+
+    private static int total(Map<String, AtomicInteger> aCounts)
+    {
+        return aCounts.values().stream().mapToInt(AtomicInteger::get).sum();
+    }
+
+    private static class SessionHandler
+        extends LoggingStompSessionHandlerAdapter
+    {
+        private final CountDownLatch initDoneLatch;
+        private final Map<String, AtomicInteger> received;
+        private final List<ViewportDefinition> vpds;
+
+        public SessionHandler(CountDownLatch aInitDoneLatch, Map<String, AtomicInteger> aReceived,
+                List<ViewportDefinition> aVpds)
+        {
+            super(LOG);
+            initDoneLatch = aInitDoneLatch;
+            received = aReceived;
+            vpds = aVpds;
+        }
+
+        @Override
+        public void afterConnected(StompSession aSession, StompHeaders aConnectedHeaders)
+        {
+            for (ViewportDefinition vpd : vpds) {
+                String topic = vpd.getTopic();
+                aSession.subscribe("/app" + topic, LambdaStompFrameHandler
+                        .handleFrame(MViewportInit.class, (headers, payload) -> initDoneLatch
+                                .countDown()));
+                aSession.subscribe("/topic" + topic,
+                        LambdaStompFrameHandler.handleFrame(MViewportUpdate.class,
+                                (headers, payload) -> received
+                                        .computeIfAbsent(topic, key -> new AtomicInteger())
+                                        .incrementAndGet()));
+            }
+        }
+    }
+
+    // /**
+    // * Test does not check correct authentication for websocket messages, instead we allow all to
+    // * test communication assuming an authenticated user
+    // */
+    @Configuration
+    public static class WebsocketSecurityTestConfig
+        extends WebsocketSecurityConfig
+    {
+        @Autowired
+        public WebsocketSecurityTestConfig(ApplicationContext aContext,
+                ExtensiblePermissionEvaluator aPermissionEvaluator)
+        {
+            super(aContext, aPermissionEvaluator);
+        }
+    }
+
+    @SpringBootConfiguration
+    public static class WebsocketBrokerTestConfig
+    {
+        @Bean
+        public ApplicationContextProvider applicationContextProvider()
+        {
+            return new ApplicationContextProvider();
+        }
+
+        @Bean(name = "authenticationProvider")
+        public DaoAuthenticationProvider internalAuthenticationProvider(PasswordEncoder aEncoder,
+                UserDetailsManager aUserDetailsManager)
+        {
+            DaoAuthenticationProvider authProvider = new InceptionDaoAuthenticationProvider();
+            authProvider.setUserDetailsService(aUserDetailsManager);
+            authProvider.setPasswordEncoder(aEncoder);
+            return authProvider;
+        }
+
+        @Bean
+        public UserDetailsManager userDetailsService(DataSource aDataSource,
+                @Lazy AuthenticationManager aAuthenticationManager)
+        {
+            OverridableUserDetailsManager manager = new OverridableUserDetailsManager();
+            manager.setDataSource(aDataSource);
+            manager.setAuthenticationManager(aAuthenticationManager);
+            return manager;
+        }
+
+        @Bean
+        public PreRenderer preRenderer()
+        {
+            return new PreRenderer()
+            {
+                @Override
+                public void render(VDocument aResponse, int aWindowBeginOffset,
+                        int aWindowEndOffset, CAS aCas, List<AnnotationLayer> aLayers)
+                {
+                    AnnotationLayer layer = new AnnotationLayer();
+                    layer.setId(1l);
+                    aResponse.add(new VSpan(layer, new VID(1), "dummy",
+                            new VRange(aWindowBeginOffset, aWindowEndOffset), emptyMap()));
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Licensed to the Technische Universität Darmstadt under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The Technische Universität Darmstadt 
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.
+ *  
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.diam.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import de.tudarmstadt.ukp.inception.diam.model.websocket.ViewportDefinition;
+import de.tudarmstadt.ukp.inception.diam.model.websocket.ViewportState;
+
+public class ViewportRegistryTest
+{
+    private ViewportRegistry sut;
+
+    @BeforeEach
+    public void setup()
+    {
+        sut = new ViewportRegistry();
+    }
+
+    @Test
+    public void thatOnlyOverlappingViewportsAreFound()
+    {
+        ViewportDefinition vpd1 = new ViewportDefinition(1l, 1l, "user", 0, 10);
+        ViewportDefinition vpd2 = new ViewportDefinition(1l, 1l, "user", 10, 20);
+        ViewportDefinition vpd3 = new ViewportDefinition(1l, 1l, "user", 0, 100);
+        ViewportDefinition vpd4 = new ViewportDefinition(1l, 2l, "user", 0, 100);
+        ViewportDefinition vpd5 = new ViewportDefinition(1l, 1l, "other", 0, 100);
+
+        sut.subscribe(vpd1, "s1", "sub1");
+        sut.subscribe(vpd2, "s1", "sub2");
+        sut.subscribe(vpd3, "s2", "sub1");
+        sut.subscribe(vpd4, "s2", "sub2");
+        sut.subscribe(vpd5, "s2", "sub3");
+
+        assertThat(sut.find(1l, "user", 12, 15)) //
+                .extracting(ViewportState::getViewportDefinition) //
+                .containsExactlyInAnyOrder(vpd2, vpd3);
+        assertThat(sut.find(1l, "user", 50, 60)) //
+                .extracting(ViewportState::getViewportDefinition) //
+                .containsExactly(vpd3);
+        assertThat(sut.find(1l, "user", 200, 300)).isEmpty();
+        assertThat(sut.find(3l, "user", 0, 10)).isEmpty();
+    }
+
+    @Test
+    public void thatViewportIsSharedAndClosedWithLastSubscriber()
+    {
+        ViewportDefinition vpd = new ViewportDefinition(1l, 1l, "user", 0, 10);
+
+        ViewportState vps1 = sut.subscribe(vpd, "s1", "sub1");
+        ViewportState vps2 = sut.subscribe(new ViewportDefinition(1l, 1l, "user", 0, 10), "s2",
+                "sub1");
+
+        assertThat(vps1).isSameAs(vps2);
+        assertThat(sut.size()).isEqualTo(1);
+
+        sut.unsubscribe("s1", "sub1");
+        assertThat(sut.isViewed(1l, "user")).isTrue();
+
+        sut.unsubscribeAll("s2");
+        assertThat(sut.isViewed(1l, "user")).isFalse();
+        assertThat(sut.size()).isEqualTo(0);
+        assertThat(sut.find(1l, "user", 0, 10)).isEmpty();
+    }
+}
@@ -36,6 +36,8 @@ import java.net.http.HttpResponse;
 import java.net.http.HttpResponse.BodyHandlers;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 
 import org.apache.commons.io.IOUtils;
 import org.apache.uima.cas.CAS;
@@ -71,6 +73,7 @@ import de.tudarmstadt.ukp.inception.recommendation.imls.external.v1.messages.Pre
 import de.tudarmstadt.ukp.inception.recommendation.imls.external.v1.messages.TrainingRequest;
 import de.tudarmstadt.ukp.inception.recommendation.imls.external.v1.model.Document;
 import de.tudarmstadt.ukp.inception.recommendation.imls.external.v1.model.Metadata;
+import de.tudarmstadt.ukp.inception.recommendation.imls.external.v2.BatchPredictionClient;
 
 public class ExternalRecommender
     extends RecommendationEngine
@@ -85,15 +88,28 @@ public class ExternalRecommender
     private final ExternalRecommenderProperties properties;
     private final ExternalRecommenderTraits traits;
     private final HttpClient client;
+    private final BatchPredictionClient batchClient;
 
     public ExternalRecommender(ExternalRecommenderProperties aProperties, Recommender aRecommender,
             ExternalRecommenderTraits aTraits)
+    {
+        this(aProperties, aRecommender, aTraits, null);
+    }
+
+    /**
+     * @param aBatchClient
+     *            client for the batched prediction API (v2). If this is {@code null}, every
+     *            document is sent in a separate request (v1).
+     */
+    public ExternalRecommender(ExternalRecommenderProperties aProperties, Recommender aRecommender,
+            ExternalRecommenderTraits aTraits, BatchPredictionClient aBatchClient)
     {
         super(aRecommender);
 
         properties = aProperties;
         traits = aTraits;
         client = HttpClient.newBuilder().connectTimeout(properties.getConnectTimeout()).build();
+        batchClient = aBatchClient;
     }
 
     @Override
@@ -160,6 +176,13 @@ public class ExternalRecommender
     {
         String typeSystem = serializeTypeSystem(aCas);
 
+        if (batchClient != null) {
+            CompletableFuture<String> result = batchClient.predict(buildMetadata(aCas), typeSystem,
+                    buildDocument(aCas));
+            deserializePrediction(awaitBatchPrediction(result), aCas);
+            return;
+        }
+
         PredictionRequest predictionRequest = new PredictionRequest();
         predictionRequest.setTypeSystem(typeSystem);
         predictionRequest.setDocument(buildDocument(aCas));
@@ -185,7 +208,34 @@ public class ExternalRecommender
 
         PredictionResponse predictionResponse = deserializePredictionResponse(response);
 
-        try (InputStream is = IOUtils.toInputStream(predictionResponse.getDocument(), UTF_8)) {
+        deserializePrediction(predictionResponse.getDocument(), aCas);
+    }
+
+    private String awaitBatchPrediction(CompletableFuture<String> aResult)
+        throws RecommendationException
+    {
+        // The batch client fails the result if the read timeout passes after the batch has
+        // been dispatched, so there is no need for a separate deadline here
+        try {
+            return aResult.get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RecommendationException("Interrupted while waiting for prediction", e);
+        }
+        catch (ExecutionException e) {
+            if (e.getCause() instanceof RecommendationException) {
+                throw (RecommendationException) e.getCause();
+            }
+            throw new RecommendationException(
+                    "Error while waiting for prediction: " + e.getCause().getMessage(),
+                    e.getCause());
+        }
+    }
+
+    private void deserializePrediction(String aXmi, CAS aCas) throws RecommendationException
+    {
+        try (InputStream is = IOUtils.toInputStream(aXmi, UTF_8)) {
             XmiCasDeserializer.deserialize(is, WebAnnoCasUtil.getRealCas(aCas), true);
         }
         catch (SAXException | IOException e) {
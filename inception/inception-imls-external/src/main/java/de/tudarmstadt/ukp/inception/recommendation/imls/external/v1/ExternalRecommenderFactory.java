@@ -20,7 +20,14 @@ package de.tudarmstadt.ukp.inception.recommendation.imls.external.v1;
 import static de.tudarmstadt.ukp.clarin.webanno.api.WebAnnoConst.RELATION_TYPE;
 import static de.tudarmstadt.ukp.clarin.webanno.api.WebAnnoConst.SPAN_TYPE;
 
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
 import org.apache.wicket.model.IModel;
+import org.springframework.beans.factory.DisposableBean;
 
 import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationFeature;
 import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationLayer;
@@ -29,6 +36,7 @@ import de.tudarmstadt.ukp.inception.recommendation.api.recommender.Recommendatio
 import de.tudarmstadt.ukp.inception.recommendation.api.recommender.RecommendationEngineFactoryImplBase;
 import de.tudarmstadt.ukp.inception.recommendation.imls.external.v1.config.ExternalRecommenderAutoConfiguration;
 import de.tudarmstadt.ukp.inception.recommendation.imls.external.v1.config.ExternalRecommenderProperties;
+import de.tudarmstadt.ukp.inception.recommendation.imls.external.v2.BatchPredictionClient;
 
 /**
  * <p>
@@ -38,6 +46,7 @@ import de.tudarmstadt.ukp.inception.recommendation.imls.external.v1.config.Exter
  */
 public class ExternalRecommenderFactory
     extends RecommendationEngineFactoryImplBase<ExternalRecommenderTraits>
+    implements DisposableBean
 {
     // This is a string literal so we can rename/refactor the class without it changing its ID
     // and without the database starting to refer to non-existing recommendation tools.
@@ -45,9 +54,26 @@ public class ExternalRecommenderFactory
 
     private final ExternalRecommenderProperties properties;
 
+    // The engines are re-created for every prediction run, but batching only works if concurrent
+    // predictions against the same remote share a client
+    private final ConcurrentMap<String, BatchPredictionClient> batchClients;
+    private final ScheduledExecutorService batchScheduler;
+
     public ExternalRecommenderFactory(ExternalRecommenderProperties aProperties)
     {
         properties = aProperties;
+        batchClients = new ConcurrentHashMap<>();
+        batchScheduler = Executors.newSingleThreadScheduledExecutor(
+                new BasicThreadFactory.Builder() //
+                        .daemon(true) //
+                        .namingPattern("external-recommender-batch-%d") //
+                        .build());
+    }
+
+    @Override
+    public void destroy()
+    {
+        batchScheduler.shutdownNow();
     }
 
     @Override
@@ -60,7 +86,14 @@ public class ExternalRecommenderFactory
     public RecommendationEngine build(Recommender aRecommender)
     {
         ExternalRecommenderTraits traits = readTraits(aRecommender);
-        return new ExternalRecommender(properties, aRecommender, traits);
+
+        BatchPredictionClient batchClient = null;
+        if (traits.isBatchPrediction()) {
+            batchClient = batchClients.computeIfAbsent(traits.getRemoteUrl(),
+                    url -> new BatchPredictionClient(url, properties, batchScheduler));
+        }
+
+        return new ExternalRecommender(properties, aRecommender, traits, batchClient);
     }
 
     @Override
@@ -69,6 +102,19 @@ public class ExternalRecommenderFactory
         return "Remote classifier";
     }
 
+    @Override
+    public boolean isRemote()
+    {
+        return true;
+    }
+
+    @Override
+    public boolean isConcurrentPredictionSupported()
+    {
+        // Every prediction is an independent request to the remote recommender
+        return true;
+    }
+
     @Override
     public boolean accepts(AnnotationLayer aLayer, AnnotationFeature aFeature)
     {
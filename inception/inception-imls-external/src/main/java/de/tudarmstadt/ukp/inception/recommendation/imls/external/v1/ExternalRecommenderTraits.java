@@ -29,6 +29,7 @@ public class ExternalRecommenderTraits
 
     private String remoteUrl;
     private boolean trainable;
+    private boolean batchPrediction;
 
     public String getRemoteUrl()
     {
@@ -49,4 +50,14 @@ public class ExternalRecommenderTraits
     {
         trainable = aTrainable;
     }
+
+    public boolean isBatchPrediction()
+    {
+        return batchPrediction;
+    }
+
+    public void setBatchPrediction(boolean aBatchPrediction)
+    {
+        batchPrediction = aBatchPrediction;
+    }
 }
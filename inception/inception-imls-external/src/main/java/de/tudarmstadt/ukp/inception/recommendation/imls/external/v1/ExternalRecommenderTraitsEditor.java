@@ -74,6 +74,8 @@ public class ExternalRecommenderTraitsEditor
                 _target -> _target.add(getTrainingStatesChoice())));
         form.add(trainable);
 
+        form.add(new CheckBox("batchPrediction"));
+
         getTrainingStatesChoice().add(visibleWhen(() -> trainable.getModelObject() == true));
 
         add(form);
@@ -24,4 +24,20 @@ public interface ExternalRecommenderProperties
     Duration getConnectTimeout();
 
     Duration getReadTimeout();
+
+    /**
+     * @return maximum number of documents sent in a single batched prediction request.
+     */
+    int getBatchSize();
+
+    /**
+     * @return time to wait for further documents before sending an incomplete batch.
+     */
+    Duration getBatchLinger();
+
+    /**
+     * @return maximum number of batched prediction requests per remote that may be waiting for a
+     *         response at the same time.
+     */
+    int getMaxBatchesInFlight();
 }
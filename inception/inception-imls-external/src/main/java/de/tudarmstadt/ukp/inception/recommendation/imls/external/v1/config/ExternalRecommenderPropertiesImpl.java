@@ -17,6 +17,7 @@
  */
 package de.tudarmstadt.ukp.inception.recommendation.imls.external.v1.config;
 
+import static java.time.temporal.ChronoUnit.MILLIS;
 import static java.time.temporal.ChronoUnit.SECONDS;
 
 import java.time.Duration;
@@ -34,6 +35,9 @@ public class ExternalRecommenderPropertiesImpl
 {
     private Duration connectTimeout = Duration.of(30, SECONDS);
     private Duration readTimeout = Duration.of(30, SECONDS);
+    private int batchSize = 16;
+    private Duration batchLinger = Duration.of(10, MILLIS);
+    private int maxBatchesInFlight = 2;
 
     @Override
     public Duration getConnectTimeout()
@@ -57,4 +61,36 @@ public class ExternalRecommenderPropertiesImpl
         readTimeout = aReadTimeout;
     }
 
+    @Override
+    public int getBatchSize()
+    {
+        return batchSize;
+    }
+
+    public void setBatchSize(int aBatchSize)
+    {
+        batchSize = aBatchSize;
+    }
+
+    @Override
+    public Duration getBatchLinger()
+    {
+        return batchLinger;
+    }
+
+    public void setBatchLinger(Duration aBatchLinger)
+    {
+        batchLinger = aBatchLinger;
+    }
+
+    @Override
+    public int getMaxBatchesInFlight()
+    {
+        return maxBatchesInFlight;
+    }
+
+    public void setMaxBatchesInFlight(int aMaxBatchesInFlight)
+    {
+        maxBatchesInFlight = aMaxBatchesInFlight;
+    }
 }
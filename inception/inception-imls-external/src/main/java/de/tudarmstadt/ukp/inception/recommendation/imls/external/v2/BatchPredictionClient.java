@@ -0,0 +1,350 @@
+/*
+ * Licensed to the Technische Universität Darmstadt under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The Technische Universität Darmstadt 
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.
+ *  
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.recommendation.imls.external.v2;
+
+import static java.lang.String.format;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.apache.commons.lang3.StringUtils.appendIfMissing;
+import static org.apache.commons.lang3.StringUtils.isBlank;
+import static org.springframework.http.MediaType.APPLICATION_JSON_VALUE;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpRequest.BodyPublishers;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import de.tudarmstadt.ukp.clarin.webanno.support.JSONUtil;
+import de.tudarmstadt.ukp.inception.recommendation.api.recommender.RecommendationException;
+import de.tudarmstadt.ukp.inception.recommendation.imls.external.v1.config.ExternalRecommenderProperties;
+import de.tudarmstadt.ukp.inception.recommendation.imls.external.v1.model.Document;
+import de.tudarmstadt.ukp.inception.recommendation.imls.external.v1.model.Metadata;
+import de.tudarmstadt.ukp.inception.recommendation.imls.external.v2.messages.BatchPredictionRequest;
+import de.tudarmstadt.ukp.inception.recommendation.imls.external.v2.messages.BatchPredictionResponseItem;
+
+/**
+ * Client for the batched prediction endpoint ({@code POST v2/predict}) of an external recommender.
+ * <p>
+ * Documents submitted concurrently via {@link #predict} are collected into batches which share
+ * metadata and type system. A document submitted while the client is idle is sent immediately since
+ * no other document could join its batch anyway. Otherwise, a batch is sent once it is full or once
+ * the linger time has passed since its first document was added. Several batches can be in flight
+ * at the same time, so the next batch is already sent while the response to an earlier one is still
+ * streaming in. If all in-flight slots are taken when the linger time has passed, the batch stays
+ * open and keeps collecting documents until a slot becomes available. The response is a stream of
+ * newline-delimited JSON {@link BatchPredictionResponseItem items}. Each item completes the future
+ * of its document as soon as it has been received, so the caller can start merging the predictions
+ * into its CAS while the rest of the batch is still being processed.
+ */
+public class BatchPredictionClient
+{
+    public static final String BATCH_PREDICT_PATH = "v2/predict";
+    public static final String APPLICATION_NDJSON_VALUE = "application/x-ndjson";
+
+    private static final Logger LOG = LoggerFactory.getLogger(BatchPredictionClient.class);
+
+    private static final int HTTP_BAD_REQUEST = 400;
+
+    private final HttpClient client;
+    private final URI endpoint;
+    private final Duration readTimeout;
+    private final int batchSize;
+    private final Duration linger;
+    private final int maxBatchesInFlight;
+    private final ScheduledExecutorService scheduler;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final Object lock = new Object();
+    private final Deque<Batch> closedBatches = new ArrayDeque<>();
+    private Batch openBatch;
+    private int batchesInFlight;
+
+    public BatchPredictionClient(String aRemoteUrl, ExternalRecommenderProperties aProperties,
+            ScheduledExecutorService aScheduler)
+    {
+        endpoint = URI.create(appendIfMissing(aRemoteUrl, "/")).resolve(BATCH_PREDICT_PATH);
+        readTimeout = aProperties.getReadTimeout();
+        batchSize = Math.max(1, aProperties.getBatchSize());
+        linger = aProperties.getBatchLinger();
+        maxBatchesInFlight = Math.max(1, aProperties.getMaxBatchesInFlight());
+        scheduler = aScheduler;
+        client = HttpClient.newBuilder().connectTimeout(aProperties.getConnectTimeout()).build();
+    }
+
+    /**
+     * Adds the given document to the next batch.
+     * 
+     * @param aMetadata
+     *            the metadata of the document.
+     * @param aTypeSystem
+     *            the serialized type system of the document.
+     * @param aDocument
+     *            the document.
+     * @return a future which is completed with the XMI of the predicted document.
+     */
+    public CompletableFuture<String> predict(Metadata aMetadata, String aTypeSystem,
+            Document aDocument)
+    {
+        CompletableFuture<String> result = new CompletableFuture<>();
+
+        List<Batch> batchesToSend;
+        synchronized (lock) {
+            if (openBatch != null && !openBatch.accepts(aMetadata, aTypeSystem)) {
+                closeOpenBatch();
+            }
+
+            // If nothing else is waiting or in flight, there is nobody who could join the batch
+            // within the linger time (e.g. because prediction runs single-threaded), so the
+            // document is sent right away. While that request is in flight, concurrently
+            // submitted documents collect in the next batch.
+            boolean idle = openBatch == null && closedBatches.isEmpty() && batchesInFlight == 0;
+
+            if (openBatch == null) {
+                openBatch = new Batch(aMetadata, aTypeSystem);
+                if (!idle && batchSize > 1 && !linger.isZero()) {
+                    Batch batch = openBatch;
+                    batch.lingerTimeout = scheduler.schedule(() -> onLingerTimeout(batch),
+                            linger.toMillis(), MILLISECONDS);
+                }
+            }
+
+            openBatch.add(aDocument, result);
+
+            if (idle || openBatch.size() >= batchSize || linger.isZero()) {
+                closeOpenBatch();
+            }
+
+            batchesToSend = takeBatchesToSend();
+        }
+
+        batchesToSend.forEach(this::send);
+
+        return result;
+    }
+
+    private void onLingerTimeout(Batch aBatch)
+    {
+        List<Batch> batchesToSend;
+        synchronized (lock) {
+            if (openBatch != aBatch) {
+                // Batch has already been closed because it was full
+                return;
+            }
+
+            if (batchesInFlight >= maxBatchesInFlight) {
+                // No point in closing the batch yet - it is sent as soon as a slot becomes free
+                return;
+            }
+
+            closeOpenBatch();
+            batchesToSend = takeBatchesToSend();
+        }
+
+        batchesToSend.forEach(this::send);
+    }
+
+    private void onBatchCompleted()
+    {
+        List<Batch> batchesToSend;
+        synchronized (lock) {
+            batchesInFlight--;
+            if (closedBatches.isEmpty() && openBatch != null) {
+                // The documents in the open batch have already been waiting for a free slot
+                closeOpenBatch();
+            }
+            batchesToSend = takeBatchesToSend();
+        }
+
+        batchesToSend.forEach(this::send);
+    }
+
+    // Must be called while holding the lock
+    private void closeOpenBatch()
+    {
+        if (openBatch.lingerTimeout != null) {
+            openBatch.lingerTimeout.cancel(false);
+        }
+        closedBatches.add(openBatch);
+        openBatch = null;
+    }
+
+    // Must be called while holding the lock
+    private List<Batch> takeBatchesToSend()
+    {
+        List<Batch> batches = new ArrayList<>();
+        while (batchesInFlight < maxBatchesInFlight && !closedBatches.isEmpty()) {
+            batches.add(closedBatches.poll());
+            batchesInFlight++;
+        }
+        return batches;
+    }
+
+    private void send(Batch aBatch)
+    {
+        HttpRequest request;
+        try {
+            BatchPredictionRequest batchRequest = new BatchPredictionRequest();
+            batchRequest.setMetadata(aBatch.metadata);
+            batchRequest.setTypeSystem(aBatch.typeSystem);
+            batchRequest.setDocuments(aBatch.documents);
+
+            request = HttpRequest.newBuilder() //
+                    .uri(endpoint) //
+                    .header(HttpHeaders.CONTENT_TYPE, APPLICATION_JSON_VALUE) //
+                    .header(HttpHeaders.ACCEPT, APPLICATION_NDJSON_VALUE) //
+                    .timeout(readTimeout) //
+                    .POST(BodyPublishers.ofString(JSONUtil.toJsonString(batchRequest), UTF_8))
+                    .build();
+        }
+        catch (IOException e) {
+            aBatch.failRemaining(new RecommendationException("Error while serializing JSON!", e));
+            onBatchCompleted();
+            return;
+        }
+
+        LOG.trace("Sending batch of [{}] documents to [{}]", aBatch.size(), endpoint);
+
+        // The request timeout only covers the time until the response headers arrive, but the
+        // predictions are streamed afterwards. The read timeout is therefore enforced on the
+        // whole batch starting from the moment it is dispatched - time spent waiting for a free
+        // in-flight slot does not count against it.
+        ScheduledFuture<?> timeout = scheduler.schedule(
+                () -> aBatch.failRemaining(new RecommendationException(
+                        "Timed out after [" + readTimeout + "] waiting for predictions")),
+                readTimeout.toMillis(), MILLISECONDS);
+
+        client.sendAsync(request, BodyHandlers.ofLines()) //
+                .thenAccept(response -> receive(aBatch, response)) //
+                .whenComplete((v, e) -> {
+                    timeout.cancel(false);
+                    if (e != null) {
+                        aBatch.failRemaining(new RecommendationException(
+                                "Error while sending request: " + e.getMessage(), e));
+                    }
+                    onBatchCompleted();
+                });
+    }
+
+    private void receive(Batch aBatch, HttpResponse<Stream<String>> aResponse)
+    {
+        try (Stream<String> lines = aResponse.body()) {
+            // If the response indicates that the request was not successful,
+            // then it does not make sense to go on and try to decode the XMI
+            if (aResponse.statusCode() >= HTTP_BAD_REQUEST) {
+                String responseBody = lines.collect(Collectors.joining("\n"));
+                aBatch.failRemaining(new RecommendationException(
+                        format("Request was not successful: [%d] - [%s]",
+                                aResponse.statusCode(), responseBody)));
+                return;
+            }
+
+            lines.forEachOrdered(line -> {
+                if (isBlank(line)) {
+                    return;
+                }
+
+                BatchPredictionResponseItem item;
+                try {
+                    item = objectMapper.readValue(line, BatchPredictionResponseItem.class);
+                }
+                catch (IOException e) {
+                    throw new IllegalStateException(
+                            "Error while deserializing prediction response!", e);
+                }
+
+                aBatch.complete(item);
+            });
+        }
+
+        aBatch.failRemaining(new RecommendationException(
+                "Response did not contain predictions for all documents in the batch"));
+    }
+
+    private static class Batch
+    {
+        private final Metadata metadata;
+        private final String typeSystem;
+        private final List<Document> documents = new ArrayList<>();
+        private final List<CompletableFuture<String>> results = new ArrayList<>();
+        private ScheduledFuture<?> lingerTimeout;
+
+        Batch(Metadata aMetadata, String aTypeSystem)
+        {
+            metadata = aMetadata;
+            typeSystem = aTypeSystem;
+        }
+
+        boolean accepts(Metadata aMetadata, String aTypeSystem)
+        {
+            return Objects.equals(metadata, aMetadata) && Objects.equals(typeSystem, aTypeSystem);
+        }
+
+        void add(Document aDocument, CompletableFuture<String> aResult)
+        {
+            documents.add(aDocument);
+            results.add(aResult);
+        }
+
+        int size()
+        {
+            return documents.size();
+        }
+
+        void complete(BatchPredictionResponseItem aItem)
+        {
+            if (aItem.getIndex() < 0 || aItem.getIndex() >= results.size()) {
+                LOG.warn("Ignoring prediction for unknown document index [{}]", aItem.getIndex());
+                return;
+            }
+
+            CompletableFuture<String> result = results.get(aItem.getIndex());
+            if (aItem.getError() != null) {
+                result.completeExceptionally(new RecommendationException(
+                        "Prediction failed on remote: " + aItem.getError()));
+            }
+            else {
+                result.complete(aItem.getDocument());
+            }
+        }
+
+        void failRemaining(Throwable aCause)
+        {
+            results.forEach(r -> r.completeExceptionally(aCause));
+        }
+    }
+}
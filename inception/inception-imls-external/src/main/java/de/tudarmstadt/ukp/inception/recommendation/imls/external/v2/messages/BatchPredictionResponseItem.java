@@ -0,0 +1,72 @@
+/*
+ * Licensed to the Technische Universität Darmstadt under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The Technische Universität Darmstadt 
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.
+ *  
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.recommendation.imls.external.v2.messages;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonInclude.Include;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * One line of the newline-delimited JSON response to a {@link BatchPredictionRequest}. The server
+ * may send the items in any order and as soon as each document has been processed. The
+ * {@code index} refers to the position of the document in the request.
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+@JsonInclude(Include.NON_NULL)
+public class BatchPredictionResponseItem
+{
+    @JsonProperty("index")
+    private int index;
+
+    @JsonProperty("document")
+    private String document;
+
+    @JsonProperty("error")
+    private String error;
+
+    public int getIndex()
+    {
+        return index;
+    }
+
+    public void setIndex(int aIndex)
+    {
+        index = aIndex;
+    }
+
+    public String getDocument()
+    {
+        return document;
+    }
+
+    public void setDocument(String aDocument)
+    {
+        document = aDocument;
+    }
+
+    public String getError()
+    {
+        return error;
+    }
+
+    public void setError(String aError)
+    {
+        error = aError;
+    }
+}
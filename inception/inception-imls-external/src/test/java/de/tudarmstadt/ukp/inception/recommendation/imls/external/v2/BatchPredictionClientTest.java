@@ -0,0 +1,436 @@
+/*
+ * Licensed to the Technische Universität Darmstadt under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The Technische Universität Darmstadt 
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.
+ *  
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.recommendation.imls.external.v2;
+
+import static de.tudarmstadt.ukp.clarin.webanno.api.casstorage.CasAccessMode.EXCLUSIVE_WRITE_ACCESS;
+import static de.tudarmstadt.ukp.inception.recommendation.api.RecommendationService.FEATURE_NAME_IS_PREDICTION;
+import static de.tudarmstadt.ukp.inception.recommendation.imls.external.v2.BatchPredictionClient.APPLICATION_NDJSON_VALUE;
+import static de.tudarmstadt.ukp.inception.support.test.recommendation.RecommenderTestHelper.getPredictions;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Collections.emptyList;
+import static org.apache.uima.fit.factory.TypeSystemDescriptionFactory.createTypeSystemDescription;
+import static org.apache.uima.util.CasCreationUtils.mergeTypeSystems;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.uima.UIMAFramework;
+import org.apache.uima.cas.CAS;
+import org.apache.uima.cas.Feature;
+import org.apache.uima.cas.Type;
+import org.apache.uima.cas.TypeSystem;
+import org.apache.uima.cas.impl.XmiCasDeserializer;
+import org.apache.uima.cas.impl.XmiCasSerializer;
+import org.apache.uima.cas.text.AnnotationFS;
+import org.apache.uima.fit.factory.JCasFactory;
+import org.apache.uima.fit.util.CasUtil;
+import org.apache.uima.jcas.JCas;
+import org.apache.uima.resource.metadata.TypeSystemDescription;
+import org.apache.uima.util.CasCreationUtils;
+import org.apache.uima.util.XMLInputSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import de.tudarmstadt.ukp.clarin.webanno.api.dao.casstorage.CasMetadataUtils;
+import de.tudarmstadt.ukp.clarin.webanno.api.dao.casstorage.CasStorageSession;
+import de.tudarmstadt.ukp.clarin.webanno.api.type.CASMetadata;
+import de.tudarmstadt.ukp.clarin.webanno.model.AnchoringMode;
+import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationFeature;
+import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationLayer;
+import de.tudarmstadt.ukp.dkpro.core.api.ner.type.NamedEntity;
+import de.tudarmstadt.ukp.inception.recommendation.api.model.Recommender;
+import de.tudarmstadt.ukp.inception.recommendation.api.recommender.RecommendationException;
+import de.tudarmstadt.ukp.inception.recommendation.api.recommender.RecommenderContext;
+import de.tudarmstadt.ukp.inception.recommendation.imls.external.v1.ExternalRecommender;
+import de.tudarmstadt.ukp.inception.recommendation.imls.external.v1.ExternalRecommenderTraits;
+import de.tudarmstadt.ukp.inception.recommendation.imls.external.v1.config.ExternalRecommenderPropertiesImpl;
+import de.tudarmstadt.ukp.inception.recommendation.imls.external.v1.messages.PredictionRequest;
+import de.tudarmstadt.ukp.inception.recommendation.imls.external.v1.messages.PredictionResponse;
+import de.tudarmstadt.ukp.inception.recommendation.imls.external.v1.model.Document;
+import de.tudarmstadt.ukp.inception.recommendation.imls.external.v2.messages.BatchPredictionRequest;
+import de.tudarmstadt.ukp.inception.recommendation.imls.external.v2.messages.BatchPredictionResponseItem;
+import de.tudarmstadt.ukp.inception.support.test.recommendation.RecommenderTestHelper;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+public class BatchPredictionClientTest
+{
+    private static final Logger LOG = LoggerFactory.getLogger(BatchPredictionClientTest.class);
+
+    private static final String USER_NAME = "test_user";
+    private static final long PROJECT_ID = 42L;
+    private static final Pattern CAPITALIZED_WORD = Pattern.compile("\\b[A-Z]\\w+");
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private Recommender recommender;
+    private ExternalRecommenderTraits traits;
+    private ExternalRecommenderPropertiesImpl properties;
+    private MockWebServer server;
+    private AtomicInteger v1Requests;
+    private AtomicInteger v2Requests;
+    private AtomicInteger casSequence;
+    private Duration latency;
+    private ScheduledExecutorService scheduler;
+    private CasStorageSession casStorageSession;
+
+    @BeforeEach
+    public void setUp() throws Exception
+    {
+        casStorageSession = CasStorageSession.open();
+        recommender = buildRecommender();
+        properties = new ExternalRecommenderPropertiesImpl();
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+        v1Requests = new AtomicInteger();
+        v2Requests = new AtomicInteger();
+        casSequence = new AtomicInteger();
+        latency = Duration.ofMillis(20);
+
+        server = new MockWebServer();
+        server.setDispatcher(new RemoteRecommenderDispatcher());
+        server.start();
+
+        traits = new ExternalRecommenderTraits();
+        traits.setRemoteUrl(server.url("/").toString());
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception
+    {
+        scheduler.shutdownNow();
+        casStorageSession.close();
+        server.shutdown();
+    }
+
+    @Test
+    public void thatConcurrentPredictionsAreBatched() throws Exception
+    {
+        int documents = 12;
+        List<CAS> casses = makeCasses(documents);
+
+        BatchPredictionClient client = new BatchPredictionClient(traits.getRemoteUrl(),
+                properties, scheduler);
+        ExternalRecommender sut = new ExternalRecommender(properties, recommender, traits, client);
+
+        predictConcurrently(sut, casses, documents);
+
+        assertThat(v1Requests).hasValue(0);
+        assertThat(v2Requests.get()).isGreaterThan(0).isLessThan(documents);
+        for (CAS cas : casses) {
+            assertThat(getPredictions(cas, NamedEntity.class)) //
+                    .extracting(NamedEntity::getCoveredText) //
+                    .containsExactly("Alice", "Bob", "Paris");
+        }
+    }
+
+    @Test
+    public void thatRemoteErrorsAreReportedPerDocument() throws Exception
+    {
+        List<CAS> casses = List.of(makeCas(0, "Alice met Bob in Paris."), makeCas(1, "FAIL"));
+
+        BatchPredictionClient client = new BatchPredictionClient(traits.getRemoteUrl(),
+                properties, scheduler);
+        ExternalRecommender sut = new ExternalRecommender(properties, recommender, traits, client);
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<?> ok = executor.submit(() -> {
+                sut.predict(new RecommenderContext(), casses.get(0));
+                return null;
+            });
+            Future<?> failed = executor.submit(() -> {
+                sut.predict(new RecommenderContext(), casses.get(1));
+                return null;
+            });
+
+            ok.get();
+            assertThat(failed).failsWithin(Duration.ofSeconds(10)) //
+                    .withThrowableOfType(Exception.class) //
+                    .withMessageContaining("Prediction failed on remote");
+        }
+        finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(getPredictions(casses.get(0), NamedEntity.class)).hasSize(3);
+    }
+
+    @Test
+    public void thatSequentialPredictionDoesNotWaitForLinger() throws Exception
+    {
+        properties.setBatchLinger(Duration.ofSeconds(30));
+
+        BatchPredictionClient client = new BatchPredictionClient(traits.getRemoteUrl(),
+                properties, scheduler);
+        ExternalRecommender sut = new ExternalRecommender(properties, recommender, traits, client);
+
+        long start = System.currentTimeMillis();
+        for (CAS cas : makeCasses(3)) {
+            sut.predict(new RecommenderContext(), cas);
+        }
+
+        assertThat(System.currentTimeMillis() - start).isLessThan(10_000);
+        assertThat(v2Requests).hasValue(3);
+    }
+
+    @Test
+    public void thatBatchTimesOutAfterDispatch() throws Exception
+    {
+        properties.setReadTimeout(Duration.ofMillis(500));
+        latency = Duration.ofSeconds(2);
+
+        BatchPredictionClient client = new BatchPredictionClient(traits.getRemoteUrl(),
+                properties, scheduler);
+        ExternalRecommender sut = new ExternalRecommender(properties, recommender, traits, client);
+
+        CAS cas = makeCas(0, "Alice met Bob in Paris.");
+        assertThatThrownBy(() -> sut.predict(new RecommenderContext(), cas)) //
+                .isInstanceOf(RecommendationException.class);
+    }
+
+    @Tag("slow")
+    @Test
+    public void benchmarkBatchedVersusSingleDocumentPrediction() throws Exception
+    {
+        int documents = 200;
+        int threads = 8;
+        latency = Duration.ofMillis(50);
+
+        ExternalRecommender v1 = new ExternalRecommender(properties, recommender, traits);
+        BatchPredictionClient client = new BatchPredictionClient(traits.getRemoteUrl(),
+                properties, scheduler);
+        ExternalRecommender v2 = new ExternalRecommender(properties, recommender, traits, client);
+
+        // Warm up
+        predictConcurrently(v1, makeCasses(threads), threads);
+        predictConcurrently(v2, makeCasses(threads), threads);
+        v1Requests.set(0);
+        v2Requests.set(0);
+
+        long v1Time = predictConcurrently(v1, makeCasses(documents), threads);
+        LOG.info("v1: {} requests in {} ms ({} docs/sec)", v1Requests.get(), v1Time,
+                documents * 1000 / v1Time);
+
+        long v2Time = predictConcurrently(v2, makeCasses(documents), threads);
+        LOG.info("v2: {} requests in {} ms ({} docs/sec)", v2Requests.get(), v2Time,
+                documents * 1000 / v2Time);
+
+        assertThat(v2Requests.get()).isLessThan(v1Requests.get());
+    }
+
+    private long predictConcurrently(ExternalRecommender aEngine, List<CAS> aCasses,
+            int aThreads)
+        throws Exception
+    {
+        ExecutorService executor = Executors.newFixedThreadPool(aThreads);
+        try {
+            long start = System.currentTimeMillis();
+            List<Future<?>> futures = new ArrayList<>();
+            for (CAS cas : aCasses) {
+                futures.add(executor.submit(() -> {
+                    aEngine.predict(new RecommenderContext(), cas);
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            return System.currentTimeMillis() - start;
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private List<CAS> makeCasses(int aCount) throws Exception
+    {
+        List<CAS> casses = new ArrayList<>();
+        for (int i = 0; i < aCount; i++) {
+            casses.add(makeCas(i, "Alice met Bob in Paris."));
+        }
+        return casses;
+    }
+
+    private CAS makeCas(long aDocumentId, String aText) throws Exception
+    {
+        List<TypeSystemDescription> typeSystems = new ArrayList<>();
+        typeSystems.add(createTypeSystemDescription());
+        typeSystems.add(CasMetadataUtils.getInternalTypeSystem());
+        JCas jcas = JCasFactory.createJCas(mergeTypeSystems(typeSystems));
+        jcas.setDocumentText(aText);
+
+        CASMetadata cmd = new CASMetadata(jcas);
+        cmd.setUsername(USER_NAME);
+        cmd.setProjectId(PROJECT_ID);
+        cmd.setSourceDocumentId(aDocumentId);
+        jcas.addFsToIndexes(cmd);
+
+        casStorageSession.add("testDataCas" + casSequence.incrementAndGet(),
+                EXCLUSIVE_WRITE_ACCESS, jcas.getCas());
+        RecommenderTestHelper.addScoreFeature(jcas.getCas(), NamedEntity.class, "value");
+        return jcas.getCas();
+    }
+
+    private static Recommender buildRecommender()
+    {
+        AnnotationLayer layer = new AnnotationLayer();
+        layer.setName(NamedEntity.class.getName());
+        layer.setCrossSentence(true);
+        layer.setAnchoringMode(AnchoringMode.TOKENS);
+
+        AnnotationFeature feature = new AnnotationFeature();
+        feature.setName("value");
+
+        Recommender recommender = new Recommender();
+        recommender.setLayer(layer);
+        recommender.setFeature(feature);
+        recommender.setMaxRecommendations(3);
+
+        return recommender;
+    }
+
+    /**
+     * Stand-in for a remote recommender which marks every capitalized word as a named entity. It
+     * implements both the single-document and the batched prediction endpoint. Every request
+     * invokes the model once.
+     */
+    private class RemoteRecommenderDispatcher
+        extends Dispatcher
+    {
+        private final Map<String, TypeSystem> typeSystems = new ConcurrentHashMap<>();
+
+        @Override
+        public MockResponse dispatch(RecordedRequest aRequest)
+        {
+            try {
+                String body = aRequest.getBody().readUtf8();
+
+                if ("/predict".equals(aRequest.getPath())) {
+                    v1Requests.incrementAndGet();
+                    PredictionRequest request = objectMapper.readValue(body,
+                            PredictionRequest.class);
+                    invokeModel();
+                    PredictionResponse response = new PredictionResponse();
+                    response.setDocument(
+                            annotate(request.getTypeSystem(), request.getDocument().getXmi()));
+                    return new MockResponse() //
+                            .setBody(objectMapper.writeValueAsString(response));
+                }
+
+                if ("/v2/predict".equals(aRequest.getPath())) {
+                    v2Requests.incrementAndGet();
+                    BatchPredictionRequest request = objectMapper.readValue(body,
+                            BatchPredictionRequest.class);
+                    invokeModel();
+                    StringBuilder ndjson = new StringBuilder();
+                    for (int i = 0; i < request.getDocuments().size(); i++) {
+                        Document doc = request.getDocuments().get(i);
+                        BatchPredictionResponseItem item = new BatchPredictionResponseItem();
+                        item.setIndex(i);
+                        if (doc.getXmi().contains("FAIL")) {
+                            item.setError("Unable to process document");
+                        }
+                        else {
+                            item.setDocument(annotate(request.getTypeSystem(), doc.getXmi()));
+                        }
+                        ndjson.append(objectMapper.writeValueAsString(item)).append('\n');
+                    }
+                    return new MockResponse() //
+                            .setHeader("Content-Type", APPLICATION_NDJSON_VALUE) //
+                            .setChunkedBody(ndjson.toString(), 4096);
+                }
+            }
+            catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+
+            return new MockResponse().setResponseCode(404);
+        }
+
+        private void invokeModel() throws InterruptedException
+        {
+            // There is only a single model instance and each invocation has a fixed overhead, no
+            // matter if it processes one document or a whole batch
+            synchronized (this) {
+                Thread.sleep(latency.toMillis());
+            }
+        }
+
+        private String annotate(String aTypeSystem, String aXmi) throws Exception
+        {
+            TypeSystem ts = typeSystems.computeIfAbsent(aTypeSystem, this::parseTypeSystem);
+            CAS cas = CasCreationUtils.createCas(emptyList(), ts, null);
+            try (InputStream is = new ByteArrayInputStream(aXmi.getBytes(UTF_8))) {
+                XmiCasDeserializer.deserialize(is, cas);
+            }
+
+            Type neType = CasUtil.getType(cas, NamedEntity.class);
+            Feature valueFeature = neType.getFeatureByBaseName("value");
+            Feature isPredictionFeature = neType.getFeatureByBaseName(FEATURE_NAME_IS_PREDICTION);
+            Matcher m = CAPITALIZED_WORD.matcher(cas.getDocumentText());
+            while (m.find()) {
+                AnnotationFS ne = cas.createAnnotation(neType, m.start(), m.end());
+                ne.setStringValue(valueFeature, "ENT");
+                ne.setBooleanValue(isPredictionFeature, true);
+                cas.addFsToIndexes(ne);
+            }
+
+            try (ByteArrayOutputStream out = new ByteArrayOutputStream()) {
+                XmiCasSerializer.serialize(cas, null, out, true, null);
+                return new String(out.toByteArray(), UTF_8);
+            }
+        }
+
+        private TypeSystem parseTypeSystem(String aTypeSystem)
+        {
+            try {
+                TypeSystemDescription tsd = UIMAFramework.getXMLParser()
+                        .parseTypeSystemDescription(new XMLInputSource(
+                                IOUtils.toInputStream(aTypeSystem, UTF_8), null));
+                return JCasFactory.createJCas(tsd).getTypeSystem();
+            }
+            catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}
@@ -65,6 +65,12 @@ public class LappsGridRecommenderFactory
         return new LappsGridRecommender(aRecommender, traits);
     }
 
+    @Override
+    public boolean isRemote()
+    {
+        return true;
+    }
+
     @Override
     public String getName()
     {
@@ -66,6 +66,13 @@ public class OpenNlpDoccatRecommenderFactory
         return "Sentence Classifier (OpenNLP Document Categorizer)";
     }
 
+    @Override
+    public boolean isConcurrentPredictionSupported()
+    {
+        // predict() creates its own DocumentCategorizerME
+        return true;
+    }
+
     @Override
     public boolean accepts(AnnotationLayer aLayer, AnnotationFeature aFeature)
     {
@@ -66,6 +66,13 @@ public class OpenNlpNerRecommenderFactory
         return "Multi-Token Sequence Classifier (OpenNLP NER)";
     }
 
+    @Override
+    public boolean isConcurrentPredictionSupported()
+    {
+        // predict() creates its own NameFinderME
+        return true;
+    }
+
     @Override
     public boolean accepts(AnnotationLayer aLayer, AnnotationFeature aFeature)
     {
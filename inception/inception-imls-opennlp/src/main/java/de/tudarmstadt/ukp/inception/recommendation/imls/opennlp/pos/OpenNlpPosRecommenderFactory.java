@@ -61,6 +61,13 @@ public class OpenNlpPosRecommenderFactory
         return "Token Sequence Classifier (OpenNLP POS)";
     }
 
+    @Override
+    public boolean isConcurrentPredictionSupported()
+    {
+        // predict() creates its own POSTaggerME
+        return true;
+    }
+
     @Override
     public boolean accepts(AnnotationLayer aLayer, AnnotationFeature aFeature)
     {
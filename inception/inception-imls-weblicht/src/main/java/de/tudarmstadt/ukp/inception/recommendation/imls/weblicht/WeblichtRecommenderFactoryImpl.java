@@ -118,6 +118,12 @@ public class WeblichtRecommenderFactoryImpl
         return traits;
     }
 
+    @Override
+    public boolean isRemote()
+    {
+        return true;
+    }
+
     @Override
     public boolean isEvaluable()
     {
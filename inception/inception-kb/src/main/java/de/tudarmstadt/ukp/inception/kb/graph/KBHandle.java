@@ -82,6 +82,21 @@ public class KBHandle
         language = aLanguage;
     }
 
+    public KBHandle(KBHandle aOther)
+    {
+        identifier = aOther.identifier;
+        name = aOther.name;
+        matchTerms = aOther.matchTerms != null ? new ArrayList<>(aOther.matchTerms) : null;
+        description = aOther.description;
+        kb = aOther.kb;
+        language = aOther.language;
+        rank = aOther.rank;
+        score = aOther.score;
+        debugInfo = aOther.debugInfo;
+        domain = aOther.domain;
+        range = aOther.range;
+    }
+
     @Deprecated
     public KBHandle(String aIdentifier, String aLabel, String aDescription, String aLanguage,
             String aDomain, String aRange)
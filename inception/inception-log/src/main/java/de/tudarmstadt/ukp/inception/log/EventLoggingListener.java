@@ -17,15 +17,20 @@
  */
 package de.tudarmstadt.ukp.inception.log;
 
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
 import java.util.ArrayList;
-import java.util.Deque;
 import java.util.List;
 import java.util.Optional;
-import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.DisposableBean;
@@ -45,19 +50,31 @@ import de.tudarmstadt.ukp.inception.support.spring.StartupProgressInfoEvent;
  * This class is exposed as a Spring Component via
  * {@link EventLoggingAutoConfiguration#eventLoggingListener}.
  * </p>
+ * <p>
+ * Logged events are placed in a bounded queue from which a dedicated writer thread stores them
+ * in batches. Threads publishing events never write to the database themselves. If the queue is
+ * full, the configured {@link EventLoggingProperties#getOverflowPolicy() overflow policy}
+ * decides whether the publishing thread waits or whether an event is dropped.
+ * </p>
  */
 public class EventLoggingListener
     implements DisposableBean
 {
+    private static final long MAX_BATCH_DELAY_NANOS = SECONDS.toNanos(1);
+
     private final Logger log = LoggerFactory.getLogger(getClass());
 
     private final EventRepository repo;
-    private final ScheduledExecutorService scheduler;
-    private final Deque<LoggedEvent> queue;
+    private final ExecutorService writer;
+    private final BlockingQueue<LoggedEvent> queue;
     private final EventLoggingProperties properties;
     private final EventLoggingAdapterRegistry adapterRegistry;
 
-    private volatile boolean flushing = false;
+    private final AtomicLong writtenEvents = new AtomicLong();
+    private final AtomicLong droppedEvents = new AtomicLong();
+    private final AtomicLong failedEvents = new AtomicLong();
+
+    private volatile boolean running = true;
 
     @Autowired
     public EventLoggingListener(EventRepository aRepo, EventLoggingProperties aProperties,
@@ -67,10 +84,13 @@ public class EventLoggingListener
         properties = aProperties;
         adapterRegistry = aAdapterRegistry;
 
-        queue = new ConcurrentLinkedDeque<>();
+        queue = new ArrayBlockingQueue<>(properties.getQueueSize());
 
-        scheduler = Executors.newSingleThreadScheduledExecutor();
-        scheduler.scheduleAtFixedRate(() -> flush(), 1, 1, TimeUnit.SECONDS);
+        writer = Executors.newSingleThreadExecutor(new BasicThreadFactory.Builder() //
+                .daemon(true) //
+                .namingPattern("event-log-writer-%d") //
+                .build());
+        writer.execute(this::runWriter);
     }
 
     @EventListener
@@ -100,49 +120,164 @@ public class EventLoggingListener
                 return;
             }
 
-            // Add to the writing queue which gets flushed regularly by a timer
-            queue.add(e);
+            // Add to the writing queue which is processed by the writer thread
+            enqueue(e);
+        }
+    }
 
-            // If the queue gets too large, force a flush even if the timer is not there yet
-            if (queue.size() > 1000) {
-                flush();
+    private void enqueue(LoggedEvent aEvent)
+    {
+        switch (properties.getOverflowPolicy()) {
+        case BLOCK:
+            try {
+                if (!queue.offer(aEvent, properties.getOverflowTimeout().toMillis(),
+                        MILLISECONDS)) {
+                    dropped(aEvent);
+                }
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                dropped(aEvent);
+            }
+            break;
+        case DROP_OLDEST:
+            while (!queue.offer(aEvent)) {
+                LoggedEvent oldest = queue.poll();
+                if (oldest != null) {
+                    dropped(oldest);
+                }
+            }
+            break;
+        case DROP_NEWEST: // fall-through
+        default:
+            if (!queue.offer(aEvent)) {
+                dropped(aEvent);
             }
+            break;
         }
     }
 
-    public void flush()
+    private void dropped(LoggedEvent aEvent)
     {
-        // If a flushing process is already in progress, we can abort here already. No need to
-        // wait for obtaining a synchronize lock. This also avoids a deadlock situation that was
-        // observed when importing huge tagsets with HSQLDB.
-        if (flushing) {
-            return;
+        long dropped = droppedEvents.incrementAndGet();
+
+        // Do not flood the log if we are dropping lots of events
+        if (dropped == 1 || dropped % 1000 == 0) {
+            log.warn("Event log queue is full - dropped {} events so far, latest: {}", dropped,
+                    aEvent);
         }
+    }
 
-        synchronized (queue) {
+    private void runWriter()
+    {
+        List<LoggedEvent> batch = new ArrayList<>();
+
+        while (running) {
             try {
-                flushing = true;
+                LoggedEvent first = queue.poll(1, SECONDS);
+                if (first == null) {
+                    continue;
+                }
 
-                // Fetch all items that are currently in the queue
-                List<LoggedEvent> batch = new ArrayList<>();
-                while (!queue.isEmpty()) {
-                    batch.add(queue.pop());
+                // Wait a little for more events to arrive so we write larger batches, but do not
+                // hold on to the events for longer than a second
+                batch.add(first);
+                long deadline = System.nanoTime() + MAX_BATCH_DELAY_NANOS;
+                while (batch.size() < properties.getBatchSize()) {
+                    queue.drainTo(batch, properties.getBatchSize() - batch.size());
+
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() >= properties.getBatchSize() || remaining <= 0) {
+                        break;
+                    }
+
+                    LoggedEvent next = queue.poll(remaining, NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
                 }
 
-                // And dump them into the database
-                repo.create(batch.toArray(new LoggedEvent[batch.size()]));
+                write(batch);
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
             }
             finally {
-                flushing = false;
+                batch.clear();
             }
         }
     }
 
+    private synchronized void write(List<LoggedEvent> aBatch)
+    {
+        try {
+            repo.createBatch(aBatch);
+            writtenEvents.addAndGet(aBatch.size());
+        }
+        catch (Exception e) {
+            failedEvents.addAndGet(aBatch.size());
+            log.error("Unable to write {} events to the event log", aBatch.size(), e);
+        }
+    }
+
+    /**
+     * Writes all queued events to the database on the calling thread. This is meant for shutting
+     * down and for tests - during normal operation, events are written by the writer thread.
+     */
+    public void flush()
+    {
+        List<LoggedEvent> batch = new ArrayList<>();
+        while (queue.drainTo(batch, properties.getBatchSize()) > 0) {
+            write(batch);
+            batch.clear();
+        }
+    }
+
+    /**
+     * @return number of events waiting to be written.
+     */
+    public int getQueuedEvents()
+    {
+        return queue.size();
+    }
+
+    /**
+     * @return number of events written to the database.
+     */
+    public long getWrittenEvents()
+    {
+        return writtenEvents.get();
+    }
+
+    /**
+     * @return number of events dropped because the queue was full.
+     */
+    public long getDroppedEvents()
+    {
+        return droppedEvents.get();
+    }
+
+    /**
+     * @return number of events which could not be written to the database.
+     */
+    public long getFailedEvents()
+    {
+        return failedEvents.get();
+    }
+
     @Override
     public void destroy() throws Exception
     {
-        // Kill the flush scheduler
-        scheduler.shutdownNow();
+        // Let the writer finish the batch it is currently writing - we do not interrupt it since
+        // interrupting a thread which is talking to the database can break the connection
+        running = false;
+        writer.shutdown();
+        if (!writer.awaitTermination(30, SECONDS)) {
+            log.warn("Event log writer did not terminate in time");
+            writer.shutdownNow();
+        }
 
         // Make sure and pending events are flushed before the application shuts down
         flush();
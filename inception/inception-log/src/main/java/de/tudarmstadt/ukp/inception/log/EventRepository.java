@@ -31,6 +31,16 @@ public interface EventRepository
 
     void create(LoggedEvent... aEvents);
 
+    /**
+     * Stores the given events using JDBC batch inserts. This is much faster than
+     * {@link #create(LoggedEvent...)} for many events, but the IDs generated by the database are
+     * not set on the given event objects.
+     * 
+     * @param aEvents
+     *            the events to store.
+     */
+    void createBatch(List<LoggedEvent> aEvents);
+
     /**
      * Get the aMaxSize amount of logged events of the given type, user name, project and
      * recommender id from the db.
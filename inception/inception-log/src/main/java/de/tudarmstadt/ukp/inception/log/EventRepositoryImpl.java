@@ -19,6 +19,8 @@ package de.tudarmstadt.ukp.inception.log;
 
 import static java.lang.String.join;
 
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -31,6 +33,7 @@ import java.util.stream.Stream;
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
 import javax.persistence.TypedQuery;
+import javax.sql.DataSource;
 
 import org.apache.commons.lang3.function.FailableConsumer;
 import org.apache.commons.lang3.stream.Streams;
@@ -38,6 +41,7 @@ import org.apache.commons.lang3.tuple.Pair;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.transaction.annotation.Transactional;
 
 import de.tudarmstadt.ukp.clarin.webanno.model.Project;
@@ -55,14 +59,20 @@ public class EventRepositoryImpl
 {
     private final int RECENT_ACTIVITY_HORIZON = 3500;
 
+    private static final String INSERT_EVENT_SQL = "INSERT INTO logged_event "
+            + "(event, created, user, project, document, annotator, details) "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?)";
+
     private final Logger log = LoggerFactory.getLogger(getClass());
 
     private @PersistenceContext EntityManager entityManager;
+    private final JdbcTemplate jdbcTemplate;
 
     @Autowired
-    public EventRepositoryImpl(EntityManager aEntityManager)
+    public EventRepositoryImpl(EntityManager aEntityManager, DataSource aDataSource)
     {
         entityManager = aEntityManager;
+        jdbcTemplate = new JdbcTemplate(aDataSource);
     }
 
     @Override
@@ -81,6 +91,32 @@ public class EventRepositoryImpl
         }
     }
 
+    @Override
+    @Transactional
+    public void createBatch(List<LoggedEvent> aEvents)
+    {
+        if (aEvents.isEmpty()) {
+            return;
+        }
+
+        // JPA cannot batch inserts of entities with IDs generated by the database, so we use
+        // plain JDBC here
+        long start = System.currentTimeMillis();
+        jdbcTemplate.batchUpdate(INSERT_EVENT_SQL, aEvents, aEvents.size(),
+                (PreparedStatement ps, LoggedEvent event) -> {
+                    ps.setString(1, event.getEvent());
+                    ps.setTimestamp(2, new Timestamp(event.getCreated().getTime()));
+                    ps.setString(3, event.getUser());
+                    ps.setLong(4, event.getProject());
+                    ps.setLong(5, event.getDocument());
+                    ps.setString(6, event.getAnnotator());
+                    ps.setString(7, event.getDetails());
+                });
+        long duration = System.currentTimeMillis() - start;
+
+        log.debug("... {} events stored in batch ... ({}ms)", aEvents.size(), duration);
+    }
+
     @Override
     @Transactional
     public List<LoggedEvent> listLoggedEventsForRecommender(Project aProject, String aUsername,
@@ -20,6 +20,7 @@ package de.tudarmstadt.ukp.inception.log.config;
 import java.util.List;
 
 import javax.persistence.EntityManager;
+import javax.sql.DataSource;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
@@ -34,6 +35,7 @@ import de.tudarmstadt.ukp.inception.log.EventRepositoryImpl;
 import de.tudarmstadt.ukp.inception.log.adapter.EventLoggingAdapter;
 import de.tudarmstadt.ukp.inception.log.adapter.EventLoggingAdapterRegistry;
 import de.tudarmstadt.ukp.inception.log.adapter.EventLoggingAdapterRegistryImpl;
+import de.tudarmstadt.ukp.inception.log.metrics.EventLoggingMetricsImpl;
 
 /**
  * Provides support event logging.
@@ -45,9 +47,9 @@ public class EventLoggingAutoConfiguration
 {
     @Bean
     @Autowired
-    public EventRepository eventRepository(EntityManager aEntityManager)
+    public EventRepository eventRepository(EntityManager aEntityManager, DataSource aDataSource)
     {
-        return new EventRepositoryImpl(aEntityManager);
+        return new EventRepositoryImpl(aEntityManager, aDataSource);
     }
 
     @Bean
@@ -65,4 +67,11 @@ public class EventLoggingAutoConfiguration
     {
         return new EventLoggingListener(aRepo, aProperties, aAdapterRegistry);
     }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "monitoring.metrics", name = "enabled", havingValue = "true")
+    public EventLoggingMetricsImpl eventLoggingMetrics(EventLoggingListener aEventLoggingListener)
+    {
+        return new EventLoggingMetricsImpl(aEventLoggingListener);
+    }
 }
@@ -0,0 +1,37 @@
+/*
+ * Licensed to the Technische Universität Darmstadt under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The Technische Universität Darmstadt 
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.
+ *  
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.log.config;
+
+public enum EventLoggingOverflowPolicy
+{
+    /**
+     * Wait for the writer to make room in the queue. If there is still no room after the overflow
+     * timeout, the new event is dropped.
+     */
+    BLOCK,
+
+    /**
+     * Drop the new event if the queue is full.
+     */
+    DROP_NEWEST,
+
+    /**
+     * Drop the oldest queued event to make room for the new event if the queue is full.
+     */
+    DROP_OLDEST;
+}
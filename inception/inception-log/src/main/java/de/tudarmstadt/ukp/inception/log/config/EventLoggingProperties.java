@@ -17,6 +17,7 @@
  */
 package de.tudarmstadt.ukp.inception.log.config;
 
+import java.time.Duration;
 import java.util.Set;
 
 public interface EventLoggingProperties
@@ -32,4 +33,25 @@ public interface EventLoggingProperties
      *            events never to be written to the event log.
      */
     void setExcludeEvents(Set<String> aExcludeEvents);
+
+    /**
+     * @return maximum number of events waiting to be written to the database.
+     */
+    int getQueueSize();
+
+    /**
+     * @return maximum number of events written to the database in a single batch.
+     */
+    int getBatchSize();
+
+    /**
+     * @return what to do with a new event if the queue is full.
+     */
+    EventLoggingOverflowPolicy getOverflowPolicy();
+
+    /**
+     * @return how long to wait for room in the queue when using the
+     *         {@link EventLoggingOverflowPolicy#BLOCK} policy.
+     */
+    Duration getOverflowTimeout();
 }
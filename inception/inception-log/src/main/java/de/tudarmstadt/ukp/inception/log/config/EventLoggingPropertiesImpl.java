@@ -17,11 +17,13 @@
  */
 package de.tudarmstadt.ukp.inception.log.config;
 
+import java.time.Duration;
 import java.util.Set;
 
 import org.springframework.boot.availability.AvailabilityChangeEvent;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 
+import de.tudarmstadt.ukp.clarin.webanno.api.event.AfterCasPersistedEvent;
 import de.tudarmstadt.ukp.clarin.webanno.api.event.AfterCasWrittenEvent;
 
 @ConfigurationProperties("event-logging")
@@ -33,8 +35,17 @@ public class EventLoggingPropertiesImpl
     private Set<String> excludeEvents = Set.of( //
             // Do not log this by default - hardly any information value
             AfterCasWrittenEvent.class.getSimpleName(),
+            AfterCasPersistedEvent.class.getSimpleName(),
             AvailabilityChangeEvent.class.getSimpleName());
 
+    private int queueSize = 10_000;
+
+    private int batchSize = 500;
+
+    private EventLoggingOverflowPolicy overflowPolicy = EventLoggingOverflowPolicy.BLOCK;
+
+    private Duration overflowTimeout = Duration.ofMillis(100);
+
     @Override
     public boolean isEnabled()
     {
@@ -58,4 +69,48 @@ public class EventLoggingPropertiesImpl
     {
         excludeEvents = aExcludeEvents;
     }
+
+    @Override
+    public int getQueueSize()
+    {
+        return queueSize;
+    }
+
+    public void setQueueSize(int aQueueSize)
+    {
+        queueSize = aQueueSize;
+    }
+
+    @Override
+    public int getBatchSize()
+    {
+        return batchSize;
+    }
+
+    public void setBatchSize(int aBatchSize)
+    {
+        batchSize = aBatchSize;
+    }
+
+    @Override
+    public EventLoggingOverflowPolicy getOverflowPolicy()
+    {
+        return overflowPolicy;
+    }
+
+    public void setOverflowPolicy(EventLoggingOverflowPolicy aOverflowPolicy)
+    {
+        overflowPolicy = aOverflowPolicy;
+    }
+
+    @Override
+    public Duration getOverflowTimeout()
+    {
+        return overflowTimeout;
+    }
+
+    public void setOverflowTimeout(Duration aOverflowTimeout)
+    {
+        overflowTimeout = aOverflowTimeout;
+    }
 }
@@ -0,0 +1,70 @@
+/*
+ * Licensed to the Technische Universität Darmstadt under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The Technische Universität Darmstadt 
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.
+ *  
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.log.metrics;
+
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+
+import de.tudarmstadt.ukp.inception.log.EventLoggingListener;
+import de.tudarmstadt.ukp.inception.log.config.EventLoggingAutoConfiguration;
+
+/**
+ * <p>
+ * This class is exposed as a Spring Component via
+ * {@link EventLoggingAutoConfiguration#eventLoggingMetrics}.
+ * </p>
+ */
+@ManagedResource
+public class EventLoggingMetricsImpl
+    implements EventLoggingMetrics
+{
+    private final EventLoggingListener eventLoggingListener;
+
+    public EventLoggingMetricsImpl(EventLoggingListener aEventLoggingListener)
+    {
+        eventLoggingListener = aEventLoggingListener;
+    }
+
+    @Override
+    @ManagedAttribute
+    public int getQueuedEvents()
+    {
+        return eventLoggingListener.getQueuedEvents();
+    }
+
+    @Override
+    @ManagedAttribute
+    public long getWrittenEvents()
+    {
+        return eventLoggingListener.getWrittenEvents();
+    }
+
+    @Override
+    @ManagedAttribute
+    public long getDroppedEvents()
+    {
+        return eventLoggingListener.getDroppedEvents();
+    }
+
+    @Override
+    @ManagedAttribute
+    public long getFailedEvents()
+    {
+        return eventLoggingListener.getFailedEvents();
+    }
+}
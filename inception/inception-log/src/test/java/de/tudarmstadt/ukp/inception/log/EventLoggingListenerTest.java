@@ -0,0 +1,139 @@
+/*
+ * Licensed to the Technische Universität Darmstadt under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The Technische Universität Darmstadt 
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.
+ *  
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.log;
+
+import static de.tudarmstadt.ukp.inception.log.config.EventLoggingOverflowPolicy.DROP_NEWEST;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEvent;
+
+import de.tudarmstadt.ukp.inception.log.adapter.EventLoggingAdapter;
+import de.tudarmstadt.ukp.inception.log.adapter.EventLoggingAdapterRegistry;
+import de.tudarmstadt.ukp.inception.log.config.EventLoggingPropertiesImpl;
+import de.tudarmstadt.ukp.inception.log.model.LoggedEvent;
+
+public class EventLoggingListenerTest
+{
+    private EventRepository repo;
+    private EventLoggingAdapterRegistry adapterRegistry;
+    private EventLoggingPropertiesImpl properties;
+    private List<LoggedEvent> written;
+    private EventLoggingListener sut;
+
+    @BeforeEach
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    public void setup() throws Exception
+    {
+        written = new ArrayList<>();
+
+        repo = mock(EventRepository.class);
+        doAnswer(call -> {
+            synchronized (written) {
+                written.addAll(call.getArgument(0));
+            }
+            return null;
+        }).when(repo).createBatch(any());
+
+        EventLoggingAdapter adapter = mock(EventLoggingAdapter.class);
+        when(adapter.getEvent(any())).thenReturn("TestEvent");
+        when(adapter.toLoggedEvent(any())).thenAnswer(call -> new LoggedEvent());
+
+        adapterRegistry = mock(EventLoggingAdapterRegistry.class);
+        when(adapterRegistry.getAdapter(any())).thenReturn(Optional.of(adapter));
+
+        properties = new EventLoggingPropertiesImpl();
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception
+    {
+        if (sut != null) {
+            sut.destroy();
+        }
+    }
+
+    @Test
+    public void thatEventsAreWrittenByWriterThread()
+    {
+        sut = new EventLoggingListener(repo, properties, adapterRegistry);
+
+        for (int i = 0; i < 1000; i++) {
+            sut.onApplicationEvent(new ApplicationEvent(this) {
+                private static final long serialVersionUID = 1L;
+            });
+        }
+
+        await().atMost(5, SECONDS).until(() -> sut.getWrittenEvents() == 1000);
+
+        assertThat(written).hasSize(1000);
+        assertThat(sut.getDroppedEvents()).isZero();
+    }
+
+    @Test
+    public void thatEventsAreDroppedWhenQueueIsFull() throws Exception
+    {
+        properties.setQueueSize(10);
+        properties.setOverflowPolicy(DROP_NEWEST);
+
+        // Block the writer so that the queue fills up
+        CountDownLatch writerBlocked = new CountDownLatch(1);
+        CountDownLatch releaseWriter = new CountDownLatch(1);
+        doAnswer(call -> {
+            writerBlocked.countDown();
+            releaseWriter.await();
+            synchronized (written) {
+                written.addAll(call.getArgument(0));
+            }
+            return null;
+        }).when(repo).createBatch(any());
+
+        sut = new EventLoggingListener(repo, properties, adapterRegistry);
+
+        sut.onApplicationEvent(new ApplicationEvent(this) {
+            private static final long serialVersionUID = 1L;
+        });
+        writerBlocked.await(5, SECONDS);
+
+        for (int i = 0; i < 15; i++) {
+            sut.onApplicationEvent(new ApplicationEvent(this) {
+                private static final long serialVersionUID = 1L;
+            });
+        }
+
+        assertThat(sut.getQueuedEvents()).isEqualTo(10);
+        assertThat(sut.getDroppedEvents()).isEqualTo(5);
+
+        releaseWriter.countDown();
+
+        await().atMost(5, SECONDS).until(() -> sut.getWrittenEvents() == 11);
+    }
+}
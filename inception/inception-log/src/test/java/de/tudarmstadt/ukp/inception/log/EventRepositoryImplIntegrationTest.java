@@ -17,8 +17,10 @@
  */
 package de.tudarmstadt.ukp.inception.log;
 
+import static java.util.stream.Collectors.toList;
 import static org.apache.uima.fit.factory.TypeSystemDescriptionFactory.createTypeSystemDescription;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
@@ -26,10 +28,13 @@ import static org.mockito.Mockito.when;
 import java.text.DateFormat;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.List;
 
+import javax.sql.DataSource;
+
 import org.apache.uima.util.CasCreationUtils;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
@@ -81,6 +86,7 @@ public class EventRepositoryImplIntegrationTest
     private static final String SPAN_CREATED_EVENT = "SpanCreatedEvent";
 
     private @Autowired TestEntityManager testEntityManager;
+    private @Autowired DataSource dataSource;
 
     private EventRepositoryImpl sut;
     private Project project;
@@ -90,7 +96,7 @@ public class EventRepositoryImplIntegrationTest
     @BeforeEach
     public void setUp() throws Exception
     {
-        sut = new EventRepositoryImpl(testEntityManager.getEntityManager());
+        sut = new EventRepositoryImpl(testEntityManager.getEntityManager(), dataSource);
         project = createProject(PROJECT_NAME);
         user = createUser(USERNAME);
     }
@@ -288,6 +294,26 @@ public class EventRepositoryImplIntegrationTest
         assertThat(loggedEvents).contains(spanEvent);
     }
 
+    @Test
+    public void thatBatchCreatedEventsCanBeListed()
+    {
+        List<LoggedEvent> events = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            events.add(buildLoggedEvent(project, user.getUsername(), SPAN_CREATED_EVENT,
+                    new Date(), i, i % 2 == 0 ? DETAIL_JSON : null));
+        }
+
+        sut.createBatch(events);
+
+        List<LoggedEvent> loggedEvents = sut.listRecentActivity(user.getUsername(), 20);
+
+        assertThat(loggedEvents) //
+                .extracting(LoggedEvent::getDocument, LoggedEvent::getDetails)
+                .containsExactlyInAnyOrderElementsOf(events.stream() //
+                        .map(e -> tuple(e.getDocument(), e.getDetails())) //
+                        .collect(toList()));
+    }
+
     // Helper
     private Project createProject(String aName)
     {
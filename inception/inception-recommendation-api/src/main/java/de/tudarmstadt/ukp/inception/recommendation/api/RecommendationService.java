@@ -99,6 +99,12 @@ public interface RecommendationService
 
     List<EvaluatedRecommender> getActiveRecommenders(User aUser, AnnotationLayer aLayer);
 
+    /**
+     * @return whether all recommenders active for the given user in the given project delegate
+     *         prediction to a remote service.
+     */
+    boolean isPredictionRemote(User aUser, Project aProject);
+
     void setPreferences(User aUser, Project aProject, Preferences aPreferences);
 
     Preferences getPreferences(User aUser, Project aProject);
@@ -18,20 +18,19 @@
 package de.tudarmstadt.ukp.inception.recommendation.api.model;
 
 import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
 import static java.util.Collections.newSetFromMap;
-import static java.util.stream.Collectors.toList;
+import static java.util.Comparator.comparingInt;
 
 import java.io.Serializable;
 import java.util.ArrayList;
-import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
 import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.stream.Collectors;
+import java.util.function.Consumer;
 
 import org.apache.commons.lang3.Validate;
 
@@ -43,6 +42,8 @@ import de.tudarmstadt.ukp.clarin.webanno.model.Project;
 import de.tudarmstadt.ukp.clarin.webanno.model.SourceDocument;
 import de.tudarmstadt.ukp.clarin.webanno.security.model.User;
 import de.tudarmstadt.ukp.clarin.webanno.support.logging.LogMessage;
+import de.tudarmstadt.ukp.inception.recommendation.api.recommender.RecommenderContext;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
 
 /**
  * Stores references to the recommendationService, the currently used JCas and the annotatorState.
@@ -56,9 +57,15 @@ public class Predictions
 {
     private static final long serialVersionUID = -1598768729246662885L;
 
-    private Map<ExtendedId, AnnotationSuggestion> predictions = new ConcurrentHashMap<>();
+    // Predictions by document name - access must be synchronized on this
+    private final Map<String, DocumentIndex> documentIndexes = new HashMap<>();
     private Set<String> seenDocumentsForPrediction = newSetFromMap(new ConcurrentHashMap<>());
 
+    // CAS timestamp of each document at the time the predictions for it were made
+    private Map<String, Long> documentCasTimestamps = new ConcurrentHashMap<>();
+    // ID of the recommender context used to make the predictions per document and recommender
+    private Map<String, Map<Long, Long>> documentRecommenderContextIds = new ConcurrentHashMap<>();
+
     private final Project project;
     private final User user;
     private final List<LogMessage> log = new ArrayList<>();
@@ -72,7 +79,7 @@ public class Predictions
         user = aUser;
 
         if (aPredictions != null) {
-            predictions = new ConcurrentHashMap<>(aPredictions);
+            aPredictions.values().forEach(this::addPrediction);
         }
     }
 
@@ -124,45 +131,53 @@ public class Predictions
      * {@code aWindowBegin} and {@code aWindowEnd} are {@code -1}, then they are ignored
      * respectively. This is useful when all suggestions should be fetched.
      */
-    private <T extends AnnotationSuggestion> List<T> getFlattenedPredictions(Class<T> type,
-            String aDocumentName, AnnotationLayer aLayer, int aWindowBegin, int aWindowEnd)
+    private synchronized <T extends AnnotationSuggestion> List<T> getFlattenedPredictions(
+            Class<T> type, String aDocumentName, AnnotationLayer aLayer, int aWindowBegin,
+            int aWindowEnd)
     {
-        return predictions.entrySet().stream().filter(f -> type.isInstance(f.getValue()))
-                .map(f -> (Entry<ExtendedId, T>) (Entry) f)
-                .filter(f -> f.getKey().getDocumentName().equals(aDocumentName))
-                .filter(f -> f.getKey().getLayerId() == aLayer.getId())
-                // .filter(f -> overlapping(f.getValue().getWindowBegin(),
-                // f.getValue().getWindowEnd(),
-                // aWindowBegin == -1 ? 0 : aWindowBegin,
-                // aWindowEnd == -1 ? MAX_VALUE : aWindowEnd))
-                .filter(f -> aWindowBegin == -1 || (f.getValue().getWindowBegin() >= aWindowBegin))
-                .filter(f -> aWindowEnd == -1 || (f.getValue().getWindowEnd() <= aWindowEnd))
-                .sorted(Comparator.comparingInt(e2 -> e2.getValue().getWindowBegin()))
-                .map(Map.Entry::getValue).collect(toList());
+        DocumentIndex index = documentIndexes.get(aDocumentName);
+        if (index == null) {
+            return emptyList();
+        }
+
+        List<T> result = new ArrayList<>();
+        index.selectInWindow(aLayer.getId(), aWindowBegin == -1 ? Integer.MIN_VALUE : aWindowBegin,
+                aWindowEnd == -1 ? Integer.MAX_VALUE : aWindowEnd, suggestion -> {
+                    if (type.isInstance(suggestion)) {
+                        result.add(type.cast(suggestion));
+                    }
+                });
+        return result;
     }
 
     /**
      * Returns the first prediction that matches recommendationId and recommenderId in the given
      * document.
      */
-    public Optional<AnnotationSuggestion> getPredictionByVID(SourceDocument aDocument, VID aVID)
+    public synchronized Optional<AnnotationSuggestion> getPredictionByVID(
+            SourceDocument aDocument, VID aVID)
     {
-        return predictions.values().stream()
-                .filter(f -> f.getDocumentName().equals(aDocument.getName()))
-                .filter(f -> f.getId() == aVID.getSubId())
-                .filter(f -> f.getRecommenderId() == aVID.getId()).findFirst();
+        DocumentIndex index = documentIndexes.get(aDocument.getName());
+        if (index == null) {
+            return Optional.empty();
+        }
+
+        return Optional.ofNullable(index.get(aVID.getId(), aVID.getSubId()));
     }
 
     /**
      * @param aPredictions
      *            - list of sentences containing recommendations
      */
-    public void putPredictions(List<AnnotationSuggestion> aPredictions)
+    public synchronized void putPredictions(List<AnnotationSuggestion> aPredictions)
+    {
+        aPredictions.forEach(this::addPrediction);
+    }
+
+    private void addPrediction(AnnotationSuggestion aPrediction)
     {
-        aPredictions.forEach(prediction -> predictions.put(new ExtendedId(user.getUsername(),
-                project.getId(), prediction.getDocumentName(), prediction.getLayerId(),
-                prediction.getPosition(), prediction.getRecommenderId(), prediction.getId(), -1),
-                prediction));
+        documentIndexes.computeIfAbsent(aPrediction.getDocumentName(), k -> new DocumentIndex())
+                .add(aPrediction);
     }
 
     public Project getProject()
@@ -170,25 +185,40 @@ public class Predictions
         return project;
     }
 
-    public boolean hasPredictions()
+    public synchronized boolean hasPredictions()
     {
-        return !predictions.isEmpty();
+        return !documentIndexes.isEmpty();
     }
 
-    public Map<ExtendedId, AnnotationSuggestion> getGroupedPredictions()
+    /**
+     * @return all predictions by their extended ID. The map is created on every call, so this
+     *         should not be used in performance-critical code.
+     */
+    public synchronized Map<ExtendedId, AnnotationSuggestion> getGroupedPredictions()
     {
-        return predictions;
+        Map<ExtendedId, AnnotationSuggestion> result = new HashMap<>();
+        for (DocumentIndex index : documentIndexes.values()) {
+            index.forEach(prediction -> result.put(new ExtendedId(user.getUsername(),
+                    project.getId(), prediction.getDocumentName(), prediction.getLayerId(),
+                    prediction.getPosition(), prediction.getRecommenderId(), prediction.getId(),
+                    -1), prediction));
+        }
+        return result;
     }
 
-    public void clearPredictions()
+    public synchronized void clearPredictions()
     {
-        predictions.clear();
+        documentIndexes.clear();
         seenDocumentsForPrediction.clear();
+        documentCasTimestamps.clear();
+        documentRecommenderContextIds.clear();
     }
 
-    public void removePredictions(Long recommenderId)
+    public synchronized void removePredictions(Long recommenderId)
     {
-        predictions.entrySet().removeIf((p) -> p.getKey().getRecommenderId() == recommenderId);
+        documentIndexes.values().forEach(index -> index.removeRecommender(recommenderId));
+        documentIndexes.values().removeIf(DocumentIndex::isEmpty);
+        documentRecommenderContextIds.values().forEach(ids -> ids.remove(recommenderId));
     }
 
     /**
@@ -208,33 +238,49 @@ public class Predictions
      *            the given annotation feature name
      * @return the annotation suggestions
      */
-    public List<SpanSuggestion> getPredictionsByTokenAndFeature(String aDocumentName,
-            AnnotationLayer aLayer, int aBegin, int aEnd, String aFeature)
+    public synchronized List<SpanSuggestion> getPredictionsByTokenAndFeature(
+            String aDocumentName, AnnotationLayer aLayer, int aBegin, int aEnd, String aFeature)
     {
-        return predictions.entrySet().stream().filter(f -> f.getValue() instanceof SpanSuggestion)
-                .map(f -> (Entry<ExtendedId, SpanSuggestion>) (Entry) f)
-                .filter(f -> f.getKey().getDocumentName().equals(aDocumentName))
-                .filter(f -> f.getKey().getLayerId() == aLayer.getId())
-                .filter(f -> f.getValue().getBegin() == aBegin)
-                .filter(f -> f.getValue().getEnd() == aEnd)
-                .filter(f -> f.getValue().getFeature().equals(aFeature)).map(Map.Entry::getValue)
-                .collect(Collectors.toList());
+        DocumentIndex index = documentIndexes.get(aDocumentName);
+        if (index == null) {
+            return emptyList();
+        }
+
+        // The window of a span suggestion is the span itself
+        List<SpanSuggestion> result = new ArrayList<>();
+        index.selectInWindow(aLayer.getId(), aBegin, aEnd, suggestion -> {
+            if (suggestion instanceof SpanSuggestion) {
+                SpanSuggestion span = (SpanSuggestion) suggestion;
+                if (span.getBegin() == aBegin && span.getEnd() == aEnd
+                        && span.getFeature().equals(aFeature)) {
+                    result.add(span);
+                }
+            }
+        });
+        return result;
     }
 
-    public List<AnnotationSuggestion> getPredictionsByRecommenderAndDocument(
+    public synchronized List<AnnotationSuggestion> getPredictionsByRecommenderAndDocument(
             Recommender aRecommender, String aDocument)
     {
-        return predictions.entrySet().stream()
-                .filter(f -> f.getKey().getRecommenderId() == (long) aRecommender.getId()
-                        && f.getKey().getDocumentName().equals(aDocument))
-                .map(Map.Entry::getValue).collect(Collectors.toList());
+        DocumentIndex index = documentIndexes.get(aDocument);
+        if (index == null) {
+            return new ArrayList<>();
+        }
+
+        return index.getByRecommender(aRecommender.getId());
     }
 
-    public List<AnnotationSuggestion> getPredictionsByDocument(String aDocument)
+    public synchronized List<AnnotationSuggestion> getPredictionsByDocument(String aDocument)
     {
-        return predictions.entrySet().stream()
-                .filter(f -> f.getKey().getDocumentName().equals(aDocument))
-                .map(Map.Entry::getValue).collect(Collectors.toList());
+        DocumentIndex index = documentIndexes.get(aDocument);
+        if (index == null) {
+            return new ArrayList<>();
+        }
+
+        List<AnnotationSuggestion> result = new ArrayList<>();
+        index.forEach(result::add);
+        return result;
     }
 
     public void markDocumentAsPredictionCompleted(SourceDocument aDocument)
@@ -247,6 +293,64 @@ public class Predictions
         return seenDocumentsForPrediction.contains(aDocument.getName());
     }
 
+    /**
+     * Records the timestamp of the CAS that was used to make the predictions for the given
+     * document.
+     */
+    public void setDocumentCasTimestamp(SourceDocument aDocument, long aTimestamp)
+    {
+        documentCasTimestamps.put(aDocument.getName(), aTimestamp);
+    }
+
+    /**
+     * @return the timestamp of the CAS that was used to make the predictions for the given
+     *         document, if known.
+     */
+    public Optional<Long> getDocumentCasTimestamp(SourceDocument aDocument)
+    {
+        return Optional.ofNullable(documentCasTimestamps.get(aDocument.getName()));
+    }
+
+    /**
+     * Records the ID of the {@link RecommenderContext} that was used by the given recommender to
+     * make the predictions for the given document.
+     */
+    public void setRecommenderContextId(SourceDocument aDocument, Recommender aRecommender,
+            long aContextId)
+    {
+        documentRecommenderContextIds
+                .computeIfAbsent(aDocument.getName(), k -> new ConcurrentHashMap<>())
+                .put(aRecommender.getId(), aContextId);
+    }
+
+    /**
+     * @return the ID of the {@link RecommenderContext} that was used by the given recommender to
+     *         make the predictions for the given document, if known.
+     */
+    public Optional<Long> getRecommenderContextId(SourceDocument aDocument,
+            Recommender aRecommender)
+    {
+        Map<Long, Long> ids = documentRecommenderContextIds.get(aDocument.getName());
+        return ids != null ? Optional.ofNullable(ids.get(aRecommender.getId()))
+                : Optional.empty();
+    }
+
+    /**
+     * Copies the information about the CAS and recommender contexts used to make the predictions
+     * for the given document from the given predictions. Use this when inheriting all predictions
+     * of a document.
+     */
+    public void inheritFingerprints(Predictions aPredictions, SourceDocument aDocument)
+    {
+        aPredictions.getDocumentCasTimestamp(aDocument)
+                .ifPresent(ts -> setDocumentCasTimestamp(aDocument, ts));
+        Map<Long, Long> ids = aPredictions.documentRecommenderContextIds
+                .get(aDocument.getName());
+        if (ids != null) {
+            documentRecommenderContextIds.put(aDocument.getName(), new ConcurrentHashMap<>(ids));
+        }
+    }
+
     public void log(LogMessage aMessage)
     {
         synchronized (log) {
@@ -270,4 +374,147 @@ public class Predictions
             return asList(log.stream().toArray(LogMessage[]::new));
         }
     }
+
+    /**
+     * Holds the suggestions of a single document. The suggestions are stored once by recommender
+     * and suggestion ID (i.e. by their {@link VID}) in primitive-keyed maps. Additionally, each layer
+     * keeps a compact list of its suggestions sorted by the begin of their window so that window
+     * queries can locate the window by binary search. The layer lists are only re-sorted and purged
+     * of removed or replaced suggestions lazily on the next query.
+     */
+    private static class DocumentIndex
+        implements Serializable
+    {
+        private static final long serialVersionUID = 3296458227564744290L;
+
+        private final Map<Long, Int2ObjectOpenHashMap<AnnotationSuggestion>> byRecommender = new HashMap<>();
+        private final Map<Long, LayerIndex> byLayer = new HashMap<>();
+
+        void add(AnnotationSuggestion aSuggestion)
+        {
+            AnnotationSuggestion replaced = byRecommender
+                    .computeIfAbsent(aSuggestion.getRecommenderId(),
+                            k -> new Int2ObjectOpenHashMap<>())
+                    .put(aSuggestion.getId(), aSuggestion);
+
+            if (replaced == aSuggestion) {
+                return;
+            }
+
+            if (replaced != null) {
+                LayerIndex layerIndex = byLayer.get(replaced.getLayerId());
+                if (layerIndex != null) {
+                    layerIndex.stale = true;
+                }
+            }
+
+            byLayer.computeIfAbsent(aSuggestion.getLayerId(), k -> new LayerIndex())
+                    .add(aSuggestion);
+        }
+
+        AnnotationSuggestion get(long aRecommenderId, int aId)
+        {
+            Int2ObjectOpenHashMap<AnnotationSuggestion> suggestions = byRecommender
+                    .get(aRecommenderId);
+            return suggestions != null ? suggestions.get(aId) : null;
+        }
+
+        List<AnnotationSuggestion> getByRecommender(long aRecommenderId)
+        {
+            Int2ObjectOpenHashMap<AnnotationSuggestion> suggestions = byRecommender
+                    .get(aRecommenderId);
+            return suggestions != null ? new ArrayList<>(suggestions.values()) : new ArrayList<>();
+        }
+
+        void removeRecommender(long aRecommenderId)
+        {
+            if (byRecommender.remove(aRecommenderId) != null) {
+                byLayer.values().forEach(layerIndex -> layerIndex.stale = true);
+            }
+        }
+
+        void forEach(Consumer<AnnotationSuggestion> aAction)
+        {
+            byRecommender.values().forEach(suggestions -> suggestions.values().forEach(aAction));
+        }
+
+        void selectInWindow(long aLayerId, int aWindowBegin, int aWindowEnd,
+                Consumer<AnnotationSuggestion> aAction)
+        {
+            LayerIndex layerIndex = byLayer.get(aLayerId);
+            if (layerIndex == null) {
+                return;
+            }
+
+            if (layerIndex.stale) {
+                layerIndex.suggestions.removeIf(s -> get(s.getRecommenderId(), s.getId()) != s);
+                layerIndex.stale = false;
+            }
+
+            layerIndex.select(aWindowBegin, aWindowEnd, aAction);
+        }
+
+        boolean isEmpty()
+        {
+            return byRecommender.isEmpty();
+        }
+    }
+
+    private static class LayerIndex
+        implements Serializable
+    {
+        private static final long serialVersionUID = -6286386474407934893L;
+
+        private final ArrayList<AnnotationSuggestion> suggestions = new ArrayList<>();
+        private boolean sorted = true;
+        private boolean stale = false;
+
+        void add(AnnotationSuggestion aSuggestion)
+        {
+            if (!suggestions.isEmpty() && suggestions.get(suggestions.size() - 1)
+                    .getWindowBegin() > aSuggestion.getWindowBegin()) {
+                sorted = false;
+            }
+            suggestions.add(aSuggestion);
+        }
+
+        void select(int aWindowBegin, int aWindowEnd, Consumer<AnnotationSuggestion> aAction)
+        {
+            if (!sorted) {
+                // Stable sort to retain the insertion order of suggestions at the same position
+                suggestions.sort(comparingInt(AnnotationSuggestion::getWindowBegin));
+                suggestions.trimToSize();
+                sorted = true;
+            }
+
+            // The window end of a suggestion is never before its window begin, so only
+            // suggestions beginning in the requested window can be contained in it.
+            for (int i = lowerBound(aWindowBegin); i < suggestions.size(); i++) {
+                AnnotationSuggestion suggestion = suggestions.get(i);
+                if (suggestion.getWindowBegin() > aWindowEnd) {
+                    break;
+                }
+
+                if (suggestion.getWindowEnd() <= aWindowEnd) {
+                    aAction.accept(suggestion);
+                }
+            }
+        }
+
+        private int lowerBound(int aWindowBegin)
+        {
+            int low = 0;
+            int high = suggestions.size();
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (suggestions.get(mid).getWindowBegin() < aWindowBegin) {
+                    low = mid + 1;
+                }
+                else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+    }
 }
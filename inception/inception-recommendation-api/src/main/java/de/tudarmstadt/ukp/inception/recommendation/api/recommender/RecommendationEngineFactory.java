@@ -45,6 +45,30 @@ public interface RecommendationEngineFactory<T>
         return true;
     }
 
+    /**
+     * Engines can support this if prediction only reads the trained model from the recommender
+     * context and keeps any mutable state local to the prediction. For example, OpenNLP models are
+     * thread-safe while the tools applying them are not, so an OpenNLP-based engine qualifies if
+     * it creates a new tool for every prediction.
+     * 
+     * @return True if engines built by this factory can predict on multiple documents at the same
+     *         time while sharing the same recommender context. Documents are only predicted in
+     *         parallel if all active recommenders support this.
+     */
+    default boolean isConcurrentPredictionSupported()
+    {
+        return false;
+    }
+
+    /**
+     * @return True if engines built by this factory delegate prediction to a remote service, i.e.
+     *         they spend most of their time waiting for a response instead of computing locally.
+     */
+    default boolean isRemote()
+    {
+        return false;
+    }
+
     default boolean isModelExportSupported()
     {
         return false;
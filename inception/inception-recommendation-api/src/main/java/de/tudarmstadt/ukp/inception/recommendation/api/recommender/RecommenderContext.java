@@ -23,6 +23,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.annotation.Nullable;
 
@@ -31,6 +32,8 @@ import de.tudarmstadt.ukp.clarin.webanno.support.logging.LogMessage;
 
 public class RecommenderContext
 {
+    private static final AtomicLong NEXT_ID = new AtomicLong();
+
     /**
      * Empty context which starts out being closed.
      */
@@ -41,17 +44,50 @@ public class RecommenderContext
         EMPTY_CONTEXT.close();
     }
 
+    private final long id;
     private final Map<String, Object> store;
     private List<LogMessage> messages;
     private Optional<User> user;
+    private String fingerprint;
     private boolean closed = false;
 
     public RecommenderContext()
     {
+        id = NEXT_ID.incrementAndGet();
         store = new HashMap<>();
         messages = new ArrayList<>();
     }
 
+    /**
+     * @return an ID which uniquely identifies this context instance within the running
+     *         application. Every (re-)training produces a new context and thus a new ID, so the ID
+     *         can be used to check if predictions were made using the current model.
+     */
+    public long getId()
+    {
+        return id;
+    }
+
+    /**
+     * @return a fingerprint of the inputs (configuration and training data) from which the model
+     *         in this context was created or {@code null} if none was recorded. If the fingerprint
+     *         did not change, the context can be kept instead of training a new model.
+     */
+    @Nullable
+    synchronized public String getFingerprint()
+    {
+        return fingerprint;
+    }
+
+    synchronized public void setFingerprint(String aFingerprint)
+    {
+        if (closed) {
+            throw new IllegalStateException("Modifying a closed context is not permitted.");
+        }
+
+        fingerprint = aFingerprint;
+    }
+
     @SuppressWarnings("unchecked")
     @Nullable
     synchronized public <T> Optional<T> get(Key<T> aKey)
@@ -129,12 +165,12 @@ public class RecommenderContext
         }
     }
 
-    public Optional<User> getUser()
+    synchronized public Optional<User> getUser()
     {
         return user;
     }
 
-    public void setUser(User aUser)
+    synchronized public void setUser(User aUser)
     {
         user = Optional.ofNullable(aUser);
     }
@@ -0,0 +1,131 @@
+/*
+ * Licensed to the Technische Universität Darmstadt under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The Technische Universität Darmstadt 
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.
+ *  
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.recommendation.api.model;
+
+import static java.util.Arrays.asList;
+import static java.util.stream.Collectors.toList;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationLayer;
+import de.tudarmstadt.ukp.clarin.webanno.model.Project;
+import de.tudarmstadt.ukp.clarin.webanno.model.SourceDocument;
+import de.tudarmstadt.ukp.clarin.webanno.security.model.User;
+
+public class PredictionsTest
+{
+    private Project project;
+    private AnnotationLayer layer;
+    private SourceDocument document;
+    private Predictions sut;
+
+    @BeforeEach
+    public void setup()
+    {
+        project = new Project("project");
+        project.setId(1l);
+        layer = new AnnotationLayer();
+        layer.setId(1l);
+        document = new SourceDocument("doc1", project, "text");
+        sut = new Predictions(new User("user"), project);
+    }
+
+    @Test
+    public void thatWindowQueryReturnsContainedSuggestionsSortedByBegin()
+    {
+        SpanSuggestion s1 = span(1, 1, "doc1", 20, 25);
+        SpanSuggestion s2 = span(2, 1, "doc1", 0, 5);
+        SpanSuggestion s3 = span(3, 1, "doc1", 10, 15);
+        SpanSuggestion s4 = span(4, 1, "doc1", 28, 35);
+        SpanSuggestion s5 = span(5, 1, "doc2", 10, 15);
+        sut.putPredictions(asList(s1, s2, s3, s4, s5));
+
+        assertThat(flatten(sut.getGroupedPredictions(SpanSuggestion.class, "doc1", layer, 5, 30)))
+                .containsExactly(s3, s1);
+        assertThat(flatten(sut.getGroupedPredictions(SpanSuggestion.class, "doc1", layer, -1, -1)))
+                .containsExactly(s2, s3, s1, s4);
+        assertThat(sut.getGroupedPredictions(RelationSuggestion.class, "doc1", layer, -1, -1))
+                .isEmpty();
+    }
+
+    @Test
+    public void thatSuggestionsCanBeLookedUpByVidAndToken()
+    {
+        SpanSuggestion s1 = span(1, 1, "doc1", 0, 5);
+        SpanSuggestion s2 = span(2, 2, "doc1", 0, 5);
+        sut.putPredictions(asList(s1, s2));
+
+        assertThat(sut.getPredictionByVID(document, s1.getVID())).containsSame(s1);
+        assertThat(sut.getPredictionByVID(document, s2.getVID())).containsSame(s2);
+        assertThat(sut.getPredictionsByTokenAndFeature("doc1", layer, 0, 5, "value"))
+                .containsExactlyInAnyOrder(s1, s2);
+        assertThat(sut.getPredictionsByTokenAndFeature("doc1", layer, 0, 4, "value")).isEmpty();
+    }
+
+    @Test
+    public void thatRemovingRecommenderDropsItsSuggestionsFromAllIndexes()
+    {
+        SpanSuggestion s1 = span(1, 1, "doc1", 0, 5);
+        SpanSuggestion s2 = span(2, 2, "doc1", 0, 5);
+        SpanSuggestion s3 = span(3, 1, "doc2", 0, 5);
+        sut.putPredictions(asList(s1, s2, s3));
+
+        sut.removePredictions(1l);
+
+        assertThat(sut.getGroupedPredictions()).hasSize(1);
+        assertThat(sut.getPredictionsByDocument("doc1")).containsExactly(s2);
+        assertThat(sut.getPredictionsByDocument("doc2")).isEmpty();
+        assertThat(sut.getPredictionByVID(document, s1.getVID())).isEmpty();
+        assertThat(sut.getPredictionsByTokenAndFeature("doc1", layer, 0, 5, "value"))
+                .containsExactly(s2);
+    }
+
+    @Test
+    public void thatReplacedSuggestionIsNoLongerIndexed()
+    {
+        SpanSuggestion original = span(1, 1, "doc1", 0, 5);
+        sut.putPredictions(asList(original));
+
+        SpanSuggestion replacement = new SpanSuggestion(original);
+        replacement.hide(AnnotationSuggestion.FLAG_REJECTED);
+        sut.putPredictions(asList(replacement));
+
+        assertThat(sut.getPredictionsByDocument("doc1")).hasSize(1);
+        assertThat(sut.getPredictionsByDocument("doc1").get(0)).isSameAs(replacement);
+        assertThat(sut.getPredictionByVID(document, original.getVID())).containsSame(replacement);
+        assertThat(flatten(sut.getGroupedPredictions(SpanSuggestion.class, "doc1", layer, -1, -1)))
+                .containsExactly(replacement);
+    }
+
+    private static <T extends AnnotationSuggestion> List<T> flatten(
+            SuggestionDocumentGroup<T> aGroups)
+    {
+        return aGroups.stream().flatMap(SuggestionGroup::stream).collect(toList());
+    }
+
+    static SpanSuggestion span(int aId, long aRecommenderId, String aDocument, int aBegin,
+            int aEnd)
+    {
+        return new SpanSuggestion(aId, aRecommenderId, "rec" + aRecommenderId, 1, "value",
+                aDocument, aBegin, aEnd, "text", "label", "label", 0.5, "");
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ * Licensed to the Technische Universität Darmstadt under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The Technische Universität Darmstadt 
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.
+ *  
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.recommendation.api.model;
+
+import static de.tudarmstadt.ukp.inception.recommendation.api.model.PredictionsTest.span;
+import static java.util.stream.Collectors.toList;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationLayer;
+import de.tudarmstadt.ukp.clarin.webanno.model.Project;
+import de.tudarmstadt.ukp.clarin.webanno.security.model.User;
+
+/**
+ * Measures window queries against a prediction store holding a million suggestions and compares
+ * them to a full scan over all suggestions.
+ */
+@Tag("slow")
+public class Predictions_PerformanceTest
+{
+    private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+    private static final int DOCUMENTS = 100;
+    private static final int RECOMMENDERS = 2;
+    private static final int SUGGESTIONS_PER_DOCUMENT = 5_000;
+    private static final int WINDOW_SIZE = 1_000;
+    private static final int ROUNDS = 1_000;
+
+    private static AnnotationLayer layer;
+    private static List<AnnotationSuggestion> allSuggestions;
+    private static Predictions sut;
+
+    @BeforeAll
+    public static void setup()
+    {
+        Project project = new Project("project");
+        project.setId(1l);
+        layer = new AnnotationLayer();
+        layer.setId(1l);
+        allSuggestions = generateSuggestions();
+        sut = new Predictions(new User("user"), project);
+        sut.putPredictions(allSuggestions);
+    }
+
+    @Test
+    public void thatWindowQueryIsFasterThanFullScan()
+    {
+        // Warm up
+        queryIndexed(ROUNDS);
+        queryFullScan(ROUNDS);
+
+        long indexedStart = System.nanoTime();
+        int indexedHits = queryIndexed(ROUNDS);
+        long indexedDuration = System.nanoTime() - indexedStart;
+
+        long scanStart = System.nanoTime();
+        int scanHits = queryFullScan(ROUNDS);
+        long scanDuration = System.nanoTime() - scanStart;
+
+        LOG.info("Indexed window query: {} µs/query", indexedDuration / ROUNDS / 1000);
+        LOG.info("Full scan window query: {} µs/query", scanDuration / ROUNDS / 1000);
+
+        assertThat(indexedHits).isEqualTo(scanHits);
+        assertThat(indexedDuration).isLessThan(scanDuration);
+    }
+
+    @Test
+    public void measureMemoryUsageOfStore()
+    {
+        Project project = new Project("project");
+        project.setId(1l);
+
+        List<AnnotationSuggestion> suggestions = generateSuggestions();
+
+        long before = usedMemory();
+        Predictions predictions = new Predictions(new User("user"), project);
+        predictions.putPredictions(suggestions);
+        long after = usedMemory();
+
+        LOG.info("Store overhead: {} bytes/suggestion ({} MB per million suggestions)",
+                (after - before) / suggestions.size(),
+                (after - before) * 1_000_000l / suggestions.size() / (1024 * 1024));
+
+        assertThat(predictions.hasPredictions()).isTrue();
+    }
+
+    private static List<AnnotationSuggestion> generateSuggestions()
+    {
+        List<AnnotationSuggestion> suggestions = new ArrayList<>();
+        int id = 0;
+        for (int d = 0; d < DOCUMENTS; d++) {
+            for (int r = 1; r <= RECOMMENDERS; r++) {
+                for (int s = 0; s < SUGGESTIONS_PER_DOCUMENT; s++) {
+                    suggestions.add(span(id++, r, "doc" + d, s * 10, s * 10 + 5));
+                }
+            }
+        }
+        return suggestions;
+    }
+
+    private static long usedMemory()
+    {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private int queryIndexed(int aRounds)
+    {
+        int hits = 0;
+        for (int i = 0; i < aRounds; i++) {
+            int begin = windowBegin(i);
+            hits += sut.getGroupedPredictions(SpanSuggestion.class, "doc" + (i % DOCUMENTS), layer,
+                    begin, begin + WINDOW_SIZE).stream().mapToInt(SuggestionGroup::size).sum();
+        }
+        return hits;
+    }
+
+    private int queryFullScan(int aRounds)
+    {
+        int hits = 0;
+        for (int i = 0; i < aRounds; i++) {
+            int begin = windowBegin(i);
+            String document = "doc" + (i % DOCUMENTS);
+            hits += allSuggestions.stream() //
+                    .filter(s -> s.getDocumentName().equals(document)) //
+                    .filter(s -> s.getLayerId() == layer.getId()) //
+                    .filter(s -> s.getWindowBegin() >= begin) //
+                    .filter(s -> s.getWindowEnd() <= begin + WINDOW_SIZE) //
+                    .collect(toList()).size();
+        }
+        return hits;
+    }
+
+    private static int windowBegin(int aRound)
+    {
+        return (aRound * 7919) % (SUGGESTIONS_PER_DOCUMENT * 10 - WINDOW_SIZE);
+    }
+}
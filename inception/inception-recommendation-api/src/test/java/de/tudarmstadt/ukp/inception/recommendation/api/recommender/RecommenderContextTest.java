@@ -82,4 +82,10 @@ public class RecommenderContextTest
         sut.close();
         assertThat(sut.isClosed()).isTrue();
     }
+
+    @Test
+    public void thatEachContextHasItsOwnId()
+    {
+        assertThat(new RecommenderContext().getId()).isNotEqualTo(sut.getId());
+    }
 }
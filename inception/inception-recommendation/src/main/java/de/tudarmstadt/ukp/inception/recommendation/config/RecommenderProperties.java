@@ -22,4 +22,10 @@ public interface RecommenderProperties
     boolean isActionButtonsEnabled();
 
     boolean isEnabled();
+
+    /**
+     * @return number of threads used to predict documents in parallel. If this is {@code 1} or
+     *         less, documents are predicted sequentially by the prediction task itself.
+     */
+    int getPredictionThreads();
 }
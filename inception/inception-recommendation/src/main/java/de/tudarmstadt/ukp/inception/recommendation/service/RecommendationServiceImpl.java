@@ -29,8 +29,13 @@ import static de.tudarmstadt.ukp.inception.recommendation.api.model.AnnotationSu
 import static de.tudarmstadt.ukp.inception.recommendation.api.model.AnnotationSuggestion.FLAG_REJECTED;
 import static de.tudarmstadt.ukp.inception.recommendation.api.model.AnnotationSuggestion.FLAG_SKIPPED;
 import static de.tudarmstadt.ukp.inception.recommendation.api.recommender.RecommendationEngineCapability.TRAINING_NOT_SUPPORTED;
+import static de.tudarmstadt.ukp.inception.scheduling.TaskKind.CPU_BOUND;
+import static de.tudarmstadt.ukp.inception.scheduling.TaskKind.IO_BOUND;
 import static java.util.Comparator.comparingInt;
+import static java.util.concurrent.ForkJoinPool.defaultForkJoinWorkerThreadFactory;
+import static java.util.function.Function.identity;
 import static java.util.stream.Collectors.toList;
+import static org.apache.commons.lang3.exception.ExceptionUtils.getRootCauseMessage;
 import static org.apache.uima.fit.util.CasUtil.getType;
 import static org.apache.uima.fit.util.CasUtil.select;
 import static org.apache.uima.fit.util.CasUtil.selectAt;
@@ -39,6 +44,7 @@ import static org.apache.uima.fit.util.CasUtil.selectCovered;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -48,6 +54,9 @@ import java.util.Set;
 import java.util.TreeMap;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.persistence.EntityManager;
@@ -78,6 +87,8 @@ import org.apache.wicket.request.cycle.PageRequestHandlerTracker;
 import org.apache.wicket.request.cycle.RequestCycle;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.context.event.EventListener;
@@ -140,6 +151,8 @@ import de.tudarmstadt.ukp.inception.recommendation.api.recommender.Recommendatio
 import de.tudarmstadt.ukp.inception.recommendation.api.recommender.RecommendationEngineFactory;
 import de.tudarmstadt.ukp.inception.recommendation.api.recommender.RecommendationException;
 import de.tudarmstadt.ukp.inception.recommendation.api.recommender.RecommenderContext;
+import de.tudarmstadt.ukp.inception.recommendation.config.RecommenderProperties;
+import de.tudarmstadt.ukp.inception.recommendation.config.RecommenderPropertiesImpl;
 import de.tudarmstadt.ukp.inception.recommendation.config.RecommenderServiceAutoConfiguration;
 import de.tudarmstadt.ukp.inception.recommendation.event.RecommenderDeletedEvent;
 import de.tudarmstadt.ukp.inception.recommendation.event.RecommenderTaskEvent;
@@ -159,7 +172,7 @@ import de.tudarmstadt.ukp.inception.scheduling.Task;
  * </p>
  */
 public class RecommendationServiceImpl
-    implements RecommendationService
+    implements RecommendationService, DisposableBean
 {
     private final Logger log = LoggerFactory.getLogger(getClass());
 
@@ -182,6 +195,9 @@ public class RecommendationServiceImpl
     private final ConcurrentMap<RecommendationStateKey, AtomicInteger> trainingTaskCounter;
     private final ConcurrentMap<RecommendationStateKey, RecommendationState> states;
 
+    // Only set if parallel prediction is enabled
+    private final ForkJoinPool predictionPool;
+
     /*
      * Marks user/projects to which annotations were added during this request.
      */
@@ -206,7 +222,8 @@ public class RecommendationServiceImpl
             SchedulingService aSchedulingService, AnnotationSchemaService aAnnoService,
             DocumentService aDocumentService, LearningRecordService aLearningRecordService,
             ProjectService aProjectService, EntityManager aEntityManager,
-            ApplicationEventPublisher aApplicationEventPublisher)
+            ApplicationEventPublisher aApplicationEventPublisher,
+            RecommenderProperties aProperties)
     {
         sessionRegistry = aSessionRegistry;
         userRepository = aUserRepository;
@@ -221,6 +238,20 @@ public class RecommendationServiceImpl
 
         trainingTaskCounter = new ConcurrentHashMap<>();
         states = new ConcurrentHashMap<>();
+
+        if (aProperties.getPredictionThreads() > 1) {
+            predictionPool = new ForkJoinPool(aProperties.getPredictionThreads(), pool -> {
+                ForkJoinWorkerThread thread = defaultForkJoinWorkerThreadFactory.newThread(pool);
+                thread.setName("recommender-prediction-" + thread.getPoolIndex());
+                thread.setContextClassLoader(RecommendationServiceImpl.class.getClassLoader());
+                return thread;
+            }, null, false);
+            log.info("Parallel prediction enabled - threads: {}",
+                    aProperties.getPredictionThreads());
+        }
+        else {
+            predictionPool = null;
+        }
     }
 
     public RecommendationServiceImpl(SessionRegistry aSessionRegistry, UserDao aUserRepository,
@@ -231,12 +262,21 @@ public class RecommendationServiceImpl
     {
         this(aSessionRegistry, aUserRepository, aRecommenderFactoryRegistry, aSchedulingService,
                 aAnnoService, aDocumentService, aLearningRecordService, (ProjectService) null,
-                aEntityManager, null);
+                aEntityManager, null, new RecommenderPropertiesImpl());
     }
 
     public RecommendationServiceImpl(EntityManager aEntityManager)
     {
-        this(null, null, null, null, null, null, null, (ProjectService) null, aEntityManager, null);
+        this(null, null, null, null, null, null, null, (ProjectService) null, aEntityManager, null,
+                new RecommenderPropertiesImpl());
+    }
+
+    @Override
+    public void destroy()
+    {
+        if (predictionPool != null) {
+            predictionPool.shutdownNow();
+        }
     }
 
     @Override
@@ -611,7 +651,8 @@ public class RecommendationServiceImpl
             return;
         }
 
-        schedulingService.enqueue(new PredictionTask(user, aEventName, aDocument));
+        schedulingService.enqueue(new PredictionTask(user, aEventName, aDocument,
+                isPredictionRemote(user, aDocument.getProject()) ? IO_BOUND : CPU_BOUND));
     }
 
     @Override
@@ -1184,17 +1225,6 @@ public class RecommendationServiceImpl
             Predictions activePredictions = getPredictions(aUser, aProject);
             Predictions predictions = new Predictions(aUser, aProject);
 
-            try {
-                predictionCas = WebAnnoCasUtil.createCas();
-                CasStorageSession.get().add(PREDICTION_CAS, EXCLUSIVE_WRITE_ACCESS, predictionCas);
-            }
-            catch (ResourceInitializationException e) {
-                predictions.log(LogMessage.error(this,
-                        "Cannot create prediction CAS, stopping predictions!"));
-                log.error("Cannot create prediction CAS, stopping predictions!");
-                return predictions;
-            }
-
             // Inherit at the document level. If inheritance at a recommender level is possible,
             // this is done below.
             if (activePredictions != null) {
@@ -1203,235 +1233,407 @@ public class RecommendationServiceImpl
                         List<AnnotationSuggestion> suggestions = inheritSuggestions(aProject,
                                 activePredictions, document, username);
                         predictions.putPredictions(suggestions);
+                        predictions.inheritFingerprints(activePredictions, document);
                         predictions.markDocumentAsPredictionCompleted(document);
                     }
                 }
             }
 
             // Generate new predictions or inherit at the recommender level
-            nextDocument: for (SourceDocument document : aDocuments) {
-                Optional<CAS> originalCas = Optional.empty();
-                nextLayer: for (AnnotationLayer layer : annoService
-                        .listAnnotationLayer(document.getProject())) {
-                    if (!layer.isEnabled()) {
-                        continue nextLayer;
-                    }
+            if (predictionPool != null && aDocuments.size() > 1
+                    && isConcurrentPredictionSupported(aUser, aProject)) {
+                predictDocumentsInParallel(aUser, aProject, aDocuments, activePredictions,
+                        predictions);
+            }
+            else {
+                try {
+                    predictionCas = WebAnnoCasUtil.createCas();
+                    CasStorageSession.get().add(PREDICTION_CAS, EXCLUSIVE_WRITE_ACCESS,
+                            predictionCas);
+                }
+                catch (ResourceInitializationException e) {
+                    predictions.log(LogMessage.error(this,
+                            "Cannot create prediction CAS, stopping predictions!"));
+                    log.error("Cannot create prediction CAS, stopping predictions!");
+                    return predictions;
+                }
 
-                    List<EvaluatedRecommender> recommenders = getActiveRecommenders(aUser, layer);
+                for (SourceDocument document : aDocuments) {
+                    predictDocument(aUser, aProject, document, activePredictions, predictions,
+                            predictionCas);
+                }
+            }
 
-                    if (recommenders.isEmpty()) {
-                        predictions.log(LogMessage.info(this,
-                                "No active recommenders on layer [%s]", layer.getUiName()));
-                        log.trace("[{}]: No active recommenders on layer [{}]", username,
-                                layer.getUiName());
-                        continue;
-                    }
+            predictions.log(LogMessage.info(this, "Prediction complete"));
+            log.debug("Prediction complete");
 
-                    nextRecommender: for (EvaluatedRecommender r : recommenders) {
+            return predictions;
+        }
+        finally {
+            CasStorageSession.get().remove(predictionCas);
+        }
+    }
 
-                        // Make sure we have the latest recommender config from the DB - the one
-                        // from the active recommenders list may be outdated
-                        Recommender recommender;
+    @Override
+    public boolean isPredictionRemote(User aUser, Project aProject)
+    {
+        boolean seenRecommender = false;
+        for (AnnotationLayer layer : annoService.listAnnotationLayer(aProject)) {
+            if (!layer.isEnabled()) {
+                continue;
+            }
 
-                        try {
-                            recommender = getRecommender(r.getRecommender().getId());
-                        }
-                        catch (NoResultException e) {
-                            predictions.log(LogMessage.info(r.getRecommender().getName(),
-                                    "Recommender no longer available... skipping"));
-                            log.info("[{}][{}]: Recommender no longer available... skipping",
-                                    username, r.getRecommender().getName());
-                            continue nextRecommender;
-                        }
+            for (EvaluatedRecommender r : getActiveRecommenders(aUser, layer)) {
+                seenRecommender = true;
+                if (!getRecommenderFactory(r.getRecommender())
+                        .map(RecommendationEngineFactory::isRemote).orElse(false)) {
+                    return false;
+                }
+            }
+        }
 
-                        if (!recommender.isEnabled()) {
-                            predictions.log(LogMessage.info(r.getRecommender().getName(),
-                                    "Recommender disabled... skipping"));
-                            log.debug("[{}][{}]: Disabled - skipping", username,
-                                    r.getRecommender().getName());
-                            continue nextRecommender;
-                        }
+        return seenRecommender;
+    }
 
-                        Optional<RecommenderContext> context = getContext(aUser, recommender);
+    /**
+     * @return whether all recommenders active for the given user in the given project support
+     *         predicting on multiple documents at the same time.
+     */
+    private boolean isConcurrentPredictionSupported(User aUser, Project aProject)
+    {
+        for (AnnotationLayer layer : annoService.listAnnotationLayer(aProject)) {
+            if (!layer.isEnabled()) {
+                continue;
+            }
 
-                        if (!context.isPresent()) {
-                            predictions.log(LogMessage.info(r.getRecommender().getName(),
-                                    "Recommender has no context... skipping"));
-                            log.info("No context available for recommender [{}]({}) for user [{}] "
-                                    + "on document [{}]({}) in project [{}]({}) - skipping recommender",
-                                    recommender.getName(), recommender.getId(), username,
-                                    document.getName(), document.getId(),
-                                    document.getProject().getName(), document.getProject().getId());
-                            continue nextRecommender;
-                        }
+            for (EvaluatedRecommender r : getActiveRecommenders(aUser, layer)) {
+                if (!getRecommenderFactory(r.getRecommender())
+                        .map(RecommendationEngineFactory::isConcurrentPredictionSupported)
+                        .orElse(true)) {
+                    log.debug("[{}][{}]: Recommender does not support concurrent prediction - "
+                            + "predicting documents sequentially", aUser.getUsername(),
+                            r.getRecommender().getName());
+                    return false;
+                }
+            }
+        }
 
-                        RecommenderContext ctx = context.get();
-                        ctx.setUser(aUser);
+        return true;
+    }
 
-                        Optional<RecommendationEngineFactory<?>> maybeFactory = getRecommenderFactory(
-                                recommender);
+    /**
+     * Distributes the given documents over the prediction pool. Each document is predicted in its
+     * own CAS storage session into its own {@link Predictions} object. The per-document results are
+     * merged into the given predictions in the order of the given documents, so the result does not
+     * depend on the order in which the workers complete.
+     */
+    private void predictDocumentsInParallel(User aUser, Project aProject,
+            List<SourceDocument> aDocuments, Predictions aActivePredictions,
+            Predictions aPredictions)
+    {
+        String username = aUser.getUsername();
+        Map<String, String> mdc = MDC.getCopyOfContextMap();
+        AtomicInteger completed = new AtomicInteger();
+        long startTime = System.currentTimeMillis();
+
+        List<ForkJoinTask<Predictions>> tasks = new ArrayList<>();
+        for (SourceDocument document : aDocuments) {
+            tasks.add(predictionPool.submit(() -> {
+                if (mdc != null) {
+                    MDC.setContextMap(mdc);
+                }
 
-                        if (maybeFactory.isEmpty()) {
-                            log.warn("[{}][{}]: No factory found - skipping recommender", username,
-                                    r.getRecommender().getName());
-                            continue nextRecommender;
-                        }
+                CAS predictionCas = null;
+                try (CasStorageSession session = CasStorageSession.open()) {
+                    Predictions documentPredictions = new Predictions(aUser, aProject);
+                    predictionCas = WebAnnoCasUtil.createCas();
+                    session.add(PREDICTION_CAS, EXCLUSIVE_WRITE_ACCESS, predictionCas);
+                    predictDocument(aUser, aProject, document, aActivePredictions,
+                            documentPredictions, predictionCas);
+
+                    int done = completed.incrementAndGet();
+                    log.debug("[{}]: Predicted [{}/{}] documents in project [{}]({})", username,
+                            done, aDocuments.size(), aProject.getName(), aProject.getId());
+                    return documentPredictions;
+                }
+                finally {
+                    MDC.clear();
+                }
+            }));
+        }
 
-                        RecommendationEngineFactory<?> factory = maybeFactory.get();
+        for (int i = 0; i < tasks.size(); i++) {
+            SourceDocument document = aDocuments.get(i);
+            Predictions documentPredictions;
+            try {
+                documentPredictions = tasks.get(i).join();
+            }
+            catch (Exception e) {
+                aPredictions.log(LogMessage.error(this, "Prediction failed on document [%s]: %s",
+                        document.getName(), getRootCauseMessage(e)));
+                log.error("[{}]: Prediction failed on document [{}]({}) in project [{}]({})",
+                        username, document.getName(), document.getId(), aProject.getName(),
+                        aProject.getId(), e);
+                continue;
+            }
 
-                        // Check that configured layer and feature are accepted
-                        // by this type of recommender
-                        if (!factory.accepts(recommender.getLayer(), recommender.getFeature())) {
-                            predictions.log(LogMessage.info(r.getRecommender().getName(),
-                                    "Recommender configured with invalid layer or feature... skipping"));
-                            log.info(
-                                    "[{}][{}]: Recommender configured with invalid layer or feature "
-                                            + "- skipping recommender",
-                                    username, r.getRecommender().getName());
-                            continue nextRecommender;
-                        }
+            documentPredictions.getLog().forEach(aPredictions::log);
+            aPredictions.putPredictions(
+                    documentPredictions.getPredictionsByDocument(document.getName()));
+            aPredictions.inheritFingerprints(documentPredictions, document);
+            if (documentPredictions.hasRunPredictionOnDocument(document)) {
+                aPredictions.markDocumentAsPredictionCompleted(document);
+            }
+        }
 
-                        // We lazily load the CAS only at this point because that allows us to skip
-                        // loading the CAS entirely if there is no enabled layer or recommender.
-                        // If the CAS cannot be loaded, then we skip to the next document.
-                        if (originalCas.isEmpty()) {
-                            try {
-                                originalCas = Optional
-                                        .of(documentService.readAnnotationCas(document, username,
-                                                AUTO_CAS_UPGRADE, SHARED_READ_ONLY_ACCESS));
-                            }
-                            catch (IOException e) {
-                                predictions.log(LogMessage.error(this,
-                                        "Cannot read annotation CAS... skipping"));
-                                log.error("Cannot read annotation CAS for user [{}] of document "
-                                        + "[{}]({}) in project [{}]({}) - skipping document",
-                                        username, document.getName(), document.getId(),
-                                        document.getProject().getName(),
-                                        document.getProject().getId(), e);
-                                applicationEventPublisher.publishEvent(new RecommenderTaskEvent(
-                                        this, username, "Cannot read annotation CAS... skipping",
-                                        recommender));
-                                continue nextDocument;
-                            }
-                        }
+        aPredictions.log(LogMessage.info(this, "Predicted [%d] documents using [%d] threads (%d ms)",
+                aDocuments.size(), predictionPool.getParallelism(),
+                System.currentTimeMillis() - startTime));
+    }
 
-                        try {
-                            RecommendationEngine engine = factory.build(recommender);
-
-                            if (!engine.isReadyForPrediction(ctx)) {
-                                predictions.log(LogMessage.info(r.getRecommender().getName(),
-                                        "Recommender context is not ready... skipping"));
-                                log.info("Recommender context [{}]({}) for user [{}] in project "
-                                        + "[{}]({}) is not ready for prediction - skipping recommender",
-                                        recommender.getName(), recommender.getId(), username,
-                                        document.getProject().getName(),
-                                        document.getProject().getId());
-
-                                // If possible, we inherit recommendations from a previous run while
-                                // the recommender is still busy
-                                if (activePredictions != null) {
-                                    List<AnnotationSuggestion> suggestions = inheritSuggestions(
-                                            originalCas.get(), recommender, activePredictions,
-                                            document, username);
-                                    if (!suggestions.isEmpty()) {
-                                        predictions.putPredictions(suggestions);
-                                    }
-
-                                    predictions.log(LogMessage.info(r.getRecommender().getName(),
-                                            "Inherited [%d] predictions from previous run",
-                                            suggestions.size()));
-                                }
+    /**
+     * Generates new predictions for the given document or inherits them at the recommender level.
+     * If the document could be processed by all recommenders, it is marked as completed.
+     */
+    private void predictDocument(User aUser, Project aProject, SourceDocument document,
+            Predictions activePredictions, Predictions predictions, CAS predictionCas)
+    {
+        String username = aUser.getUsername();
+        Optional<CAS> originalCas = Optional.empty();
+
+        // The CAS timestamp serves as a fingerprint of the document. If it did not change
+        // since the last run, recommenders that still use the same context would produce
+        // the same predictions again, so we can inherit them instead.
+        Optional<Long> casTimestamp = getCasTimestamp(document, username);
+        boolean documentUnchanged = activePredictions != null
+                && activePredictions.hasRunPredictionOnDocument(document)
+                && casTimestamp.isPresent()
+                && casTimestamp.equals(activePredictions.getDocumentCasTimestamp(document));
+        casTimestamp.ifPresent(ts -> predictions.setDocumentCasTimestamp(document, ts));
+
+        nextLayer: for (AnnotationLayer layer : annoService
+                .listAnnotationLayer(document.getProject())) {
+            if (!layer.isEnabled()) {
+                continue nextLayer;
+            }
 
-                                continue nextRecommender;
-                            }
+            List<EvaluatedRecommender> recommenders = getActiveRecommenders(aUser, layer);
 
-                            predictions.log(LogMessage.info(r.getRecommender().getName(),
-                                    "Generating predictions for layer [%s]...", layer.getUiName()));
-                            log.trace("[{}][{}]: Generating predictions for layer [{}]", username,
-                                    r.getRecommender().getName(), layer.getUiName());
-
-                            cloneAndMonkeyPatchCAS(aProject, originalCas.get(), predictionCas);
-
-                            List<AnnotationSuggestion> suggestions;
-
-                            // If the recommender is not trainable and not sensitive to annotations,
-                            // we can actually re-use the predictions.
-                            if (TRAINING_NOT_SUPPORTED.equals(engine.getTrainingCapability())
-                                    && activePredictions != null
-                                    && activePredictions.hasRunPredictionOnDocument(document)) {
-                                suggestions = inheritSuggestions(originalCas.get(),
-                                        engine.getRecommender(), activePredictions, document,
-                                        username);
-                                predictions.log(LogMessage.info(r.getRecommender().getName(),
-                                        "Inherited [%d] predictions from previous run",
-                                        suggestions.size()));
-                            }
-                            else {
-                                suggestions = generateSuggestions(ctx, engine, activePredictions,
-                                        document, originalCas.get(), predictionCas, username);
-                                predictions.log(LogMessage.info(r.getRecommender().getName(),
-                                        "Generated [%d] predictions", suggestions.size()));
-                            }
+            if (recommenders.isEmpty()) {
+                predictions.log(LogMessage.info(this,
+                        "No active recommenders on layer [%s]", layer.getUiName()));
+                log.trace("[{}]: No active recommenders on layer [{}]", username,
+                        layer.getUiName());
+                continue;
+            }
 
-                            predictions.putPredictions(suggestions);
-                        }
-                        // Catching Throwable is intentional here as we want to continue the
-                        // execution even if a particular recommender fails.
-                        catch (Throwable e) {
-                            predictions.log(LogMessage.error(r.getRecommender().getName(),
-                                    "Failed: %s", e.getMessage()));
-                            log.error(
-                                    "Error applying recommender [{}]({}) for user [{}] to document "
-                                            + "[{}]({}) in project [{}]({}) - skipping recommender",
-                                    recommender.getName(), recommender.getId(), username,
-                                    document.getName(), document.getId(),
-                                    document.getProject().getName(), document.getProject().getId(),
-                                    e);
-                            applicationEventPublisher.publishEvent(new RecommenderTaskEvent(this,
-                                    username, e.getMessage(), recommender));
-
-                            // If there was a previous successful run of the recommender, inherit
-                            // its suggestions to avoid that all the suggestions of the recommender
-                            // simply disappear.
-                            if (activePredictions != null) {
-                                List<AnnotationSuggestion> suggestions = inheritSuggestions(
-                                        originalCas.get(), recommender, activePredictions, document,
-                                        username);
-                                if (!suggestions.isEmpty()) {
-                                    predictions.putPredictions(suggestions);
-                                }
+            nextRecommender: for (EvaluatedRecommender r : recommenders) {
+
+                // Make sure we have the latest recommender config from the DB - the one
+                // from the active recommenders list may be outdated
+                Recommender recommender;
+
+                try {
+                    recommender = getRecommender(r.getRecommender().getId());
+                }
+                catch (NoResultException e) {
+                    predictions.log(LogMessage.info(r.getRecommender().getName(),
+                            "Recommender no longer available... skipping"));
+                    log.info("[{}][{}]: Recommender no longer available... skipping",
+                            username, r.getRecommender().getName());
+                    continue nextRecommender;
+                }
+
+                if (!recommender.isEnabled()) {
+                    predictions.log(LogMessage.info(r.getRecommender().getName(),
+                            "Recommender disabled... skipping"));
+                    log.debug("[{}][{}]: Disabled - skipping", username,
+                            r.getRecommender().getName());
+                    continue nextRecommender;
+                }
+
+                Optional<RecommenderContext> context = getContext(aUser, recommender);
+
+                if (!context.isPresent()) {
+                    predictions.log(LogMessage.info(r.getRecommender().getName(),
+                            "Recommender has no context... skipping"));
+                    log.info("No context available for recommender [{}]({}) for user [{}] "
+                            + "on document [{}]({}) in project [{}]({}) - skipping recommender",
+                            recommender.getName(), recommender.getId(), username,
+                            document.getName(), document.getId(),
+                            document.getProject().getName(), document.getProject().getId());
+                    continue nextRecommender;
+                }
+
+                RecommenderContext ctx = context.get();
+                ctx.setUser(aUser);
+
+                Optional<RecommendationEngineFactory<?>> maybeFactory = getRecommenderFactory(
+                        recommender);
+
+                if (maybeFactory.isEmpty()) {
+                    log.warn("[{}][{}]: No factory found - skipping recommender", username,
+                            r.getRecommender().getName());
+                    continue nextRecommender;
+                }
+
+                RecommendationEngineFactory<?> factory = maybeFactory.get();
+
+                // Check that configured layer and feature are accepted
+                // by this type of recommender
+                if (!factory.accepts(recommender.getLayer(), recommender.getFeature())) {
+                    predictions.log(LogMessage.info(r.getRecommender().getName(),
+                            "Recommender configured with invalid layer or feature... skipping"));
+                    log.info(
+                            "[{}][{}]: Recommender configured with invalid layer or feature "
+                                    + "- skipping recommender",
+                            username, r.getRecommender().getName());
+                    continue nextRecommender;
+                }
+
+                if (documentUnchanged && activePredictions
+                        .getRecommenderContextId(document, recommender)
+                        .map(id -> id == ctx.getId()).orElse(false)) {
+                    List<AnnotationSuggestion> suggestions = inheritSuggestions(recommender,
+                            activePredictions, document, username);
+                    predictions.putPredictions(suggestions);
+                    predictions.setRecommenderContextId(document, recommender, ctx.getId());
+                    predictions.log(LogMessage.info(r.getRecommender().getName(),
+                            "Document unchanged - inherited [%d] predictions from "
+                                    + "previous run",
+                            suggestions.size()));
+                    continue nextRecommender;
+                }
+
+                // We lazily load the CAS only at this point because that allows us to skip
+                // loading the CAS entirely if there is no enabled layer or recommender.
+                // If the CAS cannot be loaded, then we skip to the next document.
+                if (originalCas.isEmpty()) {
+                    try {
+                        originalCas = Optional
+                                .of(documentService.readAnnotationCas(document, username,
+                                        AUTO_CAS_UPGRADE, SHARED_READ_ONLY_ACCESS));
+                    }
+                    catch (IOException e) {
+                        predictions.log(LogMessage.error(this,
+                                "Cannot read annotation CAS... skipping"));
+                        log.error("Cannot read annotation CAS for user [{}] of document "
+                                + "[{}]({}) in project [{}]({}) - skipping document",
+                                username, document.getName(), document.getId(),
+                                document.getProject().getName(),
+                                document.getProject().getId(), e);
+                        applicationEventPublisher.publishEvent(new RecommenderTaskEvent(
+                                this, username, "Cannot read annotation CAS... skipping",
+                                recommender));
+                        return;
+                    }
+                }
 
-                                predictions.log(LogMessage.info(r.getRecommender().getName(),
-                                        "Inherited [%d] predictions from previous run",
-                                        suggestions.size()));
+                try {
+                    RecommendationEngine engine = factory.build(recommender);
+
+                    if (!engine.isReadyForPrediction(ctx)) {
+                        predictions.log(LogMessage.info(r.getRecommender().getName(),
+                                "Recommender context is not ready... skipping"));
+                        log.info("Recommender context [{}]({}) for user [{}] in project "
+                                + "[{}]({}) is not ready for prediction - skipping recommender",
+                                recommender.getName(), recommender.getId(), username,
+                                document.getProject().getName(),
+                                document.getProject().getId());
+
+                        // If possible, we inherit recommendations from a previous run while
+                        // the recommender is still busy
+                        if (activePredictions != null) {
+                            List<AnnotationSuggestion> suggestions = inheritSuggestions(
+                                    recommender, activePredictions, document, username);
+                            if (!suggestions.isEmpty()) {
+                                predictions.putPredictions(suggestions);
                             }
 
-                            continue nextRecommender;
+                            predictions.log(LogMessage.info(r.getRecommender().getName(),
+                                    "Inherited [%d] predictions from previous run",
+                                    suggestions.size()));
                         }
+
+                        continue nextRecommender;
                     }
-                }
 
-                // When all recommenders have completed on the document, we mark it as "complete"
-                predictions.markDocumentAsPredictionCompleted(document);
-            }
+                    predictions.log(LogMessage.info(r.getRecommender().getName(),
+                            "Generating predictions for layer [%s]...", layer.getUiName()));
+                    log.trace("[{}][{}]: Generating predictions for layer [{}]", username,
+                            r.getRecommender().getName(), layer.getUiName());
 
-            predictions.log(LogMessage.info(this, "Prediction complete"));
-            log.debug("Prediction complete");
+                    cloneAndMonkeyPatchCAS(aProject, originalCas.get(), predictionCas);
 
-            return predictions;
-        }
-        finally {
-            CasStorageSession.get().remove(predictionCas);
+                    List<AnnotationSuggestion> suggestions;
+
+                    // If the recommender is not trainable and not sensitive to annotations,
+                    // we can actually re-use the predictions.
+                    if (TRAINING_NOT_SUPPORTED.equals(engine.getTrainingCapability())
+                            && activePredictions != null
+                            && activePredictions.hasRunPredictionOnDocument(document)) {
+                        suggestions = inheritSuggestions(engine.getRecommender(),
+                                activePredictions, document, username);
+                        predictions.log(LogMessage.info(r.getRecommender().getName(),
+                                "Inherited [%d] predictions from previous run",
+                                suggestions.size()));
+                    }
+                    else {
+                        suggestions = generateSuggestions(ctx, engine, activePredictions,
+                                document, originalCas.get(), predictionCas, username);
+                        predictions.setRecommenderContextId(document, recommender,
+                                ctx.getId());
+                        predictions.log(LogMessage.info(r.getRecommender().getName(),
+                                "Generated [%d] predictions", suggestions.size()));
+                    }
+
+                    predictions.putPredictions(suggestions);
+                }
+                // Catching Throwable is intentional here as we want to continue the
+                // execution even if a particular recommender fails.
+                catch (Throwable e) {
+                    predictions.log(LogMessage.error(r.getRecommender().getName(),
+                            "Failed: %s", e.getMessage()));
+                    log.error(
+                            "Error applying recommender [{}]({}) for user [{}] to document "
+                                    + "[{}]({}) in project [{}]({}) - skipping recommender",
+                            recommender.getName(), recommender.getId(), username,
+                            document.getName(), document.getId(),
+                            document.getProject().getName(), document.getProject().getId(),
+                            e);
+                    applicationEventPublisher.publishEvent(new RecommenderTaskEvent(this,
+                            username, e.getMessage(), recommender));
+
+                    // If there was a previous successful run of the recommender, inherit
+                    // its suggestions to avoid that all the suggestions of the recommender
+                    // simply disappear.
+                    if (activePredictions != null) {
+                        List<AnnotationSuggestion> suggestions = inheritSuggestions(
+                                recommender, activePredictions, document, username);
+                        if (!suggestions.isEmpty()) {
+                            predictions.putPredictions(suggestions);
+                        }
+
+                        predictions.log(LogMessage.info(r.getRecommender().getName(),
+                                "Inherited [%d] predictions from previous run",
+                                suggestions.size()));
+                    }
+
+                    continue nextRecommender;
+                }
+            }
         }
+
+        // When all recommenders have completed on the document, we mark it as "complete"
+        predictions.markDocumentAsPredictionCompleted(document);
     }
 
     /**
      * Extracts existing predictions from the last prediction run so we do not have to recalculate
      * them. This is useful when the engine is not trainable.
      */
-    private List<AnnotationSuggestion> inheritSuggestions(CAS aOriginalCas,
-            Recommender aRecommender, Predictions activePredictions, SourceDocument document,
-            String aUsername)
+    private List<AnnotationSuggestion> inheritSuggestions(Recommender aRecommender,
+            Predictions activePredictions, SourceDocument document, String aUsername)
     {
         List<AnnotationSuggestion> suggestions = activePredictions
                 .getPredictionsByRecommenderAndDocument(aRecommender, document.getName());
@@ -1484,6 +1686,20 @@ public class RecommendationServiceImpl
         return suggestions;
     }
 
+    private Optional<Long> getCasTimestamp(SourceDocument aDocument, String aUsername)
+    {
+        try {
+            return documentService.getAnnotationCasTimestamp(aDocument, aUsername);
+        }
+        catch (IOException e) {
+            log.warn("Unable to obtain CAS timestamp for user [{}] of document [{}]({}) in project "
+                    + "[{}]({}) - not inheriting predictions", aUsername, aDocument.getName(),
+                    aDocument.getId(), aDocument.getProject().getName(),
+                    aDocument.getProject().getId(), e);
+            return Optional.empty();
+        }
+    }
+
     /**
      * Invokes the engine to produce new suggestions.
      */
@@ -1534,14 +1750,21 @@ public class RecommendationServiceImpl
         List<AnnotationSuggestion> result = new ArrayList<>();
         int id = 0;
 
+        // Labels, covered texts and explanations repeat a lot within a document. Every value
+        // obtained from the CAS is a separate string though, so we de-duplicate them to avoid
+        // keeping a copy per suggestion in memory.
+        Map<String, String> strings = new HashMap<>();
+
         for (Annotation predictedAnnotation : aPredictionCas.<Annotation> select(predictedType)) {
             if (!predictedAnnotation.getBooleanValue(predictionFeature)) {
                 continue;
             }
 
-            String label = predictedAnnotation.getFeatureValueAsString(predictedFeature);
+            String label = strings.computeIfAbsent(
+                    predictedAnnotation.getFeatureValueAsString(predictedFeature), identity());
             double score = predictedAnnotation.getDoubleValue(scoreFeature);
-            String scoreExplanation = predictedAnnotation.getStringValue(scoreExplanationFeature);
+            String scoreExplanation = strings.computeIfAbsent(
+                    predictedAnnotation.getStringValue(scoreExplanationFeature), identity());
             String name = aRecommender.getName();
 
             AnnotationSuggestion suggestion;
@@ -1557,8 +1780,9 @@ public class RecommendationServiceImpl
 
                 suggestion = new SpanSuggestion(id, aRecommender.getId(), name, layer.getId(),
                         featureName, aDocument.getName(), targetOffsets.get().getBegin(),
-                        targetOffsets.get().getEnd(), predictedAnnotation.getCoveredText(), label,
-                        label, score, scoreExplanation);
+                        targetOffsets.get().getEnd(),
+                        strings.computeIfAbsent(predictedAnnotation.getCoveredText(), identity()),
+                        label, label, score, scoreExplanation);
                 break;
             }
             case WebAnnoConst.RELATION_TYPE: {
@@ -21,6 +21,8 @@
  */
 package de.tudarmstadt.ukp.inception.recommendation.tasks;
 
+import static de.tudarmstadt.ukp.inception.scheduling.TaskKind.CPU_BOUND;
+import static de.tudarmstadt.ukp.inception.scheduling.TaskPriority.HIGH;
 import static java.util.Collections.singletonList;
 import static java.util.stream.Collectors.toList;
 
@@ -41,6 +43,8 @@ import de.tudarmstadt.ukp.clarin.webanno.support.logging.LogMessage;
 import de.tudarmstadt.ukp.inception.recommendation.api.RecommendationService;
 import de.tudarmstadt.ukp.inception.recommendation.api.model.Predictions;
 import de.tudarmstadt.ukp.inception.scheduling.Task;
+import de.tudarmstadt.ukp.inception.scheduling.TaskKind;
+import de.tudarmstadt.ukp.inception.scheduling.TaskPriority;
 
 /**
  * This consumer predicts new annotations for a given annotation layer, if a classification tool for
@@ -55,12 +59,39 @@ public class PredictionTask
     private @Autowired DocumentService documentService;
 
     private final SourceDocument currentDocument;
+    private final TaskKind kind;
     private final List<LogMessage> logMessages = new ArrayList<>();
 
     public PredictionTask(User aUser, String aTrigger, SourceDocument aCurrentDocument)
+    {
+        this(aUser, aTrigger, aCurrentDocument, CPU_BOUND);
+    }
+
+    /**
+     * @param aKind
+     *            {@link TaskKind#IO_BOUND} if all active recommenders predict via a remote
+     *            service, {@link TaskKind#CPU_BOUND} otherwise. The kind must be known when the
+     *            task is enqueued, i.e. before the task is wired up by the scheduler.
+     */
+    public PredictionTask(User aUser, String aTrigger, SourceDocument aCurrentDocument,
+            TaskKind aKind)
     {
         super(aUser, aCurrentDocument.getProject(), aTrigger);
         currentDocument = aCurrentDocument;
+        kind = aKind;
+    }
+
+    @Override
+    public TaskPriority getPriority()
+    {
+        // The user is typically waiting for the predictions to show up in the editor
+        return HIGH;
+    }
+
+    @Override
+    public TaskKind getKind()
+    {
+        return kind;
     }
 
     @Override
@@ -28,7 +28,10 @@ import static de.tudarmstadt.ukp.clarin.webanno.support.logging.LogMessage.info;
 import static de.tudarmstadt.ukp.clarin.webanno.support.logging.LogMessage.warn;
 import static de.tudarmstadt.ukp.inception.recommendation.api.recommender.RecommendationEngineCapability.TRAINING_NOT_SUPPORTED;
 import static de.tudarmstadt.ukp.inception.recommendation.api.recommender.RecommendationEngineCapability.TRAINING_REQUIRED;
+import static de.tudarmstadt.ukp.inception.scheduling.TaskKind.CPU_BOUND;
+import static de.tudarmstadt.ukp.inception.scheduling.TaskKind.IO_BOUND;
 import static java.lang.String.format;
+import static java.util.Comparator.comparing;
 import static java.util.stream.Collectors.toList;
 import static org.apache.commons.lang3.exception.ExceptionUtils.getRootCauseMessage;
 
@@ -37,6 +40,7 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.TreeSet;
 
 import javax.persistence.NoResultException;
 
@@ -117,6 +121,17 @@ public class TrainingTask
                 }
             };
 
+            // The training data fingerprint is also obtained lazily and without reading the
+            // CASes, so unchanged models can be kept without loading any data.
+            LazyInitializer<String> trainingDataFingerprint = new LazyInitializer<String>()
+            {
+                @Override
+                protected String initialize()
+                {
+                    return getTrainingDataFingerprint(project, user);
+                }
+            };
+
             boolean seenSuccessfulTraining = false;
             boolean seenNonTrainingRecommender = false;
 
@@ -188,14 +203,45 @@ public class TrainingTask
 
                         RecommendationEngine recommendationEngine = factory.build(recommender);
 
-                        RecommenderContext ctx = recommendationEngine
-                                .newContext(recommendationService.getContext(user, recommender)
-                                        .orElse(RecommenderContext.EMPTY_CONTEXT));
-                        ctx.setUser(user);
-
                         RecommendationEngineCapability capability = recommendationEngine
                                 .getTrainingCapability();
 
+                        // If neither the configuration nor the training data changed since the
+                        // current context was created, we would only obtain the same model again.
+                        // Keeping the context (and thus its ID) allows predictions on unchanged
+                        // documents to be inherited instead of being recomputed.
+                        String fingerprint = getConfigurationFingerprint(recommender);
+                        if (capability != TRAINING_NOT_SUPPORTED) {
+                            String dataFingerprint = trainingDataFingerprint.get();
+                            fingerprint = dataFingerprint != null
+                                    ? fingerprint + "|" + dataFingerprint
+                                    : null;
+                        }
+                        Optional<RecommenderContext> currentCtx = recommendationService
+                                .getContext(user, recommender);
+                        if (fingerprint != null && currentCtx.isPresent()
+                                && fingerprint.equals(currentCtx.get().getFingerprint())) {
+                            log.debug("[{}][{}][{}]: Configuration and training data unchanged - "
+                                    + "keeping current model", getId(), user.getUsername(),
+                                    recommender.getName());
+                            logMessages.add(info(this,
+                                    "Configuration and training data unchanged - keeping current "
+                                            + "model for [%s].",
+                                    recommender.getName()));
+                            if (capability == TRAINING_NOT_SUPPORTED) {
+                                seenNonTrainingRecommender = true;
+                            }
+                            else {
+                                seenSuccessfulTraining = true;
+                            }
+                            continue;
+                        }
+
+                        RecommenderContext ctx = recommendationEngine
+                                .newContext(currentCtx.orElse(RecommenderContext.EMPTY_CONTEXT));
+                        ctx.setUser(user);
+                        ctx.setFingerprint(fingerprint);
+
                         // If engine does not support training, mark engine ready and skip to
                         // prediction
                         if (capability == TRAINING_NOT_SUPPORTED) {
@@ -292,7 +338,9 @@ public class TrainingTask
             }
 
             PredictionTask predictionTask = new PredictionTask(user,
-                    String.format("TrainingTask %s complete", getId()), currentDocument);
+                    String.format("TrainingTask %s complete", getId()), currentDocument,
+                    recommendationService.isPredictionRemote(user, getProject()) ? IO_BOUND
+                            : CPU_BOUND);
             predictionTask.inheritLog(logMessages);
             schedulingService.enqueue(predictionTask);
         }
@@ -324,6 +372,57 @@ public class TrainingTask
         return casses;
     }
 
+    /**
+     * @return a fingerprint of the recommender settings which affect the model or its predictions.
+     */
+    private String getConfigurationFingerprint(Recommender aRecommender)
+    {
+        return String.join("|", aRecommender.getTool(),
+                String.valueOf(aRecommender.getLayer().getId()),
+                String.valueOf(aRecommender.getFeature().getId()),
+                String.valueOf(aRecommender.getThreshold()),
+                String.valueOf(aRecommender.getMaxRecommendations()),
+                String.valueOf(aRecommender.getStatesIgnoredForTraining() != null
+                        ? new TreeSet<>(aRecommender.getStatesIgnoredForTraining())
+                        : null),
+                String.valueOf(aRecommender.getTraits()));
+    }
+
+    /**
+     * @return a fingerprint of the documents of the given user consisting of the ID, state and CAS
+     *         timestamp of each document. Any change to the annotations of a document changes its
+     *         CAS timestamp and thus the fingerprint. Returns {@code null} if the fingerprint
+     *         cannot be determined.
+     */
+    private String getTrainingDataFingerprint(Project aProject, User aUser)
+    {
+        StringBuilder fingerprint = new StringBuilder();
+        Map<SourceDocument, AnnotationDocument> allDocuments = documentService
+                .listAllDocuments(aProject, aUser);
+        List<SourceDocument> documents = new ArrayList<>(allDocuments.keySet());
+        documents.sort(comparing(SourceDocument::getId));
+        for (SourceDocument sourceDocument : documents) {
+            AnnotationDocument annotationDocument = allDocuments.get(sourceDocument);
+            AnnotationDocumentState state = annotationDocument != null
+                    ? annotationDocument.getState()
+                    : AnnotationDocumentState.NEW;
+
+            Optional<Long> timestamp;
+            try {
+                timestamp = documentService.getAnnotationCasTimestamp(sourceDocument,
+                        aUser.getUsername());
+            }
+            catch (IOException e) {
+                log.error("Cannot obtain annotation CAS timestamp.", e);
+                return null;
+            }
+
+            fingerprint.append(sourceDocument.getId()).append(':').append(state).append(':')
+                    .append(timestamp.map(String::valueOf).orElse("-")).append(';');
+        }
+        return fingerprint.toString();
+    }
+
     private boolean containsTargetTypeAndFeature(Recommender aRecommender, CAS aCas)
     {
         Type type;
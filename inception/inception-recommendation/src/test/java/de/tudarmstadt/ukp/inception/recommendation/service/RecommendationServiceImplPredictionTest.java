@@ -0,0 +1,487 @@
+/*
+ * Licensed to the Technische Universität Darmstadt under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The Technische Universität Darmstadt
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.recommendation.service;
+
+import static de.tudarmstadt.ukp.clarin.webanno.api.WebAnnoConst.SPAN_TYPE;
+import static de.tudarmstadt.ukp.clarin.webanno.api.annotation.util.WebAnnoCasUtil.getRealCas;
+import static de.tudarmstadt.ukp.clarin.webanno.model.AnchoringMode.CHARACTERS;
+import static de.tudarmstadt.ukp.clarin.webanno.support.logging.LogLevel.ERROR;
+import static java.util.Arrays.asList;
+import static java.util.stream.Collectors.toList;
+import static org.apache.uima.cas.impl.Serialization.deserializeCASComplete;
+import static org.apache.uima.cas.impl.Serialization.serializeCASComplete;
+import static org.apache.uima.cas.impl.Serialization.serializeWithCompression;
+import static org.apache.uima.fit.factory.TypeSystemDescriptionFactory.createTypeSystemDescription;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.persistence.EntityManager;
+
+import org.apache.uima.cas.CAS;
+import org.apache.uima.cas.impl.CASImpl;
+import org.apache.uima.cas.text.AnnotationFS;
+import org.apache.uima.fit.factory.CasFactory;
+import org.apache.uima.resource.metadata.TypeSystemDescription;
+import org.apache.uima.util.CasIOUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.assertj.core.groups.Tuple;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.springframework.context.ApplicationEventPublisher;
+
+import de.tudarmstadt.ukp.clarin.webanno.api.AnnotationSchemaService;
+import de.tudarmstadt.ukp.clarin.webanno.api.CasUpgradeMode;
+import de.tudarmstadt.ukp.clarin.webanno.api.DocumentService;
+import de.tudarmstadt.ukp.clarin.webanno.api.casstorage.CasAccessMode;
+import de.tudarmstadt.ukp.clarin.webanno.api.dao.casstorage.CasStorageSession;
+import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationFeature;
+import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationLayer;
+import de.tudarmstadt.ukp.clarin.webanno.model.Project;
+import de.tudarmstadt.ukp.clarin.webanno.model.SourceDocument;
+import de.tudarmstadt.ukp.clarin.webanno.security.model.User;
+import de.tudarmstadt.ukp.clarin.webanno.support.logging.LogMessage;
+import de.tudarmstadt.ukp.dkpro.core.api.ner.type.NamedEntity;
+import de.tudarmstadt.ukp.inception.recommendation.api.LearningRecordService;
+import de.tudarmstadt.ukp.inception.recommendation.api.RecommenderFactoryRegistry;
+import de.tudarmstadt.ukp.inception.recommendation.api.evaluation.DataSplitter;
+import de.tudarmstadt.ukp.inception.recommendation.api.evaluation.EvaluationResult;
+import de.tudarmstadt.ukp.inception.recommendation.api.model.AnnotationSuggestion;
+import de.tudarmstadt.ukp.inception.recommendation.api.model.EvaluatedRecommender;
+import de.tudarmstadt.ukp.inception.recommendation.api.model.Predictions;
+import de.tudarmstadt.ukp.inception.recommendation.api.model.Recommender;
+import de.tudarmstadt.ukp.inception.recommendation.api.recommender.RecommendationEngine;
+import de.tudarmstadt.ukp.inception.recommendation.api.recommender.RecommendationEngineFactory;
+import de.tudarmstadt.ukp.inception.recommendation.api.recommender.RecommendationException;
+import de.tudarmstadt.ukp.inception.recommendation.api.recommender.RecommenderContext;
+import de.tudarmstadt.ukp.inception.recommendation.api.recommender.RecommenderContext.Key;
+import de.tudarmstadt.ukp.inception.recommendation.config.RecommenderPropertiesImpl;
+
+public class RecommendationServiceImplPredictionTest
+{
+    private static final Key<String> KEY_LABEL = new Key<>("label");
+    private static final String FAILING_LABEL = "FAIL";
+
+    private @Mock AnnotationSchemaService annoService;
+    private @Mock DocumentService documentService;
+    private @Mock LearningRecordService learningRecordService;
+    private @Mock RecommenderFactoryRegistry recommenderFactoryRegistry;
+    private @Mock RecommendationEngineFactory<Void> factory;
+    private @Mock EntityManager entityManager;
+    private @Mock ApplicationEventPublisher applicationEventPublisher;
+
+    private User user;
+    private Project project;
+    private AnnotationLayer layer;
+    private AnnotationFeature feature;
+    private Map<SourceDocument, Long> casTimestamps;
+    private Set<String> readingThreads;
+    private RecommendationServiceImpl sut;
+    private CasStorageSession casStorageSession;
+
+    @BeforeEach
+    public void setUp() throws Exception
+    {
+        initMocks(this);
+
+        user = new User("user");
+
+        project = new Project();
+        project.setId(1l);
+        project.setName("Test Project");
+
+        layer = new AnnotationLayer(NamedEntity.class.getName(), "Named entity", SPAN_TYPE,
+                project, true, CHARACTERS, null);
+        layer.setId(1l);
+
+        feature = new AnnotationFeature(1l, layer, "value", CAS.TYPE_NAME_STRING);
+
+        casTimestamps = new HashMap<>();
+        readingThreads = ConcurrentHashMap.newKeySet();
+
+        when(annoService.listAnnotationLayer(project)).thenReturn(asList(layer));
+        when(annoService.getFullProjectTypeSystem(project))
+                .thenAnswer(call -> createTypeSystemDescription());
+        doAnswer(call -> {
+            upgradeCas(call.getArgument(0), call.getArgument(1), call.getArgument(2));
+            return null;
+        }).when(annoService).upgradeCas(any(CAS.class), any(CAS.class),
+                any(TypeSystemDescription.class));
+
+        when(documentService.getAnnotationCasTimestamp(any(), anyString()))
+                .thenAnswer(call -> Optional.ofNullable(casTimestamps.get(call.getArgument(0))));
+        when(documentService.readAnnotationCas(any(SourceDocument.class), anyString(),
+                any(CasUpgradeMode.class), any(CasAccessMode.class))).thenAnswer(call -> {
+                    readingThreads.add(Thread.currentThread().getName());
+                    return CasFactory.createText("John lives in London.");
+                });
+
+        doReturn(factory).when(recommenderFactoryRegistry).getFactory(anyString());
+        when(factory.accepts(any(), any())).thenReturn(true);
+        when(factory.build(any())).thenAnswer(call -> new LabelEngine(call.getArgument(0)));
+
+        when(entityManager.find(eq(Recommender.class), any())).thenAnswer(call -> {
+            Long id = call.getArgument(1);
+            return buildRecommender(id);
+        });
+
+        sut = buildService(new RecommenderPropertiesImpl());
+
+        casStorageSession = CasStorageSession.open();
+    }
+
+    @AfterEach
+    public void tearDown()
+    {
+        casStorageSession.close();
+        sut.destroy();
+    }
+
+    @Test
+    public void thatPredictionsForUnchangedDocumentAndModelAreInherited() throws Exception
+    {
+        Recommender recommender = activateRecommender(1l);
+        putContext(recommender, "PER");
+        SourceDocument doc = buildDocument(1l);
+        casTimestamps.put(doc, 100l);
+
+        activate(sut.computePredictions(user, project, asList(doc), asList()));
+        Predictions predictions = sut.computePredictions(user, project, asList(doc), asList());
+
+        assertThat(predictions.getPredictionsByDocument(doc.getName())) //
+                .extracting(AnnotationSuggestion::getLabel) //
+                .containsExactly("PER");
+        assertThat(predictions.hasRunPredictionOnDocument(doc)).isTrue();
+        // The CAS is read only for the first run - the second run inherits the predictions
+        verify(documentService, times(1)).readAnnotationCas(any(SourceDocument.class),
+                anyString(), any(CasUpgradeMode.class), any(CasAccessMode.class));
+    }
+
+    @Test
+    public void thatPredictionsForChangedDocumentAreRecomputed() throws Exception
+    {
+        Recommender recommender = activateRecommender(1l);
+        putContext(recommender, "PER");
+        SourceDocument doc = buildDocument(1l);
+        casTimestamps.put(doc, 100l);
+
+        activate(sut.computePredictions(user, project, asList(doc), asList()));
+        casTimestamps.put(doc, 200l);
+        Predictions predictions = sut.computePredictions(user, project, asList(doc), asList());
+
+        assertThat(predictions.getPredictionsByDocument(doc.getName())) //
+                .extracting(AnnotationSuggestion::getLabel) //
+                .containsExactly("PER");
+        assertThat(predictions.getDocumentCasTimestamp(doc)).contains(200l);
+        verify(documentService, times(2)).readAnnotationCas(any(SourceDocument.class),
+                anyString(), any(CasUpgradeMode.class), any(CasAccessMode.class));
+    }
+
+    @Test
+    public void thatPredictionsForChangedModelAreRecomputed() throws Exception
+    {
+        Recommender recommender = activateRecommender(1l);
+        putContext(recommender, "PER");
+        SourceDocument doc = buildDocument(1l);
+        casTimestamps.put(doc, 100l);
+
+        activate(sut.computePredictions(user, project, asList(doc), asList()));
+        putContext(recommender, "LOC");
+        Predictions predictions = sut.computePredictions(user, project, asList(doc), asList());
+
+        assertThat(predictions.getPredictionsByDocument(doc.getName())) //
+                .extracting(AnnotationSuggestion::getLabel) //
+                .containsExactly("LOC");
+        verify(documentService, times(2)).readAnnotationCas(any(SourceDocument.class),
+                anyString(), any(CasUpgradeMode.class), any(CasAccessMode.class));
+    }
+
+    @Test
+    public void thatPredictionIsRemoteOnlyIfAllActiveRecommendersAreRemote() throws Exception
+    {
+        assertThat(sut.isPredictionRemote(user, project)).isFalse();
+
+        activateRecommender(1l);
+        assertThat(sut.isPredictionRemote(user, project)).isFalse();
+
+        when(factory.isRemote()).thenReturn(true);
+        assertThat(sut.isPredictionRemote(user, project)).isTrue();
+    }
+
+    @Test
+    public void thatParallelPredictionYieldsSameResultAsSequentialPrediction() throws Exception
+    {
+        List<SourceDocument> docs = buildDocuments(4);
+        putContext(activateRecommender(1l), "PER");
+        Predictions sequential = sut.computePredictions(user, project, docs, asList());
+
+        useParallelPrediction(2);
+        putContext(activateRecommender(1l), "PER");
+        // Let the first documents take longest so that the workers complete in reverse order
+        doAnswer(call -> {
+            SourceDocument doc = call.getArgument(0);
+            readingThreads.add(Thread.currentThread().getName());
+            Thread.sleep(50 * (docs.size() - doc.getId()));
+            return CasFactory.createText("John lives in London.");
+        }).when(documentService).readAnnotationCas(any(SourceDocument.class), anyString(),
+                any(CasUpgradeMode.class), any(CasAccessMode.class));
+        Predictions parallel = sut.computePredictions(user, project, docs, asList());
+
+        for (SourceDocument doc : docs) {
+            assertThat(parallel.hasRunPredictionOnDocument(doc)).isTrue();
+            assertThat(suggestions(parallel, doc))
+                    .containsExactlyElementsOf(suggestions(sequential, doc));
+        }
+        assertThat(messages(parallel)) //
+                .filteredOn(message -> !message.startsWith("Predicted ["))
+                .containsExactlyElementsOf(messages(sequential));
+    }
+
+    @Test
+    public void thatParallelPredictionReportsProgress() throws Exception
+    {
+        useParallelPrediction(2);
+        putContext(activateRecommender(1l), "PER");
+        List<SourceDocument> docs = buildDocuments(3);
+
+        Predictions predictions = sut.computePredictions(user, project, docs, asList());
+
+        assertThat(readingThreads).allMatch(name -> name.startsWith("recommender-prediction-"));
+        assertThat(messages(predictions)) //
+                .anyMatch(message -> message
+                        .startsWith("Predicted [3] documents using [2] threads"))
+                .endsWith("Prediction complete");
+        assertThat(messages(predictions)) //
+                .filteredOn(message -> message.equals("Generated [1] predictions")) //
+                .hasSize(docs.size());
+    }
+
+    @Test
+    public void thatFailingRecommenderDoesNotAffectOtherRecommendersInParallelPrediction()
+        throws Exception
+    {
+        useParallelPrediction(2);
+        putContext(activateRecommender(1l), "PER");
+        putContext(activateRecommender(2l), FAILING_LABEL);
+        List<SourceDocument> docs = buildDocuments(3);
+
+        Predictions predictions = sut.computePredictions(user, project, docs, asList());
+
+        for (SourceDocument doc : docs) {
+            assertThat(predictions.hasRunPredictionOnDocument(doc)).isTrue();
+            assertThat(suggestions(predictions, doc)).containsExactly(tuple("recommender1", "PER"));
+        }
+        assertThat(predictions.getLog()) //
+                .filteredOn(message -> message.getLevel() == ERROR) //
+                .extracting(LogMessage::getSource) //
+                .containsExactly("recommender2", "recommender2", "recommender2");
+    }
+
+    @Test
+    public void thatPredictionIsSequentialIfRecommenderDoesNotSupportConcurrency()
+        throws Exception
+    {
+        useParallelPrediction(2);
+        when(factory.isConcurrentPredictionSupported()).thenReturn(false);
+        putContext(activateRecommender(1l), "PER");
+        List<SourceDocument> docs = buildDocuments(3);
+
+        Predictions predictions = sut.computePredictions(user, project, docs, asList());
+
+        assertThat(readingThreads).containsExactly(Thread.currentThread().getName());
+        assertThat(messages(predictions)).noneMatch(message -> message.startsWith("Predicted ["));
+        for (SourceDocument doc : docs) {
+            assertThat(suggestions(predictions, doc)).containsExactly(tuple("recommender1", "PER"));
+        }
+    }
+
+    private void useParallelPrediction(int aThreads)
+    {
+        sut.destroy();
+
+        RecommenderPropertiesImpl properties = new RecommenderPropertiesImpl();
+        properties.setPredictionThreads(aThreads);
+        sut = buildService(properties);
+
+        when(factory.isConcurrentPredictionSupported()).thenReturn(true);
+    }
+
+    private RecommendationServiceImpl buildService(RecommenderPropertiesImpl aProperties)
+    {
+        return new RecommendationServiceImpl(null, null, recommenderFactoryRegistry, null,
+                annoService, documentService, learningRecordService, null, entityManager,
+                applicationEventPublisher, aProperties);
+    }
+
+    private static List<Tuple> suggestions(Predictions aPredictions, SourceDocument aDocument)
+    {
+        return aPredictions.getPredictionsByDocument(aDocument.getName()).stream() //
+                .map(s -> tuple(s.getRecommenderName(), s.getLabel())) //
+                .collect(toList());
+    }
+
+    private static List<String> messages(Predictions aPredictions)
+    {
+        return aPredictions.getLog().stream() //
+                .map(LogMessage::getMessage) //
+                .collect(toList());
+    }
+
+    private void activate(Predictions aPredictions)
+    {
+        sut.putIncomingPredictions(user, project, aPredictions);
+        sut.switchPredictions(user, project);
+    }
+
+    private Recommender activateRecommender(long aId)
+    {
+        Recommender recommender = buildRecommender(aId);
+        List<Recommender> recommenders = new ArrayList<>();
+        sut.getEvaluatedRecommenders(user, layer).forEach(r -> recommenders.add(r.getRecommender()));
+        recommenders.add(recommender);
+        sut.setEvaluatedRecommenders(user, layer, recommenders.stream() //
+                .map(EvaluatedRecommender::makeActiveWithoutEvaluation) //
+                .collect(toList()));
+        return recommender;
+    }
+
+    private void putContext(Recommender aRecommender, String aLabel)
+    {
+        RecommenderContext ctx = new RecommenderContext();
+        ctx.put(KEY_LABEL, aLabel);
+        ctx.close();
+        sut.putContext(user, aRecommender, ctx);
+    }
+
+    private Recommender buildRecommender(long aId)
+    {
+        Recommender recommender = new Recommender("recommender" + aId, layer);
+        recommender.setId(aId);
+        recommender.setTool("label");
+        recommender.setFeature(feature);
+        recommender.setEnabled(true);
+        return recommender;
+    }
+
+    private List<SourceDocument> buildDocuments(int aCount)
+    {
+        List<SourceDocument> docs = new ArrayList<>();
+        for (long id = 1; id <= aCount; id++) {
+            SourceDocument doc = buildDocument(id);
+            casTimestamps.put(doc, 100l);
+            docs.add(doc);
+        }
+        return docs;
+    }
+
+    private SourceDocument buildDocument(long aId)
+    {
+        SourceDocument doc = new SourceDocument("doc" + aId, project, "text");
+        doc.setId(aId);
+        return doc;
+    }
+
+    /**
+     * Loads the contents of the source CAS into the target CAS using the given type system like
+     * {@code AnnotationSchemaService.upgradeCas} does.
+     */
+    private static void upgradeCas(CAS aSourceCas, CAS aTargetCas, TypeSystemDescription aTsd)
+        throws Exception
+    {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        serializeWithCompression(getRealCas(aSourceCas), buffer, aSourceCas.getTypeSystem());
+
+        CASImpl target = (CASImpl) getRealCas(aTargetCas);
+        deserializeCASComplete(serializeCASComplete((CASImpl) CasFactory.createCas(aTsd)),
+                target);
+        CasIOUtils.load(new ByteArrayInputStream(buffer.toByteArray()), target,
+                aSourceCas.getTypeSystem());
+    }
+
+    /**
+     * Predicts the label stored in the context on the first word of the document.
+     */
+    private static class LabelEngine
+        extends RecommendationEngine
+    {
+        public LabelEngine(Recommender aRecommender)
+        {
+            super(aRecommender);
+        }
+
+        @Override
+        public void train(RecommenderContext aContext, List<CAS> aCasses)
+        {
+            // Nothing to do
+        }
+
+        @Override
+        public void predict(RecommenderContext aContext, CAS aCas) throws RecommendationException
+        {
+            String label = aContext.get(KEY_LABEL).orElseThrow(
+                    () -> new RecommendationException("No label in context"));
+
+            if (FAILING_LABEL.equals(label)) {
+                throw new RecommendationException("Prediction failed");
+            }
+
+            AnnotationFS annotation = aCas.createAnnotation(getPredictedType(aCas), 0, 4);
+            annotation.setStringValue(getPredictedFeature(aCas), label);
+            annotation.setDoubleValue(getScoreFeature(aCas), 1.0);
+            annotation.setBooleanValue(getIsPredictionFeature(aCas), true);
+            aCas.addFsToIndexes(annotation);
+        }
+
+        @Override
+        public EvaluationResult evaluate(List<CAS> aCasses, DataSplitter aDataSplitter)
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean isReadyForPrediction(RecommenderContext aContext)
+        {
+            return aContext.get(KEY_LABEL).isPresent();
+        }
+
+        @Override
+        public int estimateSampleCount(List<CAS> aCasses)
+        {
+            return -1;
+        }
+    }
+}
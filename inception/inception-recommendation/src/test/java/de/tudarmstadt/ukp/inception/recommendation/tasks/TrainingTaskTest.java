@@ -0,0 +1,211 @@
+/*
+ * Licensed to the Technische Universität Darmstadt under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The Technische Universität Darmstadt
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.recommendation.tasks;
+
+import static de.tudarmstadt.ukp.clarin.webanno.api.WebAnnoConst.SPAN_TYPE;
+import static de.tudarmstadt.ukp.clarin.webanno.model.AnchoringMode.CHARACTERS;
+import static de.tudarmstadt.ukp.inception.recommendation.api.model.EvaluatedRecommender.makeActiveWithoutEvaluation;
+import static de.tudarmstadt.ukp.inception.recommendation.api.recommender.RecommendationEngineCapability.TRAINING_NOT_SUPPORTED;
+import static de.tudarmstadt.ukp.inception.recommendation.api.recommender.RecommendationEngineCapability.TRAINING_SUPPORTED;
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+import org.apache.uima.cas.CAS;
+import org.apache.uima.fit.factory.JCasFactory;
+import org.apache.uima.jcas.JCas;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.springframework.context.ApplicationEventPublisher;
+
+import de.tudarmstadt.ukp.clarin.webanno.api.AnnotationSchemaService;
+import de.tudarmstadt.ukp.clarin.webanno.api.CasUpgradeMode;
+import de.tudarmstadt.ukp.clarin.webanno.api.DocumentService;
+import de.tudarmstadt.ukp.clarin.webanno.api.casstorage.CasAccessMode;
+import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationFeature;
+import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationLayer;
+import de.tudarmstadt.ukp.clarin.webanno.model.Project;
+import de.tudarmstadt.ukp.clarin.webanno.model.SourceDocument;
+import de.tudarmstadt.ukp.clarin.webanno.security.model.User;
+import de.tudarmstadt.ukp.dkpro.core.api.ner.type.NamedEntity;
+import de.tudarmstadt.ukp.inception.recommendation.api.RecommendationService;
+import de.tudarmstadt.ukp.inception.recommendation.api.model.Recommender;
+import de.tudarmstadt.ukp.inception.recommendation.api.recommender.RecommendationEngine;
+import de.tudarmstadt.ukp.inception.recommendation.api.recommender.RecommendationEngineFactory;
+import de.tudarmstadt.ukp.inception.recommendation.api.recommender.RecommenderContext;
+import de.tudarmstadt.ukp.inception.scheduling.SchedulingService;
+
+public class TrainingTaskTest
+{
+    private static final User USER = new User("user");
+    private static final Project PROJECT = buildProject();
+    private static final SourceDocument DOCUMENT = buildDocument();
+
+    private @Mock AnnotationSchemaService annoService;
+    private @Mock DocumentService documentService;
+    private @Mock RecommendationService recommendationService;
+    private @Mock SchedulingService schedulingService;
+    private @Mock ApplicationEventPublisher appEventPublisher;
+    private @Mock RecommendationEngineFactory<Void> factory;
+    private @Mock RecommendationEngine engine;
+
+    private @InjectMocks TrainingTask sut = new TrainingTask(USER, PROJECT, "test", DOCUMENT);
+
+    private AnnotationLayer layer;
+    private Recommender recommender;
+    private Map<Recommender, RecommenderContext> contexts;
+    private long casTimestamp;
+
+    @BeforeEach
+    public void setUp() throws Exception
+    {
+        initMocks(this);
+
+        layer = new AnnotationLayer(NamedEntity.class.getName(), "Named entity", SPAN_TYPE,
+                PROJECT, true, CHARACTERS, null);
+        layer.setId(1l);
+
+        recommender = new Recommender("recommender", layer);
+        recommender.setId(1l);
+        recommender.setTool("tool");
+        recommender.setFeature(new AnnotationFeature(1l, layer, "value", CAS.TYPE_NAME_STRING));
+        recommender.setEnabled(true);
+
+        contexts = new HashMap<>();
+        casTimestamp = 100;
+
+        when(annoService.listAnnotationLayer(PROJECT)).thenReturn(asList(layer));
+
+        Map<SourceDocument, Object> documents = new HashMap<>();
+        documents.put(DOCUMENT, null);
+        doReturn(documents).when(documentService).listAllDocuments(PROJECT, USER);
+        when(documentService.getAnnotationCasTimestamp(DOCUMENT, USER.getUsername()))
+                .thenAnswer(call -> Optional.of(casTimestamp));
+        when(documentService.readAnnotationCas(any(SourceDocument.class), anyString(),
+                any(CasUpgradeMode.class), any(CasAccessMode.class)))
+                        .thenAnswer(call -> buildTrainingCas());
+
+        when(recommendationService.getActiveRecommenders(USER, layer))
+                .thenReturn(asList(makeActiveWithoutEvaluation(recommender)));
+        when(recommendationService.getRecommender(anyLong())).thenReturn(recommender);
+        doReturn(Optional.of(factory)).when(recommendationService).getRecommenderFactory(any());
+        when(recommendationService.getContext(USER, recommender))
+                .thenAnswer(call -> Optional.ofNullable(contexts.get(recommender)));
+        doAnswer(call -> contexts.put(call.getArgument(1), call.getArgument(2)))
+                .when(recommendationService).putContext(any(), any(), any());
+
+        when(factory.accepts(any(), any())).thenReturn(true);
+        when(factory.build(any())).thenReturn(engine);
+
+        when(engine.getTrainingCapability()).thenReturn(TRAINING_SUPPORTED);
+        when(engine.newContext(any())).thenAnswer(call -> new RecommenderContext());
+        when(engine.isReadyForPrediction(any())).thenReturn(true);
+    }
+
+    @Test
+    public void thatUnchangedTrainingDataKeepsContext() throws Exception
+    {
+        sut.execute();
+        RecommenderContext ctx = contexts.get(recommender);
+
+        sut.execute();
+
+        assertThat(contexts.get(recommender)).isSameAs(ctx);
+        verify(engine, times(1)).train(any(), any());
+        verify(schedulingService, times(2)).enqueue(any(PredictionTask.class));
+    }
+
+    @Test
+    public void thatChangedTrainingDataCreatesNewContext() throws Exception
+    {
+        sut.execute();
+        RecommenderContext ctx = contexts.get(recommender);
+
+        casTimestamp = 200;
+        sut.execute();
+
+        assertThat(contexts.get(recommender).getId()).isNotEqualTo(ctx.getId());
+        verify(engine, times(2)).train(any(), any());
+    }
+
+    @Test
+    public void thatChangedConfigurationCreatesNewContext() throws Exception
+    {
+        sut.execute();
+        RecommenderContext ctx = contexts.get(recommender);
+
+        recommender.setThreshold(0.5);
+        sut.execute();
+
+        assertThat(contexts.get(recommender).getId()).isNotEqualTo(ctx.getId());
+        verify(engine, times(2)).train(any(), any());
+    }
+
+    @Test
+    public void thatNonTrainableEngineKeepsContext() throws Exception
+    {
+        when(engine.getTrainingCapability()).thenReturn(TRAINING_NOT_SUPPORTED);
+
+        sut.execute();
+        RecommenderContext ctx = contexts.get(recommender);
+
+        casTimestamp = 200;
+        sut.execute();
+
+        assertThat(contexts.get(recommender)).isSameAs(ctx);
+        verify(engine, times(1)).newContext(any());
+    }
+
+    private static CAS buildTrainingCas() throws Exception
+    {
+        JCas jcas = JCasFactory.createText("John lives in London.");
+        NamedEntity ne = new NamedEntity(jcas, 0, 4);
+        ne.setValue("PER");
+        ne.addToIndexes();
+        return jcas.getCas();
+    }
+
+    private static Project buildProject()
+    {
+        Project project = new Project();
+        project.setId(1l);
+        project.setName("Test Project");
+        return project;
+    }
+
+    private static SourceDocument buildDocument()
+    {
+        SourceDocument doc = new SourceDocument("doc", PROJECT, "text");
+        doc.setId(1l);
+        return doc;
+    }
+}
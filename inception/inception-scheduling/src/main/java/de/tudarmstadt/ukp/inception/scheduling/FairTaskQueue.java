@@ -0,0 +1,256 @@
+/*
+ * Licensed to the Technische Universität Darmstadt under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The Technische Universität Darmstadt 
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.
+ *  
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.scheduling;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.function.Predicate;
+
+import de.tudarmstadt.ukp.clarin.webanno.model.Project;
+import de.tudarmstadt.ukp.clarin.webanno.security.model.User;
+
+/**
+ * Queue of tasks waiting to be started. Tasks are taken from the queue by {@link TaskPriority
+ * priority}. Within a priority, the queue rotates round-robin over the users and within each user
+ * over the projects, so that a user or project with many pending tasks cannot starve the others.
+ * Tasks of the same user and project are taken in the order in which they were added. Tasks
+ * without a user or project share a lane of their own. The number of tasks in the queue is bounded.
+ * When the queue is full, tasks of a lower priority make room for tasks of a higher priority.
+ * The queue keeps track of how many tasks of each {@link TaskKind kind} it contains, so a kind for
+ * which no worker is available can be skipped without testing its tasks. The kind of a task must
+ * not change while it is queued. Not thread-safe.
+ */
+class FairTaskQueue
+{
+    private final int capacity;
+    private final Map<TaskPriority, Map<String, Map<Long, Map<Integer, Task>>>> lanes;
+    private final Map<TaskKind, Integer> kindCounts = new EnumMap<>(TaskKind.class);
+    private final TaskIndex index = new TaskIndex();
+
+    public FairTaskQueue(int aCapacity)
+    {
+        capacity = aCapacity;
+        lanes = new EnumMap<>(TaskPriority.class);
+        for (TaskPriority priority : TaskPriority.values()) {
+            lanes.put(priority, new LinkedHashMap<>());
+        }
+    }
+
+    /**
+     * Adds the given task to the queue. If the queue is full, the newest task of the lowest
+     * priority in the queue is evicted to make room, provided that this priority is lower than the
+     * priority of the given task. Otherwise, the given task is not added.
+     * 
+     * @param aTask
+     *            the task to add.
+     * @return the task which has been evicted or, if the queue is full, the given task. If the
+     *         task was added without evicting another one, {@code null}.
+     */
+    public Task offer(Task aTask)
+    {
+        Task dropped = null;
+        if (index.size() >= capacity) {
+            dropped = findEvictionCandidate(aTask.getPriority());
+            if (dropped == null) {
+                return aTask;
+            }
+            remove(dropped);
+        }
+
+        lanes.get(aTask.getPriority()) //
+                .computeIfAbsent(getUserKey(aTask), k -> new LinkedHashMap<>()) //
+                .computeIfAbsent(getProjectKey(aTask), k -> new LinkedHashMap<>()) //
+                .put(aTask.getId(), aTask);
+        index.add(aTask);
+        kindCounts.merge(aTask.getKind(), 1, Integer::sum);
+        return dropped;
+    }
+
+    private Task findEvictionCandidate(TaskPriority aPriority)
+    {
+        TaskPriority[] priorities = TaskPriority.values();
+        for (int i = priorities.length - 1; i > aPriority.ordinal(); i--) {
+            Task newest = null;
+            for (Map<Long, Map<Integer, Task>> projectLanes : lanes.get(priorities[i]).values()) {
+                for (Map<Integer, Task> tasks : projectLanes.values()) {
+                    for (Task task : tasks.values()) {
+                        if (newest == null || task.getId() > newest.getId()) {
+                            newest = task;
+                        }
+                    }
+                }
+            }
+
+            if (newest != null) {
+                return newest;
+            }
+        }
+
+        return null;
+    }
+
+    public boolean remove(Task aTask)
+    {
+        if (!index.remove(aTask)) {
+            return false;
+        }
+
+        kindCounts.computeIfPresent(aTask.getKind(), (kind, count) -> count > 1 ? count - 1 : null);
+
+        Map<String, Map<Long, Map<Integer, Task>>> userLanes = lanes.get(aTask.getPriority());
+        Map<Long, Map<Integer, Task>> projectLanes = userLanes.get(getUserKey(aTask));
+        Map<Integer, Task> tasks = projectLanes.get(getProjectKey(aTask));
+        tasks.remove(aTask.getId());
+        if (tasks.isEmpty()) {
+            projectLanes.remove(getProjectKey(aTask));
+        }
+        if (projectLanes.isEmpty()) {
+            userLanes.remove(getUserKey(aTask));
+        }
+
+        return true;
+    }
+
+    public List<Task> removeIf(Predicate<Task> aPredicate)
+    {
+        List<Task> removed = new ArrayList<>();
+        for (Task task : getTasks()) {
+            if (aPredicate.test(task)) {
+                remove(task);
+                removed.add(task);
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Removes and returns the next task accepted by the given filters. The user and project lanes
+     * from which the task is taken are moved to the end of the rotation.
+     * 
+     * @param aKindFilter
+     *            filter selecting the kinds of tasks which may be started now, e.g. because there
+     *            is a free worker for them. Tasks of other kinds are not passed to the task filter.
+     * @param aFilter
+     *            filter selecting tasks which may be started now.
+     * @return the task or {@code null} if there is no such task.
+     */
+    public Task poll(Predicate<TaskKind> aKindFilter, Predicate<Task> aFilter)
+    {
+        Set<TaskKind> kinds = EnumSet.noneOf(TaskKind.class);
+        for (TaskKind kind : kindCounts.keySet()) {
+            if (aKindFilter.test(kind)) {
+                kinds.add(kind);
+            }
+        }
+
+        if (kinds.isEmpty()) {
+            return null;
+        }
+
+        for (Map<String, Map<Long, Map<Integer, Task>>> userLanes : lanes.values()) {
+            for (Entry<String, Map<Long, Map<Integer, Task>>> userLane : userLanes.entrySet()) {
+                for (Map<Integer, Task> tasks : userLane.getValue().values()) {
+                    for (Task task : tasks.values()) {
+                        if (kinds.contains(task.getKind()) && aFilter.test(task)) {
+                            remove(task);
+                            rotate(userLanes, userLane.getKey(), getProjectKey(task));
+                            return task;
+                        }
+                    }
+                }
+            }
+        }
+
+        return null;
+    }
+
+    private void rotate(Map<String, Map<Long, Map<Integer, Task>>> aUserLanes, String aUserKey,
+            Long aProjectKey)
+    {
+        Map<Long, Map<Integer, Task>> projectLanes = aUserLanes.remove(aUserKey);
+        if (projectLanes == null) {
+            return;
+        }
+
+        Map<Integer, Task> tasks = projectLanes.remove(aProjectKey);
+        if (tasks != null) {
+            projectLanes.put(aProjectKey, tasks);
+        }
+        aUserLanes.put(aUserKey, projectLanes);
+    }
+
+    /**
+     * @return all tasks which could match the given task.
+     * @see TaskIndex#getCandidates(Task)
+     */
+    public Set<Task> getCandidates(Task aTask)
+    {
+        return index.getCandidates(aTask);
+    }
+
+    /**
+     * @return the queued tasks in the order of their priority.
+     */
+    public List<Task> getTasks()
+    {
+        List<Task> result = new ArrayList<>(index.size());
+        for (Map<String, Map<Long, Map<Integer, Task>>> userLanes : lanes.values()) {
+            for (Map<Long, Map<Integer, Task>> projectLanes : userLanes.values()) {
+                for (Map<Integer, Task> tasks : projectLanes.values()) {
+                    result.addAll(tasks.values());
+                }
+            }
+        }
+        return result;
+    }
+
+    public int size()
+    {
+        return index.size();
+    }
+
+    public boolean isEmpty()
+    {
+        return index.size() == 0;
+    }
+
+    public void clear()
+    {
+        lanes.values().forEach(Map::clear);
+        kindCounts.clear();
+        index.clear();
+    }
+
+    private static String getUserKey(Task aTask)
+    {
+        User user = aTask.getUser();
+        return user != null ? user.getUsername() : null;
+    }
+
+    private static Long getProjectKey(Task aTask)
+    {
+        Project project = aTask.getProject();
+        return project != null ? project.getId() : null;
+    }
+}
@@ -18,9 +18,12 @@
 package de.tudarmstadt.ukp.inception.scheduling;
 
 import static java.lang.Thread.MIN_PRIORITY;
+import static java.lang.Thread.NORM_PRIORITY;
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
 
 import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.function.BiConsumer;
@@ -37,13 +40,50 @@ public class InspectableThreadPoolExecutor
             BiConsumer<Thread, Runnable> aBeforeExecuteCallback,
             BiConsumer<Runnable, Throwable> aAfterExecuteCallback)
     {
-        super(aNumberOfThreads, aNumberOfThreads, 0L, MILLISECONDS,
-                new ArrayBlockingQueue<>(queueSize, true), buildThreadFactory());
+        this(aNumberOfThreads, 0L, new ArrayBlockingQueue<>(queueSize, true),
+                buildThreadFactory("inception-worker-%d", MIN_PRIORITY), aBeforeExecuteCallback,
+                aAfterExecuteCallback);
+    }
+
+    private InspectableThreadPoolExecutor(int aNumberOfThreads, long aKeepAliveMillis,
+            BlockingQueue<Runnable> aQueue, ThreadFactory aThreadFactory,
+            BiConsumer<Thread, Runnable> aBeforeExecuteCallback,
+            BiConsumer<Runnable, Throwable> aAfterExecuteCallback)
+    {
+        super(aNumberOfThreads, aNumberOfThreads, aKeepAliveMillis, MILLISECONDS, aQueue,
+                aThreadFactory);
 
         beforeExecuteCallback = aBeforeExecuteCallback;
         afterExecuteCallback = aAfterExecuteCallback;
     }
 
+    /**
+     * Creates an executor which starts threads on demand up to the given maximum and terminates
+     * them again once they have been idle for the given time. The threads run at normal priority
+     * since they are expected to spend most of their time waiting.
+     * 
+     * @param aMaxThreads
+     *            the maximum number of threads.
+     * @param aKeepAliveMillis
+     *            the time after which idle threads are terminated.
+     * @param aBeforeExecuteCallback
+     *            callback invoked before a task is run.
+     * @param aAfterExecuteCallback
+     *            callback invoked after a task has run.
+     * @return the executor.
+     */
+    public static InspectableThreadPoolExecutor elastic(int aMaxThreads, long aKeepAliveMillis,
+            BiConsumer<Thread, Runnable> aBeforeExecuteCallback,
+            BiConsumer<Runnable, Throwable> aAfterExecuteCallback)
+    {
+        InspectableThreadPoolExecutor executor = new InspectableThreadPoolExecutor(aMaxThreads,
+                aKeepAliveMillis, new LinkedBlockingQueue<>(),
+                buildThreadFactory("inception-io-worker-%d", NORM_PRIORITY),
+                aBeforeExecuteCallback, aAfterExecuteCallback);
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
     @Override
     protected void beforeExecute(Thread aThread, Runnable aRunnable)
     {
@@ -60,12 +100,12 @@ public class InspectableThreadPoolExecutor
         afterExecuteCallback.accept(aRunnable, aThrowable);
     }
 
-    private static ThreadFactory buildThreadFactory()
+    private static ThreadFactory buildThreadFactory(String aNamingPattern, int aPriority)
     {
         return new BasicThreadFactory.Builder() //
                 .daemon(true) //
-                .namingPattern("inception-worker-%d") //
-                .priority(MIN_PRIORITY) //
+                .namingPattern(aNamingPattern) //
+                .priority(aPriority) //
                 .build();
     }
 }
@@ -17,6 +17,8 @@
  */
 package de.tudarmstadt.ukp.inception.scheduling;
 
+import java.util.Collection;
+
 public interface MatchableTask
 {
     /**
@@ -28,4 +30,28 @@ public interface MatchableTask
      * @return whether the given task matches this one
      */
     MatchResult matches(Task aTask);
+
+    /**
+     * Keys under which the scheduler indexes this task. The scheduler only calls
+     * {@link #matches(Task)} on tasks which have been indexed under at least one of the
+     * {@link #getMatchCandidateKeys() candidate keys} of the incoming task. Keys must implement
+     * {@link Object#equals} and {@link Object#hashCode}.
+     * 
+     * @return the index keys or {@code null} if the task should be matched against every other
+     *         task.
+     */
+    default Collection<?> getMatchKeys()
+    {
+        return null;
+    }
+
+    /**
+     * @return the keys to look up potentially matching tasks or {@code null} if the task should be
+     *         matched against every other task. By default, these are the same as the
+     *         {@link #getMatchKeys() match keys}.
+     */
+    default Collection<?> getMatchCandidateKeys()
+    {
+        return getMatchKeys();
+    }
 }
@@ -66,4 +66,11 @@ public interface SchedulingService
     void stopAllTasksForUser(String aUserName);
 
     void stopAllTasksMatching(Predicate<Task> aPredicate);
+
+    /**
+     * @param aKind
+     *            the kind of task.
+     * @return execution statistics for the tasks of the given kind.
+     */
+    TaskExecutionStats getExecutionStats(TaskKind aKind);
 }
@@ -20,13 +20,17 @@ package de.tudarmstadt.ukp.inception.scheduling;
 import static de.tudarmstadt.ukp.inception.scheduling.MatchResult.DISCARD_OR_QUEUE_THIS;
 import static de.tudarmstadt.ukp.inception.scheduling.MatchResult.NO_MATCH;
 import static de.tudarmstadt.ukp.inception.scheduling.MatchResult.UNQUEUE_EXISTING_AND_QUEUE_THIS;
+import static de.tudarmstadt.ukp.inception.scheduling.TaskKind.IO_BOUND;
+import static de.tudarmstadt.ukp.inception.scheduling.config.IoBoundTaskMode.ELASTIC;
+import static de.tudarmstadt.ukp.inception.scheduling.config.IoBoundTaskMode.SHARED;
+import static java.lang.System.currentTimeMillis;
 import static java.util.concurrent.TimeUnit.SECONDS;
 
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.Collections;
-import java.util.Iterator;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ThreadPoolExecutor;
@@ -39,6 +43,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.config.AutowireCapableBeanFactory;
 import org.springframework.context.ApplicationContext;
 
+import de.tudarmstadt.ukp.inception.scheduling.config.IoBoundTaskMode;
 import de.tudarmstadt.ukp.inception.scheduling.config.SchedulingProperties;
 import de.tudarmstadt.ukp.inception.scheduling.config.SchedulingServiceAutoConfiguration;
 
@@ -47,41 +52,85 @@ import de.tudarmstadt.ukp.inception.scheduling.config.SchedulingServiceAutoConfi
  * This class is exposed as a Spring Component via
  * {@link SchedulingServiceAutoConfiguration#schedulingService}.
  * </p>
+ * <p>
+ * Tasks are held in a {@link FairTaskQueue} until a worker thread is available. Only then the next
+ * task is picked by priority and round-robin over users and projects and handed to the executor.
+ * Enqueued, scheduled and running tasks are indexed by their match keys, so checking for matching
+ * tasks does not require scanning all tasks.
+ * </p>
+ * <p>
+ * In the {@link IoBoundTaskMode#ELASTIC elastic} mode, tasks of the kind {@link TaskKind#IO_BOUND}
+ * run on a separate pool which grows on demand, so tasks waiting for remote services or storage do
+ * not block the bounded pool used by CPU-intensive tasks such as training.
+ * </p>
  */
 public class SchedulingServiceImpl
     implements SchedulingService, DisposableBean
 {
     private static final Logger log = LoggerFactory.getLogger(SchedulingService.class);
 
+    private static final long IO_THREAD_KEEP_ALIVE_MILLIS = 60_000;
+
     private final ApplicationContext applicationContext;
     private final ThreadPoolExecutor executor;
+    private final ThreadPoolExecutor ioExecutor;
     private final ScheduledExecutorService watchdog;
+    private final int numberOfThreads;
+    private final int maxIoBoundThreads;
+    private final Map<TaskKind, TaskExecutionStats> executionStats;
+
+    private int scheduledAndRunningIoCount;
 
     private final List<Task> runningTasks;
-    private final List<Task> enqueuedTasks;
+    private final FairTaskQueue enqueuedTasks;
+    private final TaskIndex scheduledAndRunningTasks;
 
     @Autowired
     public SchedulingServiceImpl(ApplicationContext aApplicationContext,
             SchedulingProperties aConfig)
     {
         applicationContext = aApplicationContext;
-        executor = new InspectableThreadPoolExecutor(aConfig.getNumberOfThreads(),
-                aConfig.getQueueSize(), this::beforeExecute, this::afterExecute);
+        numberOfThreads = aConfig.getNumberOfThreads();
+        executor = new InspectableThreadPoolExecutor(numberOfThreads, aConfig.getQueueSize(),
+                this::beforeExecute, this::afterExecute);
+        if (aConfig.getIoBoundTaskMode() == ELASTIC) {
+            maxIoBoundThreads = aConfig.getMaxIoBoundThreads();
+            ioExecutor = InspectableThreadPoolExecutor.elastic(maxIoBoundThreads,
+                    IO_THREAD_KEEP_ALIVE_MILLIS, this::beforeExecute, this::afterExecute);
+        }
+        else {
+            maxIoBoundThreads = 0;
+            ioExecutor = null;
+        }
+        executionStats = new EnumMap<>(TaskKind.class);
+        for (TaskKind kind : TaskKind.values()) {
+            executionStats.put(kind, new TaskExecutionStats());
+        }
         runningTasks = Collections.synchronizedList(new ArrayList<>());
-        enqueuedTasks = Collections.synchronizedList(new ArrayList<>());
+        enqueuedTasks = new FairTaskQueue(aConfig.getQueueSize());
+        scheduledAndRunningTasks = new TaskIndex();
         watchdog = Executors.newScheduledThreadPool(1);
         watchdog.scheduleAtFixedRate(this::scheduleEligibleTasks, 5, 5, SECONDS);
     }
 
     private void beforeExecute(Thread aThread, Runnable aRunnable)
     {
-        runningTasks.add((Task) aRunnable);
+        Task task = (Task) aRunnable;
+        task.startTime = currentTimeMillis();
+        executionStats.get(task.getKind()).recordStart(task.startTime - task.enqueueTime);
+        runningTasks.add(task);
         log.debug("Starting task [{}]", aRunnable);
     }
 
     private void afterExecute(Runnable aRunnable, Throwable aThrowable)
     {
+        Task task = (Task) aRunnable;
+        executionStats.get(task.getKind()).recordEnd(currentTimeMillis() - task.startTime,
+                aThrowable != null);
         runningTasks.remove(aRunnable);
+        synchronized (this) {
+            unschedule(task);
+        }
         log.debug("Completed task [{}]", aRunnable);
         scheduleEligibleTasks();
     }
@@ -90,11 +139,11 @@ public class SchedulingServiceImpl
      * @return tasks which have not been handed to the executor yet.
      */
     @Override
-    public List<Task> getEnqueuedTasks()
+    public synchronized List<Task> getEnqueuedTasks()
     {
         // We return copy here, as else the list the receiver sees might be updated
         // when new tasks are running or existing ones stopped.
-        return new ArrayList<>(enqueuedTasks);
+        return enqueuedTasks.getTasks();
     }
 
     /**
@@ -105,6 +154,9 @@ public class SchedulingServiceImpl
     {
         List<Task> result = new ArrayList<>();
         executor.getQueue().forEach(r -> result.add((Task) r));
+        if (ioExecutor != null) {
+            ioExecutor.getQueue().forEach(r -> result.add((Task) r));
+        }
         return result;
     }
 
@@ -147,7 +199,11 @@ public class SchedulingServiceImpl
      * <p>
      * The separation between enqueued and scheduled tasks is necessary to allow the ability to run
      * multiple tasks in parallel while at the same time avoiding running equivalent tasks in
-     * parallel.
+     * parallel. Tasks are only scheduled when a worker thread is available, so the order in which
+     * they are started is decided by their {@link Task#getPriority() priority} and by rotating
+     * over the users and projects with pending tasks. If the queue already contains the
+     * configured maximum number of tasks, the newest task of the lowest priority is discarded -
+     * which is the given task itself unless the queue contains tasks of a lower priority.
      * 
      * @param aTask
      *            the task to be enqueued.
@@ -155,8 +211,10 @@ public class SchedulingServiceImpl
     @Override
     public synchronized void enqueue(Task aTask)
     {
+        List<Task> candidates = new ArrayList<>(enqueuedTasks.getCandidates(aTask));
+
         // Check if the incoming task should be discarded
-        for (Task enqueuedTask : enqueuedTasks) {
+        for (Task enqueuedTask : candidates) {
             if (matchTask(aTask, enqueuedTask) == DISCARD_OR_QUEUE_THIS) {
                 log.debug("Matching task already queued - keeping existing: [{}] and discarding "
                         + "incoming [{}]", enqueuedTask, aTask);
@@ -166,37 +224,33 @@ public class SchedulingServiceImpl
 
         // Check if any existing tasks should be replaced with the new incoming task (i.e. the
         // incoming task supersedes them).
-        List<Task> tasksToUnqueue = new ArrayList<>();
-        for (Task enqueuedTask : enqueuedTasks) {
+        for (Task enqueuedTask : candidates) {
             if (matchTask(aTask, enqueuedTask) == UNQUEUE_EXISTING_AND_QUEUE_THIS) {
-                tasksToUnqueue.add(enqueuedTask);
+                enqueuedTasks.remove(enqueuedTask);
                 log.debug("Matching task already queued - unqueuing exsting: [{}] in favor of "
                         + "incoming [{}]", enqueuedTask, aTask);
             }
         }
-        enqueuedTasks.removeAll(tasksToUnqueue);
 
-        if (containsMatchingTask(getScheduledTasks(), aTask)) {
-            log.debug("Matching task already scheduled - adding to queue: [{}]", aTask);
-            enqueuedTasks.add(aTask);
-            return;
+        if (log.isDebugEnabled() && hasMatchingScheduledOrRunningTask(aTask)) {
+            log.debug("Matching task already scheduled or running - adding to queue: [{}]",
+                    aTask);
         }
 
-        if (containsMatchingTask(getRunningTasks(), aTask)) {
-            log.debug("Matching task already running - adding to queue: [{}]", aTask);
-            enqueuedTasks.add(aTask);
+        aTask.enqueueTime = currentTimeMillis();
+        Task dropped = enqueuedTasks.offer(aTask);
+        if (dropped == aTask) {
+            log.warn("Task queue is full ({} tasks) - discarding incoming [{}]",
+                    enqueuedTasks.size(), aTask);
             return;
         }
 
-        if (!aTask.isReadyToStart()) {
-            log.debug("Task not yet ready to start - adding to queue: [{}]", aTask);
-            enqueuedTasks.add(aTask);
-            return;
+        if (dropped != null) {
+            log.warn("Task queue is full ({} tasks) - discarding queued [{}] in favor of "
+                    + "incoming [{}] of higher priority", enqueuedTasks.size(), dropped, aTask);
         }
 
-        schedule(aTask);
-
-        logState();
+        scheduleEligibleTasks();
     }
 
     private MatchResult matchTask(Task aTask, Task aEnqueueTask)
@@ -208,13 +262,15 @@ public class SchedulingServiceImpl
         return aTask.equals(aEnqueueTask) ? UNQUEUE_EXISTING_AND_QUEUE_THIS : NO_MATCH;
     }
 
-    private boolean containsMatchingTask(Collection<Task> aTasks, Task aTask)
+    private boolean hasMatchingScheduledOrRunningTask(Task aTask)
     {
-        if (aTask instanceof MatchableTask) {
-            return aTasks.stream().anyMatch(t -> ((MatchableTask) aTask).matches(t) != NO_MATCH);
-        }
+        return scheduledAndRunningTasks.getCandidates(aTask).stream()
+                .anyMatch(t -> matchTask(aTask, t) != NO_MATCH);
+    }
 
-        return aTasks.contains(aTask);
+    private boolean isEligible(Task aTask)
+    {
+        return aTask.isReadyToStart() && !hasMatchingScheduledOrRunningTask(aTask);
     }
 
     /**
@@ -232,19 +288,54 @@ public class SchedulingServiceImpl
         factory.autowireBean(aTask);
         factory.initializeBean(aTask, "transientTask");
 
-        executor.execute(aTask);
+        scheduledAndRunningTasks.add(aTask);
+        if (isRunOnIoExecutor(aTask.getKind())) {
+            scheduledAndRunningIoCount++;
+            ioExecutor.execute(aTask);
+        }
+        else {
+            executor.execute(aTask);
+        }
+    }
+
+    private void unschedule(Task aTask)
+    {
+        if (!scheduledAndRunningTasks.remove(aTask)) {
+            return;
+        }
+
+        if (isRunOnIoExecutor(aTask.getKind())) {
+            scheduledAndRunningIoCount--;
+        }
+    }
+
+    private boolean isRunOnIoExecutor(TaskKind aKind)
+    {
+        return ioExecutor != null && aKind == IO_BOUND;
+    }
+
+    private boolean hasFreeWorker(TaskKind aKind)
+    {
+        if (isRunOnIoExecutor(aKind)) {
+            return scheduledAndRunningIoCount < maxIoBoundThreads;
+        }
+
+        return scheduledAndRunningTasks.size() - scheduledAndRunningIoCount < numberOfThreads;
     }
 
     private synchronized void scheduleEligibleTasks()
     {
-        Iterator<Task> i = enqueuedTasks.iterator();
+        if (executor.isShutdown()) {
+            return;
+        }
 
-        while (i.hasNext()) {
-            Task t = i.next();
-            if (!getScheduledAndRunningTasks().contains(t) && t.isReadyToStart()) {
-                i.remove();
-                schedule(t);
+        while (!enqueuedTasks.isEmpty()) {
+            Task task = enqueuedTasks.poll(this::hasFreeWorker, this::isEligible);
+            if (task == null) {
+                break;
             }
+
+            schedule(task);
         }
 
         logState();
@@ -266,23 +357,62 @@ public class SchedulingServiceImpl
     public synchronized void stopAllTasksMatching(Predicate<Task> aPredicate)
     {
         enqueuedTasks.removeIf(aPredicate);
-        executor.getQueue().removeIf(runnable -> aPredicate.test((Task) runnable));
+
+        removeScheduledTasksMatching(executor, aPredicate);
+        if (ioExecutor != null) {
+            removeScheduledTasksMatching(ioExecutor, aPredicate);
+        }
 
         // TODO: Stop the running tasks as well
+
+        scheduleEligibleTasks();
+    }
+
+    private void removeScheduledTasksMatching(ThreadPoolExecutor aExecutor,
+            Predicate<Task> aPredicate)
+    {
+        for (Runnable runnable : aExecutor.getQueue().toArray(new Runnable[0])) {
+            if (aPredicate.test((Task) runnable) && aExecutor.getQueue().remove(runnable)) {
+                unschedule((Task) runnable);
+            }
+        }
+    }
+
+    @Override
+    public TaskExecutionStats getExecutionStats(TaskKind aKind)
+    {
+        return executionStats.get(aKind);
+    }
+
+    public IoBoundTaskMode getIoBoundTaskMode()
+    {
+        return ioExecutor != null ? ELASTIC : SHARED;
     }
 
     @Override
     public void destroy()
     {
         log.info("Shutting down scheduling service!");
-        enqueuedTasks.clear();
-        executor.getQueue().clear();
+        synchronized (this) {
+            enqueuedTasks.clear();
+            executor.getQueue().clear();
+            if (ioExecutor != null) {
+                ioExecutor.getQueue().clear();
+            }
+        }
         watchdog.shutdownNow();
         executor.shutdownNow();
+        if (ioExecutor != null) {
+            ioExecutor.shutdownNow();
+        }
     }
 
     private void logState()
     {
+        if (!log.isDebugEnabled()) {
+            return;
+        }
+
         getEnqueuedTasks().forEach(t -> log.debug("Queued   : {}", t));
         getScheduledTasks().forEach(t -> log.debug("Scheduled: {}", t));
         getRunningTasks().forEach(t -> log.debug("Running  : {}", t));
@@ -44,6 +44,10 @@ public abstract class Task
     private final String trigger;
     private final int id;
 
+    // Bookkeeping of the scheduler for its execution statistics
+    volatile long enqueueTime;
+    volatile long startTime;
+
     public Task(Project aProject, String aTrigger)
     {
         this(null, aProject, aTrigger);
@@ -90,6 +94,23 @@ public abstract class Task
         return true;
     }
 
+    /**
+     * @return the priority of the task. Tasks of a higher priority are started before tasks of a
+     *         lower priority.
+     */
+    public TaskPriority getPriority()
+    {
+        return TaskPriority.NORMAL;
+    }
+
+    /**
+     * @return whether the task is mostly busy computing or mostly waiting for I/O.
+     */
+    public TaskKind getKind()
+    {
+        return TaskKind.CPU_BOUND;
+    }
+
     @Override
     public void run()
     {
@@ -0,0 +1,105 @@
+/*
+ * Licensed to the Technische Universität Darmstadt under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The Technische Universität Darmstadt 
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.
+ *  
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.scheduling;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Execution statistics of the tasks of one {@link TaskKind}. Comparing these statistics with the
+ * different {@link de.tudarmstadt.ukp.inception.scheduling.config.IoBoundTaskMode modes} shows
+ * whether I/O-bound tasks are held up waiting for a worker thread.
+ */
+public class TaskExecutionStats
+{
+    private final LongAdder started = new LongAdder();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder totalWaitMillis = new LongAdder();
+    private final LongAdder totalRunMillis = new LongAdder();
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicInteger peakActive = new AtomicInteger();
+
+    void recordStart(long aWaitMillis)
+    {
+        started.increment();
+        totalWaitMillis.add(aWaitMillis);
+        peakActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+    }
+
+    void recordEnd(long aRunMillis, boolean aFailed)
+    {
+        active.decrementAndGet();
+        completed.increment();
+        totalRunMillis.add(aRunMillis);
+        if (aFailed) {
+            failed.increment();
+        }
+    }
+
+    public long getStarted()
+    {
+        return started.sum();
+    }
+
+    public long getCompleted()
+    {
+        return completed.sum();
+    }
+
+    public long getFailed()
+    {
+        return failed.sum();
+    }
+
+    public int getActive()
+    {
+        return active.get();
+    }
+
+    public int getPeakActive()
+    {
+        return peakActive.get();
+    }
+
+    /**
+     * @return average time in milliseconds between enqueuing a task and starting it.
+     */
+    public double getAverageWaitMillis()
+    {
+        long count = started.sum();
+        return count == 0 ? 0.0 : (double) totalWaitMillis.sum() / count;
+    }
+
+    /**
+     * @return average time in milliseconds a task has been running.
+     */
+    public double getAverageRunMillis()
+    {
+        long count = completed.sum();
+        return count == 0 ? 0.0 : (double) totalRunMillis.sum() / count;
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("started=%d, completed=%d, failed=%d, active=%d, peakActive=%d, "
+                + "avgWait=%.1fms, avgRun=%.1fms", getStarted(), getCompleted(), getFailed(),
+                getActive(), getPeakActive(), getAverageWaitMillis(), getAverageRunMillis());
+    }
+}
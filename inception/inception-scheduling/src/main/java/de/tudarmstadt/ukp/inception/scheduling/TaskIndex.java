@@ -0,0 +1,137 @@
+/*
+ * Licensed to the Technische Universität Darmstadt under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The Technische Universität Darmstadt 
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.
+ *  
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.scheduling;
+
+import static java.util.Collections.emptySet;
+import static java.util.Collections.newSetFromMap;
+import static java.util.Collections.singleton;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Indexes tasks by their match keys such that potentially matching tasks can be looked up without
+ * scanning all tasks. Tasks which are not {@link MatchableTask matchable} are indexed under
+ * themselves, i.e. they are found via {@link Task#equals}. Not thread-safe.
+ */
+class TaskIndex
+{
+    private final Map<Object, Set<Task>> tasksByKey = new HashMap<>();
+    private final Set<Task> unkeyedTasks = newIdentitySet();
+    private final Set<Task> allTasks = newIdentitySet();
+
+    public void add(Task aTask)
+    {
+        if (!allTasks.add(aTask)) {
+            return;
+        }
+
+        Collection<?> keys = getMatchKeys(aTask);
+        if (keys == null) {
+            unkeyedTasks.add(aTask);
+            return;
+        }
+
+        for (Object key : keys) {
+            tasksByKey.computeIfAbsent(key, k -> newIdentitySet()).add(aTask);
+        }
+    }
+
+    public boolean remove(Task aTask)
+    {
+        if (!allTasks.remove(aTask)) {
+            return false;
+        }
+
+        Collection<?> keys = getMatchKeys(aTask);
+        if (keys == null) {
+            unkeyedTasks.remove(aTask);
+            return true;
+        }
+
+        for (Object key : keys) {
+            Set<Task> tasks = tasksByKey.get(key);
+            if (tasks != null) {
+                tasks.remove(aTask);
+                if (tasks.isEmpty()) {
+                    tasksByKey.remove(key);
+                }
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * @return all tasks which could match the given task. The caller still needs to check whether
+     *         the tasks actually match. The returned set must not be modified and may change when
+     *         the index is modified.
+     */
+    public Set<Task> getCandidates(Task aTask)
+    {
+        if (!(aTask instanceof MatchableTask)) {
+            return tasksByKey.getOrDefault(aTask, emptySet());
+        }
+
+        Collection<?> keys = ((MatchableTask) aTask).getMatchCandidateKeys();
+        if (keys == null) {
+            return allTasks;
+        }
+
+        Set<Task> candidates = newIdentitySet();
+        candidates.addAll(unkeyedTasks);
+        for (Object key : keys) {
+            candidates.addAll(tasksByKey.getOrDefault(key, emptySet()));
+        }
+        return candidates;
+    }
+
+    public boolean contains(Task aTask)
+    {
+        return allTasks.contains(aTask);
+    }
+
+    public int size()
+    {
+        return allTasks.size();
+    }
+
+    public void clear()
+    {
+        tasksByKey.clear();
+        unkeyedTasks.clear();
+        allTasks.clear();
+    }
+
+    private static Collection<?> getMatchKeys(Task aTask)
+    {
+        if (aTask instanceof MatchableTask) {
+            return ((MatchableTask) aTask).getMatchKeys();
+        }
+
+        return singleton(aTask);
+    }
+
+    private static Set<Task> newIdentitySet()
+    {
+        return newSetFromMap(new IdentityHashMap<>());
+    }
+}
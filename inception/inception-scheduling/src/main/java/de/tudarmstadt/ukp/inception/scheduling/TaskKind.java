@@ -0,0 +1,38 @@
+/*
+ * Licensed to the Technische Universität Darmstadt under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The Technische Universität Darmstadt 
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.
+ *  
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.scheduling;
+
+/**
+ * Describes what a task spends most of its time on. This allows the scheduler to run tasks which
+ * mostly wait for I/O on a separate, elastic pool of threads instead of occupying the bounded pool
+ * reserved for CPU-intensive tasks.
+ * 
+ * @see de.tudarmstadt.ukp.inception.scheduling.config.IoBoundTaskMode
+ */
+public enum TaskKind
+{
+    /**
+     * The task mostly performs computations, e.g. training a recommender.
+     */
+    CPU_BOUND,
+
+    /**
+     * The task mostly waits for I/O, e.g. for a remote service, a database or the file system.
+     */
+    IO_BOUND;
+}
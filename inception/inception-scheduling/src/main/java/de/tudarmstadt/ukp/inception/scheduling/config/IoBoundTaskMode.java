@@ -0,0 +1,37 @@
+/*
+ * Licensed to the Technische Universität Darmstadt under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The Technische Universität Darmstadt 
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.
+ *  
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.scheduling.config;
+
+import de.tudarmstadt.ukp.inception.scheduling.TaskKind;
+
+/**
+ * Determines where the scheduler runs tasks of the kind {@link TaskKind#IO_BOUND}.
+ */
+public enum IoBoundTaskMode
+{
+    /**
+     * I/O-bound tasks share the fixed pool of worker threads with all other tasks.
+     */
+    SHARED,
+
+    /**
+     * I/O-bound tasks run on a separate pool of worker threads which grows on demand up to the
+     * configured maximum and shrinks again when threads are idle.
+     */
+    ELASTIC;
+}
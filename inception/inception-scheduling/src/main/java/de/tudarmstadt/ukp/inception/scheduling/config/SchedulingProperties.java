@@ -24,6 +24,8 @@ public class SchedulingProperties
 {
     private int numberOfThreads = 4;
     private int queueSize = 100;
+    private IoBoundTaskMode ioBoundTaskMode = IoBoundTaskMode.SHARED;
+    private int maxIoBoundThreads = 64;
 
     public int getNumberOfThreads()
     {
@@ -42,6 +44,26 @@ public class SchedulingProperties
 
     public void setQueueSize(int aQueueSize)
     {
-        queueSize = queueSize;
+        queueSize = aQueueSize;
+    }
+
+    public IoBoundTaskMode getIoBoundTaskMode()
+    {
+        return ioBoundTaskMode;
+    }
+
+    public void setIoBoundTaskMode(IoBoundTaskMode aIoBoundTaskMode)
+    {
+        ioBoundTaskMode = aIoBoundTaskMode;
+    }
+
+    public int getMaxIoBoundThreads()
+    {
+        return maxIoBoundThreads;
+    }
+
+    public void setMaxIoBoundThreads(int aMaxIoBoundThreads)
+    {
+        maxIoBoundThreads = aMaxIoBoundThreads;
     }
 }
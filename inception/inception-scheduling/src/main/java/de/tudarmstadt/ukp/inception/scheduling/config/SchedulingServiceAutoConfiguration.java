@@ -17,6 +17,7 @@
  */
 package de.tudarmstadt.ukp.inception.scheduling.config;
 
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.annotation.Bean;
@@ -24,6 +25,7 @@ import org.springframework.context.annotation.Configuration;
 
 import de.tudarmstadt.ukp.inception.scheduling.SchedulingService;
 import de.tudarmstadt.ukp.inception.scheduling.SchedulingServiceImpl;
+import de.tudarmstadt.ukp.inception.scheduling.metrics.SchedulingMetricsImpl;
 
 @Configuration
 @EnableConfigurationProperties({ SchedulingProperties.class })
@@ -35,4 +37,11 @@ public class SchedulingServiceAutoConfiguration
     {
         return new SchedulingServiceImpl(aApplicationContext, aConfig);
     }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "monitoring.metrics", name = "enabled", havingValue = "true")
+    public SchedulingMetricsImpl schedulingMetrics(SchedulingService aSchedulingService)
+    {
+        return new SchedulingMetricsImpl(aSchedulingService);
+    }
 }
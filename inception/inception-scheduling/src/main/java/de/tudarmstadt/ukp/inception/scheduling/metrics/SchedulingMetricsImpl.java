@@ -0,0 +1,115 @@
+/*
+ * Licensed to the Technische Universität Darmstadt under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The Technische Universität Darmstadt 
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.
+ *  
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.scheduling.metrics;
+
+import static de.tudarmstadt.ukp.inception.scheduling.TaskKind.CPU_BOUND;
+import static de.tudarmstadt.ukp.inception.scheduling.TaskKind.IO_BOUND;
+
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+
+import de.tudarmstadt.ukp.inception.scheduling.SchedulingService;
+import de.tudarmstadt.ukp.inception.scheduling.config.SchedulingServiceAutoConfiguration;
+
+/**
+ * <p>
+ * This class is exposed as a Spring Component via
+ * {@link SchedulingServiceAutoConfiguration#schedulingMetrics}.
+ * </p>
+ */
+@ManagedResource
+public class SchedulingMetricsImpl
+    implements SchedulingMetrics
+{
+    private final SchedulingService schedulingService;
+
+    public SchedulingMetricsImpl(SchedulingService aSchedulingService)
+    {
+        schedulingService = aSchedulingService;
+    }
+
+    @Override
+    @ManagedAttribute
+    public int getEnqueuedTasks()
+    {
+        return schedulingService.getEnqueuedTasks().size();
+    }
+
+    @Override
+    @ManagedAttribute
+    public int getRunningTasks()
+    {
+        return schedulingService.getRunningTasks().size();
+    }
+
+    @Override
+    @ManagedAttribute
+    public long getCpuBoundTasksCompleted()
+    {
+        return schedulingService.getExecutionStats(CPU_BOUND).getCompleted();
+    }
+
+    @Override
+    @ManagedAttribute
+    public int getCpuBoundTasksPeakActive()
+    {
+        return schedulingService.getExecutionStats(CPU_BOUND).getPeakActive();
+    }
+
+    @Override
+    @ManagedAttribute
+    public double getCpuBoundTasksAverageWaitMillis()
+    {
+        return schedulingService.getExecutionStats(CPU_BOUND).getAverageWaitMillis();
+    }
+
+    @Override
+    @ManagedAttribute
+    public double getCpuBoundTasksAverageRunMillis()
+    {
+        return schedulingService.getExecutionStats(CPU_BOUND).getAverageRunMillis();
+    }
+
+    @Override
+    @ManagedAttribute
+    public long getIoBoundTasksCompleted()
+    {
+        return schedulingService.getExecutionStats(IO_BOUND).getCompleted();
+    }
+
+    @Override
+    @ManagedAttribute
+    public int getIoBoundTasksPeakActive()
+    {
+        return schedulingService.getExecutionStats(IO_BOUND).getPeakActive();
+    }
+
+    @Override
+    @ManagedAttribute
+    public double getIoBoundTasksAverageWaitMillis()
+    {
+        return schedulingService.getExecutionStats(IO_BOUND).getAverageWaitMillis();
+    }
+
+    @Override
+    @ManagedAttribute
+    public double getIoBoundTasksAverageRunMillis()
+    {
+        return schedulingService.getExecutionStats(IO_BOUND).getAverageRunMillis();
+    }
+}
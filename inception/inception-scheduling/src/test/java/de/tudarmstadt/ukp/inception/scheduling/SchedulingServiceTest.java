@@ -17,6 +17,13 @@
  */
 package de.tudarmstadt.ukp.inception.scheduling;
 
+import static de.tudarmstadt.ukp.inception.scheduling.MatchResult.NO_MATCH;
+import static de.tudarmstadt.ukp.inception.scheduling.MatchResult.UNQUEUE_EXISTING_AND_QUEUE_THIS;
+import static de.tudarmstadt.ukp.inception.scheduling.TaskKind.CPU_BOUND;
+import static de.tudarmstadt.ukp.inception.scheduling.TaskKind.IO_BOUND;
+import static de.tudarmstadt.ukp.inception.scheduling.TaskPriority.HIGH;
+import static de.tudarmstadt.ukp.inception.scheduling.TaskPriority.LOW;
+import static de.tudarmstadt.ukp.inception.scheduling.TaskPriority.NORMAL;
 import static java.util.Arrays.asList;
 import static java.util.concurrent.TimeUnit.SECONDS;
 import static org.assertj.core.api.Assertions.assertThat;
@@ -24,7 +31,10 @@ import static org.awaitility.Awaitility.await;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
 
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
@@ -36,6 +46,7 @@ import org.springframework.context.ApplicationContext;
 
 import de.tudarmstadt.ukp.clarin.webanno.model.Project;
 import de.tudarmstadt.ukp.clarin.webanno.security.model.User;
+import de.tudarmstadt.ukp.inception.scheduling.config.IoBoundTaskMode;
 import de.tudarmstadt.ukp.inception.scheduling.config.SchedulingProperties;
 
 public class SchedulingServiceTest
@@ -112,6 +123,205 @@ public class SchedulingServiceTest
                 .doesNotContain(tasksToRemove);
     }
 
+    @Test
+    public void thatHigherPriorityTasksAreStartedFirst() throws Exception
+    {
+        SchedulingServiceImpl singleThreaded = buildSingleThreadedService();
+        try {
+            BlockingTask blocker = new BlockingTask(buildUser("user1"),
+                    buildProject(1l, "project1"));
+            singleThreaded.enqueue(blocker);
+
+            List<String> executed = new CopyOnWriteArrayList<>();
+            singleThreaded.enqueue(buildRecordingTask(executed, "low", "user1", 1l, LOW));
+            singleThreaded.enqueue(buildRecordingTask(executed, "normal", "user2", 2l, NORMAL));
+            singleThreaded.enqueue(buildRecordingTask(executed, "high", "user3", 3l, HIGH));
+
+            blocker.release();
+
+            await().atMost(15, SECONDS).until(() -> executed.size() == 3);
+            assertThat(executed).containsExactly("high", "normal", "low");
+        }
+        finally {
+            singleThreaded.destroy();
+        }
+    }
+
+    @Test
+    public void thatUsersAndProjectsAreServedRoundRobin() throws Exception
+    {
+        SchedulingServiceImpl singleThreaded = buildSingleThreadedService();
+        try {
+            BlockingTask blocker = new BlockingTask(buildUser("user0"),
+                    buildProject(1l, "project1"));
+            singleThreaded.enqueue(blocker);
+
+            List<String> executed = new CopyOnWriteArrayList<>();
+            singleThreaded.enqueue(buildRecordingTask(executed, "u1-p1", "user1", 1l, NORMAL));
+            singleThreaded.enqueue(buildRecordingTask(executed, "u1-p2", "user1", 2l, NORMAL));
+            singleThreaded.enqueue(buildRecordingTask(executed, "u1-p3", "user1", 3l, NORMAL));
+            singleThreaded.enqueue(buildRecordingTask(executed, "u2-p1", "user2", 1l, NORMAL));
+            singleThreaded.enqueue(buildRecordingTask(executed, "u3-p4", "user3", 4l, NORMAL));
+
+            blocker.release();
+
+            await().atMost(15, SECONDS).until(() -> executed.size() == 5);
+            assertThat(executed) //
+                    .as("Every user gets a turn before user1 gets its second one") //
+                    .containsExactly("u1-p1", "u2-p1", "u3-p4", "u1-p2", "u1-p3");
+        }
+        finally {
+            singleThreaded.destroy();
+        }
+    }
+
+    @Test
+    public void thatMatchingTasksAreFoundByKey() throws Exception
+    {
+        SchedulingServiceImpl singleThreaded = buildSingleThreadedService();
+        try {
+            BlockingTask blocker = new BlockingTask(buildUser("user1"),
+                    buildProject(1l, "project1"));
+            singleThreaded.enqueue(blocker);
+
+            Project project = buildProject(2l, "project2");
+            for (int i = 0; i < 1000; i++) {
+                singleThreaded.enqueue(new KeyedTask(project, i % 10));
+            }
+
+            assertThat(singleThreaded.getEnqueuedTasks()) //
+                    .as("Only the latest task per key is kept") //
+                    .hasSize(10) //
+                    .allMatch(t -> ((KeyedTask) t).getId() > 990);
+
+            blocker.release();
+        }
+        finally {
+            singleThreaded.destroy();
+        }
+    }
+
+    @Test
+    public void thatIoBoundTasksDoNotWaitForCpuBoundTasksInElasticMode() throws Exception
+    {
+        SchedulingProperties properties = new SchedulingProperties();
+        properties.setNumberOfThreads(1);
+        properties.setIoBoundTaskMode(IoBoundTaskMode.ELASTIC);
+        SchedulingServiceImpl elastic = new SchedulingServiceImpl(mockContext, properties);
+        try {
+            BlockingTask blocker = new BlockingTask(buildUser("user1"),
+                    buildProject(1l, "project1"));
+            elastic.enqueue(blocker);
+
+            List<String> executed = new CopyOnWriteArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                RecordingTask task = new RecordingTask(buildUser("user" + (i + 2)),
+                        buildProject(1l, "project1"), executed, "io" + i, NORMAL);
+                task.kind = IO_BOUND;
+                elastic.enqueue(task);
+            }
+
+            await().atMost(15, SECONDS).until(() -> executed.size() == 3);
+            assertThat(elastic.getRunningTasks()) //
+                    .as("CPU-bound task is still running") //
+                    .containsExactly(blocker);
+
+            blocker.release();
+
+            await().atMost(15, SECONDS)
+                    .until(() -> elastic.getExecutionStats(CPU_BOUND).getCompleted() == 1);
+            assertThat(elastic.getExecutionStats(IO_BOUND).getCompleted()).isEqualTo(3);
+        }
+        finally {
+            elastic.destroy();
+        }
+    }
+
+    @Test
+    public void thatQueueSizeIsEnforced() throws Exception
+    {
+        SchedulingProperties properties = new SchedulingProperties();
+        properties.setNumberOfThreads(1);
+        properties.setQueueSize(5);
+        SchedulingServiceImpl singleThreaded = new SchedulingServiceImpl(mockContext, properties);
+        try {
+            BlockingTask blocker = new BlockingTask(buildUser("user1"),
+                    buildProject(1l, "project1"));
+            singleThreaded.enqueue(blocker);
+
+            for (int i = 0; i < 10; i++) {
+                singleThreaded.enqueue(buildDummyTask("user" + i, "project" + i));
+            }
+
+            assertThat(singleThreaded.getEnqueuedTasks()) //
+                    .as("Tasks exceeding the queue size are discarded") //
+                    .hasSize(5);
+
+            blocker.release();
+        }
+        finally {
+            singleThreaded.destroy();
+        }
+    }
+
+    @Test
+    public void thatFullQueueMakesRoomForHigherPriorityTask() throws Exception
+    {
+        SchedulingProperties properties = new SchedulingProperties();
+        properties.setNumberOfThreads(1);
+        properties.setQueueSize(3);
+        SchedulingServiceImpl singleThreaded = new SchedulingServiceImpl(mockContext, properties);
+        try {
+            BlockingTask blocker = new BlockingTask(buildUser("user1"),
+                    buildProject(1l, "project1"));
+            singleThreaded.enqueue(blocker);
+
+            List<String> executed = new CopyOnWriteArrayList<>();
+            singleThreaded.enqueue(buildRecordingTask(executed, "low1", "user1", 1l, LOW));
+            singleThreaded.enqueue(buildRecordingTask(executed, "low2", "user2", 2l, LOW));
+            singleThreaded.enqueue(buildRecordingTask(executed, "normal", "user3", 3l, NORMAL));
+            singleThreaded.enqueue(buildRecordingTask(executed, "high1", "user4", 4l, HIGH));
+            singleThreaded.enqueue(buildRecordingTask(executed, "high2", "user5", 5l, HIGH));
+            singleThreaded.enqueue(buildRecordingTask(executed, "high3", "user6", 6l, HIGH));
+            singleThreaded.enqueue(buildRecordingTask(executed, "high4", "user7", 7l, HIGH));
+
+            assertThat(singleThreaded.getEnqueuedTasks()) //
+                    .extracting(Task::getPriority) //
+                    .containsExactly(HIGH, HIGH, HIGH);
+
+            blocker.release();
+
+            await().atMost(15, SECONDS).until(() -> executed.size() == 3);
+            assertThat(executed) //
+                    .as("Lower priority tasks and the newest task are discarded") //
+                    .containsExactly("high1", "high2", "high3");
+        }
+        finally {
+            singleThreaded.destroy();
+        }
+    }
+
+    private SchedulingServiceImpl buildSingleThreadedService()
+    {
+        SchedulingProperties properties = new SchedulingProperties();
+        properties.setNumberOfThreads(1);
+        return new SchedulingServiceImpl(mockContext, properties);
+    }
+
+    private Task buildRecordingTask(List<String> aExecuted, String aLabel, String aUsername,
+            long aProjectId, TaskPriority aPriority)
+    {
+        return new RecordingTask(buildUser(aUsername),
+                buildProject(aProjectId, "project" + aProjectId), aExecuted, aLabel, aPriority);
+    }
+
+    private Project buildProject(long aProjectId, String aProjectName)
+    {
+        Project project = buildProject(aProjectName);
+        project.setId(aProjectId);
+        return project;
+    }
+
     private User buildUser(String aUsername)
     {
         return new User(aUsername);
@@ -155,4 +365,102 @@ public class SchedulingServiceTest
             }
         }
     }
+
+    private static class BlockingTask
+        extends Task
+    {
+        private final CountDownLatch latch = new CountDownLatch(1);
+
+        BlockingTask(User aUser, Project aProject)
+        {
+            super(aUser, aProject, "JUnit");
+        }
+
+        void release()
+        {
+            latch.countDown();
+        }
+
+        @Override
+        public void execute()
+        {
+            try {
+                latch.await();
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static class RecordingTask
+        extends Task
+    {
+        private final List<String> executed;
+        private final String label;
+        private final TaskPriority priority;
+        private TaskKind kind = CPU_BOUND;
+
+        RecordingTask(User aUser, Project aProject, List<String> aExecuted, String aLabel,
+                TaskPriority aPriority)
+        {
+            super(aUser, aProject, "JUnit");
+            executed = aExecuted;
+            label = aLabel;
+            priority = aPriority;
+        }
+
+        @Override
+        public TaskPriority getPriority()
+        {
+            return priority;
+        }
+
+        @Override
+        public TaskKind getKind()
+        {
+            return kind;
+        }
+
+        @Override
+        public void execute()
+        {
+            executed.add(label);
+        }
+    }
+
+    private static class KeyedTask
+        extends Task
+        implements MatchableTask
+    {
+        private final int key;
+
+        KeyedTask(Project aProject, int aKey)
+        {
+            super(aProject, "JUnit");
+            key = aKey;
+        }
+
+        @Override
+        public MatchResult matches(Task aTask)
+        {
+            if (aTask instanceof KeyedTask && ((KeyedTask) aTask).key == key) {
+                return UNQUEUE_EXISTING_AND_QUEUE_THIS;
+            }
+
+            return NO_MATCH;
+        }
+
+        @Override
+        public Collection<?> getMatchKeys()
+        {
+            return asList(key);
+        }
+
+        @Override
+        public void execute()
+        {
+            // Nothing to do
+        }
+    }
 }
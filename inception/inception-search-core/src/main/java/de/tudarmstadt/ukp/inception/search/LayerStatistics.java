@@ -75,6 +75,17 @@ public class LayerStatistics
         query = null;
     }
 
+    public LayerStatistics(LayerStatistics aOther)
+    {
+        this(aOther.sum, aOther.maximum, aOther.minimum, aOther.mean, aOther.median,
+                aOther.standardDeviation, aOther.sumPerSentence, aOther.maximumPerSentence,
+                aOther.minimumPerSentence, aOther.meanPerSentence, aOther.medianPerSentence,
+                aOther.standardDeviationPerSentence, aOther.noOfDocuments);
+
+        query = aOther.query;
+        feature = aOther.feature;
+    }
+
     public String getLayerFeatureName()
     {
         return feature.getLayer().getUiName() + "." + feature.getUiName();
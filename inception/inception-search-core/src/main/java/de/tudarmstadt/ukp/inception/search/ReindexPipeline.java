@@ -0,0 +1,271 @@
+/*
+ * Licensed to the Technische Universität Darmstadt under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The Technische Universität Darmstadt 
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.
+ *  
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.search;
+
+import static de.tudarmstadt.ukp.inception.search.SearchCasUtils.casToByteArray;
+import static java.lang.System.currentTimeMillis;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
+
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.apache.commons.lang3.function.FailableCallable;
+import org.apache.commons.lang3.function.FailableConsumer;
+import org.apache.uima.cas.CAS;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+
+import de.tudarmstadt.ukp.clarin.webanno.api.DocumentService;
+import de.tudarmstadt.ukp.clarin.webanno.api.dao.casstorage.CasStorageSession;
+import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationDocument;
+import de.tudarmstadt.ukp.clarin.webanno.model.Project;
+import de.tudarmstadt.ukp.clarin.webanno.model.SourceDocument;
+import de.tudarmstadt.ukp.inception.search.index.PhysicalIndex;
+import de.tudarmstadt.ukp.inception.search.model.Monitor;
+import de.tudarmstadt.ukp.inception.search.model.Progress;
+
+/**
+ * Adds all documents of a project to a physical index which is in bulk indexing mode. That is
+ * either the cleared index itself or, in shadow mode, a new index which is built while the current
+ * one continues to serve queries. CASes are read from the storage by a pool of reader threads and
+ * then handed on to a pool of indexing threads which parse them and add them to the physical index
+ * in bulk. The number of CASes that have been read but not yet been indexed is bounded to keep the
+ * memory consumption in check.
+ */
+class ReindexPipeline
+{
+    private static final long PROGRESS_LOG_INTERVAL = 10_000;
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
+    private final Project project;
+    private final DocumentService documentService;
+    private final PhysicalIndex physicalIndex;
+    private final int readThreads;
+    private final int indexThreads;
+    private final BooleanSupplier cancelled;
+    private final Monitor monitor;
+
+    private final AtomicReference<IOException> failure = new AtomicReference<>();
+    private final AtomicLong lastProgressLog = new AtomicLong();
+
+    private Map<String, String> mdc;
+
+    ReindexPipeline(Project aProject, DocumentService aDocumentService,
+            PhysicalIndex aPhysicalIndex, int aReadThreads, int aIndexThreads,
+            BooleanSupplier aCancelled, Monitor aMonitor)
+    {
+        project = aProject;
+        documentService = aDocumentService;
+        physicalIndex = aPhysicalIndex;
+        readThreads = Math.max(1, aReadThreads);
+        indexThreads = Math.max(1, aIndexThreads);
+        cancelled = aCancelled;
+        monitor = aMonitor;
+    }
+
+    /**
+     * @return {@code true} if all documents have been indexed and {@code false} if the operation
+     *         has been cancelled.
+     * @throws IOException
+     *             if a CAS could not be read.
+     */
+    boolean run(List<AnnotationDocument> aAnnotationDocuments,
+            List<SourceDocument> aSourceDocuments)
+        throws IOException
+    {
+        monitor.setTodo(aAnnotationDocuments.size() + aSourceDocuments.size());
+        lastProgressLog.set(currentTimeMillis());
+
+        // The worker threads need the logging context e.g. to resolve the repository path
+        mdc = MDC.getCopyOfContextMap();
+
+        ExecutorService readers = Executors.newFixedThreadPool(readThreads,
+                threadFactory("reindex-reader-%d"));
+        ExecutorService indexers = Executors.newFixedThreadPool(indexThreads,
+                threadFactory("reindex-indexer-%d"));
+        Semaphore inFlight = new Semaphore(readThreads + 2 * indexThreads);
+        List<CompletableFuture<Void>> pending = new ArrayList<>();
+
+        boolean complete = true;
+        try {
+            for (AnnotationDocument doc : aAnnotationDocuments) {
+                complete = submit(pending, inFlight, readers, indexers, doc.getName(),
+                        () -> documentService.readAnnotationCas(doc),
+                        bytes -> physicalIndex.bulkIndexDocument(doc, bytes));
+                if (!complete) {
+                    break;
+                }
+            }
+
+            for (SourceDocument doc : aSourceDocuments) {
+                if (!complete) {
+                    break;
+                }
+                complete = submit(pending, inFlight, readers, indexers, doc.getName(),
+                        () -> documentService.createOrReadInitialCas(doc),
+                        bytes -> physicalIndex.bulkIndexDocument(doc, bytes));
+            }
+
+            // Failures are handled per document, so this does not throw
+            CompletableFuture.allOf(pending.toArray(CompletableFuture[]::new)).join();
+        }
+        finally {
+            readers.shutdownNow();
+            indexers.shutdownNow();
+        }
+
+        if (failure.get() != null) {
+            throw failure.get();
+        }
+
+        if (complete && !isCancelled()) {
+            logProgress("Re-indexed");
+            return true;
+        }
+
+        return false;
+    }
+
+    private boolean submit(List<CompletableFuture<Void>> aPending, Semaphore aInFlight,
+            ExecutorService aReaders, ExecutorService aIndexers, String aDocumentName,
+            FailableCallable<CAS, IOException> aReader,
+            FailableConsumer<byte[], IOException> aIndexer)
+    {
+        if (isCancelled()) {
+            return false;
+        }
+
+        try {
+            aInFlight.acquire();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+
+        aPending.add(CompletableFuture //
+                .supplyAsync(() -> read(aReader), aReaders) //
+                .thenAcceptAsync(bytes -> index(aDocumentName, aIndexer, bytes), aIndexers) //
+                .handle((v, e) -> {
+                    aInFlight.release();
+                    if (e != null) {
+                        Throwable cause = e instanceof CompletionException ? e.getCause() : e;
+                        if (cause instanceof UncheckedIOException) {
+                            failure.compareAndSet(null, ((UncheckedIOException) cause).getCause());
+                        }
+                        else {
+                            failure.compareAndSet(null, new IOException(cause));
+                        }
+                    }
+                    return null;
+                }));
+
+        return true;
+    }
+
+    private byte[] read(FailableCallable<CAS, IOException> aReader)
+    {
+        if (isCancelled()) {
+            return null;
+        }
+
+        if (mdc != null) {
+            MDC.setContextMap(mdc);
+        }
+
+        // Because serialization is a process which modifies internal data structures of
+        // the CAS, we need exclusive access the CAS for the time being.
+        // This can be relaxed after upgrading to UIMA 3.2.0 which includes a fix for
+        // for https://issues.apache.org/jira/browse/UIMA-6162
+        try (CasStorageSession session = CasStorageSession.openNested()) {
+            return casToByteArray(aReader.call());
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        finally {
+            MDC.clear();
+        }
+    }
+
+    private void index(String aDocumentName, FailableConsumer<byte[], IOException> aIndexer,
+            byte[] aBinaryCas)
+    {
+        if (aBinaryCas == null || isCancelled()) {
+            return;
+        }
+
+        if (mdc != null) {
+            MDC.setContextMap(mdc);
+        }
+
+        try {
+            aIndexer.accept(aBinaryCas);
+        }
+        catch (IOException e) {
+            log.error("Error indexing document [{}] in project [{}]({})", aDocumentName,
+                    project.getName(), project.getId(), e);
+        }
+        finally {
+            MDC.clear();
+        }
+
+        monitor.incDone();
+
+        long now = currentTimeMillis();
+        long last = lastProgressLog.get();
+        if (now - last >= PROGRESS_LOG_INTERVAL && lastProgressLog.compareAndSet(last, now)) {
+            logProgress("Re-indexing");
+        }
+    }
+
+    private void logProgress(String aPrefix)
+    {
+        Progress progress = monitor.toProgress();
+        log.info("{} project [{}]({}): {}/{} documents ({} documents/sec)", aPrefix,
+                project.getName(), project.getId(), progress.getDone(), progress.getTotal(),
+                String.format("%.1f", monitor.getThroughput()));
+    }
+
+    private boolean isCancelled()
+    {
+        return failure.get() != null || Thread.currentThread().isInterrupted()
+                || cancelled.getAsBoolean();
+    }
+
+    private static BasicThreadFactory threadFactory(String aNamingPattern)
+    {
+        return new BasicThreadFactory.Builder() //
+                .daemon(true) //
+                .namingPattern(aNamingPattern) //
+                .build();
+    }
+}
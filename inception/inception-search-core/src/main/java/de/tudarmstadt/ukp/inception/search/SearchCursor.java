@@ -0,0 +1,138 @@
+/*
+ * Licensed to the Technische Universität Darmstadt under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The Technische Universität Darmstadt 
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.
+ *  
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.search;
+
+import java.io.Serializable;
+import java.util.Objects;
+
+/**
+ * Position in the results of a query from which the next page of results can be fetched. Besides
+ * the number of results before the position, a cursor remembers where in the index the position is
+ * located, so the index can resume there instead of iterating over all the results before it. If
+ * the index has changed since the cursor was created, the index falls back to skipping the given
+ * number of results.
+ */
+public class SearchCursor
+    implements Serializable
+{
+    private static final long serialVersionUID = -6040911842381627437L;
+
+    private static final long UNKNOWN_INDEX_VERSION = -1;
+
+    private final String indexName;
+    private final long indexVersion;
+    private final long offset;
+    private final int segment;
+    private final int document;
+    private final int hitsInDocument;
+
+    public SearchCursor(String aIndexName, long aIndexVersion, long aOffset, int aSegment,
+            int aDocument, int aHitsInDocument)
+    {
+        indexName = aIndexName;
+        indexVersion = aIndexVersion;
+        offset = aOffset;
+        segment = aSegment;
+        document = aDocument;
+        hitsInDocument = aHitsInDocument;
+    }
+
+    /**
+     * @return a cursor which is positioned at the given offset but does not know where in the index
+     *         this offset is located.
+     */
+    public static SearchCursor atOffset(long aOffset)
+    {
+        return new SearchCursor(null, UNKNOWN_INDEX_VERSION, aOffset, 0, -1, 0);
+    }
+
+    /**
+     * @return whether the index can resume directly at the position of the cursor.
+     */
+    public boolean isResumableIn(String aIndexName, long aIndexVersion)
+    {
+        return indexVersion != UNKNOWN_INDEX_VERSION && indexVersion == aIndexVersion
+                && Objects.equals(indexName, aIndexName);
+    }
+
+    /**
+     * @return the name of the index in which the cursor was created. Shadow reindexing creates a
+     *         new index, so the version alone does not identify the index.
+     */
+    public String getIndexName()
+    {
+        return indexName;
+    }
+
+    public long getIndexVersion()
+    {
+        return indexVersion;
+    }
+
+    /**
+     * @return the number of results before the cursor.
+     */
+    public long getOffset()
+    {
+        return offset;
+    }
+
+    /**
+     * @return the index segment containing the first result after the cursor.
+     */
+    public int getSegment()
+    {
+        return segment;
+    }
+
+    /**
+     * @return the index-internal ID of the document containing the first result after the cursor.
+     */
+    public int getDocument()
+    {
+        return document;
+    }
+
+    /**
+     * @return the number of results in the document which are before the cursor.
+     */
+    public int getHitsInDocument()
+    {
+        return hitsInDocument;
+    }
+
+    @Override
+    public String toString()
+    {
+        StringBuilder builder = new StringBuilder();
+        builder.append("SearchCursor [indexName=");
+        builder.append(indexName);
+        builder.append(", indexVersion=");
+        builder.append(indexVersion);
+        builder.append(", offset=");
+        builder.append(offset);
+        builder.append(", segment=");
+        builder.append(segment);
+        builder.append(", document=");
+        builder.append(document);
+        builder.append(", hitsInDocument=");
+        builder.append(hitsInDocument);
+        builder.append("]");
+        return builder.toString();
+    }
+}
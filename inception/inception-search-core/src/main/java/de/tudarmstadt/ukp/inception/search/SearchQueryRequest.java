@@ -17,8 +17,10 @@
  */
 package de.tudarmstadt.ukp.inception.search;
 
+import java.util.Map;
 import java.util.Optional;
 
+import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationDocument;
 import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationFeature;
 import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationLayer;
 import de.tudarmstadt.ukp.clarin.webanno.model.Project;
@@ -39,6 +41,8 @@ public class SearchQueryRequest
     private final long offset;
     private final long count;
 
+    private final Map<SourceDocument, AnnotationDocument> annotatableDocuments;
+
     public SearchQueryRequest(Project aProject, User aUser, String aQuery)
     {
         this(aProject, aUser, aQuery, null);
@@ -53,6 +57,22 @@ public class SearchQueryRequest
     public SearchQueryRequest(Project aProject, User aUser, String aQuery,
             SourceDocument aLimitedToDocument, AnnotationLayer aAnnotationLayer,
             AnnotationFeature aAnnotationFeature, long aOffset, long aCount)
+    {
+        this(aProject, aUser, aQuery, aLimitedToDocument, aAnnotationLayer, aAnnotationFeature,
+                aOffset, aCount, null);
+    }
+
+    /**
+     * @param aAnnotatableDocuments
+     *            the documents the user can annotate as returned by
+     *            {@code DocumentService.listAnnotatableDocuments}. If they are known already,
+     *            e.g. when fetching further pages of the results of a query, passing them spares
+     *            the index from listing them again. May be {@code null}.
+     */
+    public SearchQueryRequest(Project aProject, User aUser, String aQuery,
+            SourceDocument aLimitedToDocument, AnnotationLayer aAnnotationLayer,
+            AnnotationFeature aAnnotationFeature, long aOffset, long aCount,
+            Map<SourceDocument, AnnotationDocument> aAnnotatableDocuments)
     {
         super();
         project = aProject;
@@ -63,6 +83,7 @@ public class SearchQueryRequest
         annotationFeature = aAnnotationFeature;
         offset = aOffset;
         count = aCount;
+        annotatableDocuments = aAnnotatableDocuments;
     }
 
     public Project getProject()
@@ -104,4 +125,9 @@ public class SearchQueryRequest
     {
         return count;
     }
+
+    public Optional<Map<SourceDocument, AnnotationDocument>> getAnnotatableDocuments()
+    {
+        return Optional.ofNullable(annotatableDocuments);
+    }
 }
@@ -0,0 +1,58 @@
+/*
+ * Licensed to the Technische Universität Darmstadt under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The Technische Universität Darmstadt 
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.
+ *  
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.search;
+
+import java.io.Serializable;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * A page of query results together with the cursor from which the next page can be fetched.
+ */
+public class SearchResultsPage
+    implements Serializable
+{
+    private static final long serialVersionUID = -1404207553519545185L;
+
+    private final Map<String, List<SearchResult>> results;
+    private final SearchCursor nextCursor;
+
+    public SearchResultsPage(Map<String, List<SearchResult>> aResults, SearchCursor aNextCursor)
+    {
+        results = aResults;
+        nextCursor = aNextCursor;
+    }
+
+    /**
+     * @return the results grouped by the feature values of the grouping feature or by document
+     *         title.
+     */
+    public Map<String, List<SearchResult>> getResults()
+    {
+        return results;
+    }
+
+    /**
+     * @return the cursor of the next page or nothing if there are no more results.
+     */
+    public Optional<SearchCursor> getNextCursor()
+    {
+        return Optional.ofNullable(nextCursor);
+    }
+}
@@ -24,6 +24,8 @@ import java.util.Optional;
 import java.util.OptionalInt;
 import java.util.Set;
 
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
 import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationDocument;
 import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationFeature;
 import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationLayer;
@@ -88,8 +90,44 @@ public interface SearchService
             AnnotationFeature aAnnotationFeature, long aOffset, long aCount)
         throws IOException, ExecutionException;
 
+    /**
+     * Receive a page of search results starting at the given cursor. Use
+     * {@link SearchCursor#atOffset(long)} to fetch the first page and the cursor returned with a
+     * page to fetch the following page. Otherwise, the parameters are the same as for
+     * {@link #query(User, Project, String, SourceDocument, AnnotationLayer, AnnotationFeature, long, long)}.
+     * 
+     * @param aUser
+     *            the current user
+     * @param aProject
+     *            the project to search in
+     * @param aQuery
+     *            the search query
+     * @param aDocument
+     *            limit search to this document or search in the whole project if null
+     * @param aAnnotationLayer
+     *            the layer that the grouping feature belongs to
+     * @param aAnnotationFeature
+     *            the feature that is used to group the results
+     * @param aCursor
+     *            the position of the page in the search results
+     * @param aCount
+     *            number of search results to be returned
+     * @return the page of search results and the cursor of the next page
+     * @throws IOException
+     * @throws ExecutionException
+     */
+    SearchResultsPage query(User aUser, Project aProject, String aQuery, SourceDocument aDocument,
+            AnnotationLayer aAnnotationLayer, AnnotationFeature aAnnotationFeature,
+            SearchCursor aCursor, long aCount)
+        throws IOException, ExecutionException;
+
     void reindex(Project aproject, Monitor aMonitor) throws IOException;
 
+    /**
+     * @return statistics on the cache of query result counts and statistics.
+     */
+    CacheStats getQueryCacheStats();
+
     /**
      * This method is only for testing. It allows waiting until the indexing process has completed
      * before issuing a query.
@@ -104,6 +142,15 @@ public interface SearchService
 
     void indexDocument(AnnotationDocument aAnnotationDocument, byte[] aBinaryCas);
 
+    /**
+     * Indexes the current state of the given annotation document from the CAS storage unless
+     * exactly this state has already been indexed.
+     * 
+     * @param aAnnotationDocument
+     *            the annotation document
+     */
+    void indexDocumentIfChanged(AnnotationDocument aAnnotationDocument);
+
     Optional<Progress> getIndexProgress(Project aProject);
 
     long determineNumOfQueryResults(User aUser, Project aProject, String aQuery,
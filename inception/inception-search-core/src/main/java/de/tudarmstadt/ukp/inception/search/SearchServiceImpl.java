@@ -18,7 +18,11 @@
 package de.tudarmstadt.ukp.inception.search;
 
 import static de.tudarmstadt.ukp.inception.search.SearchCasUtils.casToByteArray;
+import static de.tudarmstadt.ukp.inception.search.config.ReindexMode.SHADOW;
 import static java.lang.System.currentTimeMillis;
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+import static java.util.Collections.unmodifiableMap;
 import static java.util.concurrent.TimeUnit.SECONDS;
 
 import java.io.IOException;
@@ -29,6 +33,7 @@ import java.util.Map;
 import java.util.Optional;
 import java.util.OptionalInt;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -49,9 +54,12 @@ import org.springframework.context.event.EventListener;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.transaction.event.TransactionalEventListener;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
 import de.tudarmstadt.ukp.clarin.webanno.api.DocumentService;
 import de.tudarmstadt.ukp.clarin.webanno.api.ProjectService;
-import de.tudarmstadt.ukp.clarin.webanno.api.dao.casstorage.CasStorageSession;
 import de.tudarmstadt.ukp.clarin.webanno.api.event.AfterCasWrittenEvent;
 import de.tudarmstadt.ukp.clarin.webanno.api.event.AfterDocumentCreatedEvent;
 import de.tudarmstadt.ukp.clarin.webanno.api.event.BeforeDocumentRemovedEvent;
@@ -98,6 +106,13 @@ public class SearchServiceImpl
     private final SearchServiceProperties properties;
     private final ScheduledExecutorService indexClosingScheduler;
 
+    /**
+     * Result counts, statistics and annotatable documents by query. Each key includes the
+     * generation of the physical index, so cached results are no longer used as soon as the index
+     * changes.
+     */
+    private final Cache<List<Object>, Object> queryCache;
+
     // In fact - the only factory we have at the moment...
     private final String DEFAULT_PHSYICAL_INDEX_FACTORY = "mtasDocumentIndexFactory";
 
@@ -118,6 +133,12 @@ public class SearchServiceImpl
 
         indexClosingScheduler = new ScheduledThreadPoolExecutor(0);
         indexClosingScheduler.scheduleWithFixedDelay(this::closeIdleIndexes, 10, 10, SECONDS);
+
+        queryCache = Caffeine.newBuilder() //
+                .maximumSize(properties.getQueryCacheSize()) //
+                .expireAfterWrite(properties.getQueryCacheExpireDelay()) //
+                .recordStats() //
+                .build();
     }
 
     private void closeIdleIndexes()
@@ -365,8 +386,10 @@ public class SearchServiceImpl
     {
         log.trace("Starting afterAnnotationUpdate");
 
-        // Schedule new document index process
-        enqueueIndexDocument(aEvent.getDocument(), "afterAnnotationUpdate", aEvent.getCas());
+        // Schedule new document index process. The task reads the CAS only once the edits have
+        // settled, so we do not serialize the CAS on every write.
+        enqueue(new IndexAnnotationDocumentTask(aEvent.getDocument(), "afterAnnotationUpdate",
+                properties.getIndexDebounceDelay()));
     }
 
     @TransactionalEventListener(fallbackExecution = true)
@@ -380,8 +403,13 @@ public class SearchServiceImpl
         try (PooledIndex pooledIndex = acquireIndex(project.getId())) {
             pooledIndex.forceRecycle();
             Index index = pooledIndex.get();
-            index.setInvalid(true);
-            entityManager.merge(index);
+            // A shadow re-index keeps the current index available for queries until the new one
+            // is ready, so there is no need to mark it as invalid
+            if (properties.getReindexMode() != SHADOW
+                    || !index.getPhysicalIndex().isCreated()) {
+                index.setInvalid(true);
+                entityManager.merge(index);
+            }
         }
 
         // Schedule re-indexing of the physical index
@@ -441,6 +469,43 @@ public class SearchServiceImpl
         }
     }
 
+    @Override
+    public void indexDocumentIfChanged(AnnotationDocument aAnnotationDocument)
+    {
+        Project project = aAnnotationDocument.getProject();
+
+        try (PooledIndex pooledIndex = acquireIndex(project.getId())) {
+            Optional<Long> timestamp = documentService.getAnnotationCasTimestamp(
+                    aAnnotationDocument.getDocument(), aAnnotationDocument.getUser());
+
+            // The CAS may have been removed in the meantime
+            if (timestamp.isEmpty()) {
+                return;
+            }
+
+            if (timestamp.get().equals(
+                    pooledIndex.getIndexedCasTimestamp(aAnnotationDocument.getId()))) {
+                log.trace("Annotation document [{}]({}) in project [{}]({}) has not changed "
+                        + "since it was last indexed", aAnnotationDocument.getName(),
+                        aAnnotationDocument.getId(), project.getName(), project.getId());
+                return;
+            }
+
+            // If the CAS changes after we checked the timestamp, we index a newer state than the
+            // one we record here. That only causes the next check to index the document again.
+            CAS cas = documentService.readAnnotationCas(aAnnotationDocument);
+            if (indexDocument(pooledIndex, aAnnotationDocument, "indexDocumentIfChanged",
+                    casToByteArray(cas))) {
+                pooledIndex.setIndexedCasTimestamp(aAnnotationDocument.getId(), timestamp.get());
+            }
+        }
+        catch (IOException e) {
+            log.error("Error indexing annotation document [{}]({}) in project [{}]({})",
+                    aAnnotationDocument.getName(), aAnnotationDocument.getId(), project.getName(),
+                    project.getId(), e);
+        }
+    }
+
     private boolean isPerformNoMoreActions(PooledIndex aPooledIndex)
     {
         // If the index is dead or marked to force-recycle, we shouldn't waste time
@@ -449,8 +514,11 @@ public class SearchServiceImpl
         return aPooledIndex.isDead() || aPooledIndex.isForceRecycle() || shutdown;
     }
 
-    private void indexDocument(PooledIndex aPooledIndex, AnnotationDocument aAnnotationDocument,
-            String aTrigger, byte[] aBinaryCas)
+    /**
+     * @return whether the document has been added to the index.
+     */
+    private boolean indexDocument(PooledIndex aPooledIndex,
+            AnnotationDocument aAnnotationDocument, String aTrigger, byte[] aBinaryCas)
     {
         Project project = aAnnotationDocument.getProject();
 
@@ -458,8 +526,11 @@ public class SearchServiceImpl
                 aAnnotationDocument.getName(), aAnnotationDocument.getId(), project.getName(),
                 project.getId());
 
+        // We do not know which state of the CAS we are indexing here
+        aPooledIndex.setIndexedCasTimestamp(aAnnotationDocument.getId(), null);
+
         if (isPerformNoMoreActions(aPooledIndex)) {
-            return;
+            return false;
         }
 
         Index index = aPooledIndex.get();
@@ -472,11 +543,11 @@ public class SearchServiceImpl
             index.setInvalid(true);
             entityManager.merge(index);
             enqueueReindexTask(project, aTrigger);
-            return;
+            return false;
         }
 
         if (isPerformNoMoreActions(aPooledIndex)) {
-            return;
+            return false;
         }
 
         try {
@@ -485,11 +556,13 @@ public class SearchServiceImpl
                     aAnnotationDocument.getName(), aAnnotationDocument.getId(), project.getName(),
                     project.getId());
             index.getPhysicalIndex().indexDocument(aAnnotationDocument, aBinaryCas);
+            return true;
         }
         catch (IOException e) {
             log.error("Error indexing annotation document [{}]({}) in project [{}]({})",
                     aAnnotationDocument.getName(), aAnnotationDocument.getId(), project.getName(),
                     project.getId(), e);
+            return false;
         }
     }
 
@@ -535,6 +608,35 @@ public class SearchServiceImpl
         }
     }
 
+    @Override
+    @Transactional
+    public SearchResultsPage query(User aUser, Project aProject, String aQuery,
+            SourceDocument aDocument, AnnotationLayer aAnnotationLayer,
+            AnnotationFeature aAnnotationFeature, SearchCursor aCursor, long aCount)
+        throws IOException, ExecutionException
+    {
+        log.trace("Query [{}] for user [{}] in project [{}]({}) at {}", aQuery,
+                aUser.getUsername(), aProject.getName(), aProject.getId(), aCursor);
+
+        try (PooledIndex pooledIndex = acquireIndex(aProject.getId())) {
+            Index index = pooledIndex.get();
+
+            ensureIndexIsCreatedAndValid(aProject, index);
+
+            // The annotatable documents are listed afresh for the first page only. Further pages
+            // re-use them as long as the index does not change.
+            PhysicalIndex physicalIndex = index.getPhysicalIndex();
+            Map<SourceDocument, AnnotationDocument> annotatableDocuments = cached(aProject,
+                    physicalIndex, asList("annotatableDocuments", aUser.getUsername()),
+                    aCursor.getOffset() == 0, () -> unmodifiableMap(
+                            documentService.listAnnotatableDocuments(aProject, aUser)));
+
+            return physicalIndex.executeQuery(new SearchQueryRequest(aProject, aUser, aQuery,
+                    aDocument, aAnnotationLayer, aAnnotationFeature, aCursor.getOffset(), aCount,
+                    annotatableDocuments), aCursor);
+        }
+    }
+
     @Override
     public StatisticsResult getProjectStatistics(User aUser, Project aProject,
             OptionalInt aMinTokenPerDoc, OptionalInt aMaxTokenPerDoc,
@@ -544,9 +646,14 @@ public class SearchServiceImpl
         try (PooledIndex pooledIndex = acquireIndex(aProject.getId())) {
             Index index = pooledIndex.get();
             ensureIndexIsCreatedAndValid(aProject, index);
+            PhysicalIndex physicalIndex = index.getPhysicalIndex();
 
-            return index.getPhysicalIndex().getAnnotationStatistics(new StatisticRequest(aProject,
-                    aUser, aMinTokenPerDoc, aMaxTokenPerDoc, aFeatures, null));
+            // Callers receive their own copy so they cannot modify the cached result
+            return new StatisticsResult(cached(aProject, physicalIndex,
+                    asList("projectStatistics", aUser.getUsername(), aMinTokenPerDoc,
+                            aMaxTokenPerDoc, featureIds(aFeatures)),
+                    () -> physicalIndex.getAnnotationStatistics(new StatisticRequest(aProject,
+                            aUser, aMinTokenPerDoc, aMaxTokenPerDoc, aFeatures, null))));
         }
     }
 
@@ -561,18 +668,22 @@ public class SearchServiceImpl
             ensureIndexIsCreatedAndValid(aProject, index);
             PhysicalIndex physicalIndex = index.getPhysicalIndex();
 
-            StatisticRequest statRequest = new StatisticRequest(aProject, aUser, aMinTokenPerDoc,
-                    aMaxTokenPerDoc, aFeatures, aQuery);
-            LayerStatistics statistics = physicalIndex.getLayerStatistics(statRequest,
-                    statRequest.getQuery(), physicalIndex.getUniqueDocuments(statRequest));
-
-            statistics.setQuery(aQuery);
-            Map<String, LayerStatistics> statisticsMap = new HashMap<String, LayerStatistics>();
-            statisticsMap.put("query." + aQuery, statistics);
-
-            StatisticsResult results = new StatisticsResult(statRequest, statisticsMap, aFeatures);
-
-            return results;
+            return new StatisticsResult(cached(aProject, physicalIndex,
+                    asList("queryStatistics", aUser.getUsername(), aQuery, aMinTokenPerDoc,
+                            aMaxTokenPerDoc, featureIds(aFeatures)),
+                    () -> {
+                        StatisticRequest statRequest = new StatisticRequest(aProject, aUser,
+                                aMinTokenPerDoc, aMaxTokenPerDoc, aFeatures, aQuery);
+                        LayerStatistics statistics = physicalIndex.getLayerStatistics(statRequest,
+                                statRequest.getQuery(),
+                                physicalIndex.getUniqueDocuments(statRequest));
+
+                        statistics.setQuery(aQuery);
+                        Map<String, LayerStatistics> statisticsMap = new HashMap<>();
+                        statisticsMap.put("query." + aQuery, statistics);
+
+                        return new StatisticsResult(statRequest, statisticsMap, aFeatures);
+                    }));
         }
     }
 
@@ -593,10 +704,19 @@ public class SearchServiceImpl
             }
 
             Index index = pooledIndex.get();
-            index.setInvalid(true);
+            PhysicalIndex physicalIndex = index.getPhysicalIndex();
+
+            // If possible, build a new index while the current one continues to serve queries
+            boolean shadow = properties.getReindexMode() == SHADOW && physicalIndex.isCreated()
+                    && !index.getInvalid() && physicalIndex.startShadowIndexing();
 
-            // Clear the index
-            index.getPhysicalIndex().clear();
+            if (!shadow) {
+                index.setInvalid(true);
+
+                // Clear the index
+                physicalIndex.clear();
+                physicalIndex.startBulkIndexing();
+            }
 
             // Index all the annotation documents
             List<AnnotationDocument> annotationDocuments = new ArrayList<>();
@@ -605,44 +725,25 @@ public class SearchServiceImpl
             }
             List<SourceDocument> sourceDocuments = documentService.listSourceDocuments(aProject);
 
-            monitor.setTodo(annotationDocuments.size() + sourceDocuments.size());
-
-            for (AnnotationDocument doc : annotationDocuments) {
-                if (isPerformNoMoreActions(pooledIndex)) {
-                    return;
-                }
-
-                // Because serialization is a process which modifies internal data structures of
-                // the CAS, we need exclusive access the CAS for the time being.
-                // This can be relaxed after upgrading to UIMA 3.2.0 which includes a fix for
-                // for https://issues.apache.org/jira/browse/UIMA-6162
-                byte[] casAsByteArray;
-                try (CasStorageSession session = CasStorageSession.openNested()) {
-                    casAsByteArray = casToByteArray(documentService.readAnnotationCas(doc));
-                }
-                indexDocument(pooledIndex, doc, "reindex", casAsByteArray);
-
-                monitor.incDone();
+            ReindexPipeline pipeline = new ReindexPipeline(aProject, documentService,
+                    physicalIndex, properties.getReindexReadThreads(),
+                    properties.getReindexIndexThreads(),
+                    () -> isPerformNoMoreActions(pooledIndex), monitor);
+            boolean complete = false;
+            try {
+                complete = pipeline.run(annotationDocuments, sourceDocuments);
             }
-
-            // Index all the source documents
-            for (SourceDocument doc : sourceDocuments) {
-                if (isPerformNoMoreActions(pooledIndex)) {
-                    return;
+            finally {
+                if (complete) {
+                    physicalIndex.finishBulkIndexing();
                 }
-
-                // Because serialization is a process which modifies internal data structures of
-                // the CAS, we need exclusive access the CAS for the time being.
-                // This can be relaxed after upgrading to UIMA 3.2.0 which includes a fix for
-                // for https://issues.apache.org/jira/browse/UIMA-6162
-                byte[] casAsByteArray;
-                try (CasStorageSession session = CasStorageSession.openNested()) {
-                    casAsByteArray = casToByteArray(documentService.createOrReadInitialCas(doc));
+                else {
+                    physicalIndex.abortBulkIndexing();
                 }
+            }
 
-                indexDocument(pooledIndex, doc, casAsByteArray);
-
-                monitor.incDone();
+            if (!complete) {
+                return;
             }
 
             // After re-indexing, reset the invalid flag
@@ -708,9 +809,76 @@ public class SearchServiceImpl
             ensureIndexIsCreatedAndValid(aProject, index);
 
             // Index is valid, try to execute the query
-            return index.getPhysicalIndex().numberOfQueryResults(new SearchQueryRequest(aProject,
-                    aUser, aQuery, aDocument, aAnnotationLayer, aAnnotationFeature, 0L, 0L));
+            PhysicalIndex physicalIndex = index.getPhysicalIndex();
+            return cached(aProject, physicalIndex,
+                    asList("count", aUser.getUsername(), aQuery,
+                            aDocument != null ? aDocument.getId() : null,
+                            aAnnotationLayer != null ? aAnnotationLayer.getId() : null,
+                            aAnnotationFeature != null ? aAnnotationFeature.getId() : null),
+                    () -> physicalIndex.numberOfQueryResults(new SearchQueryRequest(aProject,
+                            aUser, aQuery, aDocument, aAnnotationLayer, aAnnotationFeature, 0L,
+                            0L)));
+        }
+    }
+
+    /**
+     * Looks up the result of a query in the query cache or computes and caches it. The project and
+     * the current generation of its index are added to the given key.
+     */
+    private <T> T cached(Project aProject, PhysicalIndex aIndex, List<Object> aKey,
+            QueryCacheLoader<T> aLoader)
+        throws IOException, ExecutionException
+    {
+        return cached(aProject, aIndex, aKey, false, aLoader);
+    }
+
+    /**
+     * Like {@link #cached(Project, PhysicalIndex, List, QueryCacheLoader)}, but if
+     * {@code aRefresh} is set, the result is always computed and replaces any cached result.
+     */
+    @SuppressWarnings("unchecked")
+    private <T> T cached(Project aProject, PhysicalIndex aIndex, List<Object> aKey,
+            boolean aRefresh, QueryCacheLoader<T> aLoader)
+        throws IOException, ExecutionException
+    {
+        long generation = properties.getQueryCacheSize() > 0 ? aIndex.getGeneration() : -1;
+        if (generation == -1) {
+            return aLoader.load();
+        }
+
+        List<Object> key = new ArrayList<>(aKey);
+        key.add(aProject.getId());
+        key.add(generation);
+
+        T result = aRefresh ? null : (T) queryCache.getIfPresent(key);
+        if (result == null) {
+            result = aLoader.load();
+            queryCache.put(key, result);
         }
+
+        return result;
+    }
+
+    private static List<Long> featureIds(Set<AnnotationFeature> aFeatures)
+    {
+        if (aFeatures == null) {
+            return emptyList();
+        }
+
+        return aFeatures.stream().map(AnnotationFeature::getId).sorted()
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public CacheStats getQueryCacheStats()
+    {
+        return queryCache.stats();
+    }
+
+    @FunctionalInterface
+    private interface QueryCacheLoader<T>
+    {
+        T load() throws IOException, ExecutionException;
     }
 
     /**
@@ -763,19 +931,6 @@ public class SearchServiceImpl
         }
     }
 
-    private void enqueueIndexDocument(AnnotationDocument aAnnotationDocument, String aTrigger,
-            CAS aCas)
-    {
-        try {
-            enqueue(new IndexAnnotationDocumentTask(aAnnotationDocument, aTrigger,
-                    casToByteArray(aCas)));
-        }
-        catch (IOException e) {
-            log.error("Unable to enqueue document [{}]({}) for indexing",
-                    aAnnotationDocument.getName(), aAnnotationDocument.getId(), e);
-        }
-    }
-
     /**
      * Put a new indexing task in the queue. Indexing tasks can be of three types:
      * <ul>
@@ -808,6 +963,12 @@ public class SearchServiceImpl
         private AtomicBoolean forceRecycle;
         private AtomicBoolean dead;
 
+        /**
+         * CAS timestamps of the annotation documents as they were last indexed, by annotation
+         * document ID.
+         */
+        private final Map<Long, Long> indexedCasTimestamps = new ConcurrentHashMap<>();
+
         public PooledIndex(Index aDelegate)
         {
             delegate = aDelegate;
@@ -834,6 +995,21 @@ public class SearchServiceImpl
             lastAccess.set(currentTimeMillis());
         }
 
+        public Long getIndexedCasTimestamp(long aAnnotationDocumentId)
+        {
+            return indexedCasTimestamps.get(aAnnotationDocumentId);
+        }
+
+        public void setIndexedCasTimestamp(long aAnnotationDocumentId, Long aTimestamp)
+        {
+            if (aTimestamp != null) {
+                indexedCasTimestamps.put(aAnnotationDocumentId, aTimestamp);
+            }
+            else {
+                indexedCasTimestamps.remove(aAnnotationDocumentId);
+            }
+        }
+
         public void forceRecycle()
         {
             forceRecycle.set(true);
@@ -20,6 +20,8 @@ package de.tudarmstadt.ukp.inception.search;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.OptionalInt;
 import java.util.Set;
@@ -61,6 +63,32 @@ public class StatisticsResult
         features = aFeatures;
     }
 
+    /**
+     * Creates a copy of the given result which does not share any statistics with it.
+     */
+    public StatisticsResult(StatisticsResult aOther)
+    {
+        maxTokenPerDoc = aOther.maxTokenPerDoc;
+        minTokenPerDoc = aOther.minTokenPerDoc;
+        user = aOther.user;
+        project = aOther.project;
+        query = aOther.query;
+        results = copy(aOther.results);
+        nonNullResults = copy(aOther.nonNullResults);
+        features = aOther.features != null ? new LinkedHashSet<>(aOther.features) : null;
+    }
+
+    private static Map<String, LayerStatistics> copy(Map<String, LayerStatistics> aResults)
+    {
+        if (aResults == null) {
+            return null;
+        }
+
+        Map<String, LayerStatistics> copy = new LinkedHashMap<>();
+        aResults.forEach((key, value) -> copy.put(key, new LayerStatistics(value)));
+        return copy;
+    }
+
     public ArrayList<String> getAllLayerNames()
     {
         return new ArrayList<String>(results.keySet());
@@ -0,0 +1,32 @@
+/*
+ * Licensed to the Technische Universität Darmstadt under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The Technische Universität Darmstadt 
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.
+ *  
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.search.config;
+
+public enum ReindexMode
+{
+    /**
+     * The index is cleared and rebuilt in place. Queries fail until re-indexing is complete.
+     */
+    IN_PLACE,
+
+    /**
+     * A new index is built next to the current one, which keeps serving queries. Once complete,
+     * the new index replaces the current one.
+     */
+    SHADOW;
+}
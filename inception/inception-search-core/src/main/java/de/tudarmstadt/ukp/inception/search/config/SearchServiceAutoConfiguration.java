@@ -40,6 +40,7 @@ import de.tudarmstadt.ukp.inception.search.index.PhysicalIndexFactory;
 import de.tudarmstadt.ukp.inception.search.index.PhysicalIndexRegistry;
 import de.tudarmstadt.ukp.inception.search.index.PhysicalIndexRegistryImpl;
 import de.tudarmstadt.ukp.inception.search.log.SearchQueryEventAdapter;
+import de.tudarmstadt.ukp.inception.search.metrics.SearchMetricsImpl;
 
 @Configuration
 @EnableConfigurationProperties(SearchServicePropertiesImpl.class)
@@ -55,6 +56,13 @@ public class SearchServiceAutoConfiguration
                 aSchedulingService, aProperties);
     }
 
+    @Bean
+    @ConditionalOnProperty(prefix = "monitoring.metrics", name = "enabled", havingValue = "true")
+    public SearchMetricsImpl searchMetrics(SearchService aSearchService)
+    {
+        return new SearchMetricsImpl(aSearchService);
+    }
+
     @Bean
     public SearchQueryEventAdapter searchQueryEventAdapter()
     {
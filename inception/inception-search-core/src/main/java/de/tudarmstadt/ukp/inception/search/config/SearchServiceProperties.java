@@ -27,4 +27,40 @@ public interface SearchServiceProperties
      * Time to keep an index open after it has last been used.
      */
     Duration getIndexKeepOpenTime();
+
+    /**
+     * Number of threads reading CASes from storage while re-indexing a project.
+     */
+    int getReindexReadThreads();
+
+    /**
+     * Number of threads parsing CASes and adding them to the index while re-indexing a project.
+     */
+    int getReindexIndexThreads();
+
+    /**
+     * Whether a project is re-indexed in place or into a shadow index which replaces the current
+     * index once it is complete.
+     */
+    ReindexMode getReindexMode();
+
+    /**
+     * Time to wait after a change to an annotation document before indexing it. Further changes
+     * within this time do not extend the wait but are indexed together with the first change, so
+     * a burst of edits is indexed only once.
+     */
+    Duration getIndexDebounceDelay();
+
+    /**
+     * Maximum number of query result counts and statistics kept in the query cache. Set to 0 to
+     * disable the cache.
+     */
+    int getQueryCacheSize();
+
+    /**
+     * Time after which a cached query result is discarded. Cached results are discarded anyway
+     * when the index changes, but this also limits how long changes of the document states or
+     * permissions can go unnoticed.
+     */
+    Duration getQueryCacheExpireDelay();
 }
@@ -29,6 +29,18 @@ public class SearchServicePropertiesImpl
 
     private Duration indexKeepOpenTime = Duration.ofMinutes(10);
 
+    private int reindexReadThreads = 2;
+
+    private int reindexIndexThreads = Runtime.getRuntime().availableProcessors();
+
+    private ReindexMode reindexMode = ReindexMode.SHADOW;
+
+    private Duration indexDebounceDelay = Duration.ofSeconds(2);
+
+    private int queryCacheSize = 1000;
+
+    private Duration queryCacheExpireDelay = Duration.ofMinutes(10);
+
     @Override
     public boolean isEnabled()
     {
@@ -50,4 +62,70 @@ public class SearchServicePropertiesImpl
     {
         indexKeepOpenTime = aIndexKeepOpenTime;
     }
+
+    @Override
+    public int getReindexReadThreads()
+    {
+        return reindexReadThreads;
+    }
+
+    public void setReindexReadThreads(int aReindexReadThreads)
+    {
+        reindexReadThreads = aReindexReadThreads;
+    }
+
+    @Override
+    public int getReindexIndexThreads()
+    {
+        return reindexIndexThreads;
+    }
+
+    public void setReindexIndexThreads(int aReindexIndexThreads)
+    {
+        reindexIndexThreads = aReindexIndexThreads;
+    }
+
+    @Override
+    public ReindexMode getReindexMode()
+    {
+        return reindexMode;
+    }
+
+    public void setReindexMode(ReindexMode aReindexMode)
+    {
+        reindexMode = aReindexMode;
+    }
+
+    @Override
+    public Duration getIndexDebounceDelay()
+    {
+        return indexDebounceDelay;
+    }
+
+    public void setIndexDebounceDelay(Duration aIndexDebounceDelay)
+    {
+        indexDebounceDelay = aIndexDebounceDelay;
+    }
+
+    @Override
+    public int getQueryCacheSize()
+    {
+        return queryCacheSize;
+    }
+
+    public void setQueryCacheSize(int aQueryCacheSize)
+    {
+        queryCacheSize = aQueryCacheSize;
+    }
+
+    @Override
+    public Duration getQueryCacheExpireDelay()
+    {
+        return queryCacheExpireDelay;
+    }
+
+    public void setQueryCacheExpireDelay(Duration aQueryCacheExpireDelay)
+    {
+        queryCacheExpireDelay = aQueryCacheExpireDelay;
+    }
 }
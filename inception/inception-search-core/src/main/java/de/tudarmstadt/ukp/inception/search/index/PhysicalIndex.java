@@ -26,8 +26,10 @@ import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationDocument;
 import de.tudarmstadt.ukp.clarin.webanno.model.SourceDocument;
 import de.tudarmstadt.ukp.inception.search.ExecutionException;
 import de.tudarmstadt.ukp.inception.search.LayerStatistics;
+import de.tudarmstadt.ukp.inception.search.SearchCursor;
 import de.tudarmstadt.ukp.inception.search.SearchQueryRequest;
 import de.tudarmstadt.ukp.inception.search.SearchResult;
+import de.tudarmstadt.ukp.inception.search.SearchResultsPage;
 import de.tudarmstadt.ukp.inception.search.StatisticRequest;
 import de.tudarmstadt.ukp.inception.search.StatisticsResult;
 
@@ -48,11 +50,39 @@ public interface PhysicalIndex
 
     boolean isOpen();
 
+    /**
+     * @return a value which changes whenever changes to the index become visible to queries. Query
+     *         results may be cached as long as the generation stays the same. If the index does
+     *         not track its generation, {@code -1} is returned and results are not cached.
+     * @throws IOException
+     */
+    default long getGeneration() throws IOException
+    {
+        return -1;
+    }
+
     void close();
 
     Map<String, List<SearchResult>> executeQuery(SearchQueryRequest aRequest)
         throws IOException, ExecutionException;
 
+    /**
+     * Executes the query and returns up to {@link SearchQueryRequest#getCount()} results following
+     * the given cursor. The offset of the request is ignored. Only the results on the returned page
+     * are materialized, so fetching the next page using the returned cursor does not require
+     * iterating over the results of the previous pages again.
+     * 
+     * @param aRequest
+     *            the query request
+     * @param aCursor
+     *            the position of the page in the results
+     * @return the page of results and the cursor of the next page
+     * @throws IOException
+     * @throws ExecutionException
+     */
+    SearchResultsPage executeQuery(SearchQueryRequest aRequest, SearchCursor aCursor)
+        throws IOException, ExecutionException;
+
     long numberOfQueryResults(SearchQueryRequest aSearchQueryRequest)
         throws IOException, ExecutionException;
 
@@ -89,4 +119,83 @@ public interface PhysicalIndex
     public Optional<String> getTimestamp(long aSrcDocId, long aAnnoDocId) throws IOException;
 
     void indexDocument(SourceDocument aSourceDocument, byte[] aBinaryCas) throws IOException;
+
+    /**
+     * Prepares the index for adding a large number of documents using
+     * {@link #bulkIndexDocument(SourceDocument, byte[])} and
+     * {@link #bulkIndexDocument(AnnotationDocument, byte[])}, e.g. by enlarging write buffers and
+     * suspending periodic commits. The index should have been {@link #clear() cleared} before.
+     * 
+     * @throws IOException
+     */
+    default void startBulkIndexing() throws IOException
+    {
+        // Nothing to do by default
+    }
+
+    /**
+     * Prepares a new, empty index which receives all documents added through
+     * {@link #bulkIndexDocument(SourceDocument, byte[])} and
+     * {@link #bulkIndexDocument(AnnotationDocument, byte[])} while the current index continues to
+     * serve queries and regular updates. {@link #finishBulkIndexing()} replaces the current index
+     * with the new one, {@link #abortBulkIndexing()} discards the new index.
+     * 
+     * @return whether shadow indexing is supported. If not, nothing has been done and the caller
+     *         should fall back to {@link #clear() clearing} the index and
+     *         {@link #startBulkIndexing()}.
+     * @throws IOException
+     */
+    default boolean startShadowIndexing() throws IOException
+    {
+        return false;
+    }
+
+    /**
+     * Adds a source document as part of a bulk indexing operation. Unlike
+     * {@link #indexDocument(SourceDocument, byte[])}, this does not remove older versions of the
+     * document and does not trigger a commit. It may be called concurrently from multiple threads.
+     * 
+     * @throws IOException
+     */
+    default void bulkIndexDocument(SourceDocument aSourceDocument, byte[] aBinaryCas)
+        throws IOException
+    {
+        indexDocument(aSourceDocument, aBinaryCas);
+    }
+
+    /**
+     * Adds an annotation document as part of a bulk indexing operation. Unlike
+     * {@link #indexDocument(AnnotationDocument, byte[])}, this does not remove older versions of
+     * the document and does not trigger a commit. It may be called concurrently from multiple
+     * threads.
+     * 
+     * @throws IOException
+     */
+    default void bulkIndexDocument(AnnotationDocument aDocument, byte[] aBinaryCas)
+        throws IOException
+    {
+        indexDocument(aDocument, aBinaryCas);
+    }
+
+    /**
+     * Commits all documents added since {@link #startBulkIndexing()} and restores the regular
+     * indexing configuration.
+     * 
+     * @throws IOException
+     */
+    default void finishBulkIndexing() throws IOException
+    {
+        // Nothing to do by default
+    }
+
+    /**
+     * Ends a bulk indexing operation which did not complete. A shadow index is discarded, while
+     * documents already added to the current index are kept.
+     * 
+     * @throws IOException
+     */
+    default void abortBulkIndexing() throws IOException
+    {
+        finishBulkIndexing();
+    }
 }
@@ -0,0 +1,70 @@
+/*
+ * Licensed to the Technische Universität Darmstadt under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The Technische Universität Darmstadt 
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.
+ *  
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.search.metrics;
+
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+
+import de.tudarmstadt.ukp.inception.search.SearchService;
+import de.tudarmstadt.ukp.inception.search.config.SearchServiceAutoConfiguration;
+
+/**
+ * <p>
+ * This class is exposed as a Spring Component via
+ * {@link SearchServiceAutoConfiguration#searchMetrics}.
+ * </p>
+ */
+@ManagedResource
+public class SearchMetricsImpl
+    implements SearchMetrics
+{
+    private final SearchService searchService;
+
+    public SearchMetricsImpl(SearchService aSearchService)
+    {
+        searchService = aSearchService;
+    }
+
+    @Override
+    @ManagedAttribute
+    public long getQueryCacheHits()
+    {
+        return searchService.getQueryCacheStats().hitCount();
+    }
+
+    @Override
+    @ManagedAttribute
+    public long getQueryCacheMisses()
+    {
+        return searchService.getQueryCacheStats().missCount();
+    }
+
+    @Override
+    @ManagedAttribute
+    public double getQueryCacheHitRate()
+    {
+        return searchService.getQueryCacheStats().hitRate();
+    }
+
+    @Override
+    @ManagedAttribute
+    public long getQueryCacheEvictions()
+    {
+        return searchService.getQueryCacheStats().evictionCount();
+    }
+}
@@ -21,6 +21,7 @@ public class Monitor
 {
     private int done;
     private int todo;
+    private long startTime;
 
     public synchronized void setDone(int aDone)
     {
@@ -30,6 +31,7 @@ public class Monitor
     public synchronized void setTodo(int aTodo)
     {
         todo = aTodo;
+        startTime = System.currentTimeMillis();
     }
 
     public synchronized void set(int aDone, int aTodo)
@@ -47,4 +49,17 @@ public class Monitor
     {
         done++;
     }
+
+    /**
+     * @return the number of items done per second since the number of items to do has been set.
+     */
+    public synchronized double getThroughput()
+    {
+        long elapsed = System.currentTimeMillis() - startTime;
+        if (startTime == 0 || elapsed <= 0) {
+            return 0.0;
+        }
+
+        return done * 1000.0 / elapsed;
+    }
 }
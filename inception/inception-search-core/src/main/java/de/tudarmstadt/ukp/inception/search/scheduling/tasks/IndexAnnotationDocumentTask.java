@@ -24,7 +24,12 @@ package de.tudarmstadt.ukp.inception.search.scheduling.tasks;
 import static de.tudarmstadt.ukp.inception.scheduling.MatchResult.DISCARD_OR_QUEUE_THIS;
 import static de.tudarmstadt.ukp.inception.scheduling.MatchResult.NO_MATCH;
 import static de.tudarmstadt.ukp.inception.scheduling.MatchResult.UNQUEUE_EXISTING_AND_QUEUE_THIS;
+import static java.util.Arrays.asList;
 
+import java.time.Duration;
+import java.util.Collection;
+
+import org.apache.commons.lang3.tuple.Pair;
 import org.springframework.beans.factory.annotation.Autowired;
 
 import de.tudarmstadt.ukp.clarin.webanno.api.dao.casstorage.CasStorageSession;
@@ -35,26 +40,53 @@ import de.tudarmstadt.ukp.inception.search.SearchService;
 import de.tudarmstadt.ukp.inception.search.model.Progress;
 
 /**
- * (Re)indexes the annotation document for a specific user.
+ * (Re)indexes the annotation document for a specific user. If no CAS is given, the task waits for
+ * the given debounce delay and then indexes the current state of the document from the CAS
+ * storage. While such a task is queued, further tasks of this kind for the same document are
+ * discarded, so a series of quick edits results in the document being indexed only once and the
+ * indexing is not postponed indefinitely while the user keeps editing.
  */
 public class IndexAnnotationDocumentTask
     extends IndexingTask_ImplBase
 {
     private @Autowired SearchService searchService;
 
+    private final long runnableAfter;
+
     private int done = 0;
 
     public IndexAnnotationDocumentTask(AnnotationDocument aAnnotationDocument, String aTrigger,
             byte[] aBinaryCas)
     {
         super(aAnnotationDocument, aTrigger, aBinaryCas);
+
+        runnableAfter = 0;
+    }
+
+    public IndexAnnotationDocumentTask(AnnotationDocument aAnnotationDocument, String aTrigger,
+            Duration aDebounceDelay)
+    {
+        super(aAnnotationDocument, aTrigger);
+
+        runnableAfter = System.currentTimeMillis() + aDebounceDelay.toMillis();
+    }
+
+    @Override
+    public boolean isReadyToStart()
+    {
+        return System.currentTimeMillis() >= runnableAfter;
     }
 
     @Override
     public void execute()
     {
         try (CasStorageSession session = CasStorageSession.open()) {
-            searchService.indexDocument(super.getAnnotationDocument(), super.getBinaryCas());
+            if (super.getBinaryCas() != null) {
+                searchService.indexDocument(super.getAnnotationDocument(), super.getBinaryCas());
+            }
+            else {
+                searchService.indexDocumentIfChanged(super.getAnnotationDocument());
+            }
         }
 
         done++;
@@ -79,12 +111,36 @@ public class IndexAnnotationDocumentTask
         }
 
         if (aTask instanceof IndexAnnotationDocumentTask) {
-            if (getAnnotationDocument().getId() == ((IndexAnnotationDocumentTask) aTask)
-                    .getAnnotationDocument().getId()) {
+            IndexAnnotationDocumentTask other = (IndexAnnotationDocumentTask) aTask;
+            if (getAnnotationDocument().getId() == other.getAnnotationDocument().getId()) {
+                // Both tasks index the current state from the CAS storage, so we keep the existing
+                // one and with it the earlier deadline. Replacing it would restart the debounce
+                // delay on every edit.
+                if (getBinaryCas() == null && other.getBinaryCas() == null) {
+                    return DISCARD_OR_QUEUE_THIS;
+                }
+
                 return UNQUEUE_EXISTING_AND_QUEUE_THIS;
             }
         }
 
         return NO_MATCH;
     }
+
+    @Override
+    public Collection<?> getMatchKeys()
+    {
+        return asList(projectKey(getProject()), documentKey());
+    }
+
+    @Override
+    public Collection<?> getMatchCandidateKeys()
+    {
+        return asList(ReindexTask.reindexKey(getProject()), documentKey());
+    }
+
+    private Object documentKey()
+    {
+        return Pair.of(IndexAnnotationDocumentTask.class, getAnnotationDocument().getId());
+    }
 }
@@ -24,7 +24,11 @@ package de.tudarmstadt.ukp.inception.search.scheduling.tasks;
 import static de.tudarmstadt.ukp.inception.scheduling.MatchResult.DISCARD_OR_QUEUE_THIS;
 import static de.tudarmstadt.ukp.inception.scheduling.MatchResult.NO_MATCH;
 import static de.tudarmstadt.ukp.inception.scheduling.MatchResult.UNQUEUE_EXISTING_AND_QUEUE_THIS;
+import static java.util.Arrays.asList;
 
+import java.util.Collection;
+
+import org.apache.commons.lang3.tuple.Pair;
 import org.springframework.beans.factory.annotation.Autowired;
 
 import de.tudarmstadt.ukp.clarin.webanno.api.dao.casstorage.CasStorageSession;
@@ -94,4 +98,21 @@ public class IndexSourceDocumentTask
 
         return NO_MATCH;
     }
+
+    @Override
+    public Collection<?> getMatchKeys()
+    {
+        return asList(projectKey(getProject()), documentKey());
+    }
+
+    @Override
+    public Collection<?> getMatchCandidateKeys()
+    {
+        return asList(ReindexTask.reindexKey(getProject()), documentKey());
+    }
+
+    private Object documentKey()
+    {
+        return Pair.of(IndexSourceDocumentTask.class, getSourceDocument().getId());
+    }
 }
@@ -17,16 +17,20 @@
  */
 package de.tudarmstadt.ukp.inception.search.scheduling.tasks;
 
+import static de.tudarmstadt.ukp.inception.scheduling.TaskPriority.LOW;
 import static org.apache.commons.lang3.Validate.notNull;
 
 import java.util.Objects;
 
+import org.apache.commons.lang3.tuple.Pair;
+
 import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationDocument;
 import de.tudarmstadt.ukp.clarin.webanno.model.Project;
 import de.tudarmstadt.ukp.clarin.webanno.model.SourceDocument;
 import de.tudarmstadt.ukp.clarin.webanno.security.model.User;
 import de.tudarmstadt.ukp.inception.scheduling.MatchableTask;
 import de.tudarmstadt.ukp.inception.scheduling.Task;
+import de.tudarmstadt.ukp.inception.scheduling.TaskPriority;
 import de.tudarmstadt.ukp.inception.search.model.Progress;
 
 /**
@@ -73,6 +77,15 @@ public abstract class IndexingTask_ImplBase
         binaryCas = aBinaryCas;
     }
 
+    public IndexingTask_ImplBase(AnnotationDocument aAnnotationDocument, String aTrigger)
+    {
+        super(new User(aAnnotationDocument.getUser()), aAnnotationDocument.getProject(), aTrigger);
+
+        sourceDocument = null;
+        annotationDocument = aAnnotationDocument;
+        binaryCas = null;
+    }
+
     public SourceDocument getSourceDocument()
     {
         return sourceDocument;
@@ -95,6 +108,20 @@ public abstract class IndexingTask_ImplBase
 
     public abstract Progress getProgress();
 
+    @Override
+    public TaskPriority getPriority()
+    {
+        return LOW;
+    }
+
+    /**
+     * @return match key under which all indexing tasks of the given project are indexed.
+     */
+    static Object projectKey(Project aProject)
+    {
+        return Pair.of(IndexingTask_ImplBase.class, aProject.getId());
+    }
+
     @Override
     public String toString()
     {
@@ -23,9 +23,12 @@ package de.tudarmstadt.ukp.inception.search.scheduling.tasks;
 
 import static de.tudarmstadt.ukp.inception.scheduling.MatchResult.NO_MATCH;
 import static de.tudarmstadt.ukp.inception.scheduling.MatchResult.UNQUEUE_EXISTING_AND_QUEUE_THIS;
+import static java.util.Arrays.asList;
 
 import java.io.IOException;
+import java.util.Collection;
 
+import org.apache.commons.lang3.tuple.Pair;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -86,4 +89,21 @@ public class ReindexTask
 
         return NO_MATCH;
     }
+
+    @Override
+    public Collection<?> getMatchKeys()
+    {
+        return asList(projectKey(getProject()), reindexKey(getProject()));
+    }
+
+    @Override
+    public Collection<?> getMatchCandidateKeys()
+    {
+        return asList(projectKey(getProject()));
+    }
+
+    static Object reindexKey(Project aProject)
+    {
+        return Pair.of(ReindexTask.class, aProject.getId());
+    }
 }
@@ -27,6 +27,9 @@ import static de.tudarmstadt.ukp.clarin.webanno.model.AnnotationDocumentState.IG
 import static de.tudarmstadt.ukp.inception.search.index.mtas.MtasUimaParser.PARAM_PROJECT_ID;
 import static de.tudarmstadt.ukp.inception.search.index.mtas.MtasUimaParser.getIndexedName;
 import static de.tudarmstadt.ukp.inception.search.index.mtas.MtasUtils.decodeFSAddress;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
 import static java.util.concurrent.TimeUnit.SECONDS;
 import static mtas.analysis.util.MtasTokenizerFactory.ARGUMENT_PARSER;
 import static mtas.analysis.util.MtasTokenizerFactory.ARGUMENT_PARSER_ARGS;
@@ -38,6 +41,8 @@ import java.io.IOException;
 import java.io.Reader;
 import java.io.StringReader;
 import java.lang.reflect.InvocationTargetException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.text.BreakIterator;
 import java.util.ArrayList;
 import java.util.Comparator;
@@ -53,6 +58,9 @@ import java.util.Set;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang3.StringUtils;
@@ -67,6 +75,7 @@ import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
 import org.apache.lucene.document.StringField;
 import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.DirectoryReader;
 import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.IndexWriterConfig;
@@ -84,10 +93,14 @@ import org.apache.lucene.search.TermQuery;
 import org.apache.lucene.search.TopDocs;
 import org.apache.lucene.search.spans.SpanWeight;
 import org.apache.lucene.search.spans.Spans;
+import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.FSDirectory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
 import com.github.openjson.JSONObject;
 
 import de.tudarmstadt.ukp.clarin.webanno.api.AnnotationSchemaService;
@@ -104,8 +117,10 @@ import de.tudarmstadt.ukp.inception.search.FeatureIndexingSupport;
 import de.tudarmstadt.ukp.inception.search.FeatureIndexingSupportRegistry;
 import de.tudarmstadt.ukp.inception.search.LayerStatistics;
 import de.tudarmstadt.ukp.inception.search.PrimitiveUimaIndexingSupport;
+import de.tudarmstadt.ukp.inception.search.SearchCursor;
 import de.tudarmstadt.ukp.inception.search.SearchQueryRequest;
 import de.tudarmstadt.ukp.inception.search.SearchResult;
+import de.tudarmstadt.ukp.inception.search.SearchResultsPage;
 import de.tudarmstadt.ukp.inception.search.StatisticRequest;
 import de.tudarmstadt.ukp.inception.search.StatisticsResult;
 import de.tudarmstadt.ukp.inception.search.index.PhysicalIndex;
@@ -130,6 +145,12 @@ public class MtasDocumentIndex
 {
     private static final String INDEX = "indexMtas";
 
+    /**
+     * File in the project folder which contains the name of the index folder currently in use. If
+     * it does not exist, {@link #INDEX} is used.
+     */
+    private static final String INDEX_POINTER = INDEX + ".current";
+
     /**
      * Constant for the field which carries the unique identifier for the index document consisting:
      * {@code [sourceDocumentId]/[annotationDocumentId]}
@@ -165,8 +186,32 @@ public class MtasDocumentIndex
 
     private static final int RESULT_WINDOW_SIZE = 3;
 
+    /**
+     * Size of the in-memory buffer used while bulk indexing. A large buffer causes Lucene to write
+     * fewer and larger segments which need to be merged less often.
+     */
+    private static final double BULK_RAM_BUFFER_SIZE_MB = 256.0;
+
     private static final String EMPTY_FEATURE_VALUE_KEY = "<Empty>";
 
+    private static final int PARSED_QUERY_CACHE_SIZE = 1000;
+
+    /**
+     * Parsed queries by pre-processed query string. Parsing does not depend on the project, so the
+     * cache is shared by all indexes. MTAS queries are not modified by executing them except for
+     * disabling two-phase iteration which does not affect the results.
+     */
+    private static final Cache<String, MtasSpanQuery> PARSED_QUERY_CACHE = Caffeine.newBuilder()
+            .maximumSize(PARSED_QUERY_CACHE_SIZE) //
+            .recordStats() //
+            .build();
+
+    /**
+     * Source of index generations. It is shared by all indexes, so a generation is never reused,
+     * not even after an index has been closed and opened again.
+     */
+    private static final AtomicLong GENERATIONS = new AtomicLong();
+
     private final Logger log = LoggerFactory.getLogger(getClass());
 
     private final FeatureIndexingSupportRegistry featureIndexingSupportRegistry;
@@ -180,6 +225,23 @@ public class MtasDocumentIndex
     private IndexWriter _indexWriter;
     private ReferenceManager<IndexSearcher> _searcherManager;
     private ScheduledFuture<?> _commitFuture;
+    private File _indexDir;
+
+    // Changes on every update of the live index. Queries refresh their searcher if it has not yet
+    // been refreshed since the last change.
+    private volatile long generation = GENERATIONS.incrementAndGet();
+    private volatile long refreshedGeneration = -1;
+
+    // Updates of the live index share the read lock, so updates of different documents can run
+    // concurrently. Starting a shadow rebuild and swapping in the shadow index take the write lock
+    // so that no unjournaled update is in flight at these points. The lock must be acquired
+    // before the monitor of this object.
+    private final ReadWriteLock updateLock = new ReentrantReadWriteLock();
+
+    // State of a shadow rebuild - all guarded by the monitor of this object
+    private IndexWriter _shadowIndexWriter;
+    private File _shadowIndexDir;
+    private Map<Term, IndexUpdate> _shadowJournal;
 
     public MtasDocumentIndex(Project aProject, DocumentService aDocumentService,
             AnnotationSchemaService aSchemaService, String aDir,
@@ -206,59 +268,66 @@ public class MtasDocumentIndex
         // new RuntimeException());
 
         try {
-            // Add the project id to the configuration
-            JSONObject jsonParserConfiguration = new JSONObject();
-            jsonParserConfiguration.put(PARAM_PROJECT_ID, project.getId());
+            IndexWriter indexWriter = openIndexWriter(getIndexDir());
 
-            // Tokenizer parameters
-            Map<String, String> tokenizerArguments = new HashMap<>();
-            tokenizerArguments.put(ARGUMENT_PARSER, MtasUimaParser.class.getName());
-            tokenizerArguments.put(ARGUMENT_PARSER_ARGS, jsonParserConfiguration.toString());
+            // After the index has been initialized, assign the _indexWriter - this is also used
+            // by isOpen() to check if the index writer is available.
+            _indexWriter = indexWriter;
 
-            // Build analyzer
-            Analyzer mtasAnalyzer = CustomAnalyzer.builder()
-                    .withTokenizer(MtasTokenizerFactory.class, tokenizerArguments).build();
+            return _indexWriter;
+        }
+        catch (IOException e) {
+            _indexWriter = null;
+            throw e;
+        }
+    }
 
-            Map<String, Analyzer> analyzerPerField = new HashMap<String, Analyzer>();
-            analyzerPerField.put(FIELD_CONTENT, mtasAnalyzer);
+    private IndexWriter openIndexWriter(File aIndexDir) throws IOException
+    {
+        // Add the project id to the configuration
+        JSONObject jsonParserConfiguration = new JSONObject();
+        jsonParserConfiguration.put(PARAM_PROJECT_ID, project.getId());
 
-            PerFieldAnalyzerWrapper analyzer = new PerFieldAnalyzerWrapper(new StandardAnalyzer(),
-                    analyzerPerField);
+        // Tokenizer parameters
+        Map<String, String> tokenizerArguments = new HashMap<>();
+        tokenizerArguments.put(ARGUMENT_PARSER, MtasUimaParser.class.getName());
+        tokenizerArguments.put(ARGUMENT_PARSER_ARGS, jsonParserConfiguration.toString());
 
-            // Build IndexWriter
-            FileUtils.forceMkdir(getIndexDir());
-            IndexWriterConfig config = new IndexWriterConfig(analyzer);
-            config.setCodec(Codec.forName(MTAS_CODEC_NAME));
+        // Build analyzer
+        Analyzer mtasAnalyzer = CustomAnalyzer.builder()
+                .withTokenizer(MtasTokenizerFactory.class, tokenizerArguments).build();
 
-            @SuppressWarnings("resource")
-            IndexWriter indexWriter = new IndexWriter(FSDirectory.open(getIndexDir().toPath()),
-                    config);
+        Map<String, Analyzer> analyzerPerField = new HashMap<String, Analyzer>();
+        analyzerPerField.put(FIELD_CONTENT, mtasAnalyzer);
 
-            // Initialize the index
-            try {
-                indexWriter.commit();
-            }
-            catch (IOException e) {
-                try {
-                    indexWriter.close();
-                }
-                catch (IOException e1) {
-                    log.error("Error while trying to close index which could not be initalized"
-                            + " - actual exception follows", e);
-                }
-                throw e;
-            }
+        PerFieldAnalyzerWrapper analyzer = new PerFieldAnalyzerWrapper(new StandardAnalyzer(),
+                analyzerPerField);
 
-            // After the index has been initialized, assign the _indexWriter - this is also used
-            // by isOpen() to check if the index writer is available.
-            _indexWriter = indexWriter;
+        // Build IndexWriter
+        FileUtils.forceMkdir(aIndexDir);
+        IndexWriterConfig config = new IndexWriterConfig(analyzer);
+        config.setCodec(Codec.forName(MTAS_CODEC_NAME));
 
-            return _indexWriter;
+        @SuppressWarnings("resource")
+        IndexWriter indexWriter = new IndexWriter(FSDirectory.open(aIndexDir.toPath()),
+                config);
+
+        // Initialize the index
+        try {
+            indexWriter.commit();
         }
         catch (IOException e) {
-            _indexWriter = null;
+            try {
+                indexWriter.close();
+            }
+            catch (IOException e1) {
+                log.error("Error while trying to close index which could not be initalized"
+                        + " - actual exception follows", e);
+            }
             throw e;
         }
+
+        return indexWriter;
     }
 
     private void ensureAllIsCommitted()
@@ -295,6 +364,7 @@ public class MtasDocumentIndex
             schedulerService.shutdown();
         }
 
+        discardShadowIndex();
         closeIndex();
     }
 
@@ -395,7 +465,16 @@ public class MtasDocumentIndex
     public Map<String, List<SearchResult>> executeQuery(SearchQueryRequest aRequest)
         throws IOException, ExecutionException
     {
-        return _executeQuery(this::doQuery, aRequest);
+        return _executeQuery((searcher, request, query) -> doQuery(searcher, request, query,
+                SearchCursor.atOffset(request.getOffset())).getResults(), aRequest);
+    }
+
+    @Override
+    public SearchResultsPage executeQuery(SearchQueryRequest aRequest, SearchCursor aCursor)
+        throws IOException, ExecutionException
+    {
+        return _executeQuery((searcher, request, query) -> doQuery(searcher, request, query,
+                aCursor), aRequest);
     }
 
     @Override
@@ -456,6 +535,8 @@ public class MtasDocumentIndex
     @Override
     public List<Integer> getUniqueDocuments(StatisticRequest aStatisticRequest) throws IOException
     {
+        // Hold on to the manager - the index may be swapped while the documents are collected
+        ReferenceManager<IndexSearcher> searcherManager = getCurrentSearcherManager();
         IndexSearcher searcher = null;
         Map<Long, Long> annotatableDocuments = listAnnotatableDocuments(
                 aStatisticRequest.getProject(), aStatisticRequest.getUser());
@@ -463,7 +544,7 @@ public class MtasDocumentIndex
         List<Integer> fullDocSet = new ArrayList<Integer>();
 
         try {
-            searcher = getSearcherManager().acquire();
+            searcher = searcherManager.acquire();
             IndexReader reader = searcher.getIndexReader();
 
             for (int i = 0; i < reader.maxDoc(); i++) {
@@ -486,7 +567,7 @@ public class MtasDocumentIndex
             if (searcher != null) {
                 // Releasing and setting to null per recommendation in JavaDoc of
                 // release(searcher) method
-                getSearcherManager().release(searcher);
+                searcherManager.release(searcher);
                 searcher = null;
             }
         }
@@ -495,29 +576,70 @@ public class MtasDocumentIndex
 
     public MtasSpanQuery parseQuery(String aQuery) throws ExecutionException, IOException
     {
-        final MtasSpanQuery mtasSpanQuery;
-        try {
-            String modifiedQuery = preprocessQuery(aQuery);
-            MtasSpanQuery mtasSpanQuery1;
-            try (Reader queryReader = new StringReader(modifiedQuery)) {
-                MtasCQLParser parser = new MtasCQLParser(queryReader);
-                mtasSpanQuery1 = parser.parse(FIELD_CONTENT, DEFAULT_PREFIX, null, null, null);
-            }
-            mtasSpanQuery = mtasSpanQuery1;
+        String modifiedQuery = preprocessQuery(aQuery);
+
+        MtasSpanQuery mtasSpanQuery = PARSED_QUERY_CACHE.getIfPresent(modifiedQuery);
+        if (mtasSpanQuery != null) {
+            return mtasSpanQuery;
+        }
+
+        try (Reader queryReader = new StringReader(modifiedQuery)) {
+            MtasCQLParser parser = new MtasCQLParser(queryReader);
+            mtasSpanQuery = parser.parse(FIELD_CONTENT, DEFAULT_PREFIX, null, null, null);
         }
         catch (ParseException | Error e) {
             // The exceptions thrown by the MTAS CQL Parser are inheriting from
             // java.lang.Error...
             throw new ExecutionException("Unable to parse query [" + aQuery + "]", e);
         }
+
+        PARSED_QUERY_CACHE.put(modifiedQuery, mtasSpanQuery);
         return mtasSpanQuery;
     }
 
+    /**
+     * @return statistics of the cache of parsed queries shared by all MTAS indexes.
+     */
+    public static CacheStats getParsedQueryCacheStats()
+    {
+        return PARSED_QUERY_CACHE.stats();
+    }
+
+    @Override
+    public long getGeneration()
+    {
+        // This is called for every cached query, so it must not touch the searchers
+        return generation;
+    }
+
+    private void markChanged()
+    {
+        generation = GENERATIONS.incrementAndGet();
+    }
+
+    /**
+     * @return the searcher manager after making sure that it includes all changes made up to the
+     *         current generation. The searchers are near-real-time readers on the index writer, so
+     *         this does not require a commit.
+     */
+    private ReferenceManager<IndexSearcher> getCurrentSearcherManager() throws IOException
+    {
+        ReferenceManager<IndexSearcher> searcherManager = getSearcherManager();
+        long currentGeneration = generation;
+        if (refreshedGeneration != currentGeneration) {
+            searcherManager.maybeRefreshBlocking();
+            refreshedGeneration = currentGeneration;
+        }
+        return searcherManager;
+    }
+
     @Override
     public LayerStatistics getLayerStatistics(StatisticRequest aStatisticRequest,
             String aFeatureQuery, List<Integer> aFullDocSet)
         throws IOException, ExecutionException
     {
+        // Hold on to the manager - the index may be swapped while the statistics are computed
+        ReferenceManager<IndexSearcher> searcherManager = getCurrentSearcherManager();
         IndexSearcher searcher = null;
         Map<String, Object> resultsMap = null;
         Map<String, Object> resultsMapSentence = null;
@@ -531,7 +653,7 @@ public class MtasDocumentIndex
                 ? (double) aStatisticRequest.getMaxTokenPerDoc().getAsInt()
                 : null;
         try {
-            searcher = getSearcherManager().acquire();
+            searcher = searcherManager.acquire();
             IndexReader reader = searcher.getIndexReader();
 
             // what does this parameter do?
@@ -647,7 +769,7 @@ public class MtasDocumentIndex
                 // Releasing and setting to null per recommendation in JavaDoc of
                 // release(searcher)
                 // method
-                getSearcherManager().release(searcher);
+                searcherManager.release(searcher);
                 searcher = null;
             }
         }
@@ -660,27 +782,13 @@ public class MtasDocumentIndex
 
         ensureAllIsCommitted();
 
-        final MtasSpanQuery mtasSpanQuery;
-        try {
-            String modifiedQuery = preprocessQuery(aRequest.getQuery());
-            MtasSpanQuery mtasSpanQuery1;
-            try (Reader reader = new StringReader(modifiedQuery)) {
-                MtasCQLParser parser = new MtasCQLParser(reader);
-                mtasSpanQuery1 = parser.parse(FIELD_CONTENT, DEFAULT_PREFIX, null, null, null);
-            }
-            mtasSpanQuery = mtasSpanQuery1;
-        }
-        catch (ParseException | Error e) {
-            // The exceptions thrown by the MTAS CQL Parser are inheriting from java.lang.Error...
-            throw new ExecutionException("Unable to parse query [" + aRequest.getQuery() + "]", e);
-        }
-        catch (Exception e) {
-            throw e;
-        }
+        final MtasSpanQuery mtasSpanQuery = parseQuery(aRequest.getQuery());
 
+        // Hold on to the manager - the index may be swapped while the query is running
+        ReferenceManager<IndexSearcher> searcherManager = getCurrentSearcherManager();
         IndexSearcher searcher = null;
         try {
-            searcher = getSearcherManager().acquire();
+            searcher = searcherManager.acquire();
             return aRunner.run(searcher, aRequest, mtasSpanQuery);
         }
         catch (Exception e) {
@@ -691,7 +799,7 @@ public class MtasDocumentIndex
             if (searcher != null) {
                 // Releasing and setting to null per recommendation in JavaDoc of release(searcher)
                 // method
-                getSearcherManager().release(searcher);
+                searcherManager.release(searcher);
                 searcher = null;
             }
         }
@@ -837,17 +945,36 @@ public class MtasDocumentIndex
         return annotateableDocuments;
     }
 
-    private Map<String, List<SearchResult>> doQuery(IndexSearcher searcher,
-            SearchQueryRequest aRequest, MtasSpanQuery q)
+    /**
+     * @return the name of the index folder seen by the given searcher. A shadow re-index swaps in a
+     *         new index whose versions start over, so cursors need the name in addition to the
+     *         version to recognize the index they were created in.
+     */
+    private String getCursorIndexName(IndexSearcher aSearcher)
+    {
+        Directory directory = ((DirectoryReader) aSearcher.getIndexReader()).directory();
+        return directory instanceof FSDirectory
+                ? ((FSDirectory) directory).getDirectory().getFileName().toString()
+                : "";
+    }
+
+    private long getCursorIndexVersion(IndexSearcher aSearcher)
+    {
+        return ((DirectoryReader) aSearcher.getIndexReader()).getVersion();
+    }
+
+    private SearchResultsPage doQuery(IndexSearcher searcher, SearchQueryRequest aRequest,
+            MtasSpanQuery q, SearchCursor aCursor)
         throws IOException
     {
         Map<String, List<SearchResult>> results = new LinkedHashMap<>();
 
-        ListIterator<LeafReaderContext> leafReaderContextIterator = searcher.getIndexReader()
-                .leaves().listIterator();
+        List<LeafReaderContext> leaves = searcher.getIndexReader().leaves();
 
-        Map<SourceDocument, AnnotationDocument> sourceAnnotationDocPairs = documentService
-                .listAnnotatableDocuments(aRequest.getProject(), aRequest.getUser());
+        Map<SourceDocument, AnnotationDocument> sourceAnnotationDocPairs = aRequest
+                .getAnnotatableDocuments()
+                .orElseGet(() -> documentService.listAnnotatableDocuments(aRequest.getProject(),
+                        aRequest.getUser()));
         Map<Long, SourceDocument> sourceDocumentIndex = new HashMap<>();
         sourceAnnotationDocPairs.entrySet().stream()
                 .forEach(e -> sourceDocumentIndex.put(e.getKey().getId(), e.getKey()));
@@ -856,19 +983,28 @@ public class MtasDocumentIndex
         SpanWeight spanweight = q.rewrite(searcher.getIndexReader()).createWeight(searcher, false,
                 boost);
 
-        long offset = aRequest.getOffset();
+        // If the cursor knows where in the index it is located, we continue right there.
+        // Otherwise, we have to iterate over all the results before the offset.
+        String indexName = getCursorIndexName(searcher);
+        long indexVersion = getCursorIndexVersion(searcher);
+        boolean resume = aCursor.isResumableIn(indexName, indexVersion);
+        long offset = aCursor.getOffset();
         long count = aRequest.getCount();
-        long current = 0;
+        long current = resume ? offset : 0;
+        int firstSegment = resume ? aCursor.getSegment() : 0;
+        SearchCursor nextCursor = null;
 
-        resultIteration: while (leafReaderContextIterator.hasNext()) {
-            LeafReaderContext leafReaderContext = leafReaderContextIterator.next();
+        resultIteration: for (int segment = firstSegment; segment < leaves.size(); segment++) {
+            LeafReaderContext leafReaderContext = leaves.get(segment);
+            int resumeDocument = resume && segment == firstSegment ? aCursor.getDocument() : -1;
             try {
                 Spans spans = spanweight.getSpans(leafReaderContext, SpanWeight.Postings.POSITIONS);
                 SegmentReader segmentReader = (SegmentReader) leafReaderContext.reader();
                 Terms terms = segmentReader.terms(FIELD_CONTENT);
                 CodecInfo mtasCodecInfo = CodecInfo.getCodecInfoFromTerms(terms);
                 if (spans != null) {
-                    while (spans.nextDoc() != Spans.NO_MORE_DOCS) {
+                    for (int doc = resumeDocument != -1 ? spans.advance(resumeDocument)
+                            : spans.nextDoc(); doc != Spans.NO_MORE_DOCS; doc = spans.nextDoc()) {
                         if (segmentReader.numDocs() == segmentReader.maxDoc()
                                 || segmentReader.getLiveDocs().get(spans.docID())) {
                             Document document = segmentReader.document(spans.docID());
@@ -952,15 +1088,29 @@ public class MtasDocumentIndex
                             // .getField(FIELD_ID).stringValue();
                             // log.debug("******** New doc {}-{}", + spans.docID(), idValue);
 
+                            int skipInDocument = doc == resumeDocument
+                                    ? aCursor.getHitsInDocument()
+                                    : 0;
+                            int hitsInDocument = 0;
                             while (spans.nextStartPosition() != Spans.NO_MORE_POSITIONS) {
+                                // Skip the results in this document which were on the previous
+                                // page
+                                if (hitsInDocument < skipInDocument) {
+                                    hitsInDocument++;
+                                    continue;
+                                }
                                 if (current < offset) {
                                     current++;
+                                    hitsInDocument++;
                                     continue;
                                 }
                                 if (current - offset + 1 > count) {
+                                    nextCursor = new SearchCursor(indexName, indexVersion,
+                                            current, segment, doc, hitsInDocument);
                                     break resultIteration;
                                 }
                                 current++;
+                                hitsInDocument++;
                                 int matchStart = spans.startPosition();
                                 int matchEnd = spans.endPosition();
 
@@ -1060,7 +1210,7 @@ public class MtasDocumentIndex
                 log.error("Unable to process query results", e);
             }
         }
-        return results;
+        return new SearchResultsPage(results, nextCursor);
     }
 
     private void addToResults(Map<String, List<SearchResult>> aResultsMap, String aKey,
@@ -1134,8 +1284,8 @@ public class MtasDocumentIndex
         }
     }
 
-    private void indexDocument(String aDocumentTitle, long aSourceDocumentId,
-            long aAnnotationDocumentId, String aUser, byte[] aBinaryCas)
+    private void indexDocument(IndexWriter aIndexWriter, String aDocumentTitle,
+            long aSourceDocumentId, long aAnnotationDocumentId, String aUser, byte[] aBinaryCas)
         throws IOException
     {
         // Calculate timestamp that will be indexed
@@ -1147,8 +1297,6 @@ public class MtasDocumentIndex
                 project.getName(), project.getId(), aSourceDocumentId, aAnnotationDocumentId, aUser,
                 timestamp);
 
-        IndexWriter indexWriter = getIndexWriter();
-
         // Prepare bytearray with document content to be indexed
         String encodedCAS = new String(MtasUtils.bytesToChars(aBinaryCas));
 
@@ -1169,7 +1317,7 @@ public class MtasDocumentIndex
         doc.add(new TextField(FIELD_CONTENT, encodedCAS, Field.Store.NO));
 
         // Add document to the Lucene index
-        indexWriter.addDocument(doc);
+        aIndexWriter.addDocument(doc);
     };
 
     /**
@@ -1195,8 +1343,7 @@ public class MtasDocumentIndex
                 aUser);
 
         IndexWriter indexWriter = getIndexWriter();
-        indexWriter.deleteDocuments(new Term(FIELD_ID,
-                String.format("%d/%d", aSourceDocumentId, aAnnotationDocumentId)));
+        indexWriter.deleteDocuments(idTerm(aSourceDocumentId, aAnnotationDocumentId));
     }
 
     /**
@@ -1243,17 +1390,21 @@ public class MtasDocumentIndex
     @Override
     public void deindexDocument(SourceDocument aDocument) throws IOException
     {
-        deindexDocument(aDocument.getId(), -1, "");
-        scheduleCommit();
+        Term id = idTerm(aDocument.getId(), -1);
+        updateLiveIndex(id, writer -> writer.deleteDocuments(id),
+                writer -> deindexDocument(aDocument.getId(), -1, ""));
     }
 
     @Override
     public synchronized void clear() throws IOException
     {
+        discardShadowIndex();
+
         // Remove all data from the index
         IndexWriter indexWriter = getIndexWriter();
         indexWriter.deleteAll();
         ensureAllIsCommitted();
+        markChanged();
     }
 
     /**
@@ -1265,8 +1416,10 @@ public class MtasDocumentIndex
     @Override
     public void deindexDocument(AnnotationDocument aDocument) throws IOException
     {
-        deindexDocument(aDocument.getDocument().getId(), aDocument.getId(), aDocument.getUser());
-        scheduleCommit();
+        Term id = idTerm(aDocument.getDocument().getId(), aDocument.getId());
+        updateLiveIndex(id, writer -> writer.deleteDocuments(id),
+                writer -> deindexDocument(aDocument.getDocument().getId(), aDocument.getId(),
+                        aDocument.getUser()));
     }
 
     /**
@@ -1276,11 +1429,14 @@ public class MtasDocumentIndex
      *            The document to be removed
      */
     @Override
-    public void deindexDocument(AnnotationDocument aDocument, String aTimestamp) throws IOException
+    public void deindexDocument(AnnotationDocument aDocument, String aTimestamp)
+        throws IOException
     {
-        deindexDocument(aDocument.getDocument().getId(), aDocument.getId(), aDocument.getUser(),
-                aTimestamp);
-        scheduleCommit();
+        // Not journaled: the versions in a shadow index carry their own timestamps and the
+        // replayed indexing operations already replace older versions
+        updateLiveIndex(null, null,
+                writer -> deindexDocument(aDocument.getDocument().getId(), aDocument.getId(),
+                        aDocument.getUser(), aTimestamp));
     }
 
     /**
@@ -1288,9 +1444,53 @@ public class MtasDocumentIndex
      * 
      * @return File object corresponding to project's index folder
      */
-    private File getIndexDir()
+    private synchronized File getIndexDir()
+    {
+        if (_indexDir == null) {
+            _indexDir = new File(getProjectIndexFolder(), INDEX);
+
+            File pointer = new File(getProjectIndexFolder(), INDEX_POINTER);
+            if (pointer.isFile()) {
+                try {
+                    String name = new String(Files.readAllBytes(pointer.toPath()), UTF_8).trim();
+                    _indexDir = new File(getProjectIndexFolder(), name);
+                }
+                catch (IOException e) {
+                    log.error("Unable to read index pointer of project [{}]({})",
+                            project.getName(), project.getId(), e);
+                }
+            }
+
+            deleteStaleIndexDirs(_indexDir);
+        }
+
+        return _indexDir;
+    }
+
+    private File getProjectIndexFolder()
+    {
+        return new File(repositoryDir, "/" + PROJECT_FOLDER + "/" + project.getId());
+    }
+
+    /**
+     * Removes index folders left behind e.g. by a shadow rebuild that was interrupted by a restart
+     * or by an old index that was replaced by a shadow index.
+     */
+    private void deleteStaleIndexDirs(File aIndexDir)
     {
-        return new File(repositoryDir, "/" + PROJECT_FOLDER + "/" + project.getId() + "/" + INDEX);
+        File[] indexDirs = getProjectIndexFolder()
+                .listFiles(f -> f.isDirectory() && f.getName().startsWith(INDEX));
+        if (indexDirs == null) {
+            return;
+        }
+
+        for (File dir : indexDirs) {
+            if (!dir.equals(aIndexDir) && !dir.equals(_shadowIndexDir)) {
+                log.info("Deleting stale index [{}] of project [{}]({})", dir, project.getName(),
+                        project.getId());
+                FileUtils.deleteQuietly(dir);
+            }
+        }
     }
 
     @Override
@@ -1300,8 +1500,13 @@ public class MtasDocumentIndex
             close();
         }
 
+        discardShadowIndex();
+
         // Delete the index directory
         deleteDirectory(getIndexDir());
+        Files.deleteIfExists(new File(getProjectIndexFolder(), INDEX_POINTER).toPath());
+        _indexDir = null;
+        markChanged();
 
         log.debug("Index for project [{}]({}) has been deleted", project.getName(),
                 project.getId());
@@ -1377,34 +1582,311 @@ public class MtasDocumentIndex
     }
 
     @Override
-    public void indexDocument(AnnotationDocument aDocument, byte[] aBinaryCas) throws IOException
+    public void indexDocument(AnnotationDocument aDocument, byte[] aBinaryCas)
+        throws IOException
     {
         long srcDocId = aDocument.getDocument().getId();
         long annoDocId = aDocument.getId();
         String user = aDocument.getUser();
 
-        // NOTE: Deleting and then re-indexing the annotation document could lead to
-        // no results for this annotation document being returned while the
-        // re-indexing is still in process. Therefore, we check if there is already
-        // a version of the annotation document index, we obtain the timestamp of this
-        // version, then we add the new version, and finally we remove the old version
-        // as identified by the timestamp.
-        Optional<String> oldTimestamp = getTimestamp(srcDocId, annoDocId);
-        indexDocument(aDocument.getName(), srcDocId, annoDocId, user, aBinaryCas);
-        if (oldTimestamp.isPresent()) {
-            deindexDocument(srcDocId, annoDocId, user, oldTimestamp.get());
+        // A shadow index is not searched while it is built, so we can simply replace the document
+        Term id = idTerm(srcDocId, annoDocId);
+        updateLiveIndex(id, writer -> {
+            writer.deleteDocuments(id);
+            indexDocument(writer, aDocument.getName(), srcDocId, annoDocId, user, aBinaryCas);
+        }, writer -> {
+            // NOTE: Deleting and then re-indexing the annotation document could lead to
+            // no results for this annotation document being returned while the
+            // re-indexing is still in process. Therefore, we check if there is already
+            // a version of the annotation document index, we obtain the timestamp of this
+            // version, then we add the new version, and finally we remove the old version
+            // as identified by the timestamp.
+            Optional<String> oldTimestamp = getTimestamp(srcDocId, annoDocId);
+            indexDocument(writer, aDocument.getName(), srcDocId, annoDocId, user, aBinaryCas);
+            if (oldTimestamp.isPresent()) {
+                deindexDocument(srcDocId, annoDocId, user, oldTimestamp.get());
+            }
+        });
+    }
+
+    @Override
+    public void indexDocument(SourceDocument aSourceDocument, byte[] aBinaryCas)
+        throws IOException
+    {
+        Term id = idTerm(aSourceDocument.getId(), -1);
+        updateLiveIndex(id, writer -> {
+            writer.deleteDocuments(id);
+            indexDocument(writer, aSourceDocument.getName(), aSourceDocument.getId(), -1, "",
+                    aBinaryCas);
+        }, writer -> {
+            // NOTE: deleting all index versions related to the sourcedoc is ok in comparison to
+            // re-indexing annotation documents, because we do this before the search
+            // is accessed and therefore do not care about indices not being available for a
+            // short time
+            deindexDocument(aSourceDocument.getId(), -1, "");
+            indexDocument(writer, aSourceDocument.getName(), aSourceDocument.getId(), -1, "",
+                    aBinaryCas);
+        });
+    }
+
+    /**
+     * Applies an update to the live index. While a shadow index is being built, the update is
+     * also recorded in the journal. In this case, the update is applied while holding the monitor
+     * of this object so that the order of the updates in the journal matches the live index.
+     * Otherwise, updates run concurrently.
+     * 
+     * @param aId
+     *            the ID of the updated documents or {@code null} if the update is not journaled.
+     * @param aJournaledUpdate
+     *            the update to replay to the shadow index.
+     * @param aLiveUpdate
+     *            the update to apply to the live index.
+     */
+    private void updateLiveIndex(Term aId, IndexUpdate aJournaledUpdate, IndexUpdate aLiveUpdate)
+        throws IOException
+    {
+        updateLock.readLock().lock();
+        try {
+            if (aId != null && isShadowIndexing()) {
+                synchronized (this) {
+                    journal(aId, aJournaledUpdate);
+                    aLiveUpdate.apply(getIndexWriter());
+                }
+            }
+            else {
+                aLiveUpdate.apply(getIndexWriter());
+            }
+            markChanged();
+        }
+        finally {
+            updateLock.readLock().unlock();
         }
+
         scheduleCommit();
     }
 
+    private synchronized boolean isShadowIndexing()
+    {
+        return _shadowJournal != null;
+    }
+
     @Override
-    public void indexDocument(SourceDocument aSourceDocument, byte[] aBinaryCas) throws IOException
+    public synchronized void startBulkIndexing() throws IOException
     {
-        // NOTE: deleting all index versions related to the sourcedoc is ok in comparison to
-        // re-indexing annotation documents, because we do this before the search
-        // is accessed and therefore do not care about indices not being available for a short time
-        deindexDocument(aSourceDocument.getId(), -1, "");
-        indexDocument(aSourceDocument.getName(), aSourceDocument.getId(), -1, "", aBinaryCas);
-        scheduleCommit();
+        getIndexWriter().getConfig().setRAMBufferSizeMB(BULK_RAM_BUFFER_SIZE_MB);
+    }
+
+    @Override
+    public boolean startShadowIndexing() throws IOException
+    {
+        // Updates which are already running would not be journaled
+        updateLock.writeLock().lock();
+        try {
+            return doStartShadowIndexing();
+        }
+        finally {
+            updateLock.writeLock().unlock();
+        }
+    }
+
+    private synchronized boolean doStartShadowIndexing() throws IOException
+    {
+        discardShadowIndex();
+
+        // Make sure the live index is open so it can keep serving queries
+        getIndexWriter();
+
+        File shadowIndexDir = new File(getProjectIndexFolder(),
+                INDEX + "-" + System.currentTimeMillis());
+        IndexWriter shadowIndexWriter = openIndexWriter(shadowIndexDir);
+        shadowIndexWriter.getConfig().setRAMBufferSizeMB(BULK_RAM_BUFFER_SIZE_MB);
+
+        _shadowIndexDir = shadowIndexDir;
+        _shadowIndexWriter = shadowIndexWriter;
+        _shadowJournal = new LinkedHashMap<>();
+
+        log.info("Building shadow index for project [{}]({}) in [{}]", project.getName(),
+                project.getId(), shadowIndexDir);
+
+        return true;
+    }
+
+    @Override
+    public void bulkIndexDocument(SourceDocument aSourceDocument, byte[] aBinaryCas)
+        throws IOException
+    {
+        // The IndexWriter is thread-safe and the MTAS parser is invoked by the analyzer in the
+        // calling thread, so concurrent callers parse their documents in parallel
+        indexDocument(getBulkIndexWriter(), aSourceDocument.getName(), aSourceDocument.getId(), -1,
+                "", aBinaryCas);
+    }
+
+    @Override
+    public void bulkIndexDocument(AnnotationDocument aDocument, byte[] aBinaryCas)
+        throws IOException
+    {
+        indexDocument(getBulkIndexWriter(), aDocument.getName(), aDocument.getDocument().getId(),
+                aDocument.getId(), aDocument.getUser(), aBinaryCas);
+    }
+
+    @Override
+    public void finishBulkIndexing() throws IOException
+    {
+        // Running updates of the live index must complete before the index is swapped
+        updateLock.writeLock().lock();
+        try {
+            doFinishBulkIndexing();
+        }
+        finally {
+            updateLock.writeLock().unlock();
+        }
+    }
+
+    private synchronized void doFinishBulkIndexing() throws IOException
+    {
+        if (_shadowIndexWriter != null) {
+            swapInShadowIndex();
+            return;
+        }
+
+        getIndexWriter().getConfig()
+                .setRAMBufferSizeMB(IndexWriterConfig.DEFAULT_RAM_BUFFER_SIZE_MB);
+        ensureAllIsCommitted();
+        markChanged();
+    }
+
+    @Override
+    public void abortBulkIndexing() throws IOException
+    {
+        synchronized (this) {
+            if (_shadowIndexWriter != null) {
+                discardShadowIndex();
+                return;
+            }
+        }
+
+        finishBulkIndexing();
+    }
+
+    private synchronized IndexWriter getBulkIndexWriter() throws IOException
+    {
+        return _shadowIndexWriter != null ? _shadowIndexWriter : getIndexWriter();
+    }
+
+    /**
+     * Records an update to the live index so it can be replayed to the shadow index before the
+     * shadow index replaces the live index. Must be called while holding the monitor of this
+     * object.
+     * <p>
+     * Every update first deletes all index entries with the given ID and then possibly adds new
+     * ones. Thus, only the latest update for an ID needs to be replayed and the journal holds at
+     * most one update (and thus one CAS) per document and user.
+     */
+    private void journal(Term aId, IndexUpdate aUpdate)
+    {
+        if (_shadowJournal != null) {
+            _shadowJournal.put(aId, aUpdate);
+        }
+    }
+
+    private synchronized void swapInShadowIndex() throws IOException
+    {
+        IndexWriter shadowIndexWriter = _shadowIndexWriter;
+        File shadowIndexDir = _shadowIndexDir;
+
+        try {
+            // Replay the updates that the live index received while the shadow index was built
+            for (IndexUpdate update : _shadowJournal.values()) {
+                update.apply(shadowIndexWriter);
+            }
+            log.debug("Replayed [{}] updates to shadow index for project [{}]({})",
+                    _shadowJournal.size(), project.getName(), project.getId());
+
+            shadowIndexWriter.getConfig()
+                    .setRAMBufferSizeMB(IndexWriterConfig.DEFAULT_RAM_BUFFER_SIZE_MB);
+            shadowIndexWriter.commit();
+            writeIndexPointer(shadowIndexDir);
+        }
+        catch (IOException e) {
+            discardShadowIndex();
+            throw e;
+        }
+
+        _shadowIndexWriter = null;
+        _shadowIndexDir = null;
+        _shadowJournal = null;
+
+        // From here on, new queries go to the new index. Queries still running on the old index
+        // hold a reference to their searcher which remains usable until it is released. Thus,
+        // the old index directory is only deleted once the last searcher has been released. If
+        // that does not happen, it is deleted when the index is opened again.
+        File oldIndexDir = getIndexDir();
+        ReferenceManager<IndexSearcher> oldSearcherManager = _searcherManager;
+        IndexSearcher oldSearcher = oldSearcherManager != null ? oldSearcherManager.acquire()
+                : null;
+        closeIndex();
+        _indexDir = shadowIndexDir;
+        _indexWriter = shadowIndexWriter;
+        markChanged();
+
+        if (oldSearcher != null) {
+            oldSearcher.getIndexReader().getReaderCacheHelper()
+                    .addClosedListener(key -> deleteOldIndexDir(oldIndexDir));
+            oldSearcherManager.release(oldSearcher);
+        }
+        else {
+            deleteOldIndexDir(oldIndexDir);
+        }
+
+        log.info("Swapped in shadow index for project [{}]({})", project.getName(),
+                project.getId());
+    }
+
+    private void deleteOldIndexDir(File aIndexDir)
+    {
+        if (!FileUtils.deleteQuietly(aIndexDir)) {
+            log.warn("Unable to delete old index [{}] of project [{}]({}) - will try again later",
+                    aIndexDir, project.getName(), project.getId());
+        }
+    }
+
+    private synchronized void discardShadowIndex()
+    {
+        if (_shadowIndexWriter == null) {
+            return;
+        }
+
+        try {
+            _shadowIndexWriter.rollback();
+        }
+        catch (IOException e) {
+            log.error("Error closing shadow index for project [{}]({})", project.getName(),
+                    project.getId(), e);
+        }
+
+        FileUtils.deleteQuietly(_shadowIndexDir);
+
+        _shadowIndexWriter = null;
+        _shadowIndexDir = null;
+        _shadowJournal = null;
+    }
+
+    private void writeIndexPointer(File aIndexDir) throws IOException
+    {
+        Path pointer = new File(getProjectIndexFolder(), INDEX_POINTER).toPath();
+        Path tmp = new File(getProjectIndexFolder(), INDEX_POINTER + ".tmp").toPath();
+        Files.write(tmp, aIndexDir.getName().getBytes(UTF_8));
+        Files.move(tmp, pointer, ATOMIC_MOVE, REPLACE_EXISTING);
+    }
+
+    private static Term idTerm(long aSourceDocumentId, long aAnnotationDocumentId)
+    {
+        return new Term(FIELD_ID, String.format("%d/%d", aSourceDocumentId, aAnnotationDocumentId));
+    }
+
+    @FunctionalInterface
+    private interface IndexUpdate
+    {
+        void apply(IndexWriter aIndexWriter) throws IOException;
     }
 }
@@ -19,6 +19,7 @@ package de.tudarmstadt.ukp.inception.search.index.mtas.config;
 
 import org.springframework.boot.autoconfigure.AutoConfigureAfter;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 
 import de.tudarmstadt.ukp.clarin.webanno.api.AnnotationSchemaService;
@@ -29,6 +30,8 @@ import de.tudarmstadt.ukp.inception.search.FeatureIndexingSupportRegistry;
 import de.tudarmstadt.ukp.inception.search.config.SearchServiceAutoConfiguration;
 import de.tudarmstadt.ukp.inception.search.index.PhysicalIndexRegistry;
 import de.tudarmstadt.ukp.inception.search.index.mtas.MtasDocumentIndexFactory;
+import de.tudarmstadt.ukp.inception.search.index.mtas.metrics.MtasDocumentIndexMetrics;
+import de.tudarmstadt.ukp.inception.search.index.mtas.metrics.MtasDocumentIndexMetricsImpl;
 
 @AutoConfigureAfter(SearchServiceAutoConfiguration.class)
 @ConditionalOnBean(PhysicalIndexRegistry.class)
@@ -43,4 +46,11 @@ public class MtasDocumentIndexAutoConfiguration
         return new MtasDocumentIndexFactory(aSchemaService, aDocumentService, aRepositoryProperties,
                 aFeatureIndexingSupportRegistry, aFeatureSupportRegistry);
     }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "monitoring.metrics", name = "enabled", havingValue = "true")
+    public MtasDocumentIndexMetrics mtasDocumentIndexMetrics()
+    {
+        return new MtasDocumentIndexMetricsImpl();
+    }
 }
@@ -27,10 +27,13 @@ import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.InputStream;
 import java.lang.reflect.Method;
+import java.nio.file.Files;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.OptionalInt;
 import java.util.Set;
 
@@ -86,11 +89,14 @@ import de.tudarmstadt.ukp.inception.export.config.DocumentImportExportServiceAut
 import de.tudarmstadt.ukp.inception.kb.config.KnowledgeBaseServiceAutoConfiguration;
 import de.tudarmstadt.ukp.inception.scheduling.config.SchedulingServiceAutoConfiguration;
 import de.tudarmstadt.ukp.inception.search.LayerStatistics;
+import de.tudarmstadt.ukp.inception.search.SearchCursor;
 import de.tudarmstadt.ukp.inception.search.SearchResult;
+import de.tudarmstadt.ukp.inception.search.SearchResultsPage;
 import de.tudarmstadt.ukp.inception.search.SearchService;
 import de.tudarmstadt.ukp.inception.search.StatisticsResult;
 import de.tudarmstadt.ukp.inception.search.config.SearchServiceAutoConfiguration;
 import de.tudarmstadt.ukp.inception.search.index.mtas.config.MtasDocumentIndexAutoConfiguration;
+import de.tudarmstadt.ukp.inception.search.model.Monitor;
 
 @EnableAutoConfiguration
 @EntityScan({ //
@@ -307,6 +313,159 @@ public class MtasDocumentIndexTest
         log.info("Indexing complete!");
     }
 
+    @Test
+    public void testReindexWithManyDocuments() throws Exception
+    {
+        Project project = new Project();
+        project.setName("TestReindexWithManyDocuments");
+
+        createProject(project);
+
+        int documentCount = 25;
+        List<Pair<SourceDocument, String>> documents = new ArrayList<>();
+        for (int i = 0; i < documentCount; i++) {
+            SourceDocument sourceDocument = new SourceDocument();
+            sourceDocument.setName("Document " + i);
+            sourceDocument.setProject(project);
+            sourceDocument.setFormat("text");
+            documents.add(Pair.of(sourceDocument,
+                    "The capital of Galicia is Santiago de Compostela."));
+        }
+
+        uploadDocument(documents.toArray(Pair[]::new));
+
+        Monitor monitor = new Monitor();
+        searchService.reindex(project, monitor);
+
+        assertThat(searchService.isIndexValid(project)).isTrue();
+        assertThat(monitor.toProgress().getDone()).isEqualTo(documentCount);
+        assertThat(monitor.toProgress().getTotal()).isEqualTo(documentCount);
+
+        List<SearchResult> results = searchService.query(userRepository.get("admin"), project,
+                "Galicia");
+        assertThat(results).hasSize(documentCount);
+    }
+
+    @Test
+    public void testCursorPaging() throws Exception
+    {
+        Project project = new Project();
+        project.setName("TestCursorPaging");
+
+        createProject(project);
+
+        List<Pair<SourceDocument, String>> documents = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            SourceDocument sourceDocument = new SourceDocument();
+            sourceDocument.setName("Document " + i);
+            sourceDocument.setProject(project);
+            sourceDocument.setFormat("text");
+            documents.add(Pair.of(sourceDocument,
+                    "Galicia is in Spain . Santiago is the capital of Galicia . Galicia is green ."));
+        }
+
+        uploadDocument(documents.toArray(Pair[]::new));
+
+        User user = userRepository.get("admin");
+        List<SearchResult> expected = searchService.query(user, project, "Galicia");
+        assertThat(expected).hasSize(15);
+
+        // Page boundaries fall into the middle of documents
+        List<SearchResult> actual = new ArrayList<>();
+        Optional<SearchCursor> cursor = Optional.of(SearchCursor.atOffset(0));
+        int pages = 0;
+        while (cursor.isPresent()) {
+            SearchResultsPage page = searchService.query(user, project, "Galicia", null, null,
+                    null, cursor.get(), 4);
+            page.getResults().values().forEach(actual::addAll);
+            cursor = page.getNextCursor();
+            pages++;
+        }
+
+        assertThat(pages).isEqualTo(4);
+        assertThat(actual).containsExactlyElementsOf(expected);
+
+        // Fetching a page with a cursor that does not know its position in the index yields the
+        // same results as resuming with the cursor returned with the previous page
+        SearchResultsPage firstPage = searchService.query(user, project, "Galicia", null, null,
+                null, SearchCursor.atOffset(0), 4);
+        assertThat(firstPage.getNextCursor().get().getDocument()).isNotEqualTo(-1);
+        SearchResultsPage resumed = searchService.query(user, project, "Galicia", null, null,
+                null, firstPage.getNextCursor().get(), 4);
+        SearchResultsPage skipped = searchService.query(user, project, "Galicia", null, null,
+                null, SearchCursor.atOffset(4), 4);
+        assertThat(resumed.getResults()).isEqualTo(skipped.getResults());
+    }
+
+    @Test
+    public void testQueryResultCountIsCachedUntilIndexChanges() throws Exception
+    {
+        Project project = new Project();
+        project.setName("TestQueryResultCountIsCached");
+
+        createProject(project);
+
+        SourceDocument sourceDocument = new SourceDocument();
+        sourceDocument.setName("Document 1");
+        sourceDocument.setProject(project);
+        sourceDocument.setFormat("text");
+
+        uploadDocument(Pair.of(sourceDocument, "Galicia is in Spain ."));
+
+        User user = userRepository.get("admin");
+        long hits = searchService.getQueryCacheStats().hitCount();
+
+        assertThat(searchService.determineNumOfQueryResults(user, project, "Galicia", null, null,
+                null)).isEqualTo(1);
+        assertThat(searchService.determineNumOfQueryResults(user, project, "Galicia", null, null,
+                null)).isEqualTo(1);
+        assertThat(searchService.getQueryCacheStats().hitCount()).isEqualTo(hits + 1);
+
+        // Adding a document changes the index generation so the count must be computed anew
+        SourceDocument otherDocument = new SourceDocument();
+        otherDocument.setName("Document 2");
+        otherDocument.setProject(project);
+        otherDocument.setFormat("text");
+
+        uploadDocument(Pair.of(otherDocument, "Galicia is green ."));
+
+        assertThat(searchService.determineNumOfQueryResults(user, project, "Galicia", null, null,
+                null)).isEqualTo(2);
+    }
+
+    @Test
+    public void testReindexIntoShadowIndex() throws Exception
+    {
+        Project project = new Project();
+        project.setName("TestReindexIntoShadowIndex");
+
+        createProject(project);
+
+        SourceDocument sourceDocument = new SourceDocument();
+        sourceDocument.setName("Raw text document");
+        sourceDocument.setProject(project);
+        sourceDocument.setFormat("text");
+
+        uploadDocument(Pair.of(sourceDocument, "The capital of Galicia is Santiago de Compostela."));
+
+        File projectFolder = new File(TEST_OUTPUT_FOLDER, "project/" + project.getId());
+        for (int i = 0; i < 2; i++) {
+            searchService.reindex(project, new Monitor());
+
+            // The index has never been invalidated, so queries could be served all the time
+            assertThat(searchService.isIndexValid(project)).isTrue();
+            assertThat(searchService.query(userRepository.get("admin"), project, "Galicia"))
+                    .hasSize(1);
+
+            // The shadow index has replaced the previous index
+            assertThat(projectFolder.list((dir, name) -> name.startsWith("indexMtas")))
+                    .containsExactlyInAnyOrder("indexMtas.current",
+                            new String(Files.readAllBytes(
+                                    new File(projectFolder, "indexMtas.current").toPath()),
+                                    UTF_8));
+        }
+    }
+
     @Test
     public void testRawTextQuery() throws Exception
     {
@@ -610,6 +769,13 @@ public class MtasDocumentIndexTest
         assertThat(statsResults.getUser()).isEqualTo(user);
         assertTrue(expectedResults.equals(statsResults.getResults()));
 
+        // Cached statistics are handed out as copies which do not share any state
+        StatisticsResult cachedStatsResults = searchService.getProjectStatistics(user, project,
+                minTokenPerDoc, maxTokenPerDoc, features);
+        assertThat(cachedStatsResults.getResults()).isEqualTo(statsResults.getResults());
+        assertThat(cachedStatsResults.getResults().get("Segmentation.token"))
+                .isNotSameAs(statsResults.getResults().get("Segmentation.token"));
+
         // Check query-based statistics
         String query = "moon";
 
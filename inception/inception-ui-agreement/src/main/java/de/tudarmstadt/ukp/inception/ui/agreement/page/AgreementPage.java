@@ -30,6 +30,7 @@ import static de.tudarmstadt.ukp.clarin.webanno.ui.core.page.ProjectPageBase.PAG
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -68,6 +69,7 @@ import de.tudarmstadt.ukp.clarin.webanno.api.DocumentService;
 import de.tudarmstadt.ukp.clarin.webanno.api.ProjectService;
 import de.tudarmstadt.ukp.clarin.webanno.api.WebAnnoConst;
 import de.tudarmstadt.ukp.clarin.webanno.api.annotation.util.WebAnnoCasUtil;
+import de.tudarmstadt.ukp.clarin.webanno.api.dao.casstorage.CasStorageSession;
 import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationDocument;
 import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationFeature;
 import de.tudarmstadt.ukp.clarin.webanno.model.Project;
@@ -229,19 +231,25 @@ public class AgreementPage
                     (DefaultAgreementTraits) traitsContainer.get(MID_TRAITS)
                             .getDefaultModelObject());
 
-            Map<String, List<CAS>> casMap = getCasMap();
+            Project project = feature.getProject();
+            List<User> users = projectService.listProjectUsersWithPermissions(project, ANNOTATOR);
+            List<SourceDocument> sourceDocuments = documentService.listSourceDocuments(project);
 
-            if (casMap.values().stream().allMatch(list -> list == null || list.isEmpty())) {
+            if (users.isEmpty() || sourceDocuments.isEmpty()) {
                 error("No documents with annotations were found.");
                 aTarget.addChildren(getPage(), IFeedback.class);
             }
             else {
-                Serializable result = measure.getAgreement(casMap);
+                Serializable result;
+                try (PerDocumentCasLoader casMapPerDocument = new PerDocumentCasLoader(project,
+                        users, sourceDocuments)) {
+                    result = measure.getAgreement(users.stream().map(User::getUsername)
+                            .collect(Collectors.toList()), casMapPerDocument);
+                }
                 resultsContainer.addOrReplace(ams.createResultsPanel(MID_RESULTS, Model.of(result),
                         AgreementPage.this::getCasMap));
                 aTarget.add(resultsContainer);
             }
-
         }
 
         List<Pair<String, String>> listMeasures()
@@ -280,14 +288,11 @@ public class AgreementPage
         Pair<String, String> measure;
     }
 
-    // The CASes cannot be serialized, so we make them transient here. However, it does not matter
-    // as we do not access the field directly but via getCases() which will re-load them if
-    // necessary, e.g. if the transient field is empty after a session is restored from a
-    // persisted state.
-    private transient Map<String, List<CAS>> cachedCASes;
-    private transient Project cachedProject;
-    private transient boolean cachedLimitToFinishedDocuments;
-
+    /**
+     * Loads the CASes of all annotators for all documents at once. This is only used when all
+     * CASes are required simultaneously, e.g. to export the agreement details. The agreement
+     * itself is calculated document by document to avoid keeping all CASes in memory.
+     */
     public Map<String, List<CAS>> getCasMap()
     {
         if (agreementForm.featureList.getModelObject() == null) {
@@ -296,77 +301,147 @@ public class AgreementPage
 
         Project project = agreementForm.featureList.getModelObject().getProject();
 
-        DefaultAgreementTraits traits = (DefaultAgreementTraits) agreementForm.traitsContainer
-                .get(MID_TRAITS).getDefaultModelObject();
-
-        // Avoid reloading the CASes when switching features within the same project
-        if (cachedCASes != null && project.equals(cachedProject)
-                && cachedLimitToFinishedDocuments == traits.isLimitToFinishedDocuments()) {
-            return cachedCASes;
+        List<User> users = projectService.listProjectUsersWithPermissions(project, ANNOTATOR);
+        Map<String, List<SourceDocument>> docsByUser = getDocumentsByUser(project, users);
+
+        Map<String, List<CAS>> casMap = new LinkedHashMap<>();
+        users.forEach(user -> casMap.put(user.getUsername(), new ArrayList<>()));
+        for (SourceDocument document : documentService.listSourceDocuments(project)) {
+            Map<String, CAS> documentCasMap = getCasMap(document, users, docsByUser);
+            // The CAS lists for all users need to have the same size, so null values are added if
+            // a user is not considered for a document
+            users.forEach(user -> casMap.get(user.getUsername())
+                    .add(documentCasMap.get(user.getUsername())));
         }
 
-        List<User> users = projectService.listProjectUsersWithPermissions(project, ANNOTATOR);
+        return casMap;
+    }
 
-        List<SourceDocument> sourceDocuments = documentService.listSourceDocuments(project);
-
-        cachedCASes = new LinkedHashMap<>();
-        for (User user : users) {
-            List<CAS> cases = new ArrayList<>();
-
-            // Bulk-fetch all source documents for which there is already an annotation document for
-            // the user which is faster then checking for their existence individually
-            List<SourceDocument> docsForUser = documentService
-                    .listAnnotationDocuments(project, user).stream()
-                    .map(AnnotationDocument::getDocument).distinct().collect(Collectors.toList());
-
-            nextDocument: for (SourceDocument document : sourceDocuments) {
-                CAS cas = null;
-
-                try {
-                    if (docsForUser.contains(document)) {
-                        AnnotationDocument annotationDocument = documentService
-                                .getAnnotationDocument(document, user);
-
-                        if (traits.isLimitToFinishedDocuments()
-                                && !annotationDocument.getState().equals(FINISHED)) {
-                            // Add a skip marker (null) for the current CAS to the CAS list - this
-                            // is necessary because we expect the CAS lists for all users to have
-                            // the same size
-                            cases.add(null);
-                            continue nextDocument;
-                        }
-                    }
+    /**
+     * Provides the CASes of one document at a time. The CASes of each document are loaded in a
+     * nested CAS storage session which is closed when the next document is requested. Thus, the
+     * session of the current request does not keep the CASes of all documents.
+     */
+    private class PerDocumentCasLoader
+        implements Iterable<Map<String, CAS>>, AutoCloseable
+    {
+        private final List<User> users;
+        private final List<SourceDocument> documents;
+        private final Map<String, List<SourceDocument>> docsByUser;
 
-                    // Reads the user's annotation document or the initial source document -
-                    // depending on what is available
-                    cas = documentService.readAnnotationCas(document, user.getUsername(),
-                            AUTO_CAS_UPGRADE, SHARED_READ_ONLY_ACCESS);
-                }
-                catch (Exception e) {
-                    error("Unable to load data: " + ExceptionUtils.getRootCauseMessage(e));
-                    LOG.error("Unable to load data", e);
+        private CasStorageSession session;
+
+        public PerDocumentCasLoader(Project aProject, List<User> aUsers,
+                List<SourceDocument> aDocuments)
+        {
+            users = aUsers;
+            documents = aDocuments;
+            docsByUser = getDocumentsByUser(aProject, aUsers);
+        }
+
+        @Override
+        public Iterator<Map<String, CAS>> iterator()
+        {
+            Iterator<SourceDocument> documentIterator = documents.iterator();
+
+            return new Iterator<Map<String, CAS>>()
+            {
+                @Override
+                public boolean hasNext()
+                {
+                    return documentIterator.hasNext();
                 }
 
-                if (cas != null) {
-                    // Set the CAS name in the DocumentMetaData so that we can pick it
-                    // up in the Diff position for the purpose of debugging / transparency.
-                    FeatureStructure dmd = WebAnnoCasUtil.getDocumentMetadata(cas);
-                    FSUtil.setFeature(dmd, "documentId", document.getName());
-                    FSUtil.setFeature(dmd, "collectionId", document.getProject().getName());
+                @Override
+                public Map<String, CAS> next()
+                {
+                    SourceDocument document = documentIterator.next();
+
+                    // Release the CASes of the previous document
+                    closeSession();
 
+                    session = CasStorageSession.openNested();
+                    return getCasMap(document, users, docsByUser);
                 }
+            };
+        }
 
-                // The next line can enter null values into the list if a user didn't work on this
-                // source document yet.
-                cases.add(cas);
+        private void closeSession()
+        {
+            if (session != null) {
+                session.close();
+                session = null;
             }
+        }
+
+        @Override
+        public void close()
+        {
+            closeSession();
+        }
+    }
 
-            cachedCASes.put(user.getUsername(), cases);
+    private Map<String, List<SourceDocument>> getDocumentsByUser(Project aProject,
+            List<User> aUsers)
+    {
+        // Bulk-fetch all source documents for which there is already an annotation document for
+        // the user which is faster then checking for their existence individually
+        Map<String, List<SourceDocument>> docsByUser = new LinkedHashMap<>();
+        for (User user : aUsers) {
+            docsByUser.put(user.getUsername(),
+                    documentService.listAnnotationDocuments(aProject, user).stream()
+                            .map(AnnotationDocument::getDocument).distinct()
+                            .collect(Collectors.toList()));
         }
+        return docsByUser;
+    }
+
+    private Map<String, CAS> getCasMap(SourceDocument aDocument, List<User> aUsers,
+            Map<String, List<SourceDocument>> aDocsByUser)
+    {
+        DefaultAgreementTraits traits = (DefaultAgreementTraits) agreementForm.traitsContainer
+                .get(MID_TRAITS).getDefaultModelObject();
+
+        Map<String, CAS> casMap = new LinkedHashMap<>();
+        for (User user : aUsers) {
+            CAS cas = null;
+
+            try {
+                if (aDocsByUser.get(user.getUsername()).contains(aDocument)) {
+                    AnnotationDocument annotationDocument = documentService
+                            .getAnnotationDocument(aDocument, user);
+
+                    if (traits.isLimitToFinishedDocuments()
+                            && !annotationDocument.getState().equals(FINISHED)) {
+                        // Add a skip marker (null) for the current CAS
+                        casMap.put(user.getUsername(), null);
+                        continue;
+                    }
+                }
 
-        cachedProject = project;
-        cachedLimitToFinishedDocuments = traits.isLimitToFinishedDocuments();
+                // Reads the user's annotation document or the initial source document -
+                // depending on what is available
+                cas = documentService.readAnnotationCas(aDocument, user.getUsername(),
+                        AUTO_CAS_UPGRADE, SHARED_READ_ONLY_ACCESS);
+            }
+            catch (Exception e) {
+                error("Unable to load data: " + ExceptionUtils.getRootCauseMessage(e));
+                LOG.error("Unable to load data", e);
+            }
+
+            if (cas != null) {
+                // Set the CAS name in the DocumentMetaData so that we can pick it
+                // up in the Diff position for the purpose of debugging / transparency.
+                FeatureStructure dmd = WebAnnoCasUtil.getDocumentMetadata(cas);
+                FSUtil.setFeature(dmd, "documentId", aDocument.getName());
+                FSUtil.setFeature(dmd, "collectionId", aDocument.getProject().getName());
+            }
+
+            // The next line can enter null values into the map if a user didn't work on this
+            // source document yet.
+            casMap.put(user.getUsername(), cas);
+        }
 
-        return cachedCASes;
+        return casMap;
     }
 }
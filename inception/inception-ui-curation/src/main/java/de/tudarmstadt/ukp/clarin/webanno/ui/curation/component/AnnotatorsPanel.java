@@ -27,7 +27,6 @@ import static de.tudarmstadt.ukp.clarin.webanno.api.annotation.util.WebAnnoCasUt
 import static de.tudarmstadt.ukp.clarin.webanno.api.annotation.util.WebAnnoCasUtil.selectAnnotationByAddr;
 import static de.tudarmstadt.ukp.clarin.webanno.api.casstorage.CasAccessMode.SHARED_READ_ONLY_ACCESS;
 import static de.tudarmstadt.ukp.clarin.webanno.brat.render.BratRenderer.buildEntityTypes;
-import static de.tudarmstadt.ukp.clarin.webanno.curation.casdiff.CasDiff.doDiffSingle;
 import static de.tudarmstadt.ukp.clarin.webanno.curation.casdiff.CasDiff.getDiffAdapters;
 import static de.tudarmstadt.ukp.clarin.webanno.curation.casdiff.LinkCompareBehavior.LINK_ROLE_AS_LABEL;
 import static de.tudarmstadt.ukp.clarin.webanno.model.SourceDocumentState.CURATION_FINISHED;
@@ -102,6 +101,7 @@ import de.tudarmstadt.ukp.inception.curation.merge.AlreadyMergedException;
 import de.tudarmstadt.ukp.inception.curation.merge.CasMerge;
 import de.tudarmstadt.ukp.inception.curation.merge.CasMergeOperationResult;
 import de.tudarmstadt.ukp.inception.curation.merge.MergeConflictException;
+import de.tudarmstadt.ukp.inception.curation.service.CasDiffService;
 import de.tudarmstadt.ukp.inception.curation.service.CurationDocumentService;
 
 /**
@@ -131,6 +131,7 @@ public class AnnotatorsPanel
     private @SpringBean ApplicationEventPublisherHolder applicationEventPublisher;
     private @SpringBean UserDao userService;
     private @SpringBean CurationRenderer curationRenderer;
+    private @SpringBean CasDiffService casDiffService;
 
     public AnnotatorsPanel(String id, IModel<List<AnnotatorSegment>> aModel)
     {
@@ -469,8 +470,9 @@ public class AnnotatorsPanel
             Map<String, CAS> aCasses)
     {
         List<DiffAdapter> adapters = getDiffAdapters(schemaService, aState.getAnnotationLayers());
-        DiffResult diff = doDiffSingle(adapters, LINK_ROLE_AS_LABEL, aCasses,
-                aState.getWindowBeginOffset(), aState.getWindowEndOffset()).toResult();
+        DiffResult diff = casDiffService.getDiff(aState.getDocument(), adapters,
+                LINK_ROLE_AS_LABEL, aCasses, aState.getWindowBeginOffset(),
+                aState.getWindowEndOffset()).toResult();
 
         var differingSets = diff.getDifferingConfigurationSetsWithExceptions(CURATION_USER)
                 .values();
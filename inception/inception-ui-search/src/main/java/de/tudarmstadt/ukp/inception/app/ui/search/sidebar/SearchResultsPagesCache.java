@@ -23,9 +23,11 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Optional;
 import java.util.stream.Collectors;
 
 import de.tudarmstadt.ukp.inception.search.ResultsGroup;
+import de.tudarmstadt.ukp.inception.search.SearchCursor;
 
 public class SearchResultsPagesCache
     implements Serializable
@@ -34,9 +36,16 @@ public class SearchResultsPagesCache
 
     private Map<PageKey, List<ResultsGroup>> pages;
 
+    /**
+     * Cursors at the end of the fetched pages by their offset, so that the next page can be fetched
+     * without iterating over the results of the previous pages again.
+     */
+    private Map<Long, SearchCursor> cursors;
+
     public SearchResultsPagesCache()
     {
         pages = new HashMap<>();
+        cursors = new HashMap<>();
     }
 
     public List<ResultsGroup> getPage(long pageFirst, long pageCount)
@@ -49,6 +58,16 @@ public class SearchResultsPagesCache
         pages.put(new PageKey(pageFirst, pageCount), aPage);
     }
 
+    public Optional<SearchCursor> getCursor(long aOffset)
+    {
+        return Optional.ofNullable(cursors.get(aOffset));
+    }
+
+    public void putCursor(SearchCursor aCursor)
+    {
+        cursors.put(aCursor.getOffset(), aCursor);
+    }
+
     public List<ResultsGroup> allResultsGroups()
     {
         return pages.values().stream().flatMap(Collection::stream).collect(Collectors.toList());
@@ -57,6 +76,7 @@ public class SearchResultsPagesCache
     public void clear()
     {
         pages = new HashMap<>();
+        cursors = new HashMap<>();
     }
 
     public boolean isEmpty()
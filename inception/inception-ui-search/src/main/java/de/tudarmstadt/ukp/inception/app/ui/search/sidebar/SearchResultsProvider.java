@@ -39,6 +39,8 @@ import de.tudarmstadt.ukp.clarin.webanno.model.SourceDocument;
 import de.tudarmstadt.ukp.clarin.webanno.security.model.User;
 import de.tudarmstadt.ukp.inception.search.ExecutionException;
 import de.tudarmstadt.ukp.inception.search.ResultsGroup;
+import de.tudarmstadt.ukp.inception.search.SearchCursor;
+import de.tudarmstadt.ukp.inception.search.SearchResultsPage;
 import de.tudarmstadt.ukp.inception.search.SearchService;
 
 public class SearchResultsProvider
@@ -84,13 +86,17 @@ public class SearchResultsProvider
         // Query if the results in the given range are not in the cache i.e. if we need to fetch
         // a new page
         try {
-            List<ResultsGroup> queryResults = searchService
-                    .query(user, project, query, document, annotationLayer, annotationFeature,
-                            first, count)
-                    .entrySet().stream().map(e -> new ResultsGroup(e.getKey(), e.getValue()))
+            SearchResultsPagesCache pagesCache = pagesCacheModel.getObject();
+            SearchCursor cursor = pagesCache.getCursor(first)
+                    .orElseGet(() -> SearchCursor.atOffset(first));
+            SearchResultsPage page = searchService.query(user, project, query, document,
+                    annotationLayer, annotationFeature, cursor, count);
+            List<ResultsGroup> queryResults = page.getResults().entrySet().stream()
+                    .map(e -> new ResultsGroup(e.getKey(), e.getValue()))
                     .collect(Collectors.toList());
 
-            pagesCacheModel.getObject().putPage(first, count, queryResults);
+            pagesCache.putPage(first, count, queryResults);
+            page.getNextCursor().ifPresent(pagesCache::putCursor);
             return queryResults.iterator();
         }
         catch (ExecutionException e) {
@@ -19,6 +19,7 @@ package de.tudarmstadt.ukp.inception.workload.dynamic.event;
 
 import static de.tudarmstadt.ukp.clarin.webanno.model.SourceDocumentState.CURATION_FINISHED;
 import static de.tudarmstadt.ukp.clarin.webanno.model.SourceDocumentState.CURATION_IN_PROGRESS;
+import static de.tudarmstadt.ukp.inception.scheduling.TaskKind.IO_BOUND;
 import static de.tudarmstadt.ukp.inception.workload.dynamic.DynamicWorkloadExtension.DYNAMIC_WORKLOAD_MANAGER_EXTENSION_ID;
 import static java.time.Duration.ofSeconds;
 
@@ -35,6 +36,7 @@ import de.tudarmstadt.ukp.clarin.webanno.api.ProjectService;
 import de.tudarmstadt.ukp.clarin.webanno.model.Project;
 import de.tudarmstadt.ukp.clarin.webanno.model.SourceDocument;
 import de.tudarmstadt.ukp.inception.scheduling.DebouncingTask;
+import de.tudarmstadt.ukp.inception.scheduling.TaskKind;
 import de.tudarmstadt.ukp.inception.workload.dynamic.DynamicWorkloadExtension;
 import de.tudarmstadt.ukp.inception.workload.dynamic.trait.DynamicWorkloadTraits;
 import de.tudarmstadt.ukp.inception.workload.model.WorkloadManagementService;
@@ -57,6 +59,13 @@ public class DynamicWorkloadUpdateDocumentStateTask
         document = aDocument;
     }
 
+    @Override
+    public TaskKind getKind()
+    {
+        // Mostly waits for the database
+        return IO_BOUND;
+    }
+
     @Override
     public void execute()
     {
@@ -17,6 +17,7 @@
  */
 package de.tudarmstadt.ukp.inception.workload.event;
 
+import static de.tudarmstadt.ukp.inception.scheduling.TaskKind.IO_BOUND;
 import static java.time.Duration.ofSeconds;
 
 import java.util.Objects;
@@ -28,6 +29,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import de.tudarmstadt.ukp.clarin.webanno.api.ProjectService;
 import de.tudarmstadt.ukp.clarin.webanno.model.Project;
 import de.tudarmstadt.ukp.inception.scheduling.DebouncingTask;
+import de.tudarmstadt.ukp.inception.scheduling.TaskKind;
 import de.tudarmstadt.ukp.inception.workload.extension.WorkloadManagerExtension;
 import de.tudarmstadt.ukp.inception.workload.model.WorkloadManagementService;
 
@@ -42,6 +44,13 @@ public class RecalculateProjectStateTask
         super(aProject, aTrigger, ofSeconds(3));
     }
 
+    @Override
+    public TaskKind getKind()
+    {
+        // Mostly waits for the database
+        return IO_BOUND;
+    }
+
     @Override
     public void execute()
     {